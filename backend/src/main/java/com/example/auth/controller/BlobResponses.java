@@ -0,0 +1,121 @@
+package com.example.auth.controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Builds streaming responses for stored file contents. A single byte range is answered with
+ * 206 Partial Content and only that range is read from storage; malformed or multi-range requests
+ * get the whole content, and ranges past the end get 416.
+ * <p>
+ * Conditional requests are answered from the ETag alone: a matching {@code If-None-Match} gets 304
+ * without storage being touched, and a range whose {@code If-Range} no longer matches gets the whole
+ * content. Content kept in a local file is handed to the container to send with sendfile when it
+ * supports it, so the bytes never pass through the JVM heap.
+ */
+final class BlobResponses {
+
+    // Tomcat's request attributes for handing a file region to the connector (see org.apache.catalina.Globals)
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    interface ContentOpener {
+        InputStream open(long offset, long length) throws IOException;
+    }
+
+    private BlobResponses() {
+    }
+
+    /**
+     * @param headers   response headers, including the ETag if the content has one
+     * @param localFile the file holding the content, or {@code null} if it is not kept locally
+     */
+    static ResponseEntity<Resource> serve(HttpServletRequest request, long size, HttpHeaders headers,
+                                          ContentOpener opener, Path localFile) {
+        String etag = headers.getETag();
+        if (etag != null && matchesAny(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+        HttpStatus status = HttpStatus.OK;
+        long offset = 0;
+        long length = size;
+
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        String rangeHeader = ifRange == null || ifRange.equals(etag) ? request.getHeader(HttpHeaders.RANGE) : null;
+        List<HttpRange> ranges;
+        try {
+            ranges = rangeHeader == null ? List.of() : HttpRange.parseRanges(rangeHeader);
+        } catch (IllegalArgumentException e) {
+            ranges = List.of();
+        }
+        if (ranges.size() == 1) {
+            HttpRange range = ranges.get(0);
+            long end;
+            try {
+                offset = range.getRangeStart(size);
+                end = range.getRangeEnd(size);
+            } catch (IllegalArgumentException e) {
+                offset = size;
+                end = size - 1;
+            }
+            if (offset >= size || end < offset) {
+                return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                        .header(HttpHeaders.CONTENT_RANGE, "bytes */" + size)
+                        .build();
+            }
+            length = end - offset + 1;
+            status = HttpStatus.PARTIAL_CONTENT;
+            headers.set(HttpHeaders.CONTENT_RANGE, "bytes " + offset + "-" + end + "/" + size);
+        }
+        headers.setContentLength(length);
+
+        if (localFile != null && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+            // The connector sends the region once the response is committed; no body is written here
+            request.setAttribute(SENDFILE_FILENAME, localFile.toString());
+            request.setAttribute(SENDFILE_START, offset);
+            request.setAttribute(SENDFILE_END, offset + length);
+            return ResponseEntity.status(status).headers(headers).build();
+        }
+
+        InputStream content;
+        try {
+            content = opener.open(offset, length);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read stored content", e);
+        }
+        return ResponseEntity.status(status).headers(headers).body(new InputStreamResource(content));
+    }
+
+    // Weak comparison, as If-None-Match requires
+    private static boolean matchesAny(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        String opaque = stripWeak(etag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || stripWeak(tag).equals(opaque)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String stripWeak(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+}
@@ -2,16 +2,31 @@ package com.example.auth.controller;
 
 import com.example.auth.dto.request.UploadDocumentRequest;
 import com.example.auth.dto.response.DocumentResponse;
+import com.example.auth.dto.response.DocumentStorageStatsResponse;
 import com.example.auth.model.Document;
+import com.example.auth.model.DocumentType;
+import com.example.auth.model.PreviewStatus;
 import com.example.auth.model.User;
 import com.example.auth.repository.UserRepository;
+import com.example.auth.service.DocumentPreviewService;
 import com.example.auth.service.DocumentService;
+import com.example.auth.service.DocumentStorageService;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.List;
 import java.util.UUID;
 import java.util.stream.Collectors;
@@ -24,10 +39,16 @@ public class DocumentController {
     @Autowired
     private DocumentService documentService;
 
+    @Autowired
+    private DocumentStorageService documentStorageService;
+
+    @Autowired
+    private DocumentPreviewService documentPreviewService;
+
     @Autowired
     private UserRepository userRepository;
 
-    @PostMapping
+    @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<DocumentResponse> uploadDocument(@Valid @RequestBody UploadDocumentRequest request, Authentication authentication) {
         User currentUser = userRepository.findByUsername(authentication.getName())
                 .orElseThrow(() -> new RuntimeException("User not found"));
@@ -35,12 +56,69 @@ public class DocumentController {
         return ResponseEntity.ok(toResponse(document));
     }
 
+    @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<DocumentResponse> uploadDocumentFile(@RequestParam("file") MultipartFile file,
+                                                               @RequestParam String documentName,
+                                                               @RequestParam String documentType,
+                                                               @RequestParam UUID employeeId,
+                                                               Authentication authentication) {
+        User currentUser = userRepository.findByUsername(authentication.getName())
+                .orElseThrow(() -> new RuntimeException("User not found"));
+        Document document = documentService.uploadDocument(documentName, documentType, employeeId, file, currentUser);
+        return ResponseEntity.ok(toResponse(document));
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<DocumentResponse> getDocument(@PathVariable UUID id) {
         Document document = documentService.getDocument(id);
         return ResponseEntity.ok(toResponse(document));
     }
 
+    @GetMapping("/{id}/content")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('MANAGER') or hasRole('OH_PROFESSIONAL') or @documentController.isOwnDocument(#id, authentication)")
+    public ResponseEntity<Resource> downloadDocument(@PathVariable UUID id, HttpServletRequest request) {
+        Document document = documentService.getDocumentWithContent(id);
+        String storagePath = document.getFilePath();
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(document.getMimeType() == null
+                ? MediaType.APPLICATION_OCTET_STREAM : MediaType.parseMediaType(document.getMimeType()));
+        headers.setContentDisposition(ContentDisposition.attachment().filename(document.getFileName(), StandardCharsets.UTF_8).build());
+        // Content is addressed by its SHA-256, so the hash is a strong validator
+        headers.setETag("\"" + document.getFileHash() + "\"");
+        return BlobResponses.serve(request, document.getFileSize(), headers,
+                (offset, length) -> documentStorageService.open(storagePath, offset, length),
+                documentStorageService.localPath(storagePath));
+    }
+
+    @GetMapping("/{id}/preview")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('MANAGER') or hasRole('OH_PROFESSIONAL') or @documentController.isOwnDocument(#id, authentication)")
+    public ResponseEntity<Resource> getDocumentPreview(@PathVariable UUID id, HttpServletRequest request) {
+        Document document = documentService.getDocumentWithContent(id);
+        if (document.getDocumentType() != DocumentType.IMAGE) {
+            throw new RuntimeException("Preview not available");
+        }
+        String fileHash = document.getFileHash();
+        PreviewStatus status = documentPreviewService.getPreviewStatus(fileHash);
+        if (status == PreviewStatus.PENDING) {
+            return ResponseEntity.accepted().header(HttpHeaders.RETRY_AFTER, "5").build();
+        }
+        if (status == PreviewStatus.FAILED) {
+            throw new RuntimeException("Preview not available");
+        }
+
+        String storagePath = document.getFilePath();
+        long previewSize = documentPreviewService.getPreviewSize(fileHash);
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.IMAGE_JPEG);
+        // A preview belongs to the content it was made from, so it never changes
+        headers.setETag("\"" + fileHash + "-preview\"");
+        headers.setCacheControl(CacheControl.maxAge(Duration.ofDays(30)).cachePrivate().immutable());
+        return BlobResponses.serve(request, previewSize, headers,
+                (offset, length) -> documentPreviewService.openPreview(storagePath, previewSize, offset, length),
+                documentPreviewService.localPreviewPath(storagePath));
+    }
+
     @GetMapping("/user/{userId}")
     public ResponseEntity<List<DocumentResponse>> getUserDocuments(@PathVariable UUID userId) {
         List<Document> documents = documentService.listUserDocuments(userId);
@@ -48,6 +126,15 @@ public class DocumentController {
         return ResponseEntity.ok(response);
     }
 
+    @GetMapping("/storage/stats")
+    public ResponseEntity<DocumentStorageStatsResponse> getStorageStats() {
+        DocumentStorageStatsResponse stats = documentStorageService.getStats();
+        stats.setPreviewsGeneratedSinceStartup(documentPreviewService.getGenerated());
+        stats.setPreviewsFailedSinceStartup(documentPreviewService.getFailed());
+        stats.setPreviewsDeferredSinceStartup(documentPreviewService.getDeferred());
+        return ResponseEntity.ok(stats);
+    }
+
     @DeleteMapping("/{id}")
     public ResponseEntity<?> deleteDocument(@PathVariable UUID id) {
         documentService.deleteDocument(id);
@@ -64,4 +151,11 @@ public class DocumentController {
             doc.getUploadedBy().getUserId()
         );
     }
+
+    /**
+     * Helper method to check if the authenticated user is the employee the document belongs to
+     */
+    public boolean isOwnDocument(UUID documentId, Authentication authentication) {
+        return documentService.isEmployeeDocument(documentId, authentication.getName());
+    }
 }
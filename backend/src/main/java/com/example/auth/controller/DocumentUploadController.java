@@ -0,0 +1,67 @@
+package com.example.auth.controller;
+
+import com.example.auth.dto.request.CreateDocumentUploadRequest;
+import com.example.auth.dto.response.DocumentResponse;
+import com.example.auth.dto.response.DocumentUploadChunkResponse;
+import com.example.auth.dto.response.DocumentUploadResponse;
+import com.example.auth.model.Document;
+import com.example.auth.model.User;
+import com.example.auth.repository.UserRepository;
+import com.example.auth.service.DocumentUploadService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.util.UUID;
+
+@RestController
+@RequestMapping("/api/documents/uploads")
+@CrossOrigin(origins = "*", maxAge = 3600)
+public class DocumentUploadController {
+
+    @Autowired
+    private DocumentUploadService documentUploadService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @PostMapping
+    public ResponseEntity<DocumentUploadResponse> createUpload(@Valid @RequestBody CreateDocumentUploadRequest request,
+                                                               Authentication authentication) {
+        User currentUser = userRepository.findByUsername(authentication.getName())
+                .orElseThrow(() -> new RuntimeException("User not found"));
+        return ResponseEntity.ok(documentUploadService.createUpload(request, currentUser));
+    }
+
+    @GetMapping("/{uploadId}")
+    public ResponseEntity<DocumentUploadResponse> getUpload(@PathVariable UUID uploadId, Authentication authentication) {
+        User currentUser = userRepository.findByUsername(authentication.getName())
+                .orElseThrow(() -> new RuntimeException("User not found"));
+        return ResponseEntity.ok(documentUploadService.getUpload(uploadId, currentUser));
+    }
+
+    // The raw request body is streamed to storage as it arrives
+    @PutMapping(value = "/{uploadId}/chunks/{chunkIndex}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<DocumentUploadChunkResponse> putChunk(@PathVariable UUID uploadId, @PathVariable int chunkIndex,
+                                                                HttpServletRequest request, Authentication authentication) throws IOException {
+        User currentUser = userRepository.findByUsername(authentication.getName())
+                .orElseThrow(() -> new RuntimeException("User not found"));
+        return ResponseEntity.ok(documentUploadService.putChunk(uploadId, chunkIndex, request.getInputStream(),
+                request.getContentLengthLong(), currentUser));
+    }
+
+    @PostMapping("/{uploadId}/commit")
+    public ResponseEntity<DocumentResponse> commitUpload(@PathVariable UUID uploadId, Authentication authentication) {
+        User currentUser = userRepository.findByUsername(authentication.getName())
+                .orElseThrow(() -> new RuntimeException("User not found"));
+        Document document = documentUploadService.commit(uploadId, currentUser);
+        return ResponseEntity.ok(new DocumentResponse(document.getDocumentId(), document.getDocumentName(),
+                document.getDocumentType().name(), document.getFileSize(), document.getUploadedAt(),
+                document.getUploadedBy().getUserId()));
+    }
+}
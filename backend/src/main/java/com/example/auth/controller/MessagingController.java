@@ -1,16 +1,39 @@
 package com.example.auth.controller;
 
+import com.example.auth.dto.request.BroadcastRequest;
+import com.example.auth.dto.request.MarkConversationReadRequest;
+import com.example.auth.dto.request.MarkMessagesReadRequest;
 import com.example.auth.dto.request.SendMessageRequest;
-import com.example.auth.model.Message;
+import com.example.auth.dto.response.AttachmentSummaryResponse;
+import com.example.auth.dto.response.BroadcastResponse;
+import com.example.auth.dto.response.ConversationPageResponse;
+import com.example.auth.dto.response.InboxEntryResponse;
+import com.example.auth.dto.response.MessagePageResponse;
+import com.example.auth.dto.response.MessageResponse;
+import com.example.auth.dto.response.MessageVersionResponse;
+import com.example.auth.dto.response.SyncResponse;
 import com.example.auth.model.User;
+import com.example.auth.repository.AttachmentContentRow;
 import com.example.auth.repository.UserRepository;
+import com.example.auth.service.AttachmentService;
+import com.example.auth.service.BroadcastService;
+import com.example.auth.service.MessageHistoryService;
+import com.example.auth.service.MessageStreamService;
 import com.example.auth.service.MessagingService;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.Resource;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.UUID;
 
@@ -22,31 +45,113 @@ public class MessagingController {
     @Autowired
     private MessagingService messagingService;
 
+    @Autowired
+    private MessageStreamService messageStreamService;
+
+    @Autowired
+    private BroadcastService broadcastService;
+
+    @Autowired
+    private AttachmentService attachmentService;
+
+    @Autowired
+    private MessageHistoryService messageHistoryService;
+
     @Autowired
     private UserRepository userRepository;
 
     @PostMapping
-    public ResponseEntity<Message> sendMessage(@Valid @RequestBody SendMessageRequest request, Authentication authentication) {
+    public ResponseEntity<MessageResponse> sendMessage(@Valid @RequestBody SendMessageRequest request, Authentication authentication) {
         User currentUser = userRepository.findByUsername(authentication.getName())
                 .orElseThrow(() -> new RuntimeException("User not found"));
-        Message message = messagingService.sendMessage(request, currentUser);
+        MessageResponse message = messagingService.sendMessage(request, currentUser);
         return ResponseEntity.ok(message);
     }
 
+    @PostMapping("/broadcasts")
+    public ResponseEntity<BroadcastResponse> createBroadcast(@Valid @RequestBody BroadcastRequest request, Authentication authentication) {
+        User currentUser = userRepository.findByUsername(authentication.getName())
+                .orElseThrow(() -> new RuntimeException("User not found"));
+        BroadcastResponse broadcast = broadcastService.createBroadcast(request, currentUser);
+        return ResponseEntity.accepted().body(broadcast);
+    }
+
+    @GetMapping("/broadcasts/{broadcastId}")
+    public ResponseEntity<BroadcastResponse> getBroadcast(@PathVariable UUID broadcastId, Authentication authentication) {
+        User currentUser = userRepository.findByUsername(authentication.getName())
+                .orElseThrow(() -> new RuntimeException("User not found"));
+        return ResponseEntity.ok(broadcastService.getBroadcast(broadcastId, currentUser));
+    }
+
     @GetMapping("/conversation/{conversationId}")
-    public ResponseEntity<List<Message>> getMessages(@PathVariable UUID conversationId) {
-        List<Message> messages = messagingService.getMessagesForConversation(conversationId);
+    public ResponseEntity<List<MessageResponse>> getMessages(@PathVariable UUID conversationId) {
+        List<MessageResponse> messages = messagingService.getMessagesForConversation(conversationId);
+        return ResponseEntity.ok(messages);
+    }
+
+    @GetMapping("/conversation/{conversationId}/history")
+    public ResponseEntity<MessagePageResponse> getMessageHistory(@PathVariable UUID conversationId,
+                                                                 @RequestParam(required = false) String before,
+                                                                 @RequestParam(required = false) Integer limit,
+                                                                 Authentication authentication) {
+        User currentUser = userRepository.findByUsername(authentication.getName())
+                .orElseThrow(() -> new RuntimeException("User not found"));
+        MessagePageResponse page = messagingService.getMessageHistory(conversationId, currentUser, before, limit);
+        return ResponseEntity.ok(page);
+    }
+
+    @GetMapping("/conversation/{conversationId}/archive")
+    public ResponseEntity<MessagePageResponse> getArchivedHistory(@PathVariable UUID conversationId,
+                                                                  @RequestParam(required = false) String before,
+                                                                  @RequestParam(required = false) Integer limit,
+                                                                  Authentication authentication) {
+        User currentUser = userRepository.findByUsername(authentication.getName())
+                .orElseThrow(() -> new RuntimeException("User not found"));
+        MessagePageResponse page = messagingService.getArchivedHistory(conversationId, currentUser, before, limit);
+        return ResponseEntity.ok(page);
+    }
+
+    @GetMapping(value = "/conversation/{conversationId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamConversation(@PathVariable UUID conversationId, Authentication authentication) {
+        User currentUser = userRepository.findByUsername(authentication.getName())
+                .orElseThrow(() -> new RuntimeException("User not found"));
+        return messageStreamService.subscribe(conversationId, currentUser);
+    }
+
+    @GetMapping("/search")
+    public ResponseEntity<List<MessageResponse>> searchMessages(@RequestParam("q") String query,
+                                                        @RequestParam(required = false) UUID conversationId,
+                                                        @RequestParam(required = false) Integer limit,
+                                                        Authentication authentication) {
+        User currentUser = userRepository.findByUsername(authentication.getName())
+                .orElseThrow(() -> new RuntimeException("User not found"));
+        List<MessageResponse> messages = messagingService.searchMessages(query, conversationId, limit, currentUser);
         return ResponseEntity.ok(messages);
     }
 
     @PutMapping("/{messageId}")
-    public ResponseEntity<Message> editMessage(@PathVariable UUID messageId, @Valid @RequestBody com.example.auth.dto.request.EditMessageRequest request, Authentication authentication) {
+    public ResponseEntity<MessageResponse> editMessage(@PathVariable UUID messageId, @Valid @RequestBody com.example.auth.dto.request.EditMessageRequest request, Authentication authentication) {
         User currentUser = userRepository.findByUsername(authentication.getName())
                 .orElseThrow(() -> new RuntimeException("User not found"));
-        Message updatedMessage = messagingService.editMessage(messageId, request.getContent(), currentUser);
+        MessageResponse updatedMessage = messagingService.editMessage(messageId, request.getContent(), currentUser);
         return ResponseEntity.ok(updatedMessage);
     }
 
+    @GetMapping("/{messageId}/versions")
+    public ResponseEntity<List<MessageVersionResponse>> getMessageVersions(@PathVariable UUID messageId, Authentication authentication) {
+        User currentUser = userRepository.findByUsername(authentication.getName())
+                .orElseThrow(() -> new RuntimeException("User not found"));
+        return ResponseEntity.ok(messageHistoryService.listVersions(messageId, currentUser));
+    }
+
+    @GetMapping("/{messageId}/versions/{version}")
+    public ResponseEntity<MessageVersionResponse> getMessageVersion(@PathVariable UUID messageId, @PathVariable int version,
+                                                                    Authentication authentication) {
+        User currentUser = userRepository.findByUsername(authentication.getName())
+                .orElseThrow(() -> new RuntimeException("User not found"));
+        return ResponseEntity.ok(messageHistoryService.getVersion(messageId, version, currentUser));
+    }
+
     @DeleteMapping("/{messageId}")
     public ResponseEntity<Void> deleteMessage(@PathVariable UUID messageId, Authentication authentication) {
         User currentUser = userRepository.findByUsername(authentication.getName())
@@ -55,6 +160,32 @@ public class MessagingController {
         return ResponseEntity.noContent().build();
     }
 
+    @PostMapping(value = "/{messageId}/attachments", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<AttachmentSummaryResponse> uploadAttachment(@PathVariable UUID messageId, @RequestParam("file") MultipartFile file,
+                                                                      Authentication authentication) {
+        User currentUser = userRepository.findByUsername(authentication.getName())
+                .orElseThrow(() -> new RuntimeException("User not found"));
+        return ResponseEntity.ok(attachmentService.uploadAttachment(messageId, file, currentUser));
+    }
+
+    @GetMapping("/attachments/{attachmentId}")
+    public ResponseEntity<Resource> downloadAttachment(@PathVariable UUID attachmentId, HttpServletRequest request,
+                                                       Authentication authentication) {
+        User currentUser = userRepository.findByUsername(authentication.getName())
+                .orElseThrow(() -> new RuntimeException("User not found"));
+        AttachmentContentRow attachment = attachmentService.getAttachmentContent(attachmentId, currentUser);
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType(attachment.mimeType()));
+        headers.setContentDisposition(ContentDisposition.attachment().filename(attachment.fileName(), StandardCharsets.UTF_8).build());
+        if (attachment.fileHash() != null) {
+            headers.setETag("\"" + attachment.fileHash() + "\"");
+        }
+        return BlobResponses.serve(request, attachment.fileSize(), headers,
+                (offset, length) -> attachmentService.openContent(attachment, offset, length),
+                attachmentService.localContentPath(attachment));
+    }
+
     @PostMapping("/{messageId}/read")
     public ResponseEntity<Void> markMessageAsRead(@PathVariable UUID messageId, Authentication authentication) {
         User currentUser = userRepository.findByUsername(authentication.getName())
@@ -63,6 +194,22 @@ public class MessagingController {
         return ResponseEntity.ok().build();
     }
 
+    @PostMapping("/conversation/{conversationId}/read")
+    public ResponseEntity<Void> markConversationRead(@PathVariable UUID conversationId, @Valid @RequestBody MarkConversationReadRequest request, Authentication authentication) {
+        User currentUser = userRepository.findByUsername(authentication.getName())
+                .orElseThrow(() -> new RuntimeException("User not found"));
+        messagingService.markConversationReadUpTo(conversationId, request.getMessageId(), currentUser);
+        return ResponseEntity.ok().build();
+    }
+
+    @PostMapping("/conversation/{conversationId}/read-batch")
+    public ResponseEntity<Void> markMessagesRead(@PathVariable UUID conversationId, @Valid @RequestBody MarkMessagesReadRequest request, Authentication authentication) {
+        User currentUser = userRepository.findByUsername(authentication.getName())
+                .orElseThrow(() -> new RuntimeException("User not found"));
+        messagingService.markMessagesAsRead(conversationId, request.getMessageIds(), currentUser);
+        return ResponseEntity.ok().build();
+    }
+
     @GetMapping("/conversation/{conversationId}/unread-count")
     public ResponseEntity<Long> getUnreadMessageCount(@PathVariable UUID conversationId, Authentication authentication) {
         User currentUser = userRepository.findByUsername(authentication.getName())
@@ -70,4 +217,29 @@ public class MessagingController {
         long count = messagingService.getUnreadMessageCount(conversationId, currentUser);
         return ResponseEntity.ok(count);
     }
+
+    @GetMapping("/inbox")
+    public ResponseEntity<List<InboxEntryResponse>> getInbox(Authentication authentication) {
+        User currentUser = userRepository.findByUsername(authentication.getName())
+                .orElseThrow(() -> new RuntimeException("User not found"));
+        return ResponseEntity.ok(messagingService.getInbox(currentUser));
+    }
+
+    @GetMapping("/conversations")
+    public ResponseEntity<ConversationPageResponse> getConversations(@RequestParam(required = false) String before,
+                                                                     @RequestParam(required = false) Integer limit,
+                                                                     Authentication authentication) {
+        User currentUser = userRepository.findByUsername(authentication.getName())
+                .orElseThrow(() -> new RuntimeException("User not found"));
+        return ResponseEntity.ok(messagingService.getConversations(currentUser, before, limit));
+    }
+
+    @GetMapping("/sync")
+    public ResponseEntity<SyncResponse> sync(@RequestParam(required = false) String cursor,
+                                             @RequestParam(required = false) Integer limit,
+                                             Authentication authentication) {
+        User currentUser = userRepository.findByUsername(authentication.getName())
+                .orElseThrow(() -> new RuntimeException("User not found"));
+        return ResponseEntity.ok(messagingService.sync(currentUser, cursor, limit));
+    }
 }
@@ -0,0 +1,36 @@
+package com.example.auth.dto.request;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import java.util.List;
+import java.util.UUID;
+
+public class BroadcastRequest {
+
+    @NotEmpty
+    @Size(max = 10000)
+    private List<@NotNull UUID> recipientIds;
+
+    @NotBlank
+    @Size(max = 4096)
+    private String content;
+
+    // Getters and Setters
+    public List<UUID> getRecipientIds() {
+        return recipientIds;
+    }
+
+    public void setRecipientIds(List<UUID> recipientIds) {
+        this.recipientIds = recipientIds;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public void setContent(String content) {
+        this.content = content;
+    }
+}
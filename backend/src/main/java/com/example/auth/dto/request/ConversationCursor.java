@@ -0,0 +1,46 @@
+package com.example.auth.dto.request;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.UUID;
+
+/**
+ * Keyset position in a user's conversation list, encoded on the wire as {@code <lastMessageAt>,<conversationId>}.
+ */
+public class ConversationCursor {
+
+    private final LocalDateTime lastMessageAt;
+    private final UUID conversationId;
+
+    public ConversationCursor(LocalDateTime lastMessageAt, UUID conversationId) {
+        this.lastMessageAt = lastMessageAt;
+        this.conversationId = conversationId;
+    }
+
+    public static ConversationCursor parse(String value) {
+        int separator = value.indexOf(',');
+        if (separator < 0) {
+            throw new IllegalArgumentException("Invalid conversation cursor: " + value);
+        }
+        try {
+            return new ConversationCursor(
+                    LocalDateTime.parse(value.substring(0, separator).trim()),
+                    UUID.fromString(value.substring(separator + 1).trim()));
+        } catch (DateTimeParseException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid conversation cursor: " + value, e);
+        }
+    }
+
+    public LocalDateTime getLastMessageAt() {
+        return lastMessageAt;
+    }
+
+    public UUID getConversationId() {
+        return conversationId;
+    }
+
+    @Override
+    public String toString() {
+        return lastMessageAt + "," + conversationId;
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.auth.dto.request;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Positive;
+import java.util.UUID;
+
+public class CreateDocumentUploadRequest {
+
+    @NotBlank
+    private String documentName;
+
+    @NotBlank
+    private String documentType;
+
+    @NotNull
+    private UUID employeeId;
+
+    @NotBlank
+    private String fileName;
+
+    private String mimeType;
+
+    @Positive
+    private long totalSize;
+
+    // SHA-256 of the whole file, as lowercase hex
+    @NotNull
+    @Pattern(regexp = "[0-9a-f]{64}")
+    private String sha256;
+
+    // Getters and Setters
+    public String getDocumentName() { return documentName; }
+    public void setDocumentName(String documentName) { this.documentName = documentName; }
+    public String getDocumentType() { return documentType; }
+    public void setDocumentType(String documentType) { this.documentType = documentType; }
+    public UUID getEmployeeId() { return employeeId; }
+    public void setEmployeeId(UUID employeeId) { this.employeeId = employeeId; }
+    public String getFileName() { return fileName; }
+    public void setFileName(String fileName) { this.fileName = fileName; }
+    public String getMimeType() { return mimeType; }
+    public void setMimeType(String mimeType) { this.mimeType = mimeType; }
+    public long getTotalSize() { return totalSize; }
+    public void setTotalSize(long totalSize) { this.totalSize = totalSize; }
+    public String getSha256() { return sha256; }
+    public void setSha256(String sha256) { this.sha256 = sha256; }
+}
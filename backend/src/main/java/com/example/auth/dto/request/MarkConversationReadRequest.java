@@ -0,0 +1,18 @@
+package com.example.auth.dto.request;
+
+import jakarta.validation.constraints.NotNull;
+import java.util.UUID;
+
+public class MarkConversationReadRequest {
+
+    @NotNull
+    private UUID messageId;
+
+    public UUID getMessageId() {
+        return messageId;
+    }
+
+    public void setMessageId(UUID messageId) {
+        this.messageId = messageId;
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.auth.dto.request;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import java.util.List;
+import java.util.UUID;
+
+public class MarkMessagesReadRequest {
+
+    @NotEmpty
+    @Size(max = 500)
+    private List<@NotNull UUID> messageIds;
+
+    public List<UUID> getMessageIds() {
+        return messageIds;
+    }
+
+    public void setMessageIds(List<UUID> messageIds) {
+        this.messageIds = messageIds;
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.auth.dto.request;
+
+import com.example.auth.dto.response.MessageResponse;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.UUID;
+
+/**
+ * Keyset position in a conversation's history, encoded on the wire as {@code <sentAt>,<messageId>}.
+ */
+public class MessageCursor {
+
+    private final LocalDateTime sentAt;
+    private final UUID messageId;
+
+    public MessageCursor(LocalDateTime sentAt, UUID messageId) {
+        this.sentAt = sentAt;
+        this.messageId = messageId;
+    }
+
+    public static MessageCursor of(MessageResponse message) {
+        return new MessageCursor(message.getSentAt(), message.getMessageId());
+    }
+
+    public static MessageCursor parse(String value) {
+        int separator = value.indexOf(',');
+        if (separator < 0) {
+            throw new IllegalArgumentException("Invalid message cursor: " + value);
+        }
+        try {
+            return new MessageCursor(
+                    LocalDateTime.parse(value.substring(0, separator).trim()),
+                    UUID.fromString(value.substring(separator + 1).trim()));
+        } catch (DateTimeParseException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid message cursor: " + value, e);
+        }
+    }
+
+    public LocalDateTime getSentAt() {
+        return sentAt;
+    }
+
+    public UUID getMessageId() {
+        return messageId;
+    }
+
+    @Override
+    public String toString() {
+        return sentAt + "," + messageId;
+    }
+}
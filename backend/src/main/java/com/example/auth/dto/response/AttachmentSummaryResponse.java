@@ -0,0 +1,30 @@
+package com.example.auth.dto.response;
+
+import java.util.UUID;
+
+/**
+ * Attachment metadata as listed with a message. The storage location is not exposed.
+ */
+public class AttachmentSummaryResponse {
+    private UUID attachmentId;
+    private String fileName;
+    private String mimeType;
+    private long fileSize;
+
+    public AttachmentSummaryResponse(UUID attachmentId, String fileName, String mimeType, long fileSize) {
+        this.attachmentId = attachmentId;
+        this.fileName = fileName;
+        this.mimeType = mimeType;
+        this.fileSize = fileSize;
+    }
+
+    // Getters and Setters
+    public UUID getAttachmentId() { return attachmentId; }
+    public void setAttachmentId(UUID attachmentId) { this.attachmentId = attachmentId; }
+    public String getFileName() { return fileName; }
+    public void setFileName(String fileName) { this.fileName = fileName; }
+    public String getMimeType() { return mimeType; }
+    public void setMimeType(String mimeType) { this.mimeType = mimeType; }
+    public long getFileSize() { return fileSize; }
+    public void setFileSize(long fileSize) { this.fileSize = fileSize; }
+}
@@ -0,0 +1,42 @@
+package com.example.auth.dto.response;
+
+import com.example.auth.model.Broadcast;
+import com.example.auth.model.BroadcastStatus;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Delivery progress of a broadcast.
+ */
+public class BroadcastResponse {
+    private UUID broadcastId;
+    private BroadcastStatus status;
+    private int totalRecipients;
+    private int processedRecipients;
+    private LocalDateTime createdAt;
+    private LocalDateTime completedAt;
+
+    public BroadcastResponse(Broadcast broadcast) {
+        this.broadcastId = broadcast.getBroadcastId();
+        this.status = broadcast.getStatus();
+        this.totalRecipients = broadcast.getTotalRecipients();
+        this.processedRecipients = broadcast.getProcessedRecipients();
+        this.createdAt = broadcast.getCreatedAt();
+        this.completedAt = broadcast.getCompletedAt();
+    }
+
+    // Getters and Setters
+    public UUID getBroadcastId() { return broadcastId; }
+    public void setBroadcastId(UUID broadcastId) { this.broadcastId = broadcastId; }
+    public BroadcastStatus getStatus() { return status; }
+    public void setStatus(BroadcastStatus status) { this.status = status; }
+    public int getTotalRecipients() { return totalRecipients; }
+    public void setTotalRecipients(int totalRecipients) { this.totalRecipients = totalRecipients; }
+    public int getProcessedRecipients() { return processedRecipients; }
+    public void setProcessedRecipients(int processedRecipients) { this.processedRecipients = processedRecipients; }
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+    public LocalDateTime getCompletedAt() { return completedAt; }
+    public void setCompletedAt(LocalDateTime completedAt) { this.completedAt = completedAt; }
+}
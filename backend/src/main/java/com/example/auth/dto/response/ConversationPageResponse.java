@@ -0,0 +1,23 @@
+package com.example.auth.dto.response;
+
+import java.util.List;
+
+public class ConversationPageResponse {
+    private List<InboxEntryResponse> conversations;
+    private String nextCursor;
+    private boolean hasMore;
+
+    public ConversationPageResponse(List<InboxEntryResponse> conversations, String nextCursor, boolean hasMore) {
+        this.conversations = conversations;
+        this.nextCursor = nextCursor;
+        this.hasMore = hasMore;
+    }
+
+    // Getters and Setters
+    public List<InboxEntryResponse> getConversations() { return conversations; }
+    public void setConversations(List<InboxEntryResponse> conversations) { this.conversations = conversations; }
+    public String getNextCursor() { return nextCursor; }
+    public void setNextCursor(String nextCursor) { this.nextCursor = nextCursor; }
+    public boolean isHasMore() { return hasMore; }
+    public void setHasMore(boolean hasMore) { this.hasMore = hasMore; }
+}
@@ -0,0 +1,56 @@
+package com.example.auth.dto.response;
+
+/**
+ * Document storage use, the space saved by sharing identical content, and preview generation. The counters
+ * ending in {@code SinceStartup} cover this instance only.
+ */
+public class DocumentStorageStatsResponse {
+    private long blobCount;
+    private long storedBytes;
+    private long referencedBytes;
+    private long savedBytes;
+    private long deduplicatedUploadsSinceStartup;
+    private long deduplicatedBytesSinceStartup;
+    private long collectedBlobsSinceStartup;
+    private long collectedBytesSinceStartup;
+    private long previewsGeneratedSinceStartup;
+    private long previewsFailedSinceStartup;
+    private long previewsDeferredSinceStartup;
+
+    public DocumentStorageStatsResponse(long blobCount, long storedBytes, long referencedBytes, long savedBytes,
+                                        long deduplicatedUploadsSinceStartup, long deduplicatedBytesSinceStartup,
+                                        long collectedBlobsSinceStartup, long collectedBytesSinceStartup) {
+        this.blobCount = blobCount;
+        this.storedBytes = storedBytes;
+        this.referencedBytes = referencedBytes;
+        this.savedBytes = savedBytes;
+        this.deduplicatedUploadsSinceStartup = deduplicatedUploadsSinceStartup;
+        this.deduplicatedBytesSinceStartup = deduplicatedBytesSinceStartup;
+        this.collectedBlobsSinceStartup = collectedBlobsSinceStartup;
+        this.collectedBytesSinceStartup = collectedBytesSinceStartup;
+    }
+
+    // Getters and Setters
+    public long getBlobCount() { return blobCount; }
+    public void setBlobCount(long blobCount) { this.blobCount = blobCount; }
+    public long getStoredBytes() { return storedBytes; }
+    public void setStoredBytes(long storedBytes) { this.storedBytes = storedBytes; }
+    public long getReferencedBytes() { return referencedBytes; }
+    public void setReferencedBytes(long referencedBytes) { this.referencedBytes = referencedBytes; }
+    public long getSavedBytes() { return savedBytes; }
+    public void setSavedBytes(long savedBytes) { this.savedBytes = savedBytes; }
+    public long getDeduplicatedUploadsSinceStartup() { return deduplicatedUploadsSinceStartup; }
+    public void setDeduplicatedUploadsSinceStartup(long deduplicatedUploadsSinceStartup) { this.deduplicatedUploadsSinceStartup = deduplicatedUploadsSinceStartup; }
+    public long getDeduplicatedBytesSinceStartup() { return deduplicatedBytesSinceStartup; }
+    public void setDeduplicatedBytesSinceStartup(long deduplicatedBytesSinceStartup) { this.deduplicatedBytesSinceStartup = deduplicatedBytesSinceStartup; }
+    public long getCollectedBlobsSinceStartup() { return collectedBlobsSinceStartup; }
+    public void setCollectedBlobsSinceStartup(long collectedBlobsSinceStartup) { this.collectedBlobsSinceStartup = collectedBlobsSinceStartup; }
+    public long getCollectedBytesSinceStartup() { return collectedBytesSinceStartup; }
+    public void setCollectedBytesSinceStartup(long collectedBytesSinceStartup) { this.collectedBytesSinceStartup = collectedBytesSinceStartup; }
+    public long getPreviewsGeneratedSinceStartup() { return previewsGeneratedSinceStartup; }
+    public void setPreviewsGeneratedSinceStartup(long previewsGeneratedSinceStartup) { this.previewsGeneratedSinceStartup = previewsGeneratedSinceStartup; }
+    public long getPreviewsFailedSinceStartup() { return previewsFailedSinceStartup; }
+    public void setPreviewsFailedSinceStartup(long previewsFailedSinceStartup) { this.previewsFailedSinceStartup = previewsFailedSinceStartup; }
+    public long getPreviewsDeferredSinceStartup() { return previewsDeferredSinceStartup; }
+    public void setPreviewsDeferredSinceStartup(long previewsDeferredSinceStartup) { this.previewsDeferredSinceStartup = previewsDeferredSinceStartup; }
+}
@@ -0,0 +1,24 @@
+package com.example.auth.dto.response;
+
+/**
+ * A stored chunk, with the SHA-256 of the bytes received so the client can check them.
+ */
+public class DocumentUploadChunkResponse {
+    private int chunkIndex;
+    private long size;
+    private String sha256;
+
+    public DocumentUploadChunkResponse(int chunkIndex, long size, String sha256) {
+        this.chunkIndex = chunkIndex;
+        this.size = size;
+        this.sha256 = sha256;
+    }
+
+    // Getters and Setters
+    public int getChunkIndex() { return chunkIndex; }
+    public void setChunkIndex(int chunkIndex) { this.chunkIndex = chunkIndex; }
+    public long getSize() { return size; }
+    public void setSize(long size) { this.size = size; }
+    public String getSha256() { return sha256; }
+    public void setSha256(String sha256) { this.sha256 = sha256; }
+}
@@ -0,0 +1,50 @@
+package com.example.auth.dto.response;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * State of a resumable upload. {@code receivedRanges} lists the stored byte ranges as inclusive
+ * {@code start-end} pairs, merged where chunks are adjacent; {@code documentId} is set once committed.
+ */
+public class DocumentUploadResponse {
+    private UUID uploadId;
+    private long totalSize;
+    private int chunkSize;
+    private int totalChunks;
+    private long receivedBytes;
+    private List<String> receivedRanges;
+    private LocalDateTime expiresAt;
+    private UUID documentId;
+
+    public DocumentUploadResponse(UUID uploadId, long totalSize, int chunkSize, int totalChunks, long receivedBytes,
+                                  List<String> receivedRanges, LocalDateTime expiresAt, UUID documentId) {
+        this.uploadId = uploadId;
+        this.totalSize = totalSize;
+        this.chunkSize = chunkSize;
+        this.totalChunks = totalChunks;
+        this.receivedBytes = receivedBytes;
+        this.receivedRanges = receivedRanges;
+        this.expiresAt = expiresAt;
+        this.documentId = documentId;
+    }
+
+    // Getters and Setters
+    public UUID getUploadId() { return uploadId; }
+    public void setUploadId(UUID uploadId) { this.uploadId = uploadId; }
+    public long getTotalSize() { return totalSize; }
+    public void setTotalSize(long totalSize) { this.totalSize = totalSize; }
+    public int getChunkSize() { return chunkSize; }
+    public void setChunkSize(int chunkSize) { this.chunkSize = chunkSize; }
+    public int getTotalChunks() { return totalChunks; }
+    public void setTotalChunks(int totalChunks) { this.totalChunks = totalChunks; }
+    public long getReceivedBytes() { return receivedBytes; }
+    public void setReceivedBytes(long receivedBytes) { this.receivedBytes = receivedBytes; }
+    public List<String> getReceivedRanges() { return receivedRanges; }
+    public void setReceivedRanges(List<String> receivedRanges) { this.receivedRanges = receivedRanges; }
+    public LocalDateTime getExpiresAt() { return expiresAt; }
+    public void setExpiresAt(LocalDateTime expiresAt) { this.expiresAt = expiresAt; }
+    public UUID getDocumentId() { return documentId; }
+    public void setDocumentId(UUID documentId) { this.documentId = documentId; }
+}
@@ -0,0 +1,55 @@
+package com.example.auth.dto.response;
+
+import com.example.auth.model.ConversationType;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * One conversation in a user's inbox: its unread badge and a preview of the newest message.
+ */
+public class InboxEntryResponse {
+    private UUID conversationId;
+    private String conversationName;
+    private ConversationType conversationType;
+    private long unreadCount;
+    private UUID lastMessageId;
+    private LocalDateTime lastMessageAt;
+    private UUID lastSenderId;
+    private String lastSenderName;
+    private String lastMessagePreview;
+
+    public InboxEntryResponse(UUID conversationId, String conversationName, ConversationType conversationType, long unreadCount,
+                              UUID lastMessageId, LocalDateTime lastMessageAt, UUID lastSenderId, String lastSenderName,
+                              String lastMessagePreview) {
+        this.conversationId = conversationId;
+        this.conversationName = conversationName;
+        this.conversationType = conversationType;
+        this.unreadCount = unreadCount;
+        this.lastMessageId = lastMessageId;
+        this.lastMessageAt = lastMessageAt;
+        this.lastSenderId = lastSenderId;
+        this.lastSenderName = lastSenderName;
+        this.lastMessagePreview = lastMessagePreview;
+    }
+
+    // Getters and Setters
+    public UUID getConversationId() { return conversationId; }
+    public void setConversationId(UUID conversationId) { this.conversationId = conversationId; }
+    public String getConversationName() { return conversationName; }
+    public void setConversationName(String conversationName) { this.conversationName = conversationName; }
+    public ConversationType getConversationType() { return conversationType; }
+    public void setConversationType(ConversationType conversationType) { this.conversationType = conversationType; }
+    public long getUnreadCount() { return unreadCount; }
+    public void setUnreadCount(long unreadCount) { this.unreadCount = unreadCount; }
+    public UUID getLastMessageId() { return lastMessageId; }
+    public void setLastMessageId(UUID lastMessageId) { this.lastMessageId = lastMessageId; }
+    public LocalDateTime getLastMessageAt() { return lastMessageAt; }
+    public void setLastMessageAt(LocalDateTime lastMessageAt) { this.lastMessageAt = lastMessageAt; }
+    public UUID getLastSenderId() { return lastSenderId; }
+    public void setLastSenderId(UUID lastSenderId) { this.lastSenderId = lastSenderId; }
+    public String getLastSenderName() { return lastSenderName; }
+    public void setLastSenderName(String lastSenderName) { this.lastSenderName = lastSenderName; }
+    public String getLastMessagePreview() { return lastMessagePreview; }
+    public void setLastMessagePreview(String lastMessagePreview) { this.lastMessagePreview = lastMessagePreview; }
+}
@@ -0,0 +1,70 @@
+package com.example.auth.dto.response;
+
+import com.example.auth.model.Message;
+import com.example.auth.model.MessageEventType;
+import com.example.auth.model.MessageType;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Snapshot of a committed message change, pushed to conversation subscribers.
+ * Content is already decrypted and is omitted for deletions.
+ */
+public class MessageEventResponse {
+    private MessageEventType eventType;
+    private UUID conversationId;
+    private UUID messageId;
+    private UUID senderId;
+    private String messageContent;
+    private MessageType messageType;
+    private LocalDateTime sentAt;
+    private Boolean isEdited;
+    private Long changeSeq;
+
+    public MessageEventResponse(MessageEventType eventType, Message message, String plaintextContent) {
+        this.eventType = eventType;
+        this.conversationId = message.getConversation().getConversationId();
+        this.messageId = message.getMessageId();
+        this.senderId = message.getSender().getUserId();
+        this.messageContent = eventType == MessageEventType.DELETED ? null : plaintextContent;
+        this.messageType = message.getMessageType();
+        this.sentAt = message.getSentAt();
+        this.isEdited = message.getIsEdited();
+        this.changeSeq = message.getChangeSeq();
+    }
+
+    public MessageEventResponse(MessageEventType eventType, UUID conversationId, UUID messageId, UUID senderId,
+                                String plaintextContent, MessageType messageType, LocalDateTime sentAt, Boolean isEdited,
+                                Long changeSeq) {
+        this.eventType = eventType;
+        this.conversationId = conversationId;
+        this.messageId = messageId;
+        this.senderId = senderId;
+        this.messageContent = eventType == MessageEventType.DELETED ? null : plaintextContent;
+        this.messageType = messageType;
+        this.sentAt = sentAt;
+        this.isEdited = isEdited;
+        this.changeSeq = changeSeq;
+    }
+
+    // Getters and Setters
+    public MessageEventType getEventType() { return eventType; }
+    public void setEventType(MessageEventType eventType) { this.eventType = eventType; }
+    public UUID getConversationId() { return conversationId; }
+    public void setConversationId(UUID conversationId) { this.conversationId = conversationId; }
+    public UUID getMessageId() { return messageId; }
+    public void setMessageId(UUID messageId) { this.messageId = messageId; }
+    public UUID getSenderId() { return senderId; }
+    public void setSenderId(UUID senderId) { this.senderId = senderId; }
+    public String getMessageContent() { return messageContent; }
+    public void setMessageContent(String messageContent) { this.messageContent = messageContent; }
+    public MessageType getMessageType() { return messageType; }
+    public void setMessageType(MessageType messageType) { this.messageType = messageType; }
+    public LocalDateTime getSentAt() { return sentAt; }
+    public void setSentAt(LocalDateTime sentAt) { this.sentAt = sentAt; }
+    public Boolean getIsEdited() { return isEdited; }
+    public void setIsEdited(Boolean isEdited) { this.isEdited = isEdited; }
+    public Long getChangeSeq() { return changeSeq; }
+    public void setChangeSeq(Long changeSeq) { this.changeSeq = changeSeq; }
+}
@@ -0,0 +1,23 @@
+package com.example.auth.dto.response;
+
+import java.util.List;
+
+public class MessagePageResponse {
+    private List<MessageResponse> messages;
+    private String nextCursor;
+    private boolean hasMore;
+
+    public MessagePageResponse(List<MessageResponse> messages, String nextCursor, boolean hasMore) {
+        this.messages = messages;
+        this.nextCursor = nextCursor;
+        this.hasMore = hasMore;
+    }
+
+    // Getters and Setters
+    public List<MessageResponse> getMessages() { return messages; }
+    public void setMessages(List<MessageResponse> messages) { this.messages = messages; }
+    public String getNextCursor() { return nextCursor; }
+    public void setNextCursor(String nextCursor) { this.nextCursor = nextCursor; }
+    public boolean isHasMore() { return hasMore; }
+    public void setHasMore(boolean hasMore) { this.hasMore = hasMore; }
+}
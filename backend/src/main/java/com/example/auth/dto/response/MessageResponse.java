@@ -0,0 +1,57 @@
+package com.example.auth.dto.response;
+
+import com.example.auth.model.MessageType;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A message as returned by the message list endpoints: decrypted content, the sender's display name and
+ * attachment summaries, with no entity graph behind it.
+ */
+public class MessageResponse {
+    private UUID messageId;
+    private UUID conversationId;
+    private UUID senderId;
+    private String senderName;
+    private String messageContent;
+    private MessageType messageType;
+    private LocalDateTime sentAt;
+    private Boolean isEdited;
+    private List<AttachmentSummaryResponse> attachments;
+
+    public MessageResponse(UUID messageId, UUID conversationId, UUID senderId, String senderName, String messageContent,
+                           MessageType messageType, LocalDateTime sentAt, Boolean isEdited,
+                           List<AttachmentSummaryResponse> attachments) {
+        this.messageId = messageId;
+        this.conversationId = conversationId;
+        this.senderId = senderId;
+        this.senderName = senderName;
+        this.messageContent = messageContent;
+        this.messageType = messageType;
+        this.sentAt = sentAt;
+        this.isEdited = isEdited;
+        this.attachments = attachments;
+    }
+
+    // Getters and Setters
+    public UUID getMessageId() { return messageId; }
+    public void setMessageId(UUID messageId) { this.messageId = messageId; }
+    public UUID getConversationId() { return conversationId; }
+    public void setConversationId(UUID conversationId) { this.conversationId = conversationId; }
+    public UUID getSenderId() { return senderId; }
+    public void setSenderId(UUID senderId) { this.senderId = senderId; }
+    public String getSenderName() { return senderName; }
+    public void setSenderName(String senderName) { this.senderName = senderName; }
+    public String getMessageContent() { return messageContent; }
+    public void setMessageContent(String messageContent) { this.messageContent = messageContent; }
+    public MessageType getMessageType() { return messageType; }
+    public void setMessageType(MessageType messageType) { this.messageType = messageType; }
+    public LocalDateTime getSentAt() { return sentAt; }
+    public void setSentAt(LocalDateTime sentAt) { this.sentAt = sentAt; }
+    public Boolean getIsEdited() { return isEdited; }
+    public void setIsEdited(Boolean isEdited) { this.isEdited = isEdited; }
+    public List<AttachmentSummaryResponse> getAttachments() { return attachments; }
+    public void setAttachments(List<AttachmentSummaryResponse> attachments) { this.attachments = attachments; }
+}
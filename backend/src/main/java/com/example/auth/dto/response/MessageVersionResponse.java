@@ -0,0 +1,35 @@
+package com.example.auth.dto.response;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * One version of a message. Content is only included when a single version is requested.
+ */
+public class MessageVersionResponse {
+    private UUID messageId;
+    private int version;
+    private UUID editedBy;
+    private LocalDateTime editedAt;
+    private String content;
+
+    public MessageVersionResponse(UUID messageId, int version, UUID editedBy, LocalDateTime editedAt, String content) {
+        this.messageId = messageId;
+        this.version = version;
+        this.editedBy = editedBy;
+        this.editedAt = editedAt;
+        this.content = content;
+    }
+
+    // Getters and Setters
+    public UUID getMessageId() { return messageId; }
+    public void setMessageId(UUID messageId) { this.messageId = messageId; }
+    public int getVersion() { return version; }
+    public void setVersion(int version) { this.version = version; }
+    public UUID getEditedBy() { return editedBy; }
+    public void setEditedBy(UUID editedBy) { this.editedBy = editedBy; }
+    public LocalDateTime getEditedAt() { return editedAt; }
+    public void setEditedAt(LocalDateTime editedAt) { this.editedAt = editedAt; }
+    public String getContent() { return content; }
+    public void setContent(String content) { this.content = content; }
+}
@@ -0,0 +1,31 @@
+package com.example.auth.dto.response;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * A participant's read watermark: everything up to and including the given message has been read.
+ */
+public class ReadReceiptResponse {
+    private UUID conversationId;
+    private UUID userId;
+    private UUID lastReadMessageId;
+    private LocalDateTime lastReadAt;
+
+    public ReadReceiptResponse(UUID conversationId, UUID userId, UUID lastReadMessageId, LocalDateTime lastReadAt) {
+        this.conversationId = conversationId;
+        this.userId = userId;
+        this.lastReadMessageId = lastReadMessageId;
+        this.lastReadAt = lastReadAt;
+    }
+
+    // Getters and Setters
+    public UUID getConversationId() { return conversationId; }
+    public void setConversationId(UUID conversationId) { this.conversationId = conversationId; }
+    public UUID getUserId() { return userId; }
+    public void setUserId(UUID userId) { this.userId = userId; }
+    public UUID getLastReadMessageId() { return lastReadMessageId; }
+    public void setLastReadMessageId(UUID lastReadMessageId) { this.lastReadMessageId = lastReadMessageId; }
+    public LocalDateTime getLastReadAt() { return lastReadAt; }
+    public void setLastReadAt(LocalDateTime lastReadAt) { this.lastReadAt = lastReadAt; }
+}
@@ -0,0 +1,31 @@
+package com.example.auth.dto.response;
+
+import java.util.List;
+
+/**
+ * Changes since a sync cursor. Messages carry their current state, so a message created and then
+ * edited while the client was offline appears once, as EDITED; deleted messages carry no content.
+ */
+public class SyncResponse {
+    private List<MessageEventResponse> messages;
+    private List<ReadReceiptResponse> readReceipts;
+    private String cursor;
+    private boolean hasMore;
+
+    public SyncResponse(List<MessageEventResponse> messages, List<ReadReceiptResponse> readReceipts, String cursor, boolean hasMore) {
+        this.messages = messages;
+        this.readReceipts = readReceipts;
+        this.cursor = cursor;
+        this.hasMore = hasMore;
+    }
+
+    // Getters and Setters
+    public List<MessageEventResponse> getMessages() { return messages; }
+    public void setMessages(List<MessageEventResponse> messages) { this.messages = messages; }
+    public List<ReadReceiptResponse> getReadReceipts() { return readReceipts; }
+    public void setReadReceipts(List<ReadReceiptResponse> readReceipts) { this.readReceipts = readReceipts; }
+    public String getCursor() { return cursor; }
+    public void setCursor(String cursor) { this.cursor = cursor; }
+    public boolean isHasMore() { return hasMore; }
+    public void setHasMore(boolean hasMore) { this.hasMore = hasMore; }
+}
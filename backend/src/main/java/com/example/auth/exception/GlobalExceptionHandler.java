@@ -5,6 +5,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.AccessDeniedException;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -35,6 +36,30 @@ public class GlobalExceptionHandler {
                 .body(new MessageResponse(ex.getMessage()));
     }
 
+    @ExceptionHandler(UploadCommitInProgressException.class)
+    public ResponseEntity<MessageResponse> handleUploadCommitInProgressException(
+            UploadCommitInProgressException ex, WebRequest request) {
+        logger.warn("Concurrent upload commit: {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(new MessageResponse(ex.getMessage()));
+    }
+
+    @ExceptionHandler(UploadDiscardedException.class)
+    public ResponseEntity<MessageResponse> handleUploadDiscardedException(
+            UploadDiscardedException ex, WebRequest request) {
+        logger.error("Upload discarded: {}", ex.getMessage(), ex);
+        return ResponseEntity.status(HttpStatus.GONE)
+                .body(new MessageResponse(ex.getMessage()));
+    }
+
+    @ExceptionHandler(SyncCursorExpiredException.class)
+    public ResponseEntity<MessageResponse> handleSyncCursorExpiredException(
+            SyncCursorExpiredException ex, WebRequest request) {
+        logger.warn("Expired sync cursor: {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.GONE)
+                .body(new MessageResponse(ex.getMessage()));
+    }
+
     @ExceptionHandler(InvalidContactInformationException.class)
     public ResponseEntity<MessageResponse> handleInvalidContactInformationException(
             InvalidContactInformationException ex, WebRequest request) {
@@ -43,6 +68,14 @@ public class GlobalExceptionHandler {
                 .body(new MessageResponse(ex.getMessage()));
     }
 
+    @ExceptionHandler(AccessDeniedException.class)
+    public ResponseEntity<MessageResponse> handleAccessDeniedException(
+            AccessDeniedException ex, WebRequest request) {
+        logger.warn("Access denied: {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                .body(new MessageResponse("Access denied"));
+    }
+
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public ResponseEntity<Map<String, String>> handleValidationExceptions(
             MethodArgumentNotValidException ex) {
@@ -0,0 +1,7 @@
+package com.example.auth.exception;
+
+public class SyncCursorExpiredException extends RuntimeException {
+    public SyncCursorExpiredException() {
+        super("Sync cursor has expired; reload the conversation history and sync again without a cursor.");
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.auth.exception;
+
+import java.util.UUID;
+
+public class UploadCommitInProgressException extends RuntimeException {
+    public UploadCommitInProgressException(UUID uploadId) {
+        super("Upload " + uploadId + " is already being committed; retry shortly.");
+    }
+}
\ No newline at end of file
@@ -0,0 +1,9 @@
+package com.example.auth.exception;
+
+import java.util.UUID;
+
+public class UploadDiscardedException extends RuntimeException {
+    public UploadDiscardedException(UUID uploadId, Throwable cause) {
+        super("Upload " + uploadId + " could not be committed and was discarded; start a new upload.", cause);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,137 @@
+package com.example.auth.model;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * A message moved out of {@code messages} by the retention job. The content is kept exactly as stored,
+ * ciphertext and key id included; data keys are only ever retired, never deleted, so archived rows stay
+ * readable. Archived messages are read-only and are not searchable.
+ */
+@Entity
+@Table(name = "archived_messages", indexes = {
+        @Index(name = "idx_archived_messages_history", columnList = "conversation_id, sent_at, message_id")
+})
+public class ArchivedMessage {
+    @Id
+    @Column(name = "message_id")
+    private UUID messageId;
+
+    @Column(name = "conversation_id", nullable = false)
+    private UUID conversationId;
+
+    @Column(name = "sender_id", nullable = false)
+    private UUID senderId;
+
+    // Legacy Base64 ciphertext, for rows archived before they were converted to the binary format
+    @Column(name = "message_content", columnDefinition = "TEXT")
+    private String messageContent;
+
+    @JdbcTypeCode(SqlTypes.VARBINARY)
+    @Column(name = "message_ciphertext", length = 20000)
+    private byte[] ciphertext;
+
+    @Column(name = "key_id")
+    private UUID keyId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "message_type")
+    private MessageType messageType;
+
+    @Column(name = "is_edited")
+    private Boolean isEdited;
+
+    @Column(name = "sent_at")
+    private LocalDateTime sentAt;
+
+    @Column(name = "archived_at")
+    private LocalDateTime archivedAt;
+
+    public ArchivedMessage() {
+    }
+
+    // Getters and Setters
+    public UUID getMessageId() {
+        return messageId;
+    }
+
+    public void setMessageId(UUID messageId) {
+        this.messageId = messageId;
+    }
+
+    public UUID getConversationId() {
+        return conversationId;
+    }
+
+    public void setConversationId(UUID conversationId) {
+        this.conversationId = conversationId;
+    }
+
+    public UUID getSenderId() {
+        return senderId;
+    }
+
+    public void setSenderId(UUID senderId) {
+        this.senderId = senderId;
+    }
+
+    public String getMessageContent() {
+        return messageContent;
+    }
+
+    public void setMessageContent(String messageContent) {
+        this.messageContent = messageContent;
+    }
+
+    public byte[] getCiphertext() {
+        return ciphertext;
+    }
+
+    public void setCiphertext(byte[] ciphertext) {
+        this.ciphertext = ciphertext;
+    }
+
+    public UUID getKeyId() {
+        return keyId;
+    }
+
+    public void setKeyId(UUID keyId) {
+        this.keyId = keyId;
+    }
+
+    public MessageType getMessageType() {
+        return messageType;
+    }
+
+    public void setMessageType(MessageType messageType) {
+        this.messageType = messageType;
+    }
+
+    public Boolean getIsEdited() {
+        return isEdited;
+    }
+
+    public void setIsEdited(Boolean isEdited) {
+        this.isEdited = isEdited;
+    }
+
+    public LocalDateTime getSentAt() {
+        return sentAt;
+    }
+
+    public void setSentAt(LocalDateTime sentAt) {
+        this.sentAt = sentAt;
+    }
+
+    public LocalDateTime getArchivedAt() {
+        return archivedAt;
+    }
+
+    public void setArchivedAt(LocalDateTime archivedAt) {
+        this.archivedAt = archivedAt;
+    }
+}
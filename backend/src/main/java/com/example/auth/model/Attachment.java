@@ -30,6 +30,10 @@ public class Attachment {
     @Column(nullable = false)
     private String storagePath; // e.g., the key in the S3 bucket
 
+    // Hex SHA-256 of the stored content, computed while it was uploaded
+    @Column(length = 64)
+    private String fileHash;
+
     private LocalDateTime uploadedAt;
 
     public Attachment() {
@@ -85,6 +89,14 @@ public class Attachment {
         this.storagePath = storagePath;
     }
 
+    public String getFileHash() {
+        return fileHash;
+    }
+
+    public void setFileHash(String fileHash) {
+        this.fileHash = fileHash;
+    }
+
     public LocalDateTime getUploadedAt() {
         return uploadedAt;
     }
@@ -11,5 +11,6 @@ public enum AuditAction {
     LOGIN_FAILURE,
     TOKEN_REFRESH,
     SUSPICIOUS_LOGIN_IP,
-    SUSPICIOUS_LOGIN_USER_AGENT
+    SUSPICIOUS_LOGIN_USER_AGENT,
+    ANONYMIZE
 }
\ No newline at end of file
@@ -0,0 +1,148 @@
+package com.example.auth.model;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * One announcement delivered as a direct message to many recipients. The content is encrypted once,
+ * under a data key scoped to the broadcast, and every delivered copy stores that same ciphertext.
+ * Delivery progress is tracked per recipient in {@link BroadcastRecipient}.
+ */
+@Entity
+@Table(name = "broadcasts", indexes = {
+        @Index(name = "idx_broadcasts_status_created", columnList = "status, created_at")
+})
+public class Broadcast {
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    @Column(name = "broadcast_id")
+    private UUID broadcastId;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "sender_id", nullable = false)
+    private User sender;
+
+    // Versioned binary ciphertext under the broadcast's data key (see EncryptionService#encryptBinary)
+    @JdbcTypeCode(SqlTypes.VARBINARY)
+    @Column(name = "content_ciphertext", length = 20000)
+    private byte[] ciphertext;
+
+    // Conversation-list preview, encrypted under the same key
+    @JdbcTypeCode(SqlTypes.VARBINARY)
+    @Column(name = "preview", length = 1024)
+    private byte[] preview;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false)
+    private BroadcastStatus status = BroadcastStatus.PENDING;
+
+    @Column(name = "total_recipients", nullable = false)
+    private int totalRecipients;
+
+    @Column(name = "processed_recipients", nullable = false)
+    private int processedRecipients;
+
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+
+    @CreationTimestamp
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt;
+
+    public Broadcast() {
+    }
+
+    public Broadcast(User sender, int totalRecipients) {
+        this.sender = sender;
+        this.totalRecipients = totalRecipients;
+    }
+
+    // Getters and Setters
+    public UUID getBroadcastId() {
+        return broadcastId;
+    }
+
+    public void setBroadcastId(UUID broadcastId) {
+        this.broadcastId = broadcastId;
+    }
+
+    public User getSender() {
+        return sender;
+    }
+
+    public void setSender(User sender) {
+        this.sender = sender;
+    }
+
+    public byte[] getCiphertext() {
+        return ciphertext;
+    }
+
+    public void setCiphertext(byte[] ciphertext) {
+        this.ciphertext = ciphertext;
+    }
+
+    public byte[] getPreview() {
+        return preview;
+    }
+
+    public void setPreview(byte[] preview) {
+        this.preview = preview;
+    }
+
+    public BroadcastStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(BroadcastStatus status) {
+        this.status = status;
+    }
+
+    public int getTotalRecipients() {
+        return totalRecipients;
+    }
+
+    public void setTotalRecipients(int totalRecipients) {
+        this.totalRecipients = totalRecipients;
+    }
+
+    public int getProcessedRecipients() {
+        return processedRecipients;
+    }
+
+    public void setProcessedRecipients(int processedRecipients) {
+        this.processedRecipients = processedRecipients;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public LocalDateTime getCompletedAt() {
+        return completedAt;
+    }
+
+    public void setCompletedAt(LocalDateTime completedAt) {
+        this.completedAt = completedAt;
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.auth.model;
+
+import jakarta.persistence.*;
+
+import java.util.UUID;
+
+/**
+ * Delivery state of a broadcast for one recipient. Rows are written and updated in bulk by
+ * {@code BroadcastService}; a null message id means the recipient has not been delivered to yet.
+ */
+@Entity
+@Table(name = "broadcast_recipients",
+        uniqueConstraints = @UniqueConstraint(name = "uk_broadcast_recipients_user", columnNames = {"broadcast_id", "user_id"}),
+        indexes = @Index(name = "idx_broadcast_recipients_pending", columnList = "broadcast_id, message_id, user_id"))
+public class BroadcastRecipient {
+    @Id
+    @Column(name = "broadcast_recipient_id")
+    private UUID broadcastRecipientId;
+
+    @Column(name = "broadcast_id", nullable = false)
+    private UUID broadcastId;
+
+    @Column(name = "user_id", nullable = false)
+    private UUID userId;
+
+    // Direct conversation the copy was delivered to
+    @Column(name = "conversation_id")
+    private UUID conversationId;
+
+    @Column(name = "message_id")
+    private UUID messageId;
+
+    public BroadcastRecipient() {
+    }
+
+    // Getters and Setters
+    public UUID getBroadcastRecipientId() {
+        return broadcastRecipientId;
+    }
+
+    public void setBroadcastRecipientId(UUID broadcastRecipientId) {
+        this.broadcastRecipientId = broadcastRecipientId;
+    }
+
+    public UUID getBroadcastId() {
+        return broadcastId;
+    }
+
+    public void setBroadcastId(UUID broadcastId) {
+        this.broadcastId = broadcastId;
+    }
+
+    public UUID getUserId() {
+        return userId;
+    }
+
+    public void setUserId(UUID userId) {
+        this.userId = userId;
+    }
+
+    public UUID getConversationId() {
+        return conversationId;
+    }
+
+    public void setConversationId(UUID conversationId) {
+        this.conversationId = conversationId;
+    }
+
+    public UUID getMessageId() {
+        return messageId;
+    }
+
+    public void setMessageId(UUID messageId) {
+        this.messageId = messageId;
+    }
+}
@@ -1,15 +1,23 @@
 package com.example.auth.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.Size;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.JdbcTypeCode;
 import org.hibernate.annotations.UpdateTimestamp;
+import org.hibernate.type.SqlTypes;
 
 import java.time.LocalDateTime;
 import java.util.UUID;
 
+// Last-message and change-sequence columns are maintained by bulk updates; only write columns that actually changed
 @Entity
-@Table(name = "conversations")
+@DynamicUpdate
+@Table(name = "conversations", indexes = {
+        @Index(name = "idx_conversations_last_message", columnList = "last_message_at, conversation_id")
+})
 public class Conversation {
     @Id
     @GeneratedValue(strategy = GenerationType.UUID)
@@ -36,9 +44,39 @@ public class Conversation {
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
 
+    // Newest active message, maintained by MessagingService. Until the first message,
+    // lastMessageAt holds the creation time so empty conversations still sort by recency.
+    @Column(name = "last_message_id")
+    private UUID lastMessageId;
+
+    @Column(name = "last_message_sender_id")
+    private UUID lastMessageSenderId;
+
+    @Column(name = "last_message_at")
+    private LocalDateTime lastMessageAt;
+
+    // Monotonic counter bumped by every message change and read-watermark move in this conversation.
+    // Writers increment it under the row lock, so values become visible in commit order.
+    @JsonIgnore
+    @Column(name = "change_seq")
+    private Long changeSeq;
+
+    // Start of the newest message, encrypted under the conversation's data key
+    @JsonIgnore
+    @JdbcTypeCode(SqlTypes.VARBINARY)
+    @Column(name = "last_message_preview", length = 1024)
+    private byte[] lastMessagePreview;
+
     public Conversation() {
     }
 
+    @PrePersist
+    protected void initializeLastMessageAt() {
+        if (lastMessageAt == null) {
+            lastMessageAt = LocalDateTime.now();
+        }
+    }
+
     public Conversation(String conversationName, ConversationType conversationType, User createdBy) {
         this.conversationName = conversationName;
         this.conversationType = conversationType;
@@ -93,4 +131,44 @@ public class Conversation {
     public void setUpdatedAt(LocalDateTime updatedAt) {
         this.updatedAt = updatedAt;
     }
-}
\ No newline at end of file
+
+    public UUID getLastMessageId() {
+        return lastMessageId;
+    }
+
+    public void setLastMessageId(UUID lastMessageId) {
+        this.lastMessageId = lastMessageId;
+    }
+
+    public UUID getLastMessageSenderId() {
+        return lastMessageSenderId;
+    }
+
+    public void setLastMessageSenderId(UUID lastMessageSenderId) {
+        this.lastMessageSenderId = lastMessageSenderId;
+    }
+
+    public LocalDateTime getLastMessageAt() {
+        return lastMessageAt;
+    }
+
+    public void setLastMessageAt(LocalDateTime lastMessageAt) {
+        this.lastMessageAt = lastMessageAt;
+    }
+
+    public byte[] getLastMessagePreview() {
+        return lastMessagePreview;
+    }
+
+    public void setLastMessagePreview(byte[] lastMessagePreview) {
+        this.lastMessagePreview = lastMessagePreview;
+    }
+
+    public Long getChangeSeq() {
+        return changeSeq;
+    }
+
+    public void setChangeSeq(Long changeSeq) {
+        this.changeSeq = changeSeq;
+    }
+}
@@ -6,7 +6,9 @@ import java.time.LocalDateTime;
 import java.util.UUID;
 
 @Entity
-@Table(name = "conversation_participants")
+@Table(name = "conversation_participants", indexes = {
+        @Index(name = "idx_conversation_participants_user", columnList = "user_id, is_active")
+})
 public class ConversationParticipant {
     @Id
     @GeneratedValue(strategy = GenerationType.UUID)
@@ -27,6 +29,21 @@ public class ConversationParticipant {
     @Column(name = "is_active")
     private Boolean isActive = true;
 
+    // Read watermark: everything up to and including this (sentAt, messageId) position has been read
+    @Column(name = "last_read_at")
+    private LocalDateTime lastReadAt;
+
+    @Column(name = "last_read_message_id")
+    private UUID lastReadMessageId;
+
+    // Conversation change sequence value of the last read-watermark move
+    @Column(name = "read_seq")
+    private Long readSeq;
+
+    // Materialized count of unread messages from others; null until first computed
+    @Column(name = "unread_count")
+    private Long unreadCount;
+
     public ConversationParticipant() {
     }
 
@@ -76,4 +93,36 @@ public class ConversationParticipant {
     public void setIsActive(Boolean isActive) {
         this.isActive = isActive;
     }
-}
\ No newline at end of file
+
+    public LocalDateTime getLastReadAt() {
+        return lastReadAt;
+    }
+
+    public void setLastReadAt(LocalDateTime lastReadAt) {
+        this.lastReadAt = lastReadAt;
+    }
+
+    public UUID getLastReadMessageId() {
+        return lastReadMessageId;
+    }
+
+    public void setLastReadMessageId(UUID lastReadMessageId) {
+        this.lastReadMessageId = lastReadMessageId;
+    }
+
+    public Long getUnreadCount() {
+        return unreadCount;
+    }
+
+    public void setUnreadCount(Long unreadCount) {
+        this.unreadCount = unreadCount;
+    }
+
+    public Long getReadSeq() {
+        return readSeq;
+    }
+
+    public void setReadSeq(Long readSeq) {
+        this.readSeq = readSeq;
+    }
+}
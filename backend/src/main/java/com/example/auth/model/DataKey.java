@@ -0,0 +1,101 @@
+package com.example.auth.model;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * A data encryption key for one key scope (a conversation or a broadcast), stored wrapped under the master key.
+ * Each scope has at most one ACTIVE key used for new content; RETIRED keys stay readable until the
+ * re-keying job has moved every row onto the active key.
+ */
+@Entity
+@Table(name = "data_keys", indexes = {
+        @Index(name = "idx_data_keys_scope_status", columnList = "scope_id, status"),
+        @Index(name = "idx_data_keys_status_created", columnList = "status, created_at")
+})
+public class DataKey {
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    @Column(name = "key_id")
+    private UUID keyId;
+
+    @Column(name = "scope_id", nullable = false)
+    private UUID scopeId;
+
+    @JdbcTypeCode(SqlTypes.VARBINARY)
+    @Column(name = "wrapped_key", nullable = false, length = 64)
+    private byte[] wrappedKey;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false)
+    private DataKeyStatus status = DataKeyStatus.ACTIVE;
+
+    @CreationTimestamp
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    @Column(name = "retired_at")
+    private LocalDateTime retiredAt;
+
+    public DataKey() {
+    }
+
+    public DataKey(UUID scopeId, byte[] wrappedKey) {
+        this.scopeId = scopeId;
+        this.wrappedKey = wrappedKey;
+    }
+
+    // Getters and Setters
+    public UUID getKeyId() {
+        return keyId;
+    }
+
+    public void setKeyId(UUID keyId) {
+        this.keyId = keyId;
+    }
+
+    public UUID getScopeId() {
+        return scopeId;
+    }
+
+    public void setScopeId(UUID scopeId) {
+        this.scopeId = scopeId;
+    }
+
+    public byte[] getWrappedKey() {
+        return wrappedKey;
+    }
+
+    public void setWrappedKey(byte[] wrappedKey) {
+        this.wrappedKey = wrappedKey;
+    }
+
+    public DataKeyStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(DataKeyStatus status) {
+        this.status = status;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public LocalDateTime getRetiredAt() {
+        return retiredAt;
+    }
+
+    public void setRetiredAt(LocalDateTime retiredAt) {
+        this.retiredAt = retiredAt;
+    }
+}
@@ -0,0 +1,6 @@
+package com.example.auth.model;
+
+public enum DataKeyStatus {
+    ACTIVE,
+    RETIRED
+}
@@ -0,0 +1,120 @@
+package com.example.auth.model;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Stored document content, keyed by its SHA-256. Documents with identical bytes share one blob, and
+ * {@code refCount} counts the documents that point at it. A blob whose count drops to zero is stamped
+ * with {@code orphanedAt} and removed by the garbage collector once its grace period has passed,
+ * unless a new upload of the same bytes claims it first.
+ * <p>
+ * Image content also gets a downscaled preview, stored next to the blob. {@code previewStatus} is null
+ * until a preview is asked for.
+ */
+@Entity
+@Table(name = "document_blobs")
+public class DocumentBlob {
+    @Id
+    @Column(name = "file_hash", length = 64)
+    private String fileHash;
+
+    @Column(name = "storage_path", nullable = false, length = 500)
+    private String storagePath;
+
+    @Column(name = "file_size", nullable = false)
+    private long fileSize;
+
+    @Column(name = "ref_count", nullable = false)
+    private int refCount;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "orphaned_at")
+    private LocalDateTime orphanedAt;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "preview_status")
+    private PreviewStatus previewStatus;
+
+    @Column(name = "preview_size")
+    private Long previewSize;
+
+    public DocumentBlob() {
+    }
+
+    public DocumentBlob(String fileHash, String storagePath, long fileSize, LocalDateTime createdAt) {
+        this.fileHash = fileHash;
+        this.storagePath = storagePath;
+        this.fileSize = fileSize;
+        this.refCount = 1;
+        this.createdAt = createdAt;
+    }
+
+    // Getters and Setters
+    public String getFileHash() {
+        return fileHash;
+    }
+
+    public void setFileHash(String fileHash) {
+        this.fileHash = fileHash;
+    }
+
+    public String getStoragePath() {
+        return storagePath;
+    }
+
+    public void setStoragePath(String storagePath) {
+        this.storagePath = storagePath;
+    }
+
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    public void setFileSize(long fileSize) {
+        this.fileSize = fileSize;
+    }
+
+    public int getRefCount() {
+        return refCount;
+    }
+
+    public void setRefCount(int refCount) {
+        this.refCount = refCount;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public LocalDateTime getOrphanedAt() {
+        return orphanedAt;
+    }
+
+    public void setOrphanedAt(LocalDateTime orphanedAt) {
+        this.orphanedAt = orphanedAt;
+    }
+
+    public PreviewStatus getPreviewStatus() {
+        return previewStatus;
+    }
+
+    public void setPreviewStatus(PreviewStatus previewStatus) {
+        this.previewStatus = previewStatus;
+    }
+
+    public Long getPreviewSize() {
+        return previewSize;
+    }
+
+    public void setPreviewSize(Long previewSize) {
+        this.previewSize = previewSize;
+    }
+}
@@ -0,0 +1,210 @@
+package com.example.auth.model;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * A resumable document upload. The content is sent as fixed-size chunks, written straight into a
+ * multipart blob under {@code storageKey}, and becomes a document when the upload is committed. Once
+ * committed, {@code documentId} is set and the session is kept until it expires, so a repeated commit
+ * returns the same document.
+ */
+@Entity
+@Table(name = "document_uploads")
+public class DocumentUpload {
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    @Column(name = "upload_id")
+    private UUID uploadId;
+
+    @Column(name = "storage_key", nullable = false, length = 500)
+    private String storageKey;
+
+    // The blob store's own id for the multipart upload
+    @Column(name = "multipart_id", nullable = false, length = 1024)
+    private String multipartId;
+
+    @Column(name = "employee_id", nullable = false)
+    private UUID employeeId;
+
+    @Column(name = "uploaded_by", nullable = false)
+    private UUID uploadedBy;
+
+    @Column(name = "document_name", nullable = false)
+    private String documentName;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "document_type", nullable = false)
+    private DocumentType documentType;
+
+    @Column(name = "file_name", nullable = false)
+    private String fileName;
+
+    @Column(name = "mime_type", length = 100)
+    private String mimeType;
+
+    @Column(name = "total_size", nullable = false)
+    private long totalSize;
+
+    @Column(name = "chunk_size", nullable = false)
+    private int chunkSize;
+
+    // SHA-256 declared by the client, checked against the assembled content at commit
+    @Column(name = "expected_hash", nullable = false, length = 64)
+    private String expectedHash;
+
+    @Column(name = "document_id")
+    private UUID documentId;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "last_activity_at", nullable = false)
+    private LocalDateTime lastActivityAt;
+
+    // Set while a commit assembles the upload, so a second commit does not start on the same parts
+    @Column(name = "commit_started_at")
+    private LocalDateTime commitStartedAt;
+
+    public DocumentUpload() {
+    }
+
+    public int getTotalChunks() {
+        return (int) ((totalSize + chunkSize - 1) / chunkSize);
+    }
+
+    public long getChunkLength(int chunkIndex) {
+        return Math.min(chunkSize, totalSize - (long) chunkIndex * chunkSize);
+    }
+
+    // Getters and Setters
+    public UUID getUploadId() {
+        return uploadId;
+    }
+
+    public void setUploadId(UUID uploadId) {
+        this.uploadId = uploadId;
+    }
+
+    public String getStorageKey() {
+        return storageKey;
+    }
+
+    public void setStorageKey(String storageKey) {
+        this.storageKey = storageKey;
+    }
+
+    public String getMultipartId() {
+        return multipartId;
+    }
+
+    public void setMultipartId(String multipartId) {
+        this.multipartId = multipartId;
+    }
+
+    public UUID getEmployeeId() {
+        return employeeId;
+    }
+
+    public void setEmployeeId(UUID employeeId) {
+        this.employeeId = employeeId;
+    }
+
+    public UUID getUploadedBy() {
+        return uploadedBy;
+    }
+
+    public void setUploadedBy(UUID uploadedBy) {
+        this.uploadedBy = uploadedBy;
+    }
+
+    public String getDocumentName() {
+        return documentName;
+    }
+
+    public void setDocumentName(String documentName) {
+        this.documentName = documentName;
+    }
+
+    public DocumentType getDocumentType() {
+        return documentType;
+    }
+
+    public void setDocumentType(DocumentType documentType) {
+        this.documentType = documentType;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    public void setMimeType(String mimeType) {
+        this.mimeType = mimeType;
+    }
+
+    public long getTotalSize() {
+        return totalSize;
+    }
+
+    public void setTotalSize(long totalSize) {
+        this.totalSize = totalSize;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    public String getExpectedHash() {
+        return expectedHash;
+    }
+
+    public void setExpectedHash(String expectedHash) {
+        this.expectedHash = expectedHash;
+    }
+
+    public UUID getDocumentId() {
+        return documentId;
+    }
+
+    public void setDocumentId(UUID documentId) {
+        this.documentId = documentId;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public LocalDateTime getLastActivityAt() {
+        return lastActivityAt;
+    }
+
+    public void setLastActivityAt(LocalDateTime lastActivityAt) {
+        this.lastActivityAt = lastActivityAt;
+    }
+
+    public LocalDateTime getCommitStartedAt() {
+        return commitStartedAt;
+    }
+
+    public void setCommitStartedAt(LocalDateTime commitStartedAt) {
+        this.commitStartedAt = commitStartedAt;
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.auth.model;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * A chunk of a {@link DocumentUpload} that has been received and stored. A chunk sent again replaces
+ * the earlier row.
+ */
+@Entity
+@Table(name = "document_upload_chunks", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_document_upload_chunks_upload_index", columnNames = {"upload_id", "chunk_index"})
+})
+public class DocumentUploadChunk {
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    @Column(name = "chunk_id")
+    private UUID chunkId;
+
+    @Column(name = "upload_id", nullable = false)
+    private UUID uploadId;
+
+    @Column(name = "chunk_index", nullable = false)
+    private int chunkIndex;
+
+    @Column(name = "size", nullable = false)
+    private long size;
+
+    @Column(name = "sha256", nullable = false, length = 64)
+    private String sha256;
+
+    // Returned by the blob store for the part, and needed to complete the upload
+    @Column(name = "part_tag")
+    private String partTag;
+
+    @Column(name = "received_at", nullable = false)
+    private LocalDateTime receivedAt;
+
+    public DocumentUploadChunk() {
+    }
+
+    public DocumentUploadChunk(UUID uploadId, int chunkIndex) {
+        this.uploadId = uploadId;
+        this.chunkIndex = chunkIndex;
+    }
+
+    // Getters and Setters
+    public UUID getChunkId() {
+        return chunkId;
+    }
+
+    public void setChunkId(UUID chunkId) {
+        this.chunkId = chunkId;
+    }
+
+    public UUID getUploadId() {
+        return uploadId;
+    }
+
+    public void setUploadId(UUID uploadId) {
+        this.uploadId = uploadId;
+    }
+
+    public int getChunkIndex() {
+        return chunkIndex;
+    }
+
+    public void setChunkIndex(int chunkIndex) {
+        this.chunkIndex = chunkIndex;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public void setSize(long size) {
+        this.size = size;
+    }
+
+    public String getSha256() {
+        return sha256;
+    }
+
+    public void setSha256(String sha256) {
+        this.sha256 = sha256;
+    }
+
+    public String getPartTag() {
+        return partTag;
+    }
+
+    public void setPartTag(String partTag) {
+        this.partTag = partTag;
+    }
+
+    public LocalDateTime getReceivedAt() {
+        return receivedAt;
+    }
+
+    public void setReceivedAt(LocalDateTime receivedAt) {
+        this.receivedAt = receivedAt;
+    }
+}
@@ -1,9 +1,10 @@
 package com.example.auth.model;
 
-import jakarta.persistence.*;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
 import jakarta.persistence.*;
-import jakarta.validation.constraints.NotBlank;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -11,7 +12,12 @@ import java.util.List;
 import java.util.UUID;
 
 @Entity
-@Table(name = "messages")
+@Table(name = "messages", indexes = {
+        @Index(name = "idx_messages_conversation_history", columnList = "conversation_id, is_deleted, sent_at, message_id"),
+        @Index(name = "idx_messages_key_id", columnList = "key_id"),
+        @Index(name = "idx_messages_change_seq", columnList = "conversation_id, change_seq"),
+        @Index(name = "idx_messages_retention", columnList = "is_deleted, sent_at, message_id")
+})
 public class Message {
     @Id
     @GeneratedValue(strategy = GenerationType.UUID)
@@ -26,10 +32,21 @@ public class Message {
     @JoinColumn(name = "sender_id", nullable = false)
     private User sender;
 
-    @NotBlank
+    // Legacy Base64 ciphertext; rows in the binary format leave this null. Carries plaintext on API responses.
     @Column(name = "message_content", columnDefinition = "TEXT")
     private String messageContent;
 
+    // Versioned binary ciphertext (see EncryptionService#encryptBinary)
+    @JsonIgnore
+    @JdbcTypeCode(SqlTypes.VARBINARY)
+    @Column(name = "message_ciphertext", length = 20000)
+    private byte[] ciphertext;
+
+    // Data key the ciphertext was written under; null for content under the master key
+    @JsonIgnore
+    @Column(name = "key_id")
+    private UUID keyId;
+
     @Enumerated(EnumType.STRING)
     @Column(name = "message_type")
     private MessageType messageType = MessageType.TEXT;
@@ -41,12 +58,22 @@ public class Message {
     @Column(name = "is_deleted")
     private Boolean isDeleted = false;
 
+    // When the message was soft-deleted; the retention job hard-deletes it after a grace period
+    @JsonIgnore
+    @Column(name = "deleted_at")
+    private LocalDateTime deletedAt;
+
     @Column(name = "is_edited")
     private Boolean isEdited = false;
 
     @Column(name = "sent_at")
     private LocalDateTime sentAt;
 
+    // Position of the latest create, edit or delete in the conversation's change sequence (see Conversation#changeSeq)
+    @JsonIgnore
+    @Column(name = "change_seq")
+    private Long changeSeq;
+
     public Message() {
         this.sentAt = LocalDateTime.now();
     }
@@ -92,6 +119,22 @@ public class Message {
         this.messageContent = messageContent;
     }
 
+    public byte[] getCiphertext() {
+        return ciphertext;
+    }
+
+    public void setCiphertext(byte[] ciphertext) {
+        this.ciphertext = ciphertext;
+    }
+
+    public UUID getKeyId() {
+        return keyId;
+    }
+
+    public void setKeyId(UUID keyId) {
+        this.keyId = keyId;
+    }
+
     public MessageType getMessageType() {
         return messageType;
     }
@@ -116,6 +159,14 @@ public class Message {
         this.isDeleted = isDeleted;
     }
 
+    public LocalDateTime getDeletedAt() {
+        return deletedAt;
+    }
+
+    public void setDeletedAt(LocalDateTime deletedAt) {
+        this.deletedAt = deletedAt;
+    }
+
     public LocalDateTime getSentAt() {
         return sentAt;
     }
@@ -131,4 +182,12 @@ public class Message {
     public void setIsEdited(Boolean isEdited) {
         this.isEdited = isEdited;
     }
-}
\ No newline at end of file
+
+    public Long getChangeSeq() {
+        return changeSeq;
+    }
+
+    public void setChangeSeq(Long changeSeq) {
+        this.changeSeq = changeSeq;
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.auth.model;
+
+public enum MessageEventType {
+    CREATED,
+    EDITED,
+    DELETED
+}
@@ -0,0 +1,72 @@
+package com.example.auth.model;
+
+import jakarta.persistence.*;
+
+import java.util.UUID;
+
+/**
+ * Blind-index entry: a keyed HMAC of one normalized word of a message. The token reveals nothing
+ * about the word without the index key, but equal words produce equal tokens, so search is an index lookup.
+ */
+@Entity
+@Table(name = "message_search_tokens", indexes = {
+        @Index(name = "idx_message_search_tokens_token", columnList = "token, conversation_id"),
+        @Index(name = "idx_message_search_tokens_message", columnList = "message_id")
+})
+public class MessageSearchToken {
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    @Column(name = "token_id")
+    private UUID tokenId;
+
+    @Column(name = "message_id", nullable = false)
+    private UUID messageId;
+
+    @Column(name = "conversation_id", nullable = false)
+    private UUID conversationId;
+
+    @Column(name = "token", nullable = false, length = 32)
+    private String token;
+
+    public MessageSearchToken() {
+    }
+
+    public MessageSearchToken(UUID messageId, UUID conversationId, String token) {
+        this.messageId = messageId;
+        this.conversationId = conversationId;
+        this.token = token;
+    }
+
+    // Getters and Setters
+    public UUID getTokenId() {
+        return tokenId;
+    }
+
+    public void setTokenId(UUID tokenId) {
+        this.tokenId = tokenId;
+    }
+
+    public UUID getMessageId() {
+        return messageId;
+    }
+
+    public void setMessageId(UUID messageId) {
+        this.messageId = messageId;
+    }
+
+    public UUID getConversationId() {
+        return conversationId;
+    }
+
+    public void setConversationId(UUID conversationId) {
+        this.conversationId = conversationId;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public void setToken(String token) {
+        this.token = token;
+    }
+}
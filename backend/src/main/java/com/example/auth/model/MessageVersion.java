@@ -0,0 +1,114 @@
+package com.example.auth.model;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * One version of an edited message. Version 1 is the content as originally sent. A row holds either a
+ * full encrypted snapshot ({@code deltaDepth} 0) or an encrypted delta against the previous version, in
+ * which case {@code deltaDepth} counts the deltas back to the nearest snapshot. Messages that were never
+ * edited have no rows.
+ */
+@Entity
+@Table(name = "message_versions", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_message_versions_message_version", columnNames = {"message_id", "version"})
+})
+public class MessageVersion {
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    @Column(name = "version_id")
+    private UUID versionId;
+
+    @Column(name = "message_id", nullable = false)
+    private UUID messageId;
+
+    @Column(name = "version", nullable = false)
+    private int version;
+
+    @Column(name = "delta_depth", nullable = false)
+    private int deltaDepth;
+
+    // Snapshot text or delta, in the binary format under the conversation's data key
+    @JdbcTypeCode(SqlTypes.VARBINARY)
+    @Column(name = "ciphertext", nullable = false, length = 20000)
+    private byte[] ciphertext;
+
+    @Column(name = "edited_by", nullable = false)
+    private UUID editedBy;
+
+    @Column(name = "edited_at", nullable = false)
+    private LocalDateTime editedAt;
+
+    public MessageVersion() {
+    }
+
+    public MessageVersion(UUID messageId, int version, int deltaDepth, byte[] ciphertext, UUID editedBy, LocalDateTime editedAt) {
+        this.messageId = messageId;
+        this.version = version;
+        this.deltaDepth = deltaDepth;
+        this.ciphertext = ciphertext;
+        this.editedBy = editedBy;
+        this.editedAt = editedAt;
+    }
+
+    // Getters and Setters
+    public UUID getVersionId() {
+        return versionId;
+    }
+
+    public void setVersionId(UUID versionId) {
+        this.versionId = versionId;
+    }
+
+    public UUID getMessageId() {
+        return messageId;
+    }
+
+    public void setMessageId(UUID messageId) {
+        this.messageId = messageId;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
+    public int getDeltaDepth() {
+        return deltaDepth;
+    }
+
+    public void setDeltaDepth(int deltaDepth) {
+        this.deltaDepth = deltaDepth;
+    }
+
+    public byte[] getCiphertext() {
+        return ciphertext;
+    }
+
+    public void setCiphertext(byte[] ciphertext) {
+        this.ciphertext = ciphertext;
+    }
+
+    public UUID getEditedBy() {
+        return editedBy;
+    }
+
+    public void setEditedBy(UUID editedBy) {
+        this.editedBy = editedBy;
+    }
+
+    public LocalDateTime getEditedAt() {
+        return editedAt;
+    }
+
+    public void setEditedAt(LocalDateTime editedAt) {
+        this.editedAt = editedAt;
+    }
+}
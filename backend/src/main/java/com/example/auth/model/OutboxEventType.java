@@ -0,0 +1,5 @@
+package com.example.auth.model;
+
+public enum OutboxEventType {
+    MESSAGE_SENT
+}
@@ -0,0 +1,7 @@
+package com.example.auth.model;
+
+public enum PreviewStatus {
+    PENDING,
+    READY,
+    FAILED
+}
@@ -0,0 +1,67 @@
+package com.example.auth.model;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * A delta-sync position kept on the server, so clients only pass its id. Snapshots never change once
+ * written; {@code lastUsedAt} is refreshed now and then while a client keeps syncing from one.
+ */
+@Entity
+@Table(name = "sync_cursors", indexes = {
+        @Index(name = "idx_sync_cursors_last_used", columnList = "last_used_at")
+})
+public class SyncCursorSnapshot {
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    @Column(name = "cursor_id")
+    private UUID cursorId;
+
+    @Column(name = "user_id", nullable = false)
+    private UUID userId;
+
+    // 24 bytes per conversation
+    @JdbcTypeCode(SqlTypes.VARBINARY)
+    @Column(name = "positions", nullable = false, length = 1048576)
+    private byte[] positions;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "last_used_at", nullable = false)
+    private LocalDateTime lastUsedAt;
+
+    public SyncCursorSnapshot() {
+    }
+
+    public SyncCursorSnapshot(UUID userId, byte[] positions, LocalDateTime createdAt) {
+        this.userId = userId;
+        this.positions = positions;
+        this.createdAt = createdAt;
+        this.lastUsedAt = createdAt;
+    }
+
+    public UUID getCursorId() {
+        return cursorId;
+    }
+
+    public UUID getUserId() {
+        return userId;
+    }
+
+    public byte[] getPositions() {
+        return positions;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public LocalDateTime getLastUsedAt() {
+        return lastUsedAt;
+    }
+}
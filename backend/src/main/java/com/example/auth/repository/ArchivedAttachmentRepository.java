@@ -0,0 +1,21 @@
+package com.example.auth.repository;
+
+import com.example.auth.model.ArchivedAttachment;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface ArchivedAttachmentRepository extends JpaRepository<ArchivedAttachment, UUID> {
+    List<ArchivedAttachment> findByMessageIdIn(Collection<UUID> messageIds);
+
+    @Query("SELECT new com.example.auth.repository.AttachmentContentRow(a.attachmentId, m.conversationId, " +
+           "a.fileName, a.mimeType, a.fileSize, a.fileHash, a.storagePath) FROM ArchivedAttachment a " +
+           "JOIN ArchivedMessage m ON m.messageId = a.messageId WHERE a.attachmentId = :attachmentId")
+    Optional<AttachmentContentRow> findContentRow(UUID attachmentId);
+}
@@ -0,0 +1,23 @@
+package com.example.auth.repository;
+
+import com.example.auth.model.ArchivedMessage;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface ArchivedMessageRepository extends JpaRepository<ArchivedMessage, UUID> {
+
+    @Query("SELECT m FROM ArchivedMessage m WHERE m.conversationId = :conversationId ORDER BY m.sentAt DESC, m.messageId DESC")
+    List<ArchivedMessage> findLatest(UUID conversationId, Pageable pageable);
+
+    @Query("SELECT m FROM ArchivedMessage m WHERE m.conversationId = :conversationId AND " +
+           "(m.sentAt < :sentAt OR (m.sentAt = :sentAt AND m.messageId < :messageId)) " +
+           "ORDER BY m.sentAt DESC, m.messageId DESC")
+    List<ArchivedMessage> findBefore(UUID conversationId, LocalDateTime sentAt, UUID messageId, Pageable pageable);
+}
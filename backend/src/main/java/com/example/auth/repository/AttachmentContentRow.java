@@ -0,0 +1,11 @@
+package com.example.auth.repository;
+
+import java.util.UUID;
+
+/**
+ * What serving an attachment's content needs: its metadata, where the bytes are stored, and the
+ * conversation used for the access check.
+ */
+public record AttachmentContentRow(UUID attachmentId, UUID conversationId, String fileName, String mimeType, long fileSize,
+                                   String fileHash, String storagePath) {
+}
@@ -2,9 +2,25 @@ package com.example.auth.repository;
 
 import com.example.auth.model.Attachment;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 @Repository
 public interface AttachmentRepository extends JpaRepository<Attachment, UUID> {
+
+    // (messageId, attachmentId, fileName, mimeType, fileSize) for a page of messages, in upload order
+    @Query("SELECT a.message.messageId, a.attachmentId, a.fileName, a.mimeType, a.fileSize FROM Attachment a " +
+           "WHERE a.message.messageId IN :messageIds ORDER BY a.uploadedAt ASC, a.attachmentId ASC")
+    List<Object[]> findSummariesByMessageIdIn(Collection<UUID> messageIds);
+
+    // Attachments of deleted messages are no longer served
+    @Query("SELECT new com.example.auth.repository.AttachmentContentRow(a.attachmentId, m.conversation.conversationId, " +
+           "a.fileName, a.mimeType, a.fileSize, a.fileHash, a.storagePath) FROM Attachment a JOIN a.message m " +
+           "WHERE a.attachmentId = :attachmentId AND m.isDeleted = false")
+    Optional<AttachmentContentRow> findContentRow(UUID attachmentId);
 }
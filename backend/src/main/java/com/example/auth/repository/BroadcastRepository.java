@@ -0,0 +1,29 @@
+package com.example.auth.repository;
+
+import com.example.auth.model.Broadcast;
+import com.example.auth.model.BroadcastStatus;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface BroadcastRepository extends JpaRepository<Broadcast, UUID> {
+
+    @Query("SELECT b.broadcastId FROM Broadcast b WHERE b.status IN :statuses ORDER BY b.createdAt ASC")
+    List<UUID> findIdsByStatusIn(Collection<BroadcastStatus> statuses);
+
+    // SKIP LOCKED (lock timeout -2): a broadcast being delivered by another instance comes back empty
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT b FROM Broadcast b WHERE b.broadcastId = :broadcastId")
+    Optional<Broadcast> findByIdForUpdate(UUID broadcastId);
+}
@@ -3,10 +3,14 @@ package com.example.auth.repository;
 import com.example.auth.model.Conversation;
 import com.example.auth.model.ConversationParticipant;
 import com.example.auth.model.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -24,9 +28,111 @@ public interface ConversationParticipantRepository extends JpaRepository<Convers
     @Query("SELECT cp FROM ConversationParticipant cp WHERE cp.conversation = :conversation AND cp.isActive = true")
     List<ConversationParticipant> findActiveParticipantsByConversation(Conversation conversation);
     
+    @Query("SELECT cp.user.userId FROM ConversationParticipant cp WHERE cp.conversation.conversationId = :conversationId AND cp.isActive = true")
+    List<UUID> findActiveParticipantUserIds(UUID conversationId);
+    
+    // Direct conversations between the sender and each of the given users as (userId, conversationId), most recent first
+    @Query("SELECT other.user.userId, other.conversation.conversationId FROM ConversationParticipant own, ConversationParticipant other " +
+           "WHERE other.conversation = own.conversation AND own.conversation.conversationType = com.example.auth.model.ConversationType.DIRECT " +
+           "AND own.user.userId = :senderId AND own.isActive = true AND other.user.userId IN :userIds AND other.isActive = true " +
+           "ORDER BY own.conversation.lastMessageAt DESC")
+    List<Object[]> findDirectConversationsWith(UUID senderId, Collection<UUID> userIds);
+
+    // (userId, participantId) of everyone who takes part in the conversation
+    @Query("SELECT cp.user.userId, cp.participantId FROM ConversationParticipant cp WHERE cp.conversation.conversationId = :conversationId")
+    List<Object[]> findParticipantIdsByConversation(UUID conversationId);
+
     @Query("SELECT COUNT(cp) FROM ConversationParticipant cp WHERE cp.conversation = :conversation AND cp.isActive = true")
     Long countActiveParticipantsByConversation(Conversation conversation);
     
     @Query("SELECT cp FROM ConversationParticipant cp WHERE cp.user = :user AND cp.isActive = true")
     List<ConversationParticipant> findActiveParticipantsByUser(User user);
-}
\ No newline at end of file
+
+    // Whether advanceReadWatermark would move the watermark, without taking any lock
+    @Query("SELECT COUNT(cp) > 0 FROM ConversationParticipant cp " +
+           "WHERE cp.participantId = :participantId AND (cp.lastReadAt IS NULL OR cp.lastReadAt < :sentAt OR " +
+           "(cp.lastReadAt = :sentAt AND cp.lastReadMessageId < :messageId))")
+    boolean isBeforeReadPosition(UUID participantId, LocalDateTime sentAt, UUID messageId);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE ConversationParticipant cp SET cp.lastReadAt = :sentAt, cp.lastReadMessageId = :messageId " +
+           "WHERE cp.participantId = :participantId AND (cp.lastReadAt IS NULL OR cp.lastReadAt < :sentAt OR " +
+           "(cp.lastReadAt = :sentAt AND cp.lastReadMessageId < :messageId))")
+    int advanceReadWatermark(UUID participantId, LocalDateTime sentAt, UUID messageId);
+
+    // Inbox rows: (conversationId, conversationName, conversationType, unreadCount, participantId, lastMessageId,
+    // lastMessageAt, lastMessageSenderId, sender firstName, sender lastName, lastMessagePreview)
+    String INBOX_ROW_SELECT = "SELECT c.conversationId, c.conversationName, c.conversationType, cp.unreadCount, cp.participantId, " +
+            "c.lastMessageId, c.lastMessageAt, c.lastMessageSenderId, s.firstName, s.lastName, c.lastMessagePreview " +
+            "FROM ConversationParticipant cp JOIN cp.conversation c LEFT JOIN User s ON s.userId = c.lastMessageSenderId " +
+            "WHERE cp.user = :user AND cp.isActive = true ";
+    String INBOX_ROW_ORDER = "ORDER BY c.lastMessageAt DESC, c.conversationId DESC";
+
+    @Query(INBOX_ROW_SELECT + INBOX_ROW_ORDER)
+    List<Object[]> findInboxRowsByUser(User user);
+
+    @Query(INBOX_ROW_SELECT + INBOX_ROW_ORDER)
+    List<Object[]> findInboxRowsByUser(User user, Pageable pageable);
+
+    @Query(INBOX_ROW_SELECT + "AND (c.lastMessageAt < :lastMessageAt OR " +
+           "(c.lastMessageAt = :lastMessageAt AND c.conversationId < :conversationId)) " + INBOX_ROW_ORDER)
+    List<Object[]> findInboxRowsByUserBefore(User user, LocalDateTime lastMessageAt, UUID conversationId, Pageable pageable);
+
+    @Query("SELECT cp.unreadCount FROM ConversationParticipant cp WHERE cp.participantId = :participantId")
+    Long findUnreadCount(UUID participantId);
+
+    // Participants whose counter has not been materialized yet are skipped; it is computed on first read
+    @Modifying
+    @Query("UPDATE ConversationParticipant cp SET cp.unreadCount = cp.unreadCount + 1 " +
+           "WHERE cp.conversation.conversationId = :conversationId AND cp.user.userId <> :senderId " +
+           "AND cp.isActive = true AND cp.unreadCount IS NOT NULL")
+    int incrementUnreadCounts(UUID conversationId, UUID senderId);
+
+    @Modifying
+    @Query("UPDATE ConversationParticipant cp SET cp.unreadCount = cp.unreadCount - 1 " +
+           "WHERE cp.conversation.conversationId = :conversationId AND cp.user.userId <> :senderId " +
+           "AND cp.unreadCount > 0 AND (cp.lastReadAt IS NULL OR cp.lastReadAt < :sentAt OR " +
+           "(cp.lastReadAt = :sentAt AND cp.lastReadMessageId < :messageId))")
+    int decrementUnreadCountsForDeleted(UUID conversationId, UUID senderId, LocalDateTime sentAt, UUID messageId);
+
+    // Counts only the tail after the stored watermark, which the message history index answers directly
+    @Modifying
+    @Query("UPDATE ConversationParticipant cp SET cp.unreadCount = (SELECT COUNT(m) FROM Message m " +
+           "WHERE m.conversation = cp.conversation AND m.sender <> cp.user AND m.isDeleted = false AND " +
+           "(m.sentAt > cp.lastReadAt OR (m.sentAt = cp.lastReadAt AND m.messageId > cp.lastReadMessageId))) " +
+           "WHERE cp.participantId = :participantId")
+    int recountUnreadAfterWatermark(UUID participantId);
+
+    // Computes a missing counter in place: everything from others after the watermark, or everything without one
+    @Modifying
+    @Query("UPDATE ConversationParticipant cp SET cp.unreadCount = (SELECT COUNT(m) FROM Message m " +
+           "WHERE m.conversation = cp.conversation AND m.sender <> cp.user AND m.isDeleted = false AND " +
+           "(cp.lastReadAt IS NULL OR m.sentAt > cp.lastReadAt OR (m.sentAt = cp.lastReadAt AND m.messageId > cp.lastReadMessageId))) " +
+           "WHERE cp.participantId = :participantId AND cp.unreadCount IS NULL")
+    int initializeUnreadCountFromWatermark(UUID participantId);
+
+    // Participants that predate the read watermark only have per-message receipts: start the watermark at the newest one
+    @Modifying
+    @Query(value = "UPDATE conversation_participants cp SET " +
+           "last_read_message_id = (SELECT m.message_id FROM message_reads r JOIN messages m ON m.message_id = r.message_id " +
+           "WHERE r.user_id = cp.user_id AND m.conversation_id = cp.conversation_id ORDER BY m.sent_at DESC, m.message_id DESC LIMIT 1), " +
+           "last_read_at = (SELECT m.sent_at FROM message_reads r JOIN messages m ON m.message_id = r.message_id " +
+           "WHERE r.user_id = cp.user_id AND m.conversation_id = cp.conversation_id ORDER BY m.sent_at DESC, m.message_id DESC LIMIT 1) " +
+           "WHERE cp.participant_id = :participantId AND cp.last_read_at IS NULL AND EXISTS (SELECT 1 FROM message_reads r " +
+           "JOIN messages m ON m.message_id = r.message_id WHERE r.user_id = cp.user_id AND m.conversation_id = cp.conversation_id)",
+           nativeQuery = true)
+    int seedReadWatermarkFromReceipts(UUID participantId);
+
+    // (conversationId, changeSeq) for every active conversation of the user
+    @Query("SELECT c.conversationId, c.changeSeq FROM ConversationParticipant cp JOIN cp.conversation c " +
+           "WHERE cp.user = :user AND cp.isActive = true")
+    List<Object[]> findSyncPositionsByUser(User user);
+
+    @Modifying
+    @Query("UPDATE ConversationParticipant cp SET cp.readSeq = :readSeq WHERE cp.participantId = :participantId")
+    int setReadSeq(UUID participantId, Long readSeq);
+
+    @Query("SELECT cp FROM ConversationParticipant cp WHERE cp.conversation.conversationId = :conversationId " +
+           "AND cp.readSeq > :since AND cp.readSeq <= :upTo")
+    List<ConversationParticipant> findReadChangesBetween(UUID conversationId, long since, long upTo);
+}
@@ -4,10 +4,12 @@ import com.example.auth.model.Conversation;
 import com.example.auth.model.ConversationType;
 import com.example.auth.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
@@ -29,4 +31,52 @@ public interface ConversationRepository extends JpaRepository<Conversation, UUID
     @Query("SELECT c FROM Conversation c JOIN ConversationParticipant cp ON c.conversationId = cp.conversation.conversationId " +
            "WHERE cp.user = :user AND cp.isActive = true ORDER BY c.updatedAt DESC")
     List<Conversation> findRecentConversationsByUser(User user);
-}
\ No newline at end of file
+
+    // Only moves forward, so concurrent sends cannot replace a newer message with an older one
+    @Modifying
+    @Query("UPDATE Conversation c SET c.lastMessageId = :messageId, c.lastMessageSenderId = :senderId, " +
+           "c.lastMessageAt = :sentAt, c.lastMessagePreview = :preview, c.updatedAt = :sentAt " +
+           "WHERE c.conversationId = :conversationId AND (c.lastMessageId IS NULL OR c.lastMessageAt < :sentAt OR " +
+           "(c.lastMessageAt = :sentAt AND c.lastMessageId < :messageId))")
+    int advanceLastMessage(UUID conversationId, UUID messageId, UUID senderId, LocalDateTime sentAt, byte[] preview);
+
+    @Modifying
+    @Query("UPDATE Conversation c SET c.lastMessagePreview = :preview " +
+           "WHERE c.conversationId = :conversationId AND c.lastMessageId = :messageId")
+    int updateLastMessagePreview(UUID conversationId, UUID messageId, byte[] preview);
+
+    // Replaces the last message only if it is still the one that was removed
+    @Modifying
+    @Query("UPDATE Conversation c SET c.lastMessageId = :messageId, c.lastMessageSenderId = :senderId, " +
+           "c.lastMessageAt = COALESCE(:sentAt, c.lastMessageAt), c.lastMessagePreview = :preview " +
+           "WHERE c.conversationId = :conversationId AND c.lastMessageId = :removedMessageId")
+    int replaceLastMessage(UUID conversationId, UUID removedMessageId, UUID messageId, UUID senderId, LocalDateTime sentAt, byte[] preview);
+
+    // One-off fill for conversations created before the last-message columns existed
+    @Modifying
+    @Query(value = "UPDATE conversations c SET " +
+           "last_message_id = (SELECT m.message_id FROM messages m WHERE m.conversation_id = c.conversation_id " +
+           "AND m.is_deleted = false ORDER BY m.sent_at DESC, m.message_id DESC LIMIT 1), " +
+           "last_message_at = COALESCE((SELECT MAX(m.sent_at) FROM messages m WHERE m.conversation_id = c.conversation_id " +
+           "AND m.is_deleted = false), c.created_at) " +
+           "WHERE c.last_message_at IS NULL", nativeQuery = true)
+    int backfillLastMessage();
+
+    @Modifying
+    @Query(value = "UPDATE conversations c SET last_message_sender_id = " +
+           "(SELECT m.sender_id FROM messages m WHERE m.message_id = c.last_message_id) " +
+           "WHERE c.last_message_id IS NOT NULL AND c.last_message_sender_id IS NULL", nativeQuery = true)
+    int backfillLastMessageSender();
+
+    // Takes the conversation row lock until commit; read the new value with findChangeSeq
+    @Modifying
+    @Query("UPDATE Conversation c SET c.changeSeq = COALESCE(c.changeSeq, 0) + 1 WHERE c.conversationId = :conversationId")
+    int incrementChangeSeq(UUID conversationId);
+
+    @Query("SELECT c.changeSeq FROM Conversation c WHERE c.conversationId = :conversationId")
+    Long findChangeSeq(UUID conversationId);
+
+    // (conversationId, changeSeq) pairs, for writers that increment many conversations at once
+    @Query("SELECT c.conversationId, c.changeSeq FROM Conversation c WHERE c.conversationId IN :conversationIds")
+    List<Object[]> findChangeSeqs(Collection<UUID> conversationIds);
+}
@@ -0,0 +1,28 @@
+package com.example.auth.repository;
+
+import com.example.auth.model.DataKey;
+import com.example.auth.model.DataKeyStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface DataKeyRepository extends JpaRepository<DataKey, UUID> {
+
+    List<DataKey> findByScopeIdAndStatusOrderByCreatedAtAsc(UUID scopeId, DataKeyStatus status);
+
+    @Modifying
+    @Query("UPDATE DataKey k SET k.status = com.example.auth.model.DataKeyStatus.RETIRED, k.retiredAt = :now " +
+           "WHERE k.scopeId = :scopeId AND k.status = com.example.auth.model.DataKeyStatus.ACTIVE")
+    int retireActiveKeys(UUID scopeId, LocalDateTime now);
+
+    @Modifying
+    @Query("UPDATE DataKey k SET k.status = com.example.auth.model.DataKeyStatus.RETIRED, k.retiredAt = :now " +
+           "WHERE k.status = com.example.auth.model.DataKeyStatus.ACTIVE AND k.createdAt < :before")
+    int retireKeysCreatedBefore(LocalDateTime before, LocalDateTime now);
+}
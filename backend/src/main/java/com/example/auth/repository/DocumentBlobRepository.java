@@ -0,0 +1,50 @@
+package com.example.auth.repository;
+
+import com.example.auth.model.DocumentBlob;
+import com.example.auth.model.PreviewStatus;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface DocumentBlobRepository extends JpaRepository<DocumentBlob, String> {
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM DocumentBlob b WHERE b.fileHash = :fileHash")
+    Optional<DocumentBlob> findForUpdate(String fileHash);
+
+    // Drops one reference; the blob is stamped as orphaned when the last one goes
+    @Modifying
+    @Query("UPDATE DocumentBlob b SET b.refCount = b.refCount - 1, " +
+           "b.orphanedAt = CASE WHEN b.refCount = 1 THEN :now ELSE b.orphanedAt END " +
+           "WHERE b.fileHash = :fileHash AND b.refCount > 0")
+    int release(String fileHash, LocalDateTime now);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM DocumentBlob b WHERE b.refCount = 0 AND b.orphanedAt < :orphanedBefore ORDER BY b.orphanedAt")
+    List<DocumentBlob> findOrphansForUpdate(LocalDateTime orphanedBefore, Pageable pageable);
+
+    @Modifying
+    @Query("UPDATE DocumentBlob b SET b.previewStatus = :pending WHERE b.fileHash = :fileHash AND b.previewStatus IS NULL")
+    int requestPreview(String fileHash, PreviewStatus pending);
+
+    @Modifying
+    @Query("UPDATE DocumentBlob b SET b.previewStatus = :status, b.previewSize = :previewSize WHERE b.fileHash = :fileHash")
+    int updatePreview(String fileHash, PreviewStatus status, Long previewSize);
+
+    @Query("SELECT b.fileHash FROM DocumentBlob b WHERE b.previewStatus = :status ORDER BY b.createdAt")
+    List<String> findHashesByPreviewStatus(PreviewStatus status, Pageable pageable);
+
+    // Blobs with at least one reference; orphans awaiting collection are left out
+    @Query("SELECT new com.example.auth.repository.DocumentBlobTotals(COUNT(b), COALESCE(SUM(b.fileSize), 0L), " +
+           "COALESCE(SUM(b.fileSize * b.refCount), 0L)) FROM DocumentBlob b WHERE b.refCount > 0")
+    DocumentBlobTotals findTotals();
+}
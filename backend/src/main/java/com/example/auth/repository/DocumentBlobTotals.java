@@ -0,0 +1,8 @@
+package com.example.auth.repository;
+
+/**
+ * Totals over all stored document blobs: the bytes actually held, and the bytes the referencing documents
+ * would take up if each had its own copy.
+ */
+public record DocumentBlobTotals(long blobCount, long storedBytes, long referencedBytes) {
+}
@@ -26,6 +26,8 @@ public interface DocumentRepository extends JpaRepository<Document, UUID> {
     
     Optional<Document> findByFileHash(String fileHash);
     Optional<Document> findByFilePath(String filePath);
+
+    boolean existsByDocumentIdAndEmployeeUserUsername(UUID documentId, String username);
     
     @Query("SELECT d FROM Document d WHERE d.employee = :employee AND d.accessLevel IN ('SHARED', 'PUBLIC')")
     List<Document> findAccessibleDocumentsByEmployee(Employee employee);
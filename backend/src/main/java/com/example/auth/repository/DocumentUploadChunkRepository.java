@@ -0,0 +1,24 @@
+package com.example.auth.repository;
+
+import com.example.auth.model.DocumentUploadChunk;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface DocumentUploadChunkRepository extends JpaRepository<DocumentUploadChunk, UUID> {
+
+    Optional<DocumentUploadChunk> findByUploadIdAndChunkIndex(UUID uploadId, int chunkIndex);
+
+    List<DocumentUploadChunk> findByUploadIdOrderByChunkIndexAsc(UUID uploadId);
+
+    @Modifying
+    @Query("DELETE FROM DocumentUploadChunk c WHERE c.uploadId IN :uploadIds")
+    int deleteByUploadIdIn(Collection<UUID> uploadIds);
+}
@@ -0,0 +1,35 @@
+package com.example.auth.repository;
+
+import com.example.auth.model.DocumentUpload;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface DocumentUploadRepository extends JpaRepository<DocumentUpload, UUID> {
+
+    // Records chunk activity, unless a commit has claimed the upload since the chunk was accepted
+    @Modifying
+    @Query("UPDATE DocumentUpload u SET u.lastActivityAt = :now WHERE u.uploadId = :uploadId " +
+           "AND u.documentId IS NULL AND u.commitStartedAt IS NULL")
+    int touchUnclaimed(UUID uploadId, LocalDateTime now);
+
+    // Claims an uncommitted upload for one commit; a claim from before staleBefore was left by a commit that died
+    @Modifying
+    @Query("UPDATE DocumentUpload u SET u.commitStartedAt = :now, u.lastActivityAt = :now WHERE u.uploadId = :uploadId " +
+           "AND u.documentId IS NULL AND (u.commitStartedAt IS NULL OR u.commitStartedAt < :staleBefore)")
+    int claimForCommit(UUID uploadId, LocalDateTime now, LocalDateTime staleBefore);
+
+    @Query("SELECT u.documentId FROM DocumentUpload u WHERE u.uploadId = :uploadId")
+    Optional<UUID> findDocumentId(UUID uploadId);
+
+    @Query("SELECT u FROM DocumentUpload u WHERE u.lastActivityAt < :inactiveSince ORDER BY u.lastActivityAt")
+    List<DocumentUpload> findStale(LocalDateTime inactiveSince, Pageable pageable);
+}
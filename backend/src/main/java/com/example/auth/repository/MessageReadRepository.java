@@ -1,8 +1,10 @@
 package com.example.auth.repository;
 
+import com.example.auth.model.Conversation;
 import com.example.auth.model.Message;
 import com.example.auth.model.MessageRead;
 import com.example.auth.model.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
@@ -29,4 +31,8 @@ public interface MessageReadRepository extends JpaRepository<MessageRead, UUID>
     List<MessageRead> findRecentReadsByUser(User user, LocalDateTime since);
     
     Boolean existsByMessageAndUser(Message message, User user);
+
+    @Query("SELECT mr.message FROM MessageRead mr WHERE mr.user = :user AND mr.message.conversation = :conversation " +
+           "ORDER BY mr.message.sentAt DESC, mr.message.messageId DESC")
+    List<Message> findLatestReadMessages(Conversation conversation, User user, Pageable pageable);
 }
\ No newline at end of file
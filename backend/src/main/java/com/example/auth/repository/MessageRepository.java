@@ -4,16 +4,26 @@ import com.example.auth.model.Conversation;
 import com.example.auth.model.Message;
 import com.example.auth.model.MessageType;
 import com.example.auth.model.User;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 @Repository
 public interface MessageRepository extends JpaRepository<Message, UUID> {
+
+    String MESSAGE_ROW_SELECT = "SELECT new com.example.auth.repository.MessageRow(m.messageId, m.conversation.conversationId, " +
+            "s.userId, s.firstName, s.lastName, m.messageContent, m.ciphertext, m.messageType, m.isEdited, m.sentAt) " +
+            "FROM Message m JOIN m.sender s ";
+
     List<Message> findByConversation(Conversation conversation);
     List<Message> findBySender(User sender);
     List<Message> findByMessageType(MessageType messageType);
@@ -22,26 +32,71 @@ public interface MessageRepository extends JpaRepository<Message, UUID> {
     
     @Query("SELECT m FROM Message m WHERE m.conversation = :conversation AND m.isDeleted = false ORDER BY m.sentAt ASC")
     List<Message> findActiveMessagesByConversationOrderBySentAt(Conversation conversation);
+
+    @Query(MESSAGE_ROW_SELECT + "WHERE m.conversation.conversationId = :conversationId AND m.isDeleted = false " +
+           "ORDER BY m.sentAt ASC, m.messageId ASC")
+    List<MessageRow> findActiveRowsByConversation(UUID conversationId);
     
     @Query("SELECT m FROM Message m WHERE m.conversation = :conversation AND m.isDeleted = false ORDER BY m.sentAt DESC")
     List<Message> findRecentMessagesByConversation(Conversation conversation);
     
+    @Query("SELECT m FROM Message m WHERE m.conversation = :conversation AND m.isDeleted = false ORDER BY m.sentAt DESC, m.messageId DESC")
+    List<Message> findLatestActiveMessages(Conversation conversation, Pageable pageable);
+
+    @Query(MESSAGE_ROW_SELECT + "WHERE m.conversation.conversationId = :conversationId AND m.isDeleted = false " +
+           "ORDER BY m.sentAt DESC, m.messageId DESC")
+    List<MessageRow> findLatestActiveRows(UUID conversationId, Pageable pageable);
+
+    @Query(MESSAGE_ROW_SELECT + "WHERE m.conversation.conversationId = :conversationId AND m.isDeleted = false AND " +
+           "(m.sentAt < :sentAt OR (m.sentAt = :sentAt AND m.messageId < :messageId)) ORDER BY m.sentAt DESC, m.messageId DESC")
+    List<MessageRow> findActiveRowsBefore(UUID conversationId, LocalDateTime sentAt, UUID messageId, Pageable pageable);
+    
     @Query("SELECT m FROM Message m WHERE m.sentAt BETWEEN :startDate AND :endDate")
     List<Message> findBySentAtBetween(LocalDateTime startDate, LocalDateTime endDate);
     
     @Query("SELECT m FROM Message m WHERE m.conversation = :conversation AND m.sentAt BETWEEN :startDate AND :endDate AND m.isDeleted = false")
     List<Message> findByConversationAndSentAtBetween(Conversation conversation, LocalDateTime startDate, LocalDateTime endDate);
     
-    @Query("SELECT m FROM Message m WHERE LOWER(m.messageContent) LIKE LOWER(CONCAT('%', :searchTerm, '%')) AND m.isDeleted = false")
-    List<Message> searchMessages(String searchTerm);
-    
-    @Query("SELECT m FROM Message m WHERE m.conversation = :conversation AND " +
-           "LOWER(m.messageContent) LIKE LOWER(CONCAT('%', :searchTerm, '%')) AND m.isDeleted = false")
-    List<Message> searchMessagesInConversation(Conversation conversation, String searchTerm);
+    // Blind-index search: messages containing every token, limited to conversations the user is active in
+    @Query(MESSAGE_ROW_SELECT + "WHERE m.isDeleted = false AND m.messageId IN (" +
+           "SELECT t.messageId FROM MessageSearchToken t WHERE t.token IN :tokens AND t.conversationId IN (" +
+           "SELECT cp.conversation.conversationId FROM ConversationParticipant cp WHERE cp.user = :user AND cp.isActive = true) " +
+           "GROUP BY t.messageId HAVING COUNT(DISTINCT t.token) = :tokenCount) ORDER BY m.sentAt DESC")
+    List<MessageRow> searchByTokens(Collection<String> tokens, long tokenCount, User user, Pageable pageable);
+
+    @Query(MESSAGE_ROW_SELECT + "WHERE m.isDeleted = false AND m.messageId IN (" +
+           "SELECT t.messageId FROM MessageSearchToken t WHERE t.token IN :tokens AND t.conversationId = :conversationId " +
+           "GROUP BY t.messageId HAVING COUNT(DISTINCT t.token) = :tokenCount) ORDER BY m.sentAt DESC")
+    List<MessageRow> searchByTokensInConversation(Collection<String> tokens, long tokenCount, UUID conversationId, Pageable pageable);
     
     @Query("SELECT COUNT(m) FROM Message m WHERE m.conversation = :conversation AND m.isDeleted = false")
     Long countActiveMessagesByConversation(Conversation conversation);
 
-    @Query("SELECT COUNT(m) FROM Message m WHERE m.conversation = :conversation AND m.sender <> :user AND m.isDeleted = false AND NOT EXISTS (SELECT 1 FROM MessageRead mr WHERE mr.message = m AND mr.user = :user)")
-    Long countUnreadMessagesForUser(@org.springframework.data.repository.query.Param("conversation") Conversation conversation, @org.springframework.data.repository.query.Param("user") User user);
-}
\ No newline at end of file
+    @Query("SELECT COUNT(m) FROM Message m WHERE m.conversation = :conversation AND m.sender <> :user AND m.isDeleted = false")
+    Long countMessagesFromOthers(Conversation conversation, User user);
+
+    @Query("SELECT COUNT(m) FROM Message m WHERE m.conversation = :conversation AND m.sender <> :user AND m.isDeleted = false AND " +
+           "(m.sentAt > :sentAt OR (m.sentAt = :sentAt AND m.messageId > :messageId))")
+    Long countMessagesFromOthersAfter(Conversation conversation, User user, LocalDateTime sentAt, UUID messageId);
+
+    // Read positions (messageId, sentAt) of the given messages in one conversation, newest first
+    @Query("SELECT m.messageId, m.sentAt FROM Message m WHERE m.conversation.conversationId = :conversationId " +
+           "AND m.messageId IN :messageIds ORDER BY m.sentAt DESC, m.messageId DESC")
+    List<Object[]> findReadPositions(UUID conversationId, Collection<UUID> messageIds);
+
+    @Query("SELECT m FROM Message m WHERE m.conversation.conversationId = :conversationId " +
+           "AND m.changeSeq > :since AND m.changeSeq <= :upTo ORDER BY m.changeSeq ASC")
+    List<Message> findChangedBetween(UUID conversationId, long since, long upTo, Pageable pageable);
+
+    @Query("SELECT COALESCE(MAX(m.changeSeq), 0) FROM Message m WHERE m.conversation.conversationId = :conversationId")
+    long findLatestChangeSeq(UUID conversationId);
+
+    // Positions of message changes committed after the given one, by this instance or any other
+    @Query("SELECT m.changeSeq FROM Message m WHERE m.conversation.conversationId = :conversationId AND m.changeSeq > :since")
+    List<Long> findChangeSeqsAfter(UUID conversationId, long since);
+
+    // Serializes edits of one message, so each one reads the content the previous edit left
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT m FROM Message m WHERE m.messageId = :messageId")
+    Optional<Message> findByIdForUpdate(UUID messageId);
+}
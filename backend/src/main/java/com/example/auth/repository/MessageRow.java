@@ -0,0 +1,29 @@
+package com.example.auth.repository;
+
+import com.example.auth.model.MessageType;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Flat read model of a message and its sender's display fields, selected with a JPQL constructor
+ * expression so list queries load neither the entity nor its associations. Content is still encrypted.
+ */
+public record MessageRow(UUID messageId, UUID conversationId, UUID senderId, String senderFirstName, String senderLastName,
+                         String messageContent, byte[] ciphertext, MessageType messageType, Boolean isEdited,
+                         LocalDateTime sentAt) {
+
+    public String senderName() {
+        return displayName(senderFirstName, senderLastName);
+    }
+
+    /**
+     * Joins the name parts that are present, so a user without a last name is shown by first name only.
+     */
+    public static String displayName(String firstName, String lastName) {
+        if (lastName == null || lastName.isBlank()) {
+            return firstName;
+        }
+        return firstName == null || firstName.isBlank() ? lastName : firstName + " " + lastName;
+    }
+}
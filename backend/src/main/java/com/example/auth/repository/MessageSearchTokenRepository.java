@@ -0,0 +1,17 @@
+package com.example.auth.repository;
+
+import com.example.auth.model.MessageSearchToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.UUID;
+
+@Repository
+public interface MessageSearchTokenRepository extends JpaRepository<MessageSearchToken, UUID> {
+
+    @Modifying
+    @Query("DELETE FROM MessageSearchToken t WHERE t.messageId = :messageId")
+    int deleteByMessageId(UUID messageId);
+}
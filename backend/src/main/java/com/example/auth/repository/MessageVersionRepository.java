@@ -0,0 +1,26 @@
+package com.example.auth.repository;
+
+import com.example.auth.model.MessageVersion;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface MessageVersionRepository extends JpaRepository<MessageVersion, UUID> {
+
+    Optional<MessageVersion> findTopByMessageIdOrderByVersionDesc(UUID messageId);
+
+    // (version, editedBy, editedAt) of every stored version, oldest first
+    @Query("SELECT v.version, v.editedBy, v.editedAt FROM MessageVersion v WHERE v.messageId = :messageId ORDER BY v.version ASC")
+    List<Object[]> findVersionInfo(UUID messageId);
+
+    // The requested version and the rows back to its snapshot, snapshot first
+    @Query("SELECT v FROM MessageVersion v WHERE v.messageId = :messageId AND v.version <= :version AND v.version >= " +
+           "(SELECT target.version - target.deltaDepth FROM MessageVersion target " +
+           "WHERE target.messageId = :messageId AND target.version = :version) ORDER BY v.version ASC")
+    List<MessageVersion> findRebuildChain(UUID messageId, int version);
+}
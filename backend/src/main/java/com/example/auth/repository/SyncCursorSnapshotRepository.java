@@ -0,0 +1,22 @@
+package com.example.auth.repository;
+
+import com.example.auth.model.SyncCursorSnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Repository
+public interface SyncCursorSnapshotRepository extends JpaRepository<SyncCursorSnapshot, UUID> {
+
+    @Modifying
+    @Query("UPDATE SyncCursorSnapshot c SET c.lastUsedAt = :now WHERE c.cursorId = :cursorId")
+    int touch(UUID cursorId, LocalDateTime now);
+
+    @Modifying
+    @Query("DELETE FROM SyncCursorSnapshot c WHERE c.lastUsedAt < :before")
+    int deleteLastUsedBefore(LocalDateTime before);
+}
@@ -4,8 +4,10 @@ import com.example.auth.model.User;
 import com.example.auth.model.UserStatus;
 import com.example.auth.model.UserType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -23,4 +25,10 @@ public interface UserRepository extends JpaRepository<User, UUID> {
     List<User> findByUserType(UserType userType);
     List<User> findByStatus(UserStatus status);
     List<User> findByUserTypeAndStatus(UserType userType, UserStatus status);
+
+    long countByUserIdIn(Collection<UUID> userIds);
+
+    // (userId, firstName, lastName) of the given users
+    @Query("SELECT u.userId, u.firstName, u.lastName FROM User u WHERE u.userId IN :userIds")
+    List<Object[]> findDisplayNames(Collection<UUID> userIds);
 }
\ No newline at end of file
@@ -0,0 +1,141 @@
+package com.example.auth.service;
+
+import com.example.auth.dto.response.AttachmentSummaryResponse;
+import com.example.auth.model.Attachment;
+import com.example.auth.model.Message;
+import com.example.auth.model.User;
+import com.example.auth.repository.ArchivedAttachmentRepository;
+import com.example.auth.repository.AttachmentContentRow;
+import com.example.auth.repository.AttachmentRepository;
+import com.example.auth.repository.MessageRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.UUID;
+
+/**
+ * Stores and serves the contents of message attachments through the {@link BlobStore}. Uploads are
+ * streamed to the store and hashed on the way; the attachment row is written only once the blob is in
+ * place, so an attachment is never listed without its content. No transaction is held while bytes move.
+ */
+@Service
+public class AttachmentService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AttachmentService.class);
+
+    private final AttachmentRepository attachmentRepository;
+    private final ArchivedAttachmentRepository archivedAttachmentRepository;
+    private final MessageRepository messageRepository;
+    private final ConversationMembershipCache membershipCache;
+    private final RecentMessageCache recentMessageCache;
+    private final BlobStore blobStore;
+    private final TransactionTemplate transactionTemplate;
+    private final long maxFileSize;
+
+    public AttachmentService(AttachmentRepository attachmentRepository,
+                             ArchivedAttachmentRepository archivedAttachmentRepository,
+                             MessageRepository messageRepository,
+                             ConversationMembershipCache membershipCache,
+                             RecentMessageCache recentMessageCache,
+                             BlobStore blobStore,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${app.messaging.attachments.max-file-size:25MB}") DataSize maxFileSize) {
+        this.attachmentRepository = attachmentRepository;
+        this.archivedAttachmentRepository = archivedAttachmentRepository;
+        this.messageRepository = messageRepository;
+        this.membershipCache = membershipCache;
+        this.recentMessageCache = recentMessageCache;
+        this.blobStore = blobStore;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxFileSize = maxFileSize.toBytes();
+    }
+
+    /**
+     * Attaches a file to a message of the uploader's. Size and SHA-256 are taken from the bytes actually stored.
+     */
+    public AttachmentSummaryResponse uploadAttachment(UUID messageId, MultipartFile file, User uploader) {
+        Message message = messageRepository.findById(messageId)
+                .orElseThrow(() -> new RuntimeException("Message not found"));
+        if (!message.getSender().getUserId().equals(uploader.getUserId())) {
+            throw new SecurityException("User not authorized to add attachments to this message");
+        }
+        if (Boolean.TRUE.equals(message.getIsDeleted())) {
+            throw new IllegalArgumentException("Cannot attach files to a deleted message.");
+        }
+        if (file.isEmpty()) {
+            throw new IllegalArgumentException("Attachment is empty.");
+        }
+        // The multipart limit is sized for documents; attachments keep their own, smaller one
+        if (file.getSize() > maxFileSize) {
+            throw new IllegalArgumentException("Attachment exceeds the maximum size of " + maxFileSize + " bytes.");
+        }
+
+        UUID conversationId = message.getConversation().getConversationId();
+        String storageKey = "attachments/" + conversationId + "/" + UUID.randomUUID();
+        HashingInputStream content;
+        try (InputStream in = file.getInputStream()) {
+            content = new HashingInputStream(in);
+            blobStore.put(storageKey, content, file.getSize());
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to store attachment", e);
+        }
+
+        Attachment attachment = new Attachment();
+        attachment.setFileName(UploadedFiles.fileName(file.getOriginalFilename(), "attachment"));
+        attachment.setMimeType(UploadedFiles.mimeType(file.getContentType()));
+        attachment.setFileSize(content.getSize());
+        attachment.setFileHash(content.getSha256Hex());
+        attachment.setStoragePath(storageKey);
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                attachment.setMessage(messageRepository.getReferenceById(messageId));
+                attachmentRepository.save(attachment);
+            });
+        } catch (RuntimeException e) {
+            deleteBlob(storageKey);
+            throw e;
+        }
+        // The cached window lists attachments, so it is reloaded with the new one
+        recentMessageCache.evict(conversationId);
+
+        return new AttachmentSummaryResponse(attachment.getAttachmentId(), attachment.getFileName(), attachment.getMimeType(),
+                attachment.getFileSize());
+    }
+
+    /**
+     * Returns the metadata needed to serve an attachment, after checking that the user takes part in its conversation.
+     * Attachments of archived messages are served from the archive, as archived history still lists them.
+     */
+    public AttachmentContentRow getAttachmentContent(UUID attachmentId, User user) {
+        AttachmentContentRow attachment = attachmentRepository.findContentRow(attachmentId)
+                .or(() -> archivedAttachmentRepository.findContentRow(attachmentId))
+                .orElseThrow(() -> new RuntimeException("Attachment not found"));
+        membershipCache.requireParticipant(attachment.conversationId(), user.getUserId());
+        return attachment;
+    }
+
+    public InputStream openContent(AttachmentContentRow attachment, long offset, long length) throws IOException {
+        return blobStore.open(attachment.storagePath(), offset, length);
+    }
+
+    public Path localContentPath(AttachmentContentRow attachment) {
+        return blobStore.localPath(attachment.storagePath());
+    }
+
+    private void deleteBlob(String storageKey) {
+        try {
+            blobStore.delete(storageKey);
+        } catch (IOException e) {
+            logger.warn("Failed to remove orphaned attachment blob {}: {}", storageKey, e.getMessage());
+        }
+    }
+}
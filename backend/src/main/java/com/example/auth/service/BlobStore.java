@@ -0,0 +1,67 @@
+package com.example.auth.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Storage for file contents, addressed by key. Implementations stream content in both directions and
+ * never hold a whole file in memory; the database keeps the metadata (size, hash, key) of each blob.
+ * The active implementation is chosen with {@code app.storage.type}.
+ */
+public interface BlobStore {
+
+    /**
+     * Stores the content under the key, replacing any blob already there. The stream is read to its end
+     * but not closed.
+     *
+     * @param contentLength the exact number of bytes in the stream, or -1 if unknown
+     */
+    void put(String key, InputStream content, long contentLength) throws IOException;
+
+    /**
+     * Opens {@code length} bytes of the blob starting at {@code offset}. The caller closes the stream.
+     */
+    InputStream open(String key, long offset, long length) throws IOException;
+
+    /**
+     * Removes the blob. Removing a missing blob is not an error.
+     */
+    void delete(String key) throws IOException;
+
+    /**
+     * Starts a blob that is written in parts, in any order and possibly concurrently, and only appears under
+     * its key once completed. Returns the id its parts are written under.
+     */
+    String startMultipart(String key) throws IOException;
+
+    /**
+     * Writes part {@code partNumber}, counted from 1, which holds {@code length} bytes at {@code offset} of
+     * the finished blob. A part may be written again with the same length. Every part but the last must be
+     * at least 5 MiB, as S3 requires.
+     *
+     * @return the tag to pass to {@link #completeMultipart} for this part; may be {@code null}
+     */
+    String putPart(String key, String uploadId, int partNumber, long offset, InputStream content, long length) throws IOException;
+
+    /**
+     * Assembles the parts into the blob under the key without copying their bytes.
+     *
+     * @param partTags the tag of every part, in part number order
+     */
+    void completeMultipart(String key, String uploadId, List<String> partTags) throws IOException;
+
+    /**
+     * Discards the parts of an upload that will not be completed. Aborting an unknown upload is not an error.
+     */
+    void abortMultipart(String key, String uploadId) throws IOException;
+
+    /**
+     * Returns the local file holding the blob, for stores that keep blobs as files, so it can be sent with
+     * sendfile instead of being copied through the JVM. Returns {@code null} for remote stores.
+     */
+    default Path localPath(String key) {
+        return null;
+    }
+}
@@ -0,0 +1,326 @@
+package com.example.auth.service;
+
+import com.example.auth.dto.request.BroadcastRequest;
+import com.example.auth.dto.response.BroadcastResponse;
+import com.example.auth.dto.response.MessageEventResponse;
+import com.example.auth.model.Broadcast;
+import com.example.auth.model.BroadcastStatus;
+import com.example.auth.model.ConversationType;
+import com.example.auth.model.MessageEventType;
+import com.example.auth.model.MessageType;
+import com.example.auth.model.NotificationStatus;
+import com.example.auth.model.NotificationType;
+import com.example.auth.model.User;
+import com.example.auth.model.UserType;
+import com.example.auth.repository.BroadcastRepository;
+import com.example.auth.repository.ConversationParticipantRepository;
+import com.example.auth.repository.ConversationRepository;
+import com.example.auth.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Delivers one announcement as a direct message to many recipients.
+ * <p>
+ * Creating a broadcast only records it: the content is encrypted once, under a data key scoped to the
+ * broadcast, and the recipient list is written with a batched insert. Delivery happens in the background
+ * in chunks, each in its own transaction. A chunk reuses or creates the sender's direct conversation with
+ * each recipient and writes the messages, search tokens, counters and notifications with batched
+ * statements; every copy stores the same ciphertext. A recipient is marked delivered in the same
+ * transaction as their message, so an interrupted broadcast resumes where it stopped without duplicates.
+ * Each run delivers a bounded number of chunks, so a large broadcast is spread over several runs instead
+ * of holding the scheduler until it is done.
+ * <p>
+ * Copies stay under the broadcast's key until it ages out, after which the {@link MessageRekeyService}
+ * moves them onto their conversations' keys; rotating one conversation's key does not touch them.
+ */
+@Service
+public class BroadcastService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BroadcastService.class);
+    private static final Set<UserType> BROADCAST_SENDERS = EnumSet.of(UserType.OH_PROFESSIONAL, UserType.ADMIN);
+    private static final String NOTIFICATION_BODY = "You have a new message in your conversation.";
+
+    private final BroadcastRepository broadcastRepository;
+    private final ConversationRepository conversationRepository;
+    private final ConversationParticipantRepository conversationParticipantRepository;
+    private final ConversationMembershipCache membershipCache;
+    private final UserRepository userRepository;
+    private final DataKeyService dataKeyService;
+    private final EncryptionService encryptionService;
+    private final MessageCryptoService messageCryptoService;
+    private final MessageSearchService messageSearchService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    private final int maxChunksPerRun;
+
+    public BroadcastService(BroadcastRepository broadcastRepository,
+                            ConversationRepository conversationRepository,
+                            ConversationParticipantRepository conversationParticipantRepository,
+                            ConversationMembershipCache membershipCache,
+                            UserRepository userRepository,
+                            DataKeyService dataKeyService,
+                            EncryptionService encryptionService,
+                            MessageCryptoService messageCryptoService,
+                            MessageSearchService messageSearchService,
+                            ApplicationEventPublisher eventPublisher,
+                            JdbcTemplate jdbcTemplate,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${app.messaging.broadcast.chunk-size:500}") int chunkSize,
+                            @Value("${app.messaging.broadcast.max-chunks-per-run:10}") int maxChunksPerRun) {
+        this.broadcastRepository = broadcastRepository;
+        this.conversationRepository = conversationRepository;
+        this.conversationParticipantRepository = conversationParticipantRepository;
+        this.membershipCache = membershipCache;
+        this.userRepository = userRepository;
+        this.dataKeyService = dataKeyService;
+        this.encryptionService = encryptionService;
+        this.messageCryptoService = messageCryptoService;
+        this.messageSearchService = messageSearchService;
+        this.eventPublisher = eventPublisher;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+        this.maxChunksPerRun = maxChunksPerRun;
+    }
+
+    @Transactional
+    public BroadcastResponse createBroadcast(BroadcastRequest request, User sender) {
+        if (!BROADCAST_SENDERS.contains(sender.getUserType())) {
+            throw new SecurityException("User is not allowed to send broadcasts.");
+        }
+        String content = request.getContent();
+        if (content == null || content.isBlank()) {
+            throw new IllegalArgumentException("Message content cannot be empty.");
+        }
+        if (content.length() > 4096) {
+            throw new IllegalArgumentException("Message content exceeds maximum length of 4096 characters.");
+        }
+
+        Set<UUID> recipientIds = new LinkedHashSet<>(request.getRecipientIds());
+        recipientIds.remove(sender.getUserId());
+        if (recipientIds.isEmpty()) {
+            throw new IllegalArgumentException("A broadcast needs at least one recipient other than the sender.");
+        }
+        if (userRepository.countByUserIdIn(recipientIds) != recipientIds.size()) {
+            throw new IllegalArgumentException("One or more recipients do not exist.");
+        }
+
+        Broadcast broadcast = broadcastRepository.save(new Broadcast(sender, recipientIds.size()));
+        try {
+            DataKeyService.ActiveKey dataKey = dataKeyService.activeKeyFor(broadcast.getBroadcastId());
+            broadcast.setCiphertext(encryptionService.encryptBinary(content, dataKey.keyId(), dataKey.key()));
+            broadcast.setPreview(messageCryptoService.encryptPreview(broadcast.getBroadcastId(), MessagingService.previewOf(content)));
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to encrypt message", e);
+        }
+
+        List<Object[]> rows = new ArrayList<>(recipientIds.size());
+        for (UUID recipientId : recipientIds) {
+            rows.add(new Object[]{UUID.randomUUID(), broadcast.getBroadcastId(), recipientId});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO broadcast_recipients (broadcast_recipient_id, broadcast_id, user_id) VALUES (?, ?, ?)", rows);
+        return new BroadcastResponse(broadcast);
+    }
+
+    @Transactional(readOnly = true)
+    public BroadcastResponse getBroadcast(UUID broadcastId, User user) {
+        Broadcast broadcast = broadcastRepository.findById(broadcastId)
+                .orElseThrow(() -> new RuntimeException("Broadcast not found"));
+        if (!broadcast.getSender().getUserId().equals(user.getUserId())) {
+            throw new SecurityException("User is not the sender of this broadcast.");
+        }
+        return new BroadcastResponse(broadcast);
+    }
+
+    @Scheduled(fixedDelayString = "${app.messaging.broadcast.poll-interval-ms:5000}")
+    public void processPending() {
+        List<UUID> pending = broadcastRepository.findIdsByStatusIn(EnumSet.of(BroadcastStatus.PENDING, BroadcastStatus.IN_PROGRESS));
+        int chunksLeft = maxChunksPerRun;
+        for (UUID broadcastId : pending) {
+            if (chunksLeft == 0) {
+                // The rest continues on the next run
+                return;
+            }
+            try {
+                // Each chunk commits on its own; keep going until the broadcast is done, taken by another
+                // instance, or this run's share is used up
+                while (chunksLeft > 0) {
+                    chunksLeft--;
+                    if (processChunk(broadcastId) == 0) {
+                        break;
+                    }
+                }
+            } catch (RuntimeException e) {
+                logger.warn("Broadcast {} stopped and will resume on the next run: {}", broadcastId, e.getMessage());
+                recordError(broadcastId, e);
+            }
+        }
+    }
+
+    /**
+     * Delivers the next chunk of a broadcast in one transaction.
+     *
+     * @return the number of recipients delivered to; 0 once the broadcast is complete, or while another
+     *         instance holds it
+     */
+    public int processChunk(UUID broadcastId) {
+        Integer delivered = transactionTemplate.execute(status -> {
+            Broadcast broadcast = broadcastRepository.findByIdForUpdate(broadcastId).orElse(null);
+            if (broadcast == null || broadcast.getStatus() == BroadcastStatus.COMPLETED) {
+                return 0;
+            }
+            List<UUID> recipients = jdbcTemplate.queryForList(
+                    "SELECT user_id FROM broadcast_recipients WHERE broadcast_id = ? AND message_id IS NULL ORDER BY user_id LIMIT ?",
+                    UUID.class, broadcastId, chunkSize);
+            if (recipients.isEmpty()) {
+                broadcast.setStatus(BroadcastStatus.COMPLETED);
+                broadcast.setCompletedAt(LocalDateTime.now());
+                broadcast.setLastError(null);
+                logger.info("Broadcast {} delivered to {} recipients", broadcastId, broadcast.getProcessedRecipients());
+                return 0;
+            }
+
+            deliver(broadcast, recipients);
+            broadcast.setStatus(BroadcastStatus.IN_PROGRESS);
+            broadcast.setProcessedRecipients(broadcast.getProcessedRecipients() + recipients.size());
+            logger.info("Broadcast {} progress: {}/{} recipients", broadcastId,
+                    broadcast.getProcessedRecipients(), broadcast.getTotalRecipients());
+            return recipients.size();
+        });
+        return delivered == null ? 0 : delivered;
+    }
+
+    private void deliver(Broadcast broadcast, List<UUID> recipients) {
+        User sender = broadcast.getSender();
+        UUID senderId = sender.getUserId();
+        String plaintext;
+        try {
+            plaintext = messageCryptoService.decryptContent(broadcast.getCiphertext(), null);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to decrypt broadcast " + broadcast.getBroadcastId(), e);
+        }
+        UUID keyId = EncryptionService.readKeyId(broadcast.getCiphertext());
+        LocalDateTime sentAt = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+
+        // Recipient -> conversation, sorted by conversation id so row locks are always taken in the same order
+        Map<UUID, UUID> conversationByRecipient = targetConversations(senderId, recipients, sentAt);
+        TreeMap<UUID, UUID> recipientByConversation = new TreeMap<>();
+        conversationByRecipient.forEach((recipientId, conversationId) -> recipientByConversation.put(conversationId, recipientId));
+
+        List<Object[]> conversationIds = new ArrayList<>(recipientByConversation.size());
+        for (UUID conversationId : recipientByConversation.keySet()) {
+            conversationIds.add(new Object[]{conversationId});
+        }
+        jdbcTemplate.batchUpdate("UPDATE conversations SET change_seq = COALESCE(change_seq, 0) + 1 WHERE conversation_id = ?", conversationIds);
+        Map<UUID, Long> changeSeqs = new HashMap<>();
+        for (Object[] row : conversationRepository.findChangeSeqs(recipientByConversation.keySet())) {
+            changeSeqs.put((UUID) row[0], (Long) row[1]);
+        }
+
+        Set<String> tokens = messageSearchService.tokenize(plaintext);
+        String title = "New Message from " + sender.getFirstName();
+        List<Object[]> messages = new ArrayList<>();
+        List<Object[]> searchTokens = new ArrayList<>();
+        List<Object[]> unreadCounts = new ArrayList<>();
+        List<Object[]> lastMessages = new ArrayList<>();
+        List<Object[]> notifications = new ArrayList<>();
+        List<Object[]> delivered = new ArrayList<>();
+        List<MessageEventResponse> events = new ArrayList<>();
+        for (Map.Entry<UUID, UUID> entry : recipientByConversation.entrySet()) {
+            UUID conversationId = entry.getKey();
+            UUID recipientId = entry.getValue();
+            UUID messageId = UUID.randomUUID();
+            messages.add(new Object[]{messageId, conversationId, senderId, broadcast.getCiphertext(), keyId,
+                    MessageType.TEXT.name(), sentAt, changeSeqs.get(conversationId)});
+            for (String token : tokens) {
+                searchTokens.add(new Object[]{UUID.randomUUID(), messageId, conversationId, token});
+            }
+            unreadCounts.add(new Object[]{conversationId, senderId});
+            lastMessages.add(new Object[]{messageId, senderId, sentAt, broadcast.getPreview(), sentAt,
+                    conversationId, sentAt, sentAt, messageId});
+            notifications.add(new Object[]{UUID.randomUUID(), recipientId, NotificationType.MESSAGE_ALERT.name(),
+                    title, NOTIFICATION_BODY, NotificationStatus.PENDING.name(), sentAt});
+            delivered.add(new Object[]{conversationId, messageId, broadcast.getBroadcastId(), recipientId});
+            events.add(new MessageEventResponse(MessageEventType.CREATED, conversationId, messageId, senderId,
+                    plaintext, MessageType.TEXT, sentAt, false, changeSeqs.get(conversationId)));
+        }
+
+        jdbcTemplate.batchUpdate("INSERT INTO messages (message_id, conversation_id, sender_id, message_ciphertext, key_id, " +
+                "message_type, is_deleted, is_edited, sent_at, change_seq) VALUES (?, ?, ?, ?, ?, ?, false, false, ?, ?)", messages);
+        jdbcTemplate.batchUpdate("INSERT INTO message_search_tokens (token_id, message_id, conversation_id, token) VALUES (?, ?, ?, ?)", searchTokens);
+        jdbcTemplate.batchUpdate("UPDATE conversation_participants SET unread_count = unread_count + 1 " +
+                "WHERE conversation_id = ? AND user_id <> ? AND is_active = true AND unread_count IS NOT NULL", unreadCounts);
+        // Same forward-only rule as ConversationRepository#advanceLastMessage
+        jdbcTemplate.batchUpdate("UPDATE conversations SET last_message_id = ?, last_message_sender_id = ?, last_message_at = ?, " +
+                "last_message_preview = ?, updated_at = ? WHERE conversation_id = ? AND (last_message_id IS NULL OR last_message_at < ? " +
+                "OR (last_message_at = ? AND last_message_id < ?))", lastMessages);
+        jdbcTemplate.batchUpdate("INSERT INTO notifications (notification_id, user_id, notification_type, title, message, status, created_at) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?)", notifications);
+        jdbcTemplate.batchUpdate("UPDATE broadcast_recipients SET conversation_id = ?, message_id = ? WHERE broadcast_id = ? AND user_id = ?", delivered);
+
+        // Keeps the real-time stream and the recent-message cache in step, as for a single send
+        events.forEach(eventPublisher::publishEvent);
+    }
+
+    /**
+     * Finds the sender's direct conversation with each recipient, creating the missing ones with batched inserts.
+     */
+    private Map<UUID, UUID> targetConversations(UUID senderId, List<UUID> recipients, LocalDateTime now) {
+        Map<UUID, UUID> conversationByRecipient = new HashMap<>();
+        for (Object[] row : conversationParticipantRepository.findDirectConversationsWith(senderId, recipients)) {
+            conversationByRecipient.putIfAbsent((UUID) row[0], (UUID) row[1]);
+        }
+
+        List<Object[]> conversations = new ArrayList<>();
+        List<Object[]> participants = new ArrayList<>();
+        for (UUID recipientId : recipients) {
+            if (conversationByRecipient.containsKey(recipientId)) {
+                continue;
+            }
+            UUID conversationId = UUID.randomUUID();
+            conversationByRecipient.put(recipientId, conversationId);
+            conversations.add(new Object[]{conversationId, ConversationType.DIRECT.name(), senderId, now, now, now});
+            // New participants start with a known unread count of zero; the delivery increments the recipient's
+            participants.add(new Object[]{UUID.randomUUID(), conversationId, senderId, now});
+            participants.add(new Object[]{UUID.randomUUID(), conversationId, recipientId, now});
+        }
+        if (!conversations.isEmpty()) {
+            jdbcTemplate.batchUpdate("INSERT INTO conversations (conversation_id, conversation_type, created_by, created_at, " +
+                    "updated_at, last_message_at, change_seq) VALUES (?, ?, ?, ?, ?, ?, 0)", conversations);
+            jdbcTemplate.batchUpdate("INSERT INTO conversation_participants (participant_id, conversation_id, user_id, joined_at, " +
+                    "is_active, unread_count) VALUES (?, ?, ?, ?, true, 0)", participants);
+            conversations.forEach(conversation -> membershipCache.invalidate((UUID) conversation[0]));
+        }
+        return conversationByRecipient;
+    }
+
+    private void recordError(UUID broadcastId, RuntimeException error) {
+        String message = error.getMessage();
+        String truncated = message != null && message.length() > 500 ? message.substring(0, 500) : message;
+        transactionTemplate.executeWithoutResult(status ->
+                broadcastRepository.findById(broadcastId).ifPresent(broadcast -> broadcast.setLastError(truncated)));
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.auth.service;
+
+import com.example.auth.repository.ConversationParticipantRepository;
+import com.example.auth.repository.ConversationRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * In-memory index of who takes part in each conversation, so participation checks on the messaging
+ * endpoints are answered without a database round-trip once a conversation has been seen.
+ * <p>
+ * Each entry maps participant user ids to their participant ids and carries the version stamp it was
+ * loaded under. Writers that add or remove participants call {@link #invalidate}, which bumps the
+ * conversation's stamp and drops the entry when the transaction completes; a load that overlaps such a change is not cached.
+ * Changes made on other instances are picked up when the entry expires.
+ */
+@Service
+public class ConversationMembershipCache {
+
+    private static final int STAMP_STRIPES = 1024;
+
+    private final ConversationParticipantRepository conversationParticipantRepository;
+    private final ConversationRepository conversationRepository;
+    private final ExpiringLruCache<UUID, Membership> memberships;
+    private final AtomicLongArray versionStamps = new AtomicLongArray(STAMP_STRIPES);
+
+    public ConversationMembershipCache(ConversationParticipantRepository conversationParticipantRepository,
+                                       ConversationRepository conversationRepository,
+                                       @Value("${app.messaging.membership-cache.max-conversations:10000}") int maxConversations,
+                                       @Value("${app.messaging.membership-cache.ttl-ms:60000}") long ttlMillis) {
+        this.conversationParticipantRepository = conversationParticipantRepository;
+        this.conversationRepository = conversationRepository;
+        this.memberships = new ExpiringLruCache<>(maxConversations, Duration.ofMillis(ttlMillis));
+    }
+
+    /**
+     * Returns the user's participant id in the conversation.
+     *
+     * @throws SecurityException if the user is not a participant
+     */
+    public UUID requireParticipant(UUID conversationId, UUID userId) {
+        UUID participantId = membership(conversationId).participantsByUser().get(userId);
+        if (participantId == null) {
+            throw new SecurityException("User is not a participant in this conversation.");
+        }
+        return participantId;
+    }
+
+    /**
+     * Drops the conversation's entry once the current transaction completes, or at once outside a transaction.
+     */
+    public void invalidate(UUID conversationId) {
+        versionStamps.incrementAndGet(stripe(conversationId));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    evict(conversationId);
+                }
+            });
+        } else {
+            evict(conversationId);
+        }
+    }
+
+    public long getHits() {
+        return memberships.getHits();
+    }
+
+    public long getMisses() {
+        return memberships.getMisses();
+    }
+
+    private Membership membership(UUID conversationId) {
+        long stamp = versionStamps.get(stripe(conversationId));
+        Membership cached = memberships.get(conversationId);
+        if (cached != null && cached.version() == stamp) {
+            return cached;
+        }
+
+        Map<UUID, UUID> participantsByUser = new HashMap<>();
+        for (Object[] row : conversationParticipantRepository.findParticipantIdsByConversation(conversationId)) {
+            participantsByUser.put((UUID) row[0], (UUID) row[1]);
+        }
+        if (participantsByUser.isEmpty() && !conversationRepository.existsById(conversationId)) {
+            throw new RuntimeException("Conversation not found");
+        }
+        Membership membership = new Membership(Map.copyOf(participantsByUser), stamp);
+        if (versionStamps.get(stripe(conversationId)) == stamp) {
+            memberships.put(conversationId, membership);
+        }
+        return membership;
+    }
+
+    private void evict(UUID conversationId) {
+        versionStamps.incrementAndGet(stripe(conversationId));
+        memberships.invalidate(conversationId);
+    }
+
+    private static int stripe(UUID conversationId) {
+        return (conversationId.hashCode() & Integer.MAX_VALUE) % STAMP_STRIPES;
+    }
+
+    private record Membership(Map<UUID, UUID> participantsByUser, long version) {
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.auth.service;
+
+import com.example.auth.model.DataKey;
+import com.example.auth.model.DataKeyStatus;
+import com.example.auth.repository.DataKeyRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.crypto.SecretKey;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Envelope encryption key management. Each key scope (a conversation or a broadcast) gets its own random data key,
+ * stored wrapped under the master key in {@code data_keys}. Unwrapped keys are cached in memory for a
+ * bounded time so that the master key is only used when a key is first needed.
+ * <p>
+ * Rotating a scope retires its active key; the next write creates a fresh one and the
+ * {@link MessageRekeyService} moves existing rows over in the background.
+ */
+@Service
+public class DataKeyService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DataKeyService.class);
+
+    private final DataKeyRepository dataKeyRepository;
+    private final EncryptionService encryptionService;
+    private final TransactionTemplate newTransaction;
+    private final Duration maxKeyAge;
+
+    // Unwrapped keys by key id, and the active key id by scope id
+    private final ExpiringLruCache<UUID, SecretKey> unwrappedKeys;
+    private final ExpiringLruCache<UUID, ActiveKey> activeKeys;
+
+    public DataKeyService(DataKeyRepository dataKeyRepository,
+                          EncryptionService encryptionService,
+                          PlatformTransactionManager transactionManager,
+                          @Value("${app.encryption.data-key.cache-size:10000}") int cacheSize,
+                          @Value("${app.encryption.data-key.cache-ttl-ms:600000}") long cacheTtlMillis,
+                          @Value("${app.encryption.data-key.max-age-days:90}") long maxKeyAgeDays) {
+        this.dataKeyRepository = dataKeyRepository;
+        this.encryptionService = encryptionService;
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.maxKeyAge = Duration.ofDays(maxKeyAgeDays);
+        this.unwrappedKeys = new ExpiringLruCache<>(cacheSize, Duration.ofMillis(cacheTtlMillis));
+        this.activeKeys = new ExpiringLruCache<>(cacheSize, Duration.ofMillis(cacheTtlMillis));
+    }
+
+    /**
+     * Returns the key new content in the scope should be encrypted with, creating one on first use.
+     */
+    public ActiveKey activeKeyFor(UUID scopeId) throws GeneralSecurityException {
+        ActiveKey cached = activeKeys.get(scopeId);
+        if (cached != null) {
+            return cached;
+        }
+
+        List<DataKey> keys = dataKeyRepository.findByScopeIdAndStatusOrderByCreatedAtAsc(scopeId, DataKeyStatus.ACTIVE);
+        ActiveKey activeKey;
+        if (keys.isEmpty()) {
+            activeKey = createKey(scopeId);
+        } else {
+            // Concurrent first writes may have created more than one; the oldest wins and the others stay readable
+            DataKey key = keys.get(0);
+            activeKey = new ActiveKey(key.getKeyId(), unwrap(key));
+        }
+        activeKeys.put(scopeId, activeKey);
+        return activeKey;
+    }
+
+    /**
+     * Resolves a key id from a ciphertext header to the unwrapped data key.
+     */
+    public SecretKey resolveKey(UUID keyId) throws GeneralSecurityException {
+        SecretKey cached = unwrappedKeys.get(keyId);
+        if (cached != null) {
+            return cached;
+        }
+        DataKey key = dataKeyRepository.findById(keyId)
+                .orElseThrow(() -> new GeneralSecurityException("Unknown data key " + keyId));
+        return unwrap(key);
+    }
+
+    /**
+     * Retires the scope's active key. Other instances keep using their cached copy until it expires,
+     * which is harmless: the re-keying job picks up anything written under a retired key.
+     */
+    public void rotateKey(UUID scopeId) {
+        newTransaction.executeWithoutResult(status ->
+                dataKeyRepository.retireActiveKeys(scopeId, LocalDateTime.now()));
+        activeKeys.invalidate(scopeId);
+    }
+
+    @Scheduled(initialDelayString = "${app.encryption.data-key.rotation-initial-delay-ms:60000}",
+               fixedDelayString = "${app.encryption.data-key.rotation-interval-ms:3600000}")
+    public void rotateExpiredKeys() {
+        LocalDateTime now = LocalDateTime.now();
+        Integer retired = newTransaction.execute(status ->
+                dataKeyRepository.retireKeysCreatedBefore(now.minus(maxKeyAge), now));
+        if (retired != null && retired > 0) {
+            activeKeys.clear();
+            logger.info("Retired {} data keys older than {} days", retired, maxKeyAge.toDays());
+        }
+    }
+
+    private ActiveKey createKey(UUID scopeId) throws GeneralSecurityException {
+        SecretKey secretKey = encryptionService.generateDataKey();
+        byte[] wrappedKey = encryptionService.wrapKey(secretKey);
+        // Commit the key on its own so content written under it never outlives the key row on rollback
+        DataKey key = newTransaction.execute(status -> dataKeyRepository.save(new DataKey(scopeId, wrappedKey)));
+        unwrappedKeys.put(key.getKeyId(), secretKey);
+        return new ActiveKey(key.getKeyId(), secretKey);
+    }
+
+    private SecretKey unwrap(DataKey key) throws GeneralSecurityException {
+        SecretKey cached = unwrappedKeys.get(key.getKeyId());
+        if (cached != null) {
+            return cached;
+        }
+        SecretKey secretKey = encryptionService.unwrapKey(key.getWrappedKey());
+        unwrappedKeys.put(key.getKeyId(), secretKey);
+        return secretKey;
+    }
+
+    public record ActiveKey(UUID keyId, SecretKey key) {
+    }
+}
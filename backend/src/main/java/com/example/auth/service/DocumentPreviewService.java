@@ -0,0 +1,364 @@
+package com.example.auth.service;
+
+import com.example.auth.model.DocumentBlob;
+import com.example.auth.model.PreviewStatus;
+import com.example.auth.repository.DocumentBlobRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.imageio.IIOException;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Downscaled JPEG previews of image documents, generated in the background and stored next to the
+ * original blob. As blobs are content-addressed, a preview is made once per distinct image however many
+ * documents share it.
+ * <p>
+ * Requests are queued once the upload commits, onto a small fixed pool with a bounded queue. When the
+ * queue is full the request is not waited for: the content stays pending and a periodic sweep queues it
+ * again as room frees up, so uploads never wait on preview work. Images are decoded with subsampling, so
+ * a large scan is never held in memory at full resolution. Recently served previews are kept in memory.
+ * <p>
+ * Only content that cannot be decoded as an image is marked as failed. A storage error leaves the content
+ * pending, and the sweep tries it again.
+ */
+@Service
+public class DocumentPreviewService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DocumentPreviewService.class);
+
+    private final DocumentBlobRepository documentBlobRepository;
+    private final BlobStore blobStore;
+    private final TransactionTemplate transactionTemplate;
+    private final int maxDimension;
+    private final ThreadPoolExecutor workers;
+    private final Set<String> queued = ConcurrentHashMap.newKeySet();
+    private final ExpiringLruCache<String, byte[]> previews;
+
+    private final AtomicLong generated = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong deferred = new AtomicLong();
+
+    public DocumentPreviewService(DocumentBlobRepository documentBlobRepository,
+                                  BlobStore blobStore,
+                                  PlatformTransactionManager transactionManager,
+                                  @Value("${app.documents.previews.max-dimension:320}") int maxDimension,
+                                  @Value("${app.documents.previews.workers:2}") int workerThreads,
+                                  @Value("${app.documents.previews.queue-capacity:100}") int queueCapacity,
+                                  @Value("${app.documents.previews.cache-entries:500}") int cacheEntries,
+                                  @Value("${app.documents.previews.cache-ttl-ms:3600000}") long cacheTtlMillis) {
+        this.documentBlobRepository = documentBlobRepository;
+        this.blobStore = blobStore;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxDimension = maxDimension;
+        this.previews = new ExpiringLruCache<>(cacheEntries, Duration.ofMillis(cacheTtlMillis));
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("document-preview-");
+        threadFactory.setDaemon(true);
+        threadFactory.setThreadPriority(Thread.MIN_PRIORITY);
+        this.workers = new ThreadPoolExecutor(workerThreads, workerThreads, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+        this.workers.allowCoreThreadTimeOut(true);
+    }
+
+    public static String previewKey(String storagePath) {
+        return storagePath + ".preview.jpg";
+    }
+
+    /**
+     * Marks the content as needing a preview, as part of the caller's transaction, and queues it once that
+     * commits. Content that already has a preview, or is waiting for one, is left alone.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void requestPreview(String fileHash) {
+        if (documentBlobRepository.requestPreview(fileHash, PreviewStatus.PENDING) == 0) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                enqueue(fileHash);
+            }
+        });
+    }
+
+    /**
+     * Returns the preview state of the content, first requesting a preview for image content stored before
+     * previews were generated.
+     */
+    public PreviewStatus getPreviewStatus(String fileHash) {
+        DocumentBlob blob = documentBlobRepository.findById(fileHash)
+                .orElseThrow(() -> new RuntimeException("Document content not found"));
+        if (blob.getPreviewStatus() != null) {
+            return blob.getPreviewStatus();
+        }
+        transactionTemplate.executeWithoutResult(status -> requestPreview(fileHash));
+        return PreviewStatus.PENDING;
+    }
+
+    public long getPreviewSize(String fileHash) {
+        return documentBlobRepository.findById(fileHash)
+                .map(DocumentBlob::getPreviewSize)
+                .orElseThrow(() -> new RuntimeException("Preview not available"));
+    }
+
+    public InputStream openPreview(String storagePath, long previewSize, long offset, long length) throws IOException {
+        String key = previewKey(storagePath);
+        byte[] preview = previews.get(key);
+        if (preview == null) {
+            try (InputStream in = blobStore.open(key, 0, previewSize)) {
+                preview = in.readAllBytes();
+            }
+            previews.put(key, preview);
+        }
+        return new ByteArrayInputStream(preview, (int) offset, (int) length);
+    }
+
+    /**
+     * Returns the local file holding the preview, when the store keeps blobs as files.
+     */
+    public Path localPreviewPath(String storagePath) {
+        return blobStore.localPath(previewKey(storagePath));
+    }
+
+    /**
+     * Queues pending previews that were turned away while the workers were busy, or lost with a restart.
+     */
+    @Scheduled(initialDelayString = "${app.documents.previews.sweep-initial-delay-ms:60000}",
+               fixedDelayString = "${app.documents.previews.sweep-interval-ms:60000}")
+    public void queuePending() {
+        int room = workers.getQueue().remainingCapacity();
+        if (room == 0) {
+            return;
+        }
+        for (String fileHash : documentBlobRepository.findHashesByPreviewStatus(PreviewStatus.PENDING, PageRequest.of(0, room))) {
+            enqueue(fileHash);
+        }
+    }
+
+    /**
+     * Generates the preview of pending content on the calling thread.
+     *
+     * @return whether a preview was stored
+     */
+    public boolean generate(String fileHash) {
+        DocumentBlob blob = documentBlobRepository.findById(fileHash).orElse(null);
+        if (blob == null || blob.getPreviewStatus() != PreviewStatus.PENDING) {
+            return false;
+        }
+        byte[] preview;
+        try (InputStream in = blobStore.open(blob.getStoragePath(), 0, blob.getFileSize())) {
+            preview = render(fileHash, in);
+            if (preview != null) {
+                blobStore.put(previewKey(blob.getStoragePath()), new ByteArrayInputStream(preview), preview.length);
+            }
+        } catch (IOException e) {
+            logger.warn("Could not generate preview for document content {}, leaving it for the sweep: {}", fileHash, e.getMessage());
+            deferred.incrementAndGet();
+            return false;
+        }
+
+        PreviewStatus status = preview == null ? PreviewStatus.FAILED : PreviewStatus.READY;
+        Long previewSize = preview == null ? null : (long) preview.length;
+        transactionTemplate.executeWithoutResult(tx -> documentBlobRepository.updatePreview(fileHash, status, previewSize));
+        if (preview == null) {
+            failed.incrementAndGet();
+            return false;
+        }
+        generated.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Previews stored since startup.
+     */
+    public long getGenerated() {
+        return generated.get();
+    }
+
+    /**
+     * Content found not to be a readable image since startup.
+     */
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * Requests left pending for the sweep since startup, because the queue was full or storage failed.
+     */
+    public long getDeferred() {
+        return deferred.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    private void enqueue(String fileHash) {
+        if (!queued.add(fileHash)) {
+            return;
+        }
+        try {
+            workers.execute(() -> {
+                try {
+                    generate(fileHash);
+                } finally {
+                    queued.remove(fileHash);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Left pending for the sweep
+            queued.remove(fileHash);
+            deferred.incrementAndGet();
+        }
+    }
+
+    /**
+     * Renders the thumbnail, telling content that is not a decodable image, which yields {@code null}, from
+     * failures to read the content or write the preview, which are thrown.
+     */
+    private byte[] render(String fileHash, InputStream content) throws IOException {
+        ReadTrackingInputStream tracked = new ReadTrackingInputStream(content);
+        try {
+            return renderThumbnail(tracked, maxDimension);
+        } catch (IOException | RuntimeException e) {
+            if (tracked.failure != null) {
+                throw tracked.failure;
+            }
+            if (e instanceof IOException && !(e instanceof IIOException)) {
+                throw (IOException) e;
+            }
+            // Decoders report malformed images as IIOException, and some as runtime exceptions
+            logger.warn("Document content {} is not a decodable image: {}", fileHash, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Decodes an image and scales it to fit within {@code maxDimension} pixels. Rows and columns are skipped
+     * while decoding, down to no less than twice the target size, and the rest of the way is smoothed.
+     *
+     * @return the preview as JPEG, or {@code null} if the content is not an image ImageIO can read
+     */
+    static byte[] renderThumbnail(InputStream content, int maxDimension) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(content)) {
+            if (input == null) {
+                return null;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            BufferedImage source;
+            try {
+                reader.setInput(input, true, true);
+                int longestSide = Math.max(reader.getWidth(0), reader.getHeight(0));
+                int step = Math.max(1, longestSide / (maxDimension * 2));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                source = reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+
+            double scale = Math.min(1.0, (double) maxDimension / Math.max(source.getWidth(), source.getHeight()));
+            int width = Math.max(1, (int) Math.round(source.getWidth() * scale));
+            int height = Math.max(1, (int) Math.round(source.getHeight() * scale));
+            // JPEG has no alpha channel, so transparent areas are painted white
+            BufferedImage thumbnail = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = thumbnail.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                graphics.setColor(Color.WHITE);
+                graphics.fillRect(0, 0, width, height);
+                graphics.drawImage(source, 0, 0, width, height, null);
+            } finally {
+                graphics.dispose();
+            }
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            if (!ImageIO.write(thumbnail, "jpg", out)) {
+                throw new IOException("No JPEG writer available");
+            }
+            return out.toByteArray();
+        }
+    }
+
+    /**
+     * Remembers a failure of the underlying stream, which decoders may wrap or swallow.
+     */
+    private static final class ReadTrackingInputStream extends FilterInputStream {
+
+        private IOException failure;
+
+        ReadTrackingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            try {
+                return super.read();
+            } catch (IOException e) {
+                failure = e;
+                throw e;
+            }
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            try {
+                return super.read(b, off, len);
+            } catch (IOException e) {
+                failure = e;
+                throw e;
+            }
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            try {
+                return super.skip(n);
+            } catch (IOException e) {
+                failure = e;
+                throw e;
+            }
+        }
+    }
+}
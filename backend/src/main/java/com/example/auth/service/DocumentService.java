@@ -9,11 +9,18 @@ import com.example.auth.repository.DocumentRepository;
 import com.example.auth.repository.EmployeeRepository;
 import com.example.auth.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 @Service
 public class DocumentService {
@@ -27,6 +34,15 @@ public class DocumentService {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private DocumentStorageService documentStorageService;
+
+    @Autowired
+    private DocumentPreviewService documentPreviewService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
     @Transactional
     public Document uploadDocument(UploadDocumentRequest request, User uploadedByUser) {
         Employee employee = employeeRepository.findById(request.getEmployeeId())
@@ -44,11 +60,84 @@ public class DocumentService {
         return documentRepository.save(document);
     }
 
+    /**
+     * Stores an uploaded file for an employee. The body is streamed to storage in fixed-size buffers,
+     * whatever its size, and its real size and SHA-256 are taken in the same pass. Content already stored
+     * for another document is shared rather than kept twice. The document row is written only once the
+     * content is stored, and no transaction is held while bytes move.
+     */
+    public Document uploadDocument(String documentName, String documentType, UUID employeeId, MultipartFile file,
+                                   User uploadedByUser) {
+        if (documentName == null || documentName.isBlank()) {
+            throw new IllegalArgumentException("Document name is required.");
+        }
+        if (file.isEmpty()) {
+            throw new IllegalArgumentException("Document is empty.");
+        }
+        DocumentType type = DocumentType.valueOf(documentType.toUpperCase());
+        Employee employee = employeeRepository.findById(employeeId)
+                .orElseThrow(() -> new RuntimeException("Employee not found"));
+
+        DocumentStorageService.StagedContent staged;
+        try (InputStream in = file.getInputStream()) {
+            staged = documentStorageService.stage(in, file.getSize());
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to store document", e);
+        }
+
+        Document document = new Document();
+        document.setDocumentName(documentName);
+        document.setDocumentType(type);
+        document.setFileName(UploadedFiles.fileName(file.getOriginalFilename(), "document"));
+        document.setMimeType(UploadedFiles.mimeType(file.getContentType()));
+        document.setFileSize(staged.fileSize());
+        document.setFileHash(staged.fileHash());
+        document.setEmployee(employee);
+        document.setUploadedBy(uploadedByUser);
+        return saveWithContent(document, staged, saved -> { });
+    }
+
+    /**
+     * Saves a document for staged content, sharing the stored copy if the same bytes are already stored.
+     * The staging blob is kept only if it becomes the stored copy.
+     *
+     * @param inTransaction further work to commit together with the document row
+     */
+    Document saveWithContent(Document document, DocumentStorageService.StagedContent staged, Consumer<Document> inTransaction) {
+        String claimedPath = null;
+        try {
+            Document saved = saveClaimingContent(document, staged, inTransaction);
+            claimedPath = saved.getFilePath();
+            return saved;
+        } finally {
+            documentStorageService.finishStaging(staged, claimedPath);
+        }
+    }
+
     public Document getDocument(UUID documentId) {
         return documentRepository.findById(documentId)
                 .orElseThrow(() -> new RuntimeException("Document not found"));
     }
 
+    /**
+     * Returns a document whose content can be served. Documents registered through the metadata-only
+     * endpoint have no stored content.
+     */
+    public Document getDocumentWithContent(UUID documentId) {
+        Document document = getDocument(documentId);
+        if (document.getFileHash() == null) {
+            throw new RuntimeException("Document content not found");
+        }
+        return document;
+    }
+
+    /**
+     * Whether the document belongs to the employee record of the given user.
+     */
+    public boolean isEmployeeDocument(UUID documentId, String username) {
+        return documentRepository.existsByDocumentIdAndEmployeeUserUsername(documentId, username);
+    }
+
     public List<Document> listUserDocuments(UUID userId) {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new RuntimeException("User not found"));
@@ -57,7 +146,36 @@ public class DocumentService {
         return documentRepository.findByEmployee(employee);
     }
 
+    @Transactional
     public void deleteDocument(UUID documentId) {
-        documentRepository.deleteById(documentId);
+        documentRepository.findById(documentId).ifPresent(document -> {
+            documentRepository.delete(document);
+            documentStorageService.release(document.getFileHash());
+        });
+    }
+
+    private Document saveClaimingContent(Document document, DocumentStorageService.StagedContent staged,
+                                         Consumer<Document> inTransaction) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> {
+                    document.setFilePath(documentStorageService.claim(staged));
+                    Document saved = documentRepository.save(document);
+                    if (saved.getDocumentType() == DocumentType.IMAGE) {
+                        // Generated in the background once this commits
+                        documentPreviewService.requestPreview(saved.getFileHash());
+                    }
+                    inTransaction.accept(saved);
+                    return saved;
+                });
+            } catch (DataIntegrityViolationException e) {
+                if (attempt == 2) {
+                    throw e;
+                }
+                // Another upload stored the same content first; the retry shares its copy
+                document.setDocumentId(null);
+            }
+        }
     }
 }
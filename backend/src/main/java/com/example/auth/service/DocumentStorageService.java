@@ -0,0 +1,205 @@
+package com.example.auth.service;
+
+import com.example.auth.dto.response.DocumentStorageStatsResponse;
+import com.example.auth.model.DocumentBlob;
+import com.example.auth.repository.DocumentBlobRepository;
+import com.example.auth.repository.DocumentBlobTotals;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Content-addressed storage for document bytes. Every upload is first streamed to a fresh staging blob
+ * while it is hashed, since the hash is only known once the last byte has been read. Claiming the content
+ * then either adopts the staging blob as the stored copy for that hash, or adds a reference to the copy
+ * already stored, in which case the staging blob is dropped and nothing new is kept.
+ * <p>
+ * Releasing the last reference does not delete anything. The blob is only marked as orphaned, and a
+ * scheduled collector removes orphans once their grace period has passed. This leaves time for a new
+ * upload of the same bytes to claim the blob again, and it keeps storage deletes out of the caller's transaction.
+ */
+@Service
+public class DocumentStorageService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DocumentStorageService.class);
+
+    private final DocumentBlobRepository documentBlobRepository;
+    private final BlobStore blobStore;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean gcEnabled;
+    private final long graceMinutes;
+    private final int batchSize;
+    private final int maxBatchesPerRun;
+
+    private final AtomicLong deduplicatedUploads = new AtomicLong();
+    private final AtomicLong deduplicatedBytes = new AtomicLong();
+    private final AtomicLong collectedBlobs = new AtomicLong();
+    private final AtomicLong collectedBytes = new AtomicLong();
+
+    public DocumentStorageService(DocumentBlobRepository documentBlobRepository,
+                                  BlobStore blobStore,
+                                  PlatformTransactionManager transactionManager,
+                                  @Value("${app.documents.blob-gc.enabled:true}") boolean gcEnabled,
+                                  @Value("${app.documents.blob-gc.grace-minutes:60}") long graceMinutes,
+                                  @Value("${app.documents.blob-gc.batch-size:100}") int batchSize,
+                                  @Value("${app.documents.blob-gc.max-batches-per-run:20}") int maxBatchesPerRun) {
+        this.documentBlobRepository = documentBlobRepository;
+        this.blobStore = blobStore;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.gcEnabled = gcEnabled;
+        this.graceMinutes = graceMinutes;
+        this.batchSize = batchSize;
+        this.maxBatchesPerRun = maxBatchesPerRun;
+    }
+
+    /**
+     * Streams content to a new staging blob, taking its size and SHA-256 on the way.
+     */
+    public StagedContent stage(InputStream in, long contentLength) throws IOException {
+        String storageKey = "documents/" + UUID.randomUUID();
+        HashingInputStream content = new HashingInputStream(in);
+        try {
+            blobStore.put(storageKey, content, contentLength);
+        } catch (IOException | RuntimeException e) {
+            deleteBlob(storageKey);
+            throw e;
+        }
+        return new StagedContent(storageKey, content.getSha256Hex(), content.getSize());
+    }
+
+    /**
+     * Takes a reference to the stored copy of the staged content and returns its storage path. The path is
+     * the staging blob's own unless the same bytes were already stored. If two first uploads of the same
+     * content race, the loser fails on the primary key and can retry, and the retry finds the winner's copy.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public String claim(StagedContent staged) {
+        Optional<DocumentBlob> existing = documentBlobRepository.findForUpdate(staged.fileHash());
+        if (existing.isPresent()) {
+            DocumentBlob blob = existing.get();
+            blob.setRefCount(blob.getRefCount() + 1);
+            blob.setOrphanedAt(null);
+            return blob.getStoragePath();
+        }
+        documentBlobRepository.saveAndFlush(new DocumentBlob(staged.fileHash(), staged.storageKey(), staged.fileSize(),
+                LocalDateTime.now()));
+        return staged.storageKey();
+    }
+
+    /**
+     * Called once the claim has committed, or has been given up. The staging blob is dropped unless it
+     * became the stored copy.
+     *
+     * @param claimedPath the path returned by {@link #claim}, or {@code null} if the claim did not commit
+     */
+    public void finishStaging(StagedContent staged, String claimedPath) {
+        if (staged.storageKey().equals(claimedPath)) {
+            return;
+        }
+        if (claimedPath != null) {
+            deduplicatedUploads.incrementAndGet();
+            deduplicatedBytes.addAndGet(staged.fileSize());
+        }
+        deleteBlob(staged.storageKey());
+    }
+
+    /**
+     * Drops one reference to the content with the given hash. Documents stored before content addressing have
+     * no blob entry, so nothing is released for them.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void release(String fileHash) {
+        if (fileHash != null) {
+            documentBlobRepository.release(fileHash, LocalDateTime.now());
+        }
+    }
+
+    public InputStream open(String storagePath, long offset, long length) throws IOException {
+        return blobStore.open(storagePath, offset, length);
+    }
+
+    public Path localPath(String storagePath) {
+        return blobStore.localPath(storagePath);
+    }
+
+    @Scheduled(initialDelayString = "${app.documents.blob-gc.initial-delay-ms:300000}",
+               fixedDelayString = "${app.documents.blob-gc.interval-ms:3600000}")
+    public void collectGarbage() {
+        if (!gcEnabled) {
+            return;
+        }
+        LocalDateTime orphanedBefore = LocalDateTime.now().minusMinutes(graceMinutes);
+        for (int i = 0; i < maxBatchesPerRun; i++) {
+            if (collectOrphanedBatch(orphanedBefore) < batchSize) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Removes the oldest chunk of blobs that have had no references since before the cutoff. Their rows are
+     * deleted first, so a concurrent upload of the same bytes either claims a blob before it is collected or
+     * stores a fresh copy afterwards.
+     *
+     * @return the number of blobs removed; fewer than the batch size means nothing is left to do
+     */
+    public int collectOrphanedBatch(LocalDateTime orphanedBefore) {
+        List<DocumentBlob> orphans = new ArrayList<>();
+        transactionTemplate.executeWithoutResult(status -> {
+            orphans.addAll(documentBlobRepository.findOrphansForUpdate(orphanedBefore, PageRequest.of(0, batchSize)));
+            documentBlobRepository.deleteAllInBatch(orphans);
+        });
+        long bytes = 0;
+        for (DocumentBlob orphan : orphans) {
+            deleteBlob(orphan.getStoragePath());
+            if (orphan.getPreviewStatus() != null) {
+                deleteBlob(DocumentPreviewService.previewKey(orphan.getStoragePath()));
+            }
+            bytes += orphan.getFileSize();
+        }
+        if (!orphans.isEmpty()) {
+            logger.info("Collected {} orphaned document blobs, {} bytes ({} blobs in total since startup)",
+                    orphans.size(), bytes, collectedBlobs.addAndGet(orphans.size()));
+            collectedBytes.addAndGet(bytes);
+        }
+        return orphans.size();
+    }
+
+    public DocumentStorageStatsResponse getStats() {
+        DocumentBlobTotals totals = documentBlobRepository.findTotals();
+        return new DocumentStorageStatsResponse(totals.blobCount(), totals.storedBytes(), totals.referencedBytes(),
+                totals.referencedBytes() - totals.storedBytes(),
+                deduplicatedUploads.get(), deduplicatedBytes.get(), collectedBlobs.get(), collectedBytes.get());
+    }
+
+    private void deleteBlob(String storageKey) {
+        try {
+            blobStore.delete(storageKey);
+        } catch (IOException e) {
+            logger.warn("Failed to remove document blob {}: {}", storageKey, e.getMessage());
+        }
+    }
+
+    /**
+     * Content written to a staging blob, with the size and hash taken while it was written.
+     */
+    public record StagedContent(String storageKey, String fileHash, long fileSize) {
+    }
+}
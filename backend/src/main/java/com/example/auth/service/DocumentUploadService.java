@@ -0,0 +1,354 @@
+package com.example.auth.service;
+
+import com.example.auth.dto.request.CreateDocumentUploadRequest;
+import com.example.auth.dto.response.DocumentUploadChunkResponse;
+import com.example.auth.dto.response.DocumentUploadResponse;
+import com.example.auth.exception.UploadCommitInProgressException;
+import com.example.auth.exception.UploadDiscardedException;
+import com.example.auth.model.Document;
+import com.example.auth.model.DocumentType;
+import com.example.auth.model.DocumentUpload;
+import com.example.auth.model.DocumentUploadChunk;
+import com.example.auth.model.Employee;
+import com.example.auth.model.User;
+import com.example.auth.repository.DocumentUploadChunkRepository;
+import com.example.auth.repository.DocumentUploadRepository;
+import com.example.auth.repository.EmployeeRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Resumable document uploads. A client opens an upload, sends the content as numbered fixed-size chunks
+ * in any order, possibly in parallel, asks which byte ranges have arrived after losing its connection,
+ * and commits once every chunk is in. Each chunk is streamed straight into its place in a multipart blob;
+ * no transaction is held and nothing is buffered beyond a copy buffer while bytes move.
+ * <p>
+ * Committing assembles the parts without copying them, then reads the result once to check it against
+ * the SHA-256 declared when the upload was opened. Only one commit of an upload runs at a time. Assembly
+ * consumes the parts, so a commit that fails from there on, or whose content does not match, discards the
+ * upload and the client starts a new one. Uploads with no activity for longer than the session lifetime are aborted and removed by a
+ * scheduled job; committed ones are kept until then so that a repeated commit returns the same document.
+ */
+@Service
+public class DocumentUploadService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DocumentUploadService.class);
+    // S3 requires every part but the last to be at least this large
+    private static final long MIN_CHUNK_SIZE = 5L * 1024 * 1024;
+
+    private final DocumentUploadRepository documentUploadRepository;
+    private final DocumentUploadChunkRepository documentUploadChunkRepository;
+    private final EmployeeRepository employeeRepository;
+    private final DocumentService documentService;
+    private final BlobStore blobStore;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    private final long maxFileSize;
+    private final long sessionTtlHours;
+    private final long commitTimeoutMinutes;
+    private final int batchSize;
+    private final int maxBatchesPerRun;
+
+    public DocumentUploadService(DocumentUploadRepository documentUploadRepository,
+                                 DocumentUploadChunkRepository documentUploadChunkRepository,
+                                 EmployeeRepository employeeRepository,
+                                 DocumentService documentService,
+                                 BlobStore blobStore,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${app.documents.uploads.chunk-size:8MB}") DataSize chunkSize,
+                                 @Value("${app.documents.uploads.max-file-size:2GB}") DataSize maxFileSize,
+                                 @Value("${app.documents.uploads.session-ttl-hours:24}") long sessionTtlHours,
+                                 @Value("${app.documents.uploads.commit-timeout-minutes:30}") long commitTimeoutMinutes,
+                                 @Value("${app.documents.uploads.gc-batch-size:100}") int batchSize,
+                                 @Value("${app.documents.uploads.gc-max-batches-per-run:20}") int maxBatchesPerRun) {
+        if (chunkSize.toBytes() < MIN_CHUNK_SIZE || chunkSize.toBytes() > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("app.documents.uploads.chunk-size must be between 5MB and 2GB");
+        }
+        this.documentUploadRepository = documentUploadRepository;
+        this.documentUploadChunkRepository = documentUploadChunkRepository;
+        this.employeeRepository = employeeRepository;
+        this.documentService = documentService;
+        this.blobStore = blobStore;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = (int) chunkSize.toBytes();
+        this.maxFileSize = maxFileSize.toBytes();
+        this.sessionTtlHours = sessionTtlHours;
+        this.commitTimeoutMinutes = commitTimeoutMinutes;
+        this.batchSize = batchSize;
+        this.maxBatchesPerRun = maxBatchesPerRun;
+    }
+
+    public DocumentUploadResponse createUpload(CreateDocumentUploadRequest request, User uploader) {
+        if (request.getTotalSize() > maxFileSize) {
+            throw new IllegalArgumentException("Document exceeds the maximum size of " + maxFileSize + " bytes.");
+        }
+        DocumentType type = DocumentType.valueOf(request.getDocumentType().toUpperCase());
+        if (!employeeRepository.existsById(request.getEmployeeId())) {
+            throw new RuntimeException("Employee not found");
+        }
+
+        String storageKey = "documents/" + UUID.randomUUID();
+        String multipartId;
+        try {
+            multipartId = blobStore.startMultipart(storageKey);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to start document upload", e);
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        DocumentUpload upload = new DocumentUpload();
+        upload.setStorageKey(storageKey);
+        upload.setMultipartId(multipartId);
+        upload.setEmployeeId(request.getEmployeeId());
+        upload.setUploadedBy(uploader.getUserId());
+        upload.setDocumentName(request.getDocumentName());
+        upload.setDocumentType(type);
+        upload.setFileName(UploadedFiles.fileName(request.getFileName(), "document"));
+        upload.setMimeType(UploadedFiles.mimeType(request.getMimeType()));
+        upload.setTotalSize(request.getTotalSize());
+        upload.setChunkSize(chunkSize);
+        upload.setExpectedHash(request.getSha256());
+        upload.setCreatedAt(now);
+        upload.setLastActivityAt(now);
+        documentUploadRepository.save(upload);
+        return toResponse(upload, List.of());
+    }
+
+    public DocumentUploadResponse getUpload(UUID uploadId, User user) {
+        DocumentUpload upload = requireUpload(uploadId, user);
+        return toResponse(upload, documentUploadChunkRepository.findByUploadIdOrderByChunkIndexAsc(uploadId));
+    }
+
+    /**
+     * Stores one chunk. Every chunk but the last holds exactly the upload's chunk size; a chunk sent again
+     * replaces the earlier copy.
+     *
+     * @param contentLength the request's declared body length, which must match the chunk's length
+     * @throws UploadCommitInProgressException once a commit has claimed the upload
+     */
+    public DocumentUploadChunkResponse putChunk(UUID uploadId, int chunkIndex, InputStream content, long contentLength, User user) {
+        DocumentUpload upload = requireUpload(uploadId, user);
+        if (upload.getDocumentId() != null) {
+            throw new IllegalArgumentException("Upload has already been committed.");
+        }
+        // Parts may be written in place, so a chunk arriving during a commit would land in the assembled file
+        if (upload.getCommitStartedAt() != null) {
+            throw new UploadCommitInProgressException(uploadId);
+        }
+        if (chunkIndex < 0 || chunkIndex >= upload.getTotalChunks()) {
+            throw new IllegalArgumentException("Chunk index must be between 0 and " + (upload.getTotalChunks() - 1) + ".");
+        }
+        long length = upload.getChunkLength(chunkIndex);
+        if (contentLength != length) {
+            throw new IllegalArgumentException("Chunk " + chunkIndex + " must be exactly " + length + " bytes.");
+        }
+
+        HashingInputStream hashing = new HashingInputStream(content);
+        String partTag;
+        try {
+            partTag = blobStore.putPart(upload.getStorageKey(), upload.getMultipartId(), chunkIndex + 1,
+                    (long) chunkIndex * upload.getChunkSize(), hashing, length);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to store chunk " + chunkIndex, e);
+        }
+        String sha256 = hashing.getSha256Hex();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            if (documentUploadRepository.touchUnclaimed(uploadId, now) == 0) {
+                // The commit started while the part was being written and assembles the chunks it already saw
+                throw new UploadCommitInProgressException(uploadId);
+            }
+            DocumentUploadChunk chunk = documentUploadChunkRepository.findByUploadIdAndChunkIndex(uploadId, chunkIndex)
+                    .orElseGet(() -> new DocumentUploadChunk(uploadId, chunkIndex));
+            chunk.setSize(length);
+            chunk.setSha256(sha256);
+            chunk.setPartTag(partTag);
+            chunk.setReceivedAt(now);
+            documentUploadChunkRepository.save(chunk);
+        });
+        return new DocumentUploadChunkResponse(chunkIndex, length, sha256);
+    }
+
+    /**
+     * Turns a complete upload into a document. Committing an upload again returns the same document.
+     *
+     * @throws UploadCommitInProgressException if another commit of the upload is still running
+     * @throws UploadDiscardedException if the commit failed after the parts were assembled
+     */
+    public Document commit(UUID uploadId, User user) {
+        DocumentUpload upload = requireUpload(uploadId, user);
+        if (upload.getDocumentId() != null) {
+            return documentService.getDocument(upload.getDocumentId());
+        }
+        List<DocumentUploadChunk> chunks = documentUploadChunkRepository.findByUploadIdOrderByChunkIndexAsc(uploadId);
+        if (chunks.size() != upload.getTotalChunks()) {
+            throw new IllegalArgumentException("Upload is incomplete: " + chunks.size() + " of "
+                    + upload.getTotalChunks() + " chunks received.");
+        }
+        Employee employee = employeeRepository.findById(upload.getEmployeeId())
+                .orElseThrow(() -> new RuntimeException("Employee not found"));
+
+        LocalDateTime now = LocalDateTime.now();
+        Integer claimed = transactionTemplate.execute(status ->
+                documentUploadRepository.claimForCommit(uploadId, now, now.minusMinutes(commitTimeoutMinutes)));
+        if (claimed == null || claimed == 0) {
+            // Either a concurrent commit has just finished, or it is still assembling the parts
+            UUID documentId = documentUploadRepository.findDocumentId(uploadId)
+                    .orElseThrow(() -> new UploadCommitInProgressException(uploadId));
+            return documentService.getDocument(documentId);
+        }
+
+        // Read again under the claim: a chunk sent again before it replaced its part and tag
+        List<String> partTags = new ArrayList<>();
+        for (DocumentUploadChunk chunk : documentUploadChunkRepository.findByUploadIdOrderByChunkIndexAsc(uploadId)) {
+            partTags.add(chunk.getPartTag());
+        }
+        String sha256;
+        try {
+            blobStore.completeMultipart(upload.getStorageKey(), upload.getMultipartId(), partTags);
+            try (HashingInputStream content = new HashingInputStream(blobStore.open(upload.getStorageKey(), 0, upload.getTotalSize()))) {
+                content.transferTo(OutputStream.nullOutputStream());
+                sha256 = content.getSha256Hex();
+            }
+        } catch (IOException e) {
+            discard(upload);
+            throw new UploadDiscardedException(uploadId, e);
+        }
+        if (!sha256.equals(upload.getExpectedHash())) {
+            // The parts are consumed once assembled, so the upload cannot be repaired and starts over
+            discard(upload);
+            throw new IllegalArgumentException("Uploaded content does not match the declared SHA-256.");
+        }
+
+        Document document = new Document();
+        document.setDocumentName(upload.getDocumentName());
+        document.setDocumentType(upload.getDocumentType());
+        document.setFileName(upload.getFileName());
+        document.setMimeType(upload.getMimeType());
+        document.setFileSize(upload.getTotalSize());
+        document.setFileHash(sha256);
+        document.setEmployee(employee);
+        document.setUploadedBy(user);
+        try {
+            return documentService.saveWithContent(document,
+                    new DocumentStorageService.StagedContent(upload.getStorageKey(), sha256, upload.getTotalSize()),
+                    saved -> {
+                        upload.setDocumentId(saved.getDocumentId());
+                        upload.setLastActivityAt(LocalDateTime.now());
+                        documentUploadRepository.save(upload);
+                    });
+        } catch (RuntimeException e) {
+            // The assembled blob has been released with the failed save
+            discard(upload);
+            throw new UploadDiscardedException(uploadId, e);
+        }
+    }
+
+    @Scheduled(initialDelayString = "${app.documents.uploads.gc-initial-delay-ms:600000}",
+               fixedDelayString = "${app.documents.uploads.gc-interval-ms:3600000}")
+    public void collectStaleUploads() {
+        LocalDateTime inactiveSince = LocalDateTime.now().minusHours(sessionTtlHours);
+        for (int i = 0; i < maxBatchesPerRun; i++) {
+            if (collectStaleBatch(inactiveSince) < batchSize) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Removes the oldest chunk of uploads with no activity since the cutoff. Uncommitted ones have their
+     * parts discarded first; committed ones only lose their session, as their content belongs to the document.
+     *
+     * @return the number of uploads removed; fewer than the batch size means nothing is left to do
+     */
+    public int collectStaleBatch(LocalDateTime inactiveSince) {
+        List<DocumentUpload> stale = documentUploadRepository.findStale(inactiveSince, PageRequest.of(0, batchSize));
+        List<UUID> removable = new ArrayList<>();
+        for (DocumentUpload upload : stale) {
+            if (upload.getDocumentId() == null) {
+                try {
+                    blobStore.abortMultipart(upload.getStorageKey(), upload.getMultipartId());
+                    // Present only if a commit failed after assembling the parts
+                    blobStore.delete(upload.getStorageKey());
+                } catch (IOException e) {
+                    logger.warn("Failed to discard parts of upload {}: {}", upload.getUploadId(), e.getMessage());
+                    continue;
+                }
+            }
+            removable.add(upload.getUploadId());
+        }
+        if (!removable.isEmpty()) {
+            transactionTemplate.executeWithoutResult(status -> removeUploads(removable));
+            logger.info("Removed {} stale document uploads", removable.size());
+        }
+        return removable.size();
+    }
+
+    private DocumentUpload requireUpload(UUID uploadId, User user) {
+        DocumentUpload upload = documentUploadRepository.findById(uploadId)
+                .orElseThrow(() -> new RuntimeException("Upload not found"));
+        if (!upload.getUploadedBy().equals(user.getUserId())) {
+            throw new SecurityException("User not authorized to access this upload");
+        }
+        return upload;
+    }
+
+    private void removeUploads(List<UUID> uploadIds) {
+        documentUploadChunkRepository.deleteByUploadIdIn(uploadIds);
+        documentUploadRepository.deleteAllByIdInBatch(uploadIds);
+    }
+
+    /**
+     * Drops an upload whose commit cannot be completed, with whatever is left of its parts.
+     */
+    private void discard(DocumentUpload upload) {
+        try {
+            blobStore.abortMultipart(upload.getStorageKey(), upload.getMultipartId());
+            blobStore.delete(upload.getStorageKey());
+        } catch (IOException e) {
+            // The session goes regardless; a blob left behind is never referenced
+            logger.warn("Failed to remove content of discarded upload {}: {}", upload.getUploadId(), e.getMessage());
+        }
+        transactionTemplate.executeWithoutResult(status -> removeUploads(List.of(upload.getUploadId())));
+    }
+
+    private DocumentUploadResponse toResponse(DocumentUpload upload, List<DocumentUploadChunk> chunks) {
+        List<String> ranges = new ArrayList<>();
+        long received = 0;
+        long rangeStart = -1;
+        long rangeEnd = -1;
+        for (DocumentUploadChunk chunk : chunks) {
+            long start = (long) chunk.getChunkIndex() * upload.getChunkSize();
+            if (rangeStart < 0) {
+                rangeStart = start;
+            } else if (start != rangeEnd + 1) {
+                ranges.add(rangeStart + "-" + rangeEnd);
+                rangeStart = start;
+            }
+            rangeEnd = start + chunk.getSize() - 1;
+            received += chunk.getSize();
+        }
+        if (rangeStart >= 0) {
+            ranges.add(rangeStart + "-" + rangeEnd);
+        }
+        return new DocumentUploadResponse(upload.getUploadId(), upload.getTotalSize(), upload.getChunkSize(),
+                upload.getTotalChunks(), received, ranges, upload.getLastActivityAt().plusHours(sessionTtlHours),
+                upload.getDocumentId());
+    }
+}
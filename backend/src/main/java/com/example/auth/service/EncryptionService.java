@@ -1,16 +1,30 @@
 package com.example.auth.service;
 
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
 import javax.crypto.Cipher;
+import javax.crypto.Mac;
 import javax.crypto.SecretKey;
 import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
 import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class EncryptionService {
@@ -19,56 +33,341 @@ public class EncryptionService {
     private static final int GCM_IV_LENGTH = 12; // 96 bits
     private static final int GCM_TAG_LENGTH = 128; // 128 bits
 
+    // Binary storage header: format version, algorithm id, 16-bit key id
+    private static final int BINARY_HEADER_LENGTH = 4;
+    private static final byte BINARY_FORMAT_VERSION = 1;
+    private static final byte ALGORITHM_AES_256_GCM = 1;
+    // Version 2 replaces the 16-bit key id with the 128-bit id of a wrapped data key
+    private static final int KEYED_HEADER_LENGTH = 18;
+    private static final byte BINARY_FORMAT_KEYED = 2;
+    private static final int DATA_KEY_LENGTH = 32;
+
+    // SecureRandom is thread-safe; seeding a new instance per call is expensive
+    private static final SecureRandom SECURE_RANDOM = new SecureRandom();
+
+    // Cipher instances are not thread-safe, so each thread keeps its own and re-initialises it per call
+    private static final ThreadLocal<Cipher> CIPHERS = ThreadLocal.withInitial(() -> {
+        try {
+            return Cipher.getInstance(ENCRYPTION_ALGORITHM);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("AES/GCM is not available", e);
+        }
+    });
+
+    private static final int DEFAULT_PARALLEL_THRESHOLD = 32;
+
+    private static final String BLIND_INDEX_ALGORITHM = "HmacSHA256";
+    private static final int BLIND_INDEX_TOKEN_BYTES = 16;
+
     private final SecretKey secretKey;
+    private final ThreadLocal<Mac> blindIndexMacs;
+    private final int parallelThreshold;
+    private final int batchParallelism;
+    private final ThreadPoolExecutor batchExecutor;
+
+    public EncryptionService(String secret) throws Exception {
+        this(secret, DEFAULT_PARALLEL_THRESHOLD, 0);
+    }
 
-    public EncryptionService(@Value("${app.encryption.secret-key}") String secret) throws Exception {
+    @Autowired
+    public EncryptionService(@Value("${app.encryption.secret-key}") String secret,
+                             @Value("${app.encryption.batch.parallel-threshold:32}") int parallelThreshold,
+                             @Value("${app.encryption.batch.threads:0}") int batchThreads) throws Exception {
         // Derive a 256-bit key from the configured secret using SHA-256
         MessageDigest digest = MessageDigest.getInstance("SHA-256");
         byte[] keyBytes = digest.digest(secret.getBytes(StandardCharsets.UTF_8));
         this.secretKey = new SecretKeySpec(keyBytes, "AES");
+
+        // The blind-index key is derived separately so search tokens never share key material with message encryption
+        byte[] indexKeyBytes = MessageDigest.getInstance("SHA-256")
+                .digest(("blind-index:" + secret).getBytes(StandardCharsets.UTF_8));
+        SecretKey blindIndexKey = new SecretKeySpec(indexKeyBytes, BLIND_INDEX_ALGORITHM);
+        this.blindIndexMacs = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance(BLIND_INDEX_ALGORITHM);
+                mac.init(blindIndexKey);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("HmacSHA256 is not available", e);
+            }
+        });
+
+        this.parallelThreshold = Math.max(1, parallelThreshold);
+        this.batchParallelism = batchThreads > 0 ? batchThreads : Runtime.getRuntime().availableProcessors();
+        // Bounded pool and queue; when saturated the caller decrypts the chunk itself
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("batch-decrypt-");
+        threadFactory.setDaemon(true);
+        this.batchExecutor = new ThreadPoolExecutor(batchParallelism, batchParallelism, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(batchParallelism * 4), threadFactory, new ThreadPoolExecutor.CallerRunsPolicy());
+        this.batchExecutor.allowCoreThreadTimeOut(true);
     }
 
     public String encrypt(String plaintext) throws Exception {
         if (plaintext == null) {
             return null;
         }
-        byte[] iv = new byte[GCM_IV_LENGTH];
-        SecureRandom random = new SecureRandom();
-        random.nextBytes(iv);
+        return Base64.getEncoder().encodeToString(encryptBytes(plaintext.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    public String decrypt(String base64CipherText) throws Exception {
+        if (base64CipherText == null) {
+            return null;
+        }
+        return new String(decryptBytes(Base64.getDecoder().decode(base64CipherText)), StandardCharsets.UTF_8);
+    }
 
-        Cipher cipher = Cipher.getInstance(ENCRYPTION_ALGORITHM);
-        GCMParameterSpec gcmParameterSpec = new GCMParameterSpec(GCM_TAG_LENGTH, iv);
-        cipher.init(Cipher.ENCRYPT_MODE, secretKey, gcmParameterSpec);
+    /**
+     * Encrypts raw bytes into the {@code IV || ciphertext || tag} layout used by {@link #encrypt(String)},
+     * minus the Base64 step. The result is written into a single array without intermediate copies.
+     */
+    public byte[] encryptBytes(byte[] plaintext) throws GeneralSecurityException {
+        if (plaintext == null) {
+            return null;
+        }
+        byte[] iv = new byte[GCM_IV_LENGTH];
+        SECURE_RANDOM.nextBytes(iv);
 
-        byte[] cipherText = cipher.doFinal(plaintext.getBytes(StandardCharsets.UTF_8));
+        Cipher cipher = CIPHERS.get();
+        cipher.init(Cipher.ENCRYPT_MODE, secretKey, new GCMParameterSpec(GCM_TAG_LENGTH, iv));
 
         // Prepend IV to ciphertext
-        ByteBuffer byteBuffer = ByteBuffer.allocate(iv.length + cipherText.length);
-        byteBuffer.put(iv);
-        byteBuffer.put(cipherText);
+        byte[] output = new byte[GCM_IV_LENGTH + cipher.getOutputSize(plaintext.length)];
+        System.arraycopy(iv, 0, output, 0, GCM_IV_LENGTH);
+        cipher.doFinal(plaintext, 0, plaintext.length, output, GCM_IV_LENGTH);
+        return output;
+    }
 
-        return Base64.getEncoder().encodeToString(byteBuffer.array());
+    public byte[] decryptBytes(byte[] payload) throws GeneralSecurityException {
+        if (payload == null) {
+            return null;
+        }
+        if (payload.length < GCM_IV_LENGTH) {
+            throw new GeneralSecurityException("Ciphertext is too short");
+        }
+        Cipher cipher = CIPHERS.get();
+        cipher.init(Cipher.DECRYPT_MODE, secretKey, new GCMParameterSpec(GCM_TAG_LENGTH, payload, 0, GCM_IV_LENGTH));
+        return cipher.doFinal(payload, GCM_IV_LENGTH, payload.length - GCM_IV_LENGTH);
     }
 
-    public String decrypt(String base64CipherText) throws Exception {
-        if (base64CipherText == null) {
+    /**
+     * Decrypts an {@code IV || ciphertext || tag} payload from the buffer's position to its limit.
+     * Heap and direct buffers are both supported; the buffer's position is advanced to its limit.
+     */
+    public byte[] decryptBytes(ByteBuffer payload) throws GeneralSecurityException {
+        if (payload.remaining() < GCM_IV_LENGTH) {
+            throw new GeneralSecurityException("Ciphertext is too short");
+        }
+        byte[] iv = new byte[GCM_IV_LENGTH];
+        payload.get(iv);
+        Cipher cipher = CIPHERS.get();
+        cipher.init(Cipher.DECRYPT_MODE, secretKey, new GCMParameterSpec(GCM_TAG_LENGTH, iv));
+        ByteBuffer plaintext = ByteBuffer.allocate(cipher.getOutputSize(payload.remaining()));
+        int written = cipher.doFinal(payload, plaintext);
+        return written == plaintext.capacity() ? plaintext.array() : Arrays.copyOf(plaintext.array(), written);
+    }
+
+    /**
+     * Encrypts text into the compact binary storage format: a 4-byte header
+     * (format version, algorithm id, 16-bit key id) followed by {@code IV || ciphertext || tag}.
+     * The master key is used; see {@link #encryptBinary(String, UUID, SecretKey)} for data keys.
+     */
+    public byte[] encryptBinary(String plaintext) throws GeneralSecurityException {
+        if (plaintext == null) {
             return null;
         }
-        byte[] decodedCipher = Base64.getDecoder().decode(base64CipherText);
+        return toBinary(encryptBytes(plaintext.getBytes(StandardCharsets.UTF_8)));
+    }
 
-        ByteBuffer byteBuffer = ByteBuffer.wrap(decodedCipher);
+    /**
+     * Encrypts text under a data key. The header carries format version 2 and the data key's id
+     * ({@code [2][alg][16-byte key id]}) so the row can be decrypted, and later re-keyed, without
+     * knowing which conversation it belongs to.
+     */
+    public byte[] encryptBinary(String plaintext, UUID keyId, SecretKey dataKey) throws GeneralSecurityException {
+        if (plaintext == null) {
+            return null;
+        }
+        byte[] input = plaintext.getBytes(StandardCharsets.UTF_8);
         byte[] iv = new byte[GCM_IV_LENGTH];
-        byteBuffer.get(iv);
+        SECURE_RANDOM.nextBytes(iv);
+
+        Cipher cipher = CIPHERS.get();
+        cipher.init(Cipher.ENCRYPT_MODE, dataKey, new GCMParameterSpec(GCM_TAG_LENGTH, iv));
+
+        byte[] stored = new byte[KEYED_HEADER_LENGTH + GCM_IV_LENGTH + cipher.getOutputSize(input.length)];
+        ByteBuffer.wrap(stored)
+                .put(BINARY_FORMAT_KEYED)
+                .put(ALGORITHM_AES_256_GCM)
+                .putLong(keyId.getMostSignificantBits())
+                .putLong(keyId.getLeastSignificantBits())
+                .put(iv);
+        cipher.doFinal(input, 0, input.length, stored, KEYED_HEADER_LENGTH + GCM_IV_LENGTH);
+        return stored;
+    }
 
-        byte[] cipherText = new byte[byteBuffer.remaining()];
-        byteBuffer.get(cipherText);
+    /**
+     * Decrypts binary content written under the master key. Content written under a data key needs
+     * {@link #decryptBinary(byte[], KeyResolver)}.
+     */
+    public String decryptBinary(byte[] stored) throws GeneralSecurityException {
+        return decryptBinary(stored, keyId -> {
+            throw new GeneralSecurityException("No data key resolver for key " + keyId);
+        });
+    }
+
+    public String decryptBinary(byte[] stored, KeyResolver keyResolver) throws GeneralSecurityException {
+        if (stored == null) {
+            return null;
+        }
+        int headerLength = checkBinaryHeader(stored);
+        SecretKey key = headerLength == BINARY_HEADER_LENGTH ? secretKey : keyResolver.resolve(readKeyId(stored));
+        Cipher cipher = CIPHERS.get();
+        cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(GCM_TAG_LENGTH, stored, headerLength, GCM_IV_LENGTH));
+        int offset = headerLength + GCM_IV_LENGTH;
+        return new String(cipher.doFinal(stored, offset, stored.length - offset), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the data key id from a binary ciphertext header, or {@code null} for content written
+     * under the master key.
+     */
+    public static UUID readKeyId(byte[] stored) {
+        if (stored == null || stored.length < KEYED_HEADER_LENGTH || stored[0] != BINARY_FORMAT_KEYED) {
+            return null;
+        }
+        ByteBuffer header = ByteBuffer.wrap(stored, 2, 16);
+        return new UUID(header.getLong(), header.getLong());
+    }
+
+    /**
+     * Converts a legacy Base64 ciphertext into the binary storage format without decrypting it.
+     */
+    public byte[] legacyToBinary(String base64CipherText) {
+        return toBinary(Base64.getDecoder().decode(base64CipherText));
+    }
+
+    /**
+     * Generates a fresh random AES-256 data key.
+     */
+    public SecretKey generateDataKey() {
+        byte[] keyBytes = new byte[DATA_KEY_LENGTH];
+        SECURE_RANDOM.nextBytes(keyBytes);
+        return new SecretKeySpec(keyBytes, "AES");
+    }
+
+    /**
+     * Wraps a data key under the master key for storage. The wrapped form is {@code IV || ciphertext || tag}.
+     */
+    public byte[] wrapKey(SecretKey dataKey) throws GeneralSecurityException {
+        return encryptBytes(dataKey.getEncoded());
+    }
+
+    public SecretKey unwrapKey(byte[] wrappedKey) throws GeneralSecurityException {
+        byte[] keyBytes = decryptBytes(wrappedKey);
+        if (keyBytes.length != DATA_KEY_LENGTH) {
+            throw new GeneralSecurityException("Unwrapped data key has unexpected length " + keyBytes.length);
+        }
+        return new SecretKeySpec(keyBytes, "AES");
+    }
+
+    private static byte[] toBinary(byte[] payload) {
+        byte[] stored = new byte[BINARY_HEADER_LENGTH + payload.length];
+        stored[0] = BINARY_FORMAT_VERSION;
+        stored[1] = ALGORITHM_AES_256_GCM;
+        stored[2] = 0; // key id, high byte
+        stored[3] = 0; // key id, low byte
+        System.arraycopy(payload, 0, stored, BINARY_HEADER_LENGTH, payload.length);
+        return stored;
+    }
 
-        Cipher cipher = Cipher.getInstance(ENCRYPTION_ALGORITHM);
-        GCMParameterSpec gcmParameterSpec = new GCMParameterSpec(GCM_TAG_LENGTH, iv);
-        cipher.init(Cipher.DECRYPT_MODE, secretKey, gcmParameterSpec);
+    /**
+     * Validates the header and returns its length.
+     */
+    private static int checkBinaryHeader(byte[] stored) throws GeneralSecurityException {
+        int headerLength = stored.length > 0 && stored[0] == BINARY_FORMAT_KEYED ? KEYED_HEADER_LENGTH : BINARY_HEADER_LENGTH;
+        if (stored.length < headerLength + GCM_IV_LENGTH) {
+            throw new GeneralSecurityException("Ciphertext is too short");
+        }
+        if ((stored[0] != BINARY_FORMAT_VERSION && stored[0] != BINARY_FORMAT_KEYED) || stored[1] != ALGORITHM_AES_256_GCM) {
+            throw new GeneralSecurityException("Unsupported ciphertext format " + stored[0] + "/" + stored[1]);
+        }
+        return headerLength;
+    }
+
+    /**
+     * Computes the deterministic blind-index token for an already normalized search term:
+     * a truncated HMAC-SHA256, URL-safe Base64 encoded.
+     */
+    public String blindIndex(String normalizedTerm) {
+        byte[] mac = blindIndexMacs.get().doFinal(normalizedTerm.getBytes(StandardCharsets.UTF_8));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(mac, BLIND_INDEX_TOKEN_BYTES));
+    }
+
+    /**
+     * Decrypts a batch of Base64 ciphertexts, preserving order. Items that fail to decrypt are replaced
+     * with {@code fallback} rather than failing the batch.
+     */
+    public List<String> decryptAll(List<String> ciphertexts, String fallback) {
+        return decryptAll(ciphertexts, this::decrypt, fallback);
+    }
+
+    /**
+     * Decrypts a batch of items with the given decryptor, preserving order. Batches of at least the configured
+     * threshold are split into chunks and decrypted on a bounded pool, with the calling thread taking the first
+     * chunk. Items that fail to decrypt are replaced with {@code fallback} rather than failing the batch.
+     */
+    public <T> List<String> decryptAll(List<T> items, Decryptor<T> decryptor, String fallback) {
+        int size = items.size();
+        String[] plaintexts = new String[size];
+        if (size < parallelThreshold || batchParallelism == 1) {
+            decryptRange(items, decryptor, plaintexts, 0, size, fallback);
+            return Arrays.asList(plaintexts);
+        }
+
+        int chunkSize = (size + batchParallelism - 1) / batchParallelism;
+        List<Future<?>> pending = new ArrayList<>();
+        for (int from = chunkSize; from < size; from += chunkSize) {
+            int start = from;
+            int end = Math.min(size, from + chunkSize);
+            pending.add(batchExecutor.submit(() -> decryptRange(items, decryptor, plaintexts, start, end, fallback)));
+        }
+        decryptRange(items, decryptor, plaintexts, 0, Math.min(size, chunkSize), fallback);
+
+        for (Future<?> future : pending) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while decrypting batch", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Batch decryption failed", e.getCause());
+            }
+        }
+        return Arrays.asList(plaintexts);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        batchExecutor.shutdown();
+    }
 
-        byte[] plainTextBytes = cipher.doFinal(cipherText);
+    private <T> void decryptRange(List<T> items, Decryptor<T> decryptor, String[] plaintexts, int from, int to, String fallback) {
+        for (int i = from; i < to; i++) {
+            try {
+                plaintexts[i] = decryptor.decrypt(items.get(i));
+            } catch (Exception e) {
+                plaintexts[i] = fallback;
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface Decryptor<T> {
+        String decrypt(T item) throws Exception;
+    }
 
-        return new String(plainTextBytes, StandardCharsets.UTF_8);
+    @FunctionalInterface
+    public interface KeyResolver {
+        SecretKey resolve(UUID keyId) throws GeneralSecurityException;
     }
 }
@@ -0,0 +1,95 @@
+package com.example.auth.service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A small in-memory cache bounded both by entry count (least recently used entries are evicted first)
+ * and by age (entries older than the time-to-live are treated as absent). All operations lock the
+ * cache, so it is meant for cheap lookups, not for holding a lock while loading a value.
+ */
+class ExpiringLruCache<K, V> {
+
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final Clock clock;
+    private final LinkedHashMap<K, Entry<V>> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    ExpiringLruCache(int maxEntries, Duration ttl) {
+        this(maxEntries, ttl, Clock.systemUTC());
+    }
+
+    ExpiringLruCache(int maxEntries, Duration ttl, Clock clock) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("Cache size must be positive.");
+        }
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttl.toMillis();
+        this.clock = clock;
+        // Access order makes iteration order least recently used first
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                boolean evict = size() > ExpiringLruCache.this.maxEntries;
+                if (evict) {
+                    evictions.incrementAndGet();
+                }
+                return evict;
+            }
+        };
+    }
+
+    synchronized V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        if (clock.millis() - entry.createdAt >= ttlMillis) {
+            entries.remove(key);
+            evictions.incrementAndGet();
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.value;
+    }
+
+    synchronized void put(K key, V value) {
+        entries.put(key, new Entry<>(value, clock.millis()));
+    }
+
+    synchronized void invalidate(K key) {
+        entries.remove(key);
+    }
+
+    synchronized void clear() {
+        entries.clear();
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    long getHits() {
+        return hits.get();
+    }
+
+    long getMisses() {
+        return misses.get();
+    }
+
+    long getEvictions() {
+        return evictions.get();
+    }
+
+    private record Entry<V>(V value, long createdAt) {
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.auth.service;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Passes a stream through while counting its bytes and computing their SHA-256, so uploads get their
+ * size and hash in the same pass that stores them.
+ */
+class HashingInputStream extends FilterInputStream {
+
+    private final MessageDigest digest;
+    private long size;
+
+    HashingInputStream(InputStream in) {
+        super(in);
+        try {
+            this.digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b >= 0) {
+            digest.update((byte) b);
+            size++;
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int read = super.read(b, off, len);
+        if (read > 0) {
+            digest.update(b, off, read);
+            size += read;
+        }
+        return read;
+    }
+
+    // Skipped bytes would be missing from the hash, so they are read instead
+    @Override
+    public long skip(long n) throws IOException {
+        byte[] buffer = new byte[(int) Math.min(n, 8192)];
+        long skipped = 0;
+        while (skipped < n) {
+            int read = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+            if (read < 0) {
+                break;
+            }
+            skipped += read;
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    long getSize() {
+        return size;
+    }
+
+    /**
+     * Hex SHA-256 of everything read. Call once, after the stream has been consumed.
+     */
+    String getSha256Hex() {
+        return HexFormat.of().formatHex(digest.digest());
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.auth.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * {@link BlobStore} on the local filesystem, the default. Blobs are written to a temporary file next to
+ * their target and moved into place, so a failed upload never leaves a partial blob under its key.
+ * Multipart blobs are assembled in a single file under {@code .multipart}, each part written at its
+ * own offset, and moved into place when completed.
+ */
+@Service
+@ConditionalOnProperty(name = "app.storage.type", havingValue = "local", matchIfMissing = true)
+public class LocalBlobStore implements BlobStore {
+
+    private static final String MULTIPART_DIRECTORY = ".multipart";
+    private static final int PART_BUFFER_SIZE = 64 * 1024;
+
+    private final Path root;
+
+    public LocalBlobStore(@Value("${app.storage.local.root:${java.io.tmpdir}/j-vaka-blobs}") String root) {
+        this.root = Paths.get(root).toAbsolutePath().normalize();
+    }
+
+    @Override
+    public void put(String key, InputStream content, long contentLength) throws IOException {
+        Path target = resolve(key);
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), ".upload-", ".tmp");
+        try {
+            Files.copy(content, temp, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public InputStream open(String key, long offset, long length) throws IOException {
+        SeekableByteChannel channel = Files.newByteChannel(resolve(key), StandardOpenOption.READ);
+        try {
+            channel.position(offset);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return new LimitedInputStream(Channels.newInputStream(channel), length);
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        Files.deleteIfExists(resolve(key));
+    }
+
+    @Override
+    public String startMultipart(String key) throws IOException {
+        String uploadId = UUID.randomUUID().toString();
+        Path parts = partsFile(uploadId);
+        Files.createDirectories(parts.getParent());
+        Files.createFile(parts);
+        return uploadId;
+    }
+
+    @Override
+    public String putPart(String key, String uploadId, int partNumber, long offset, InputStream content, long length)
+            throws IOException {
+        // Parts are written in place, so out-of-order parts leave a sparse file until the gaps are filled
+        try (FileChannel channel = FileChannel.open(partsFile(uploadId), StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(PART_BUFFER_SIZE);
+            long written = 0;
+            while (written < length) {
+                int read = content.read(buffer.array(), 0, (int) Math.min(buffer.capacity(), length - written));
+                if (read < 0) {
+                    throw new IOException("Part " + partNumber + " ended after " + written + " of " + length + " bytes");
+                }
+                buffer.limit(read);
+                while (buffer.hasRemaining()) {
+                    written += channel.write(buffer, offset + written);
+                }
+                buffer.clear();
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void completeMultipart(String key, String uploadId, List<String> partTags) throws IOException {
+        Path target = resolve(key);
+        Files.createDirectories(target.getParent());
+        Files.move(partsFile(uploadId), target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public void abortMultipart(String key, String uploadId) throws IOException {
+        Files.deleteIfExists(partsFile(uploadId));
+    }
+
+    @Override
+    public Path localPath(String key) {
+        return resolve(key);
+    }
+
+    private Path partsFile(String uploadId) {
+        // Upload ids are generated here, so anything else is refused before it reaches the filesystem
+        return root.resolve(MULTIPART_DIRECTORY).resolve(UUID.fromString(uploadId) + ".parts");
+    }
+
+    private Path resolve(String key) {
+        Path path = root.resolve(key).normalize();
+        if (!path.startsWith(root) || path.equals(root)) {
+            throw new IllegalArgumentException("Invalid storage key: " + key);
+        }
+        return path;
+    }
+
+    /**
+     * Ends the stream after a fixed number of bytes.
+     */
+    private static final class LimitedInputStream extends FilterInputStream {
+        private long remaining;
+
+        LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = super.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = super.read(b, off, (int) Math.min(len, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(super.available(), remaining);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+}
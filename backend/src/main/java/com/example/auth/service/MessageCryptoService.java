@@ -0,0 +1,90 @@
+package com.example.auth.service;
+
+import com.example.auth.model.Message;
+import com.example.auth.repository.MessageRow;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Decides how message content is stored at rest. New content is written in the binary format when
+ * {@code app.messaging.storage-format=binary} (the default), encrypted under the conversation's data key;
+ * rows in the legacy Base64 text column, and binary rows written under the master key, stay readable
+ * until the background jobs convert and re-key them.
+ */
+@Service
+public class MessageCryptoService {
+
+    private final EncryptionService encryptionService;
+    private final DataKeyService dataKeyService;
+    private final boolean binaryStorage;
+
+    public MessageCryptoService(EncryptionService encryptionService,
+                                DataKeyService dataKeyService,
+                                @Value("${app.messaging.storage-format:binary}") String storageFormat) {
+        this.encryptionService = encryptionService;
+        this.dataKeyService = dataKeyService;
+        this.binaryStorage = !"text".equalsIgnoreCase(storageFormat);
+    }
+
+    public void encryptContent(Message message, String plaintext) throws Exception {
+        if (binaryStorage) {
+            DataKeyService.ActiveKey dataKey = dataKeyService.activeKeyFor(message.getConversation().getConversationId());
+            message.setCiphertext(encryptionService.encryptBinary(plaintext, dataKey.keyId(), dataKey.key()));
+            message.setKeyId(dataKey.keyId());
+            message.setMessageContent(null);
+        } else {
+            message.setMessageContent(encryptionService.encrypt(plaintext));
+            message.setCiphertext(null);
+            message.setKeyId(null);
+        }
+    }
+
+    public String decryptContent(Message message) throws Exception {
+        return decryptContent(message.getCiphertext(), message.getMessageContent());
+    }
+
+    /**
+     * Decrypts stored content given the raw column values, for callers that read rows without loading entities.
+     */
+    public String decryptContent(byte[] ciphertext, String legacyContent) throws Exception {
+        if (ciphertext != null) {
+            return encryptionService.decryptBinary(ciphertext, dataKeyService::resolveKey);
+        }
+        return encryptionService.decrypt(legacyContent);
+    }
+
+    public List<String> decryptContents(List<Message> messages, String fallback) {
+        return encryptionService.decryptAll(messages, this::decryptContent, fallback);
+    }
+
+    public List<String> decryptRows(List<MessageRow> rows, String fallback) {
+        return encryptionService.decryptAll(rows, row -> decryptContent(row.ciphertext(), row.messageContent()), fallback);
+    }
+
+    /**
+     * Encrypts a conversation-list preview. Previews always use the binary format under the conversation's data key.
+     */
+    public byte[] encryptPreview(UUID conversationId, String preview) throws Exception {
+        return encryptForConversation(conversationId, preview);
+    }
+
+    /**
+     * Encrypts text in the binary format under the conversation's active data key, whatever the storage format.
+     */
+    public byte[] encryptForConversation(UUID conversationId, String plaintext) throws Exception {
+        DataKeyService.ActiveKey dataKey = dataKeyService.activeKeyFor(conversationId);
+        return encryptionService.encryptBinary(plaintext, dataKey.keyId(), dataKey.key());
+    }
+
+    public List<String> decryptPreviews(List<byte[]> previews, String fallback) {
+        return encryptionService.decryptAll(previews,
+                preview -> encryptionService.decryptBinary(preview, dataKeyService::resolveKey), fallback);
+    }
+
+    public boolean isBinaryStorage() {
+        return binaryStorage;
+    }
+}
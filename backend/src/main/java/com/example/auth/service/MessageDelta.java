@@ -0,0 +1,49 @@
+package com.example.auth.service;
+
+/**
+ * Text delta between two versions of a message, encoded as {@code <prefix>:<suffix>:<inserted>}: keep the
+ * first {@code prefix} and last {@code suffix} characters of the previous version and put {@code inserted}
+ * between them. Typical edits (a corrected word, an appended sentence) encode to a few characters.
+ * <p>
+ * The kept ends never split a surrogate pair, so the inserted text is always valid UTF-16 and survives
+ * the UTF-8 encoding applied before encryption.
+ */
+final class MessageDelta {
+
+    private MessageDelta() {
+    }
+
+    static String diff(String from, String to) {
+        int max = Math.min(from.length(), to.length());
+        int prefix = 0;
+        while (prefix < max && from.charAt(prefix) == to.charAt(prefix)) {
+            prefix++;
+        }
+        if (prefix > 0 && Character.isHighSurrogate(from.charAt(prefix - 1))) {
+            prefix--;
+        }
+        int suffix = 0;
+        while (suffix < max - prefix
+                && from.charAt(from.length() - 1 - suffix) == to.charAt(to.length() - 1 - suffix)) {
+            suffix++;
+        }
+        if (suffix > 0 && Character.isLowSurrogate(from.charAt(from.length() - suffix))) {
+            suffix--;
+        }
+        return prefix + ":" + suffix + ":" + to.substring(prefix, to.length() - suffix);
+    }
+
+    static String apply(String base, String delta) {
+        int first = delta.indexOf(':');
+        int second = delta.indexOf(':', first + 1);
+        if (first < 0 || second < 0) {
+            throw new IllegalStateException("Malformed message delta");
+        }
+        int prefix = Integer.parseInt(delta.substring(0, first));
+        int suffix = Integer.parseInt(delta.substring(first + 1, second));
+        if (prefix + suffix > base.length()) {
+            throw new IllegalStateException("Message delta does not match its base version");
+        }
+        return base.substring(0, prefix) + delta.substring(second + 1) + base.substring(base.length() - suffix);
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.auth.service;
+
+import com.example.auth.dto.response.MessageVersionResponse;
+import com.example.auth.model.Message;
+import com.example.auth.model.MessageVersion;
+import com.example.auth.model.User;
+import com.example.auth.repository.ArchivedMessageRepository;
+import com.example.auth.repository.MessageRepository;
+import com.example.auth.repository.MessageVersionRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Keeps every version of edited messages. Each edit stores an encrypted delta against the previous
+ * version; a full snapshot is stored instead when the delta would not be smaller, and whenever the chain
+ * since the last snapshot would reach {@code app.messaging.edit-history.max-chain-length}. Rebuilding
+ * any version therefore reads and decrypts at most that many rows, in one query.
+ * <p>
+ * History starts with the first edit, which also stores the original content as version 1. Versions are
+ * kept when retention archives a message, and stay readable through the archived row.
+ */
+@Service
+public class MessageHistoryService {
+
+    private final MessageVersionRepository messageVersionRepository;
+    private final MessageRepository messageRepository;
+    private final ArchivedMessageRepository archivedMessageRepository;
+    private final MessageCryptoService messageCryptoService;
+    private final ConversationMembershipCache membershipCache;
+    private final int maxChainLength;
+
+    public MessageHistoryService(MessageVersionRepository messageVersionRepository,
+                                 MessageRepository messageRepository,
+                                 ArchivedMessageRepository archivedMessageRepository,
+                                 MessageCryptoService messageCryptoService,
+                                 ConversationMembershipCache membershipCache,
+                                 @Value("${app.messaging.edit-history.max-chain-length:8}") int maxChainLength) {
+        this.messageVersionRepository = messageVersionRepository;
+        this.messageRepository = messageRepository;
+        this.archivedMessageRepository = archivedMessageRepository;
+        this.messageCryptoService = messageCryptoService;
+        this.membershipCache = membershipCache;
+        this.maxChainLength = Math.max(1, maxChainLength);
+    }
+
+    /**
+     * Records an edit of the message, given its content before and after. Runs in the edit's transaction.
+     */
+    void recordEdit(Message message, String previousContent, String newContent, UUID editorId) {
+        UUID messageId = message.getMessageId();
+        UUID conversationId = message.getConversation().getConversationId();
+        MessageVersion latest = messageVersionRepository.findTopByMessageIdOrderByVersionDesc(messageId).orElse(null);
+        if (latest == null) {
+            latest = messageVersionRepository.save(new MessageVersion(messageId, 1, 0,
+                    encrypt(conversationId, previousContent), message.getSender().getUserId(), message.getSentAt()));
+        }
+
+        int deltaDepth = latest.getDeltaDepth() + 1;
+        String delta = MessageDelta.diff(previousContent, newContent);
+        boolean snapshot = deltaDepth >= maxChainLength || delta.length() >= newContent.length();
+        messageVersionRepository.save(new MessageVersion(messageId, latest.getVersion() + 1, snapshot ? 0 : deltaDepth,
+                encrypt(conversationId, snapshot ? newContent : delta), editorId, LocalDateTime.now()));
+    }
+
+    /**
+     * Lists the message's versions, oldest first, without their content.
+     */
+    @Transactional(readOnly = true)
+    public List<MessageVersionResponse> listVersions(UUID messageId, User user) {
+        StoredMessage message = requireReadableMessage(messageId, user);
+        List<MessageVersionResponse> versions = new ArrayList<>();
+        for (Object[] row : messageVersionRepository.findVersionInfo(messageId)) {
+            versions.add(new MessageVersionResponse(messageId, (Integer) row[0], (UUID) row[1], (LocalDateTime) row[2], null));
+        }
+        if (versions.isEmpty()) {
+            versions.add(new MessageVersionResponse(messageId, 1, message.senderId(), message.sentAt(), null));
+        }
+        return versions;
+    }
+
+    /**
+     * Rebuilds one version of the message from its nearest snapshot.
+     */
+    @Transactional(readOnly = true)
+    public MessageVersionResponse getVersion(UUID messageId, int version, User user) {
+        StoredMessage message = requireReadableMessage(messageId, user);
+        List<MessageVersion> chain = messageVersionRepository.findRebuildChain(messageId, version);
+        if (chain.isEmpty()) {
+            // Unknown version, or a message never edited whose only version is its current content
+            if (version != 1) {
+                throw new RuntimeException("Message version not found");
+            }
+            return new MessageVersionResponse(messageId, 1, message.senderId(), message.sentAt(),
+                    decrypt(message.ciphertext(), message.legacyContent()));
+        }
+
+        String content = decrypt(chain.get(0).getCiphertext(), null);
+        for (MessageVersion delta : chain.subList(1, chain.size())) {
+            content = MessageDelta.apply(content, decrypt(delta.getCiphertext(), null));
+        }
+        MessageVersion target = chain.get(chain.size() - 1);
+        return new MessageVersionResponse(messageId, target.getVersion(), target.getEditedBy(), target.getEditedAt(), content);
+    }
+
+    /**
+     * Finds the message among live messages first, then among archived ones.
+     */
+    private StoredMessage requireReadableMessage(UUID messageId, User user) {
+        StoredMessage message = messageRepository.findById(messageId)
+                .filter(m -> !Boolean.TRUE.equals(m.getIsDeleted()))
+                .map(m -> new StoredMessage(m.getConversation().getConversationId(), m.getSender().getUserId(), m.getSentAt(),
+                        m.getCiphertext(), m.getMessageContent()))
+                .or(() -> archivedMessageRepository.findById(messageId)
+                        .map(m -> new StoredMessage(m.getConversationId(), m.getSenderId(), m.getSentAt(),
+                                m.getCiphertext(), m.getMessageContent())))
+                .orElseThrow(() -> new RuntimeException("Message not found"));
+        membershipCache.requireParticipant(message.conversationId(), user.getUserId());
+        return message;
+    }
+
+    private byte[] encrypt(UUID conversationId, String plaintext) {
+        try {
+            return messageCryptoService.encryptForConversation(conversationId, plaintext);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to encrypt message", e);
+        }
+    }
+
+    private String decrypt(byte[] ciphertext, String legacyContent) {
+        try {
+            return messageCryptoService.decryptContent(ciphertext, legacyContent);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to decrypt message", e);
+        }
+    }
+
+    private record StoredMessage(UUID conversationId, UUID senderId, LocalDateTime sentAt, byte[] ciphertext,
+                                 String legacyContent) {
+    }
+}
@@ -0,0 +1,264 @@
+package com.example.auth.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Online re-keying of everything stored under data keys. Content written under a retired data key, or
+ * under the master key before envelope encryption, is decrypted and re-encrypted under the active key of
+ * its scope. A pass covers, in order: messages and archived messages, edit history and conversation-list
+ * previews (scoped to their conversation), and broadcast content and previews (scoped to the broadcast).
+ * <p>
+ * Each table is walked in id order in small batches, each in its own transaction, and the job sleeps
+ * between batches to stay under the configured rows-per-second budget. Messages record their key id in a
+ * column, so only rows under retired keys are read; the other tables only carry it in the ciphertext
+ * header, so rows are read for scopes that have a retired key and those not already under the active key
+ * are rewritten. A row that changes while its batch is in flight is skipped, because the update only
+ * applies while the stored ciphertext is still the one that was read; the next pass picks it up if
+ * still needed.
+ * <p>
+ * Passes run on a thread of their own. The scheduler only starts them, so the sleeps never hold up the
+ * other scheduled jobs.
+ */
+@Service
+public class MessageRekeyService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageRekeyService.class);
+    private static final UUID START = new UUID(0L, 0L);
+
+    private static final List<Target> TARGETS = List.of(
+            new Target("messages", true,
+                    "SELECT m.message_id, m.conversation_id, m.message_ciphertext, m.message_content FROM messages m " +
+                    "LEFT JOIN data_keys k ON k.key_id = m.key_id " +
+                    "WHERE m.message_id > ? AND (m.key_id IS NULL OR k.status = 'RETIRED') " +
+                    "AND (m.message_ciphertext IS NOT NULL OR m.message_content IS NOT NULL) " +
+                    "ORDER BY m.message_id LIMIT ?",
+                    "UPDATE messages SET message_ciphertext = ?, message_content = NULL, key_id = ? " +
+                    "WHERE message_id = ? AND message_ciphertext IS NOT DISTINCT FROM ? " +
+                    "AND message_content IS NOT DISTINCT FROM ?"),
+            new Target("archived messages", true,
+                    "SELECT a.message_id, a.conversation_id, a.message_ciphertext, a.message_content FROM archived_messages a " +
+                    "LEFT JOIN data_keys k ON k.key_id = a.key_id " +
+                    "WHERE a.message_id > ? AND (a.key_id IS NULL OR k.status = 'RETIRED') " +
+                    "AND (a.message_ciphertext IS NOT NULL OR a.message_content IS NOT NULL) " +
+                    "ORDER BY a.message_id LIMIT ?",
+                    "UPDATE archived_messages SET message_ciphertext = ?, message_content = NULL, key_id = ? " +
+                    "WHERE message_id = ? AND message_ciphertext IS NOT DISTINCT FROM ? " +
+                    "AND message_content IS NOT DISTINCT FROM ?"),
+            // Versions of archived messages stay behind when the message row moves to the archive
+            new Target("message versions", false,
+                    "SELECT v.version_id, COALESCE(m.conversation_id, a.conversation_id) AS scope_id, v.ciphertext, NULL " +
+                    "FROM message_versions v " +
+                    "LEFT JOIN messages m ON m.message_id = v.message_id " +
+                    "LEFT JOIN archived_messages a ON a.message_id = v.message_id " +
+                    "WHERE v.version_id > ? AND EXISTS (SELECT 1 FROM data_keys k " +
+                    "WHERE k.scope_id = COALESCE(m.conversation_id, a.conversation_id) AND k.status = 'RETIRED') " +
+                    "ORDER BY v.version_id LIMIT ?",
+                    "UPDATE message_versions SET ciphertext = ? WHERE version_id = ? AND ciphertext = ?"),
+            new Target("conversation previews", false,
+                    "SELECT c.conversation_id, c.conversation_id, c.last_message_preview, NULL FROM conversations c " +
+                    "WHERE c.conversation_id > ? AND c.last_message_preview IS NOT NULL " +
+                    "AND EXISTS (SELECT 1 FROM data_keys k WHERE k.scope_id = c.conversation_id AND k.status = 'RETIRED') " +
+                    "ORDER BY c.conversation_id LIMIT ?",
+                    "UPDATE conversations SET last_message_preview = ? WHERE conversation_id = ? AND last_message_preview = ?"),
+            new Target("broadcasts", false,
+                    "SELECT b.broadcast_id, b.broadcast_id, b.content_ciphertext, NULL FROM broadcasts b " +
+                    "WHERE b.broadcast_id > ? AND b.content_ciphertext IS NOT NULL " +
+                    "AND EXISTS (SELECT 1 FROM data_keys k WHERE k.scope_id = b.broadcast_id AND k.status = 'RETIRED') " +
+                    "ORDER BY b.broadcast_id LIMIT ?",
+                    "UPDATE broadcasts SET content_ciphertext = ? WHERE broadcast_id = ? AND content_ciphertext = ?"),
+            new Target("broadcast previews", false,
+                    "SELECT b.broadcast_id, b.broadcast_id, b.preview, NULL FROM broadcasts b " +
+                    "WHERE b.broadcast_id > ? AND b.preview IS NOT NULL " +
+                    "AND EXISTS (SELECT 1 FROM data_keys k WHERE k.scope_id = b.broadcast_id AND k.status = 'RETIRED') " +
+                    "ORDER BY b.broadcast_id LIMIT ?",
+                    "UPDATE broadcasts SET preview = ? WHERE broadcast_id = ? AND preview = ?"));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final MessageCryptoService messageCryptoService;
+    private final DataKeyService dataKeyService;
+    private final EncryptionService encryptionService;
+    private final boolean enabled;
+    private final int batchSize;
+    private final int maxBatchesPerRun;
+    private final int maxRowsPerSecond;
+    private final ExecutorService runner;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    // Where the current pass is: the table being walked and the last row id read from it
+    private volatile int targetIndex;
+    private volatile UUID checkpoint = START;
+
+    public MessageRekeyService(JdbcTemplate jdbcTemplate,
+                               PlatformTransactionManager transactionManager,
+                               MessageCryptoService messageCryptoService,
+                               DataKeyService dataKeyService,
+                               EncryptionService encryptionService,
+                               @Value("${app.encryption.rekey.enabled:true}") boolean enabled,
+                               @Value("${app.encryption.rekey.batch-size:200}") int batchSize,
+                               @Value("${app.encryption.rekey.max-batches-per-run:50}") int maxBatchesPerRun,
+                               @Value("${app.encryption.rekey.max-rows-per-second:500}") int maxRowsPerSecond) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.messageCryptoService = messageCryptoService;
+        this.dataKeyService = dataKeyService;
+        this.encryptionService = encryptionService;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.maxBatchesPerRun = maxBatchesPerRun;
+        this.maxRowsPerSecond = Math.max(1, maxRowsPerSecond);
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("message-rekey-");
+        threadFactory.setDaemon(true);
+        this.runner = Executors.newSingleThreadExecutor(threadFactory);
+    }
+
+    /**
+     * Starts a pass on the re-keying thread unless one is still running.
+     */
+    @Scheduled(initialDelayString = "${app.encryption.rekey.initial-delay-ms:90000}",
+               fixedDelayString = "${app.encryption.rekey.interval-ms:300000}")
+    public void startRekey() {
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+        runner.execute(() -> {
+            try {
+                rekey();
+            } catch (RuntimeException e) {
+                logger.warn("Message re-keying pass failed: {}", e.getMessage());
+            } finally {
+                running.set(false);
+            }
+        });
+    }
+
+    /**
+     * Runs one pass on the calling thread, sleeping between batches to stay within the budget.
+     */
+    public void rekey() {
+        // Data keys only apply to the binary format
+        if (!enabled || !messageCryptoService.isBinaryStorage()) {
+            return;
+        }
+        for (int i = 0; i < maxBatchesPerRun; i++) {
+            long started = System.currentTimeMillis();
+            Batch batch = rekeyBatch();
+            if (batch.passComplete()) {
+                return;
+            }
+            if (!throttle(batch.examined(), started)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Re-keys the next batch of the table the pass has reached. A short batch finishes that table and
+     * moves the pass on to the next one.
+     */
+    public Batch rekeyBatch() {
+        Target target = TARGETS.get(targetIndex);
+        Integer examined = transactionTemplate.execute(status -> {
+            List<StoredContent> rows = jdbcTemplate.query(target.selectSql(),
+                    (rs, rowNum) -> new StoredContent(rs.getObject(1, UUID.class), rs.getObject(2, UUID.class),
+                            rs.getBytes(3), rs.getString(4)),
+                    checkpoint, batchSize);
+            if (rows.isEmpty()) {
+                return 0;
+            }
+
+            List<Object[]> updates = new ArrayList<>(rows.size());
+            for (StoredContent row : rows) {
+                try {
+                    DataKeyService.ActiveKey dataKey = dataKeyService.activeKeyFor(row.scopeId());
+                    if (!target.keyed() && dataKey.keyId().equals(EncryptionService.readKeyId(row.ciphertext()))) {
+                        continue;
+                    }
+                    String plaintext = messageCryptoService.decryptContent(row.ciphertext(), row.legacyContent());
+                    byte[] ciphertext = encryptionService.encryptBinary(plaintext, dataKey.keyId(), dataKey.key());
+                    updates.add(target.keyed()
+                            ? new Object[]{ciphertext, dataKey.keyId(), row.id(), row.ciphertext(), row.legacyContent()}
+                            : new Object[]{ciphertext, row.id(), row.ciphertext()});
+                } catch (Exception e) {
+                    logger.warn("Skipping {} row {} that could not be re-keyed: {}", target.name(), row.id(), e.getMessage());
+                }
+            }
+            if (!updates.isEmpty()) {
+                jdbcTemplate.batchUpdate(target.updateSql(), updates);
+            }
+            checkpoint = rows.get(rows.size() - 1).id();
+            return rows.size();
+        });
+
+        int count = examined == null ? 0 : examined;
+        if (count == batchSize) {
+            logger.info("Re-keying of {} processed a batch of {} rows up to {}", target.name(), count, checkpoint);
+            return new Batch(count, false);
+        }
+        if (count > 0 || !START.equals(checkpoint)) {
+            logger.info("Re-keying of {} complete", target.name());
+        }
+        checkpoint = START;
+        targetIndex = (targetIndex + 1) % TARGETS.size();
+        return new Batch(count, targetIndex == 0);
+    }
+
+    /**
+     * Sleeps long enough that the batch just processed stays within the rows-per-second budget.
+     *
+     * @return false if interrupted, in which case the run should stop
+     */
+    private boolean throttle(int rows, long startedMillis) {
+        long budgetMillis = rows * 1000L / maxRowsPerSecond;
+        long remaining = budgetMillis - (System.currentTimeMillis() - startedMillis);
+        if (remaining <= 0) {
+            return true;
+        }
+        try {
+            Thread.sleep(remaining);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Interrupts a sleeping pass, which then stops
+        runner.shutdownNow();
+    }
+
+    /**
+     * @param examined     the number of rows read
+     * @param passComplete whether the batch finished the last table of the pass
+     */
+    public record Batch(int examined, boolean passComplete) {
+    }
+
+    /**
+     * A table holding content under data keys. The select returns the row id, the key scope, the
+     * ciphertext and any legacy text; keyed tables also record the key id in a column of their own.
+     */
+    private record Target(String name, boolean keyed, String selectSql, String updateSql) {
+    }
+
+    private record StoredContent(UUID id, UUID scopeId, byte[] ciphertext, String legacyContent) {
+    }
+}
@@ -0,0 +1,202 @@
+package com.example.auth.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the hot {@code messages} table small. Active messages older than the retention period are moved,
+ * with their attachment metadata, into {@code archived_messages} and {@code archived_attachments}, where
+ * they stay readable through the archive history endpoint. Soft-deleted messages are removed for good once
+ * their grace period has passed, together with their attachment blobs.
+ * <p>
+ * Work is done in bounded chunks, oldest first, each in its own transaction: a chunk locks its rows,
+ * copies them and deletes them together, so an interrupted run leaves no row half-moved, and the next
+ * run continues from the oldest remaining row. Archived messages drop out of search and of the
+ * participants' unread counters, which are reset for lazy recounting.
+ */
+@Service
+public class MessageRetentionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageRetentionService.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final RecentMessageCache recentMessageCache;
+    private final BlobStore blobStore;
+    private final boolean enabled;
+    private final int archiveAfterMonths;
+    private final int deletedGraceDays;
+    private final int batchSize;
+    private final int maxBatchesPerRun;
+
+    private final AtomicLong archivedTotal = new AtomicLong();
+    private final AtomicLong purgedTotal = new AtomicLong();
+
+    public MessageRetentionService(JdbcTemplate jdbcTemplate,
+                                   PlatformTransactionManager transactionManager,
+                                   RecentMessageCache recentMessageCache,
+                                   BlobStore blobStore,
+                                   @Value("${app.messaging.retention.enabled:false}") boolean enabled,
+                                   @Value("${app.messaging.retention.archive-after-months:24}") int archiveAfterMonths,
+                                   @Value("${app.messaging.retention.deleted-grace-days:30}") int deletedGraceDays,
+                                   @Value("${app.messaging.retention.batch-size:500}") int batchSize,
+                                   @Value("${app.messaging.retention.max-batches-per-run:20}") int maxBatchesPerRun) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.recentMessageCache = recentMessageCache;
+        this.blobStore = blobStore;
+        this.enabled = enabled;
+        this.archiveAfterMonths = archiveAfterMonths;
+        this.deletedGraceDays = deletedGraceDays;
+        this.batchSize = batchSize;
+        this.maxBatchesPerRun = maxBatchesPerRun;
+    }
+
+    @Scheduled(initialDelayString = "${app.messaging.retention.initial-delay-ms:120000}",
+               fixedDelayString = "${app.messaging.retention.interval-ms:3600000}")
+    public void applyRetention() {
+        if (!enabled) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime archiveBefore = now.minusMonths(archiveAfterMonths);
+        LocalDateTime purgeBefore = now.minusDays(deletedGraceDays);
+        for (int i = 0; i < maxBatchesPerRun; i++) {
+            if (purgeDeletedBatch(purgeBefore) < batchSize) {
+                break;
+            }
+        }
+        for (int i = 0; i < maxBatchesPerRun; i++) {
+            if (archiveBatch(archiveBefore) < batchSize) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Moves the oldest chunk of active messages sent before the cutoff into the archive.
+     *
+     * @return the number of messages archived; fewer than the batch size means nothing is left to do
+     */
+    public int archiveBatch(LocalDateTime sentBefore) {
+        Set<UUID> conversations = new LinkedHashSet<>();
+        Integer archived = transactionTemplate.execute(status -> {
+            List<UUID> ids = lockBatch("is_deleted = false AND sent_at < ?", sentBefore, conversations);
+            if (ids.isEmpty()) {
+                return 0;
+            }
+            String in = placeholders(ids.size());
+            List<Object> args = new ArrayList<>();
+            args.add(LocalDateTime.now());
+            args.addAll(ids);
+            jdbcTemplate.update("INSERT INTO archived_messages (message_id, conversation_id, sender_id, message_content, " +
+                    "message_ciphertext, key_id, message_type, is_edited, sent_at, archived_at) " +
+                    "SELECT message_id, conversation_id, sender_id, message_content, message_ciphertext, key_id, message_type, " +
+                    "is_edited, sent_at, ? FROM messages WHERE message_id IN (" + in + ")", args.toArray());
+            jdbcTemplate.update("INSERT INTO archived_attachments (attachment_id, message_id, file_name, mime_type, file_size, " +
+                    "storage_path, file_hash, uploaded_at) SELECT attachment_id, message_id, file_name, mime_type, file_size, " +
+                    "storage_path, file_hash, uploaded_at FROM attachments WHERE message_id IN (" + in + ")", ids.toArray());
+            deleteMessages(ids);
+
+            // Counters may have included archived messages; they are recounted on next use
+            jdbcTemplate.update("UPDATE conversation_participants SET unread_count = NULL WHERE conversation_id IN (" +
+                    placeholders(conversations.size()) + ")", conversations.toArray());
+            return ids.size();
+        });
+        return finish("Archived", archived, archivedTotal, conversations);
+    }
+
+    /**
+     * Permanently removes the oldest chunk of messages soft-deleted before the cutoff. Rows deleted before
+     * deletion times were recorded fall back to their send time. Attachment blobs are removed once the
+     * chunk has committed, so a rolled-back chunk never loses content its rows still point to.
+     *
+     * @return the number of messages removed; fewer than the batch size means nothing is left to do
+     */
+    public int purgeDeletedBatch(LocalDateTime deletedBefore) {
+        List<String> storagePaths = new ArrayList<>();
+        Integer purged = transactionTemplate.execute(status -> {
+            List<UUID> ids = lockBatch("is_deleted = true AND COALESCE(deleted_at, sent_at) < ?", deletedBefore, new LinkedHashSet<>());
+            if (!ids.isEmpty()) {
+                String in = placeholders(ids.size());
+                // Each attachment has a blob of its own, so nothing else can still reference these
+                storagePaths.addAll(jdbcTemplate.queryForList("SELECT storage_path FROM attachments WHERE message_id IN (" +
+                        in + ")", String.class, ids.toArray()));
+                // Archived messages keep their edit history; purged ones lose it with them
+                jdbcTemplate.update("DELETE FROM message_versions WHERE message_id IN (" + in + ")", ids.toArray());
+                deleteMessages(ids);
+            }
+            return ids.size();
+        });
+        storagePaths.forEach(this::deleteBlob);
+        // Deleted messages are never in a cached window, so there is nothing to evict
+        return finish("Purged", purged, purgedTotal, Collections.emptySet());
+    }
+
+    public long getArchivedTotal() {
+        return archivedTotal.get();
+    }
+
+    public long getPurgedTotal() {
+        return purgedTotal.get();
+    }
+
+    private List<UUID> lockBatch(String condition, LocalDateTime cutoff, Set<UUID> conversations) {
+        List<UUID> ids = new ArrayList<>();
+        jdbcTemplate.query("SELECT message_id, conversation_id FROM messages WHERE " + condition +
+                        " ORDER BY sent_at, message_id LIMIT ? FOR UPDATE",
+                rs -> {
+                    ids.add(rs.getObject(1, UUID.class));
+                    conversations.add(rs.getObject(2, UUID.class));
+                },
+                cutoff, batchSize);
+        return ids;
+    }
+
+    private void deleteMessages(List<UUID> ids) {
+        String in = placeholders(ids.size());
+        Object[] args = ids.toArray();
+        jdbcTemplate.update("DELETE FROM attachments WHERE message_id IN (" + in + ")", args);
+        jdbcTemplate.update("DELETE FROM message_reads WHERE message_id IN (" + in + ")", args);
+        jdbcTemplate.update("DELETE FROM message_search_tokens WHERE message_id IN (" + in + ")", args);
+        jdbcTemplate.update("DELETE FROM messages WHERE message_id IN (" + in + ")", args);
+    }
+
+    private void deleteBlob(String storagePath) {
+        try {
+            blobStore.delete(storagePath);
+        } catch (IOException e) {
+            logger.warn("Failed to remove blob {} of a purged attachment: {}", storagePath, e.getMessage());
+        }
+    }
+
+    private int finish(String action, Integer result, AtomicLong total, Set<UUID> conversations) {
+        int count = result == null ? 0 : result;
+        // After commit, so a window reloaded meanwhile cannot bring the moved messages back
+        conversations.forEach(recentMessageCache::evict);
+        if (count > 0) {
+            logger.info("{} {} messages ({} in total since startup)", action, count, total.addAndGet(count));
+        }
+        return count;
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.auth.service;
+
+import com.example.auth.model.Message;
+import com.example.auth.model.MessageSearchToken;
+import com.example.auth.repository.MessageSearchTokenRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.text.Normalizer;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Maintains the blind index used to search encrypted messages. Each distinct normalized word
+ * of a message is stored as an HMAC token; searching hashes the query words the same way.
+ */
+@Service
+public class MessageSearchService {
+
+    private static final Pattern WORD_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final int MIN_TERM_LENGTH = 2;
+    private static final int MAX_TOKENS_PER_MESSAGE = 256;
+
+    private final MessageSearchTokenRepository messageSearchTokenRepository;
+    private final EncryptionService encryptionService;
+
+    public MessageSearchService(MessageSearchTokenRepository messageSearchTokenRepository, EncryptionService encryptionService) {
+        this.messageSearchTokenRepository = messageSearchTokenRepository;
+        this.encryptionService = encryptionService;
+    }
+
+    @Transactional
+    public void indexMessage(Message message, String plaintext) {
+        List<MessageSearchToken> tokens = tokenize(plaintext).stream()
+                .limit(MAX_TOKENS_PER_MESSAGE)
+                .map(token -> new MessageSearchToken(message.getMessageId(), message.getConversation().getConversationId(), token))
+                .collect(Collectors.toList());
+        messageSearchTokenRepository.saveAll(tokens);
+    }
+
+    @Transactional
+    public void reindexMessage(Message message, String plaintext) {
+        removeMessage(message);
+        indexMessage(message, plaintext);
+    }
+
+    @Transactional
+    public void removeMessage(Message message) {
+        messageSearchTokenRepository.deleteByMessageId(message.getMessageId());
+    }
+
+    /**
+     * Normalizes text (NFKC, lower case, split on anything that is not a letter or digit) and returns the
+     * distinct blind-index tokens in first-seen order.
+     */
+    public Set<String> tokenize(String text) {
+        Set<String> tokens = new LinkedHashSet<>();
+        if (text == null) {
+            return tokens;
+        }
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        for (String term : WORD_SEPARATOR.split(normalized)) {
+            if (term.length() >= MIN_TERM_LENGTH) {
+                tokens.add(encryptionService.blindIndex(term));
+            }
+        }
+        return tokens;
+    }
+}
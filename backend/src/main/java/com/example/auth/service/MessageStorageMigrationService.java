@@ -0,0 +1,113 @@
+package com.example.auth.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Online migration of legacy Base64 message ciphertext into the binary column. Rows are converted in
+ * small batches, each in its own transaction, walking the table in message id order. The conversion only
+ * re-frames the existing ciphertext, so nothing is decrypted. Rows that are edited while the job runs
+ * are left alone because the update only applies while the row still holds the text that was read.
+ * <p>
+ * The job does nothing while {@code app.messaging.storage-format=text}, as writers then keep storing
+ * the text column and converting rows would work against them.
+ */
+@Service
+public class MessageStorageMigrationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageStorageMigrationService.class);
+    private static final UUID START = new UUID(0L, 0L);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final EncryptionService encryptionService;
+    private final boolean enabled;
+    private final int batchSize;
+    private final int maxBatchesPerRun;
+
+    // Every legacy row up to this message id has been converted or skipped as malformed
+    private volatile UUID checkpoint = START;
+
+    public MessageStorageMigrationService(JdbcTemplate jdbcTemplate,
+                                          PlatformTransactionManager transactionManager,
+                                          EncryptionService encryptionService,
+                                          @Value("${app.messaging.storage-format:binary}") String storageFormat,
+                                          @Value("${app.messaging.storage-migration.enabled:true}") boolean enabled,
+                                          @Value("${app.messaging.storage-migration.batch-size:500}") int batchSize,
+                                          @Value("${app.messaging.storage-migration.max-batches-per-run:20}") int maxBatchesPerRun) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.encryptionService = encryptionService;
+        this.enabled = enabled && !"text".equalsIgnoreCase(storageFormat);
+        this.batchSize = batchSize;
+        this.maxBatchesPerRun = maxBatchesPerRun;
+    }
+
+    @Scheduled(initialDelayString = "${app.messaging.storage-migration.initial-delay-ms:30000}",
+               fixedDelayString = "${app.messaging.storage-migration.interval-ms:60000}")
+    public void migrate() {
+        if (!enabled) {
+            return;
+        }
+        for (int i = 0; i < maxBatchesPerRun; i++) {
+            if (migrateBatch() < batchSize) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Re-frames the next batch of rows still in the legacy text column.
+     *
+     * @return the number of legacy rows found; a short batch means none are left and the next call starts
+     *         again from the lowest message id, to catch rows written in text format meanwhile
+     */
+    public int migrateBatch() {
+        Integer examined = transactionTemplate.execute(status -> {
+            List<Object[]> rows = jdbcTemplate.query(
+                    "SELECT message_id, message_content FROM messages " +
+                    "WHERE message_ciphertext IS NULL AND message_content IS NOT NULL AND message_id > ? " +
+                    "ORDER BY message_id LIMIT ?",
+                    (rs, rowNum) -> new Object[]{rs.getObject(1, UUID.class), rs.getString(2)},
+                    checkpoint, batchSize);
+            if (rows.isEmpty()) {
+                return 0;
+            }
+
+            List<Object[]> updates = new ArrayList<>(rows.size());
+            for (Object[] row : rows) {
+                try {
+                    updates.add(new Object[]{encryptionService.legacyToBinary((String) row[1]), row[0], row[1]});
+                } catch (IllegalArgumentException e) {
+                    logger.warn("Skipping message {} with malformed legacy ciphertext", row[0]);
+                }
+            }
+            jdbcTemplate.batchUpdate(
+                    "UPDATE messages SET message_ciphertext = ?, message_content = NULL " +
+                    "WHERE message_id = ? AND message_ciphertext IS NULL AND message_content = ?", updates);
+            checkpoint = (UUID) rows.get(rows.size() - 1)[0];
+            return rows.size();
+        });
+
+        int count = examined == null ? 0 : examined;
+        if (count < batchSize) {
+            if (count > 0 || !START.equals(checkpoint)) {
+                logger.info("Message storage migration pass complete");
+            }
+            checkpoint = START;
+        } else {
+            logger.info("Message storage migration converted a batch of {} rows up to {}", count, checkpoint);
+        }
+        return count;
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.auth.service;
+
+import com.example.auth.dto.response.MessageEventResponse;
+import com.example.auth.model.User;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * In-process broker that pushes committed message changes to Server-Sent Event subscribers.
+ * Idle subscriptions hold no request thread; fan-out runs on a small set of single-threaded
+ * dispatch stripes so events for one conversation are always delivered in commit order.
+ * <p>
+ * Participation is checked again on every event and heartbeat, not only on subscribe, so a user who
+ * is removed from a conversation has their stream closed instead of continuing to receive its events.
+ */
+@Service
+public class MessageStreamService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageStreamService.class);
+
+    private final ConversationMembershipCache membershipCache;
+    private final long emitterTimeoutMs;
+    private final Map<UUID, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final ExecutorService[] dispatchStripes;
+
+    public MessageStreamService(ConversationMembershipCache membershipCache,
+                                @Value("${app.messaging.stream.timeout-ms:1800000}") long emitterTimeoutMs,
+                                @Value("${app.messaging.stream.dispatch-threads:4}") int dispatchThreads) {
+        this.membershipCache = membershipCache;
+        this.emitterTimeoutMs = emitterTimeoutMs;
+        this.dispatchStripes = new ExecutorService[Math.max(1, dispatchThreads)];
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("message-stream-");
+        threadFactory.setDaemon(true);
+        for (int i = 0; i < dispatchStripes.length; i++) {
+            dispatchStripes[i] = Executors.newSingleThreadExecutor(threadFactory);
+        }
+    }
+
+    public SseEmitter subscribe(UUID conversationId, User user) {
+        membershipCache.requireParticipant(conversationId, user.getUserId());
+
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMs);
+        Subscriber subscriber = new Subscriber(user.getUserId(), emitter);
+        subscribers.compute(conversationId, (id, current) -> {
+            Set<Subscriber> target = current == null ? ConcurrentHashMap.newKeySet() : current;
+            target.add(subscriber);
+            return target;
+        });
+        emitter.onCompletion(() -> unsubscribe(conversationId, subscriber));
+        emitter.onTimeout(() -> unsubscribe(conversationId, subscriber));
+        emitter.onError(e -> unsubscribe(conversationId, subscriber));
+        return emitter;
+    }
+
+    @TransactionalEventListener
+    public void onMessageEvent(MessageEventResponse event) {
+        List<Subscriber> recipients = participants(event.getConversationId());
+        if (recipients.isEmpty()) {
+            return;
+        }
+        stripeFor(event.getConversationId()).execute(() -> recipients.forEach(subscriber ->
+                send(event.getConversationId(), subscriber,
+                        SseEmitter.event().name(event.getEventType().name()).id(event.getMessageId().toString()).data(event))));
+    }
+
+    // Keeps idle connections from being closed by proxies and prunes clients that went away or were removed
+    @Scheduled(fixedDelayString = "${app.messaging.stream.heartbeat-ms:25000}")
+    public void sendHeartbeats() {
+        subscribers.keySet().forEach(conversationId -> participants(conversationId).forEach(subscriber ->
+                send(conversationId, subscriber, SseEmitter.event().comment("keep-alive"))));
+    }
+
+    public int getSubscriberCount(UUID conversationId) {
+        Set<Subscriber> current = subscribers.get(conversationId);
+        return current == null ? 0 : current.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (ExecutorService stripe : dispatchStripes) {
+            stripe.shutdown();
+        }
+        subscribers.values().forEach(current -> current.forEach(subscriber -> subscriber.emitter().complete()));
+        subscribers.clear();
+    }
+
+    /**
+     * Returns the conversation's subscribers who still take part in it. Streams of users who no longer do
+     * are closed.
+     */
+    private List<Subscriber> participants(UUID conversationId) {
+        Set<Subscriber> current = subscribers.get(conversationId);
+        if (current == null || current.isEmpty()) {
+            return List.of();
+        }
+        List<Subscriber> participants = new ArrayList<>(current.size());
+        for (Subscriber subscriber : current) {
+            if (isParticipant(conversationId, subscriber.userId())) {
+                participants.add(subscriber);
+            } else {
+                logger.debug("Closing stream of former participant {} in conversation {}", subscriber.userId(), conversationId);
+                unsubscribe(conversationId, subscriber);
+                subscriber.emitter().complete();
+            }
+        }
+        return participants;
+    }
+
+    private boolean isParticipant(UUID conversationId, UUID userId) {
+        try {
+            membershipCache.requireParticipant(conversationId, userId);
+            return true;
+        } catch (RuntimeException e) {
+            // Not a participant, or the conversation itself is gone
+            return false;
+        }
+    }
+
+    private void send(UUID conversationId, Subscriber subscriber, SseEmitter.SseEventBuilder event) {
+        try {
+            subscriber.emitter().send(event);
+        } catch (IOException | IllegalStateException e) {
+            logger.debug("Dropping stream subscriber for conversation {}: {}", conversationId, e.getMessage());
+            unsubscribe(conversationId, subscriber);
+        }
+    }
+
+    private void unsubscribe(UUID conversationId, Subscriber subscriber) {
+        subscribers.computeIfPresent(conversationId, (id, current) -> {
+            current.remove(subscriber);
+            return current.isEmpty() ? null : current;
+        });
+    }
+
+    private ExecutorService stripeFor(UUID conversationId) {
+        return dispatchStripes[Math.floorMod(conversationId.hashCode(), dispatchStripes.length)];
+    }
+
+    private record Subscriber(UUID userId, SseEmitter emitter) {
+    }
+}
@@ -1,97 +1,375 @@
 package com.example.auth.service;
 
+import com.example.auth.dto.request.ConversationCursor;
+import com.example.auth.dto.request.MessageCursor;
 import com.example.auth.dto.request.SendMessageRequest;
+import com.example.auth.dto.response.ConversationPageResponse;
+import com.example.auth.dto.response.AttachmentSummaryResponse;
+import com.example.auth.dto.response.InboxEntryResponse;
+import com.example.auth.dto.response.MessageEventResponse;
+import com.example.auth.dto.response.MessagePageResponse;
+import com.example.auth.dto.response.MessageResponse;
+import com.example.auth.dto.response.ReadReceiptResponse;
+import com.example.auth.dto.response.SyncResponse;
+import com.example.auth.model.ArchivedAttachment;
+import com.example.auth.model.ArchivedMessage;
 import com.example.auth.model.Conversation;
+import com.example.auth.model.ConversationParticipant;
+import com.example.auth.model.ConversationType;
 import com.example.auth.model.Message;
-import com.example.auth.model.MessageRead;
+import com.example.auth.model.MessageEventType;
 import com.example.auth.model.User;
+import com.example.auth.repository.ArchivedAttachmentRepository;
+import com.example.auth.repository.ArchivedMessageRepository;
+import com.example.auth.repository.AttachmentRepository;
 import com.example.auth.repository.ConversationParticipantRepository;
 import com.example.auth.repository.ConversationRepository;
-import com.example.auth.repository.MessageReadRepository;
 import com.example.auth.repository.MessageRepository;
+import com.example.auth.repository.MessageRow;
+import com.example.auth.repository.UserRepository;
 import lombok.AllArgsConstructor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 @Service
 @AllArgsConstructor
 public class MessagingService {
 
+    static final String UNREADABLE_MESSAGE = "[Message is corrupted or unreadable]";
+    static final int DEFAULT_PAGE_SIZE = 50;
+    static final int MAX_PAGE_SIZE = 200;
+    static final int PREVIEW_LENGTH = 100;
+
     private final MessageRepository messageRepository;
     private final ConversationRepository conversationRepository;
-    private final EncryptionService encryptionService;
-    private final MessageReadRepository messageReadRepository;
+    private final MessageCryptoService messageCryptoService;
     private final ConversationParticipantRepository conversationParticipantRepository;
-    private final NotificationService notificationService;
+    private final OutboxService outboxService;
+    private final MessageSearchService messageSearchService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final RecentMessageCache recentMessageCache;
+    private final UserRepository userRepository;
+    private final ArchivedMessageRepository archivedMessageRepository;
+    private final ArchivedAttachmentRepository archivedAttachmentRepository;
+    private final AttachmentRepository attachmentRepository;
+    private final ConversationMembershipCache membershipCache;
+    private final MessageHistoryService messageHistoryService;
+    private final SyncCursorStore syncCursorStore;
 
     @Transactional
-    public Message sendMessage(SendMessageRequest request, User sender) {
+    public MessageResponse sendMessage(SendMessageRequest request, User sender) {
         validateMessageContent(request.getContent());
+        membershipCache.requireParticipant(request.getConversationId(), sender.getUserId());
         Conversation conversation = conversationRepository.findById(request.getConversationId())
                 .orElseThrow(() -> new RuntimeException("Conversation not found"));
 
         Message message = new Message();
         message.setConversation(conversation);
         message.setSender(sender);
+        message.setChangeSeq(nextChangeSeq(conversation.getConversationId()));
         try {
-            message.setMessageContent(encryptionService.encrypt(request.getContent()));
+            messageCryptoService.encryptContent(message, request.getContent());
         } catch (Exception e) {
             throw new RuntimeException("Failed to encrypt message", e);
         }
 
         Message savedMessage = messageRepository.save(message);
+        messageSearchService.indexMessage(savedMessage, request.getContent());
+        conversationParticipantRepository.incrementUnreadCounts(conversation.getConversationId(), sender.getUserId());
+        conversationRepository.advanceLastMessage(conversation.getConversationId(), savedMessage.getMessageId(), sender.getUserId(),
+                savedMessage.getSentAt(), encryptPreview(conversation.getConversationId(), request.getContent()));
+
+        // Notifications for the other participants are fanned out from the outbox after commit
+        outboxService.enqueueMessageSent(savedMessage, sender);
+
+        eventPublisher.publishEvent(new MessageEventResponse(MessageEventType.CREATED, savedMessage, request.getContent()));
+
+        return toResponse(savedMessage, request.getContent(), new ArrayList<>());
+    }
+
+    public List<MessageResponse> getMessagesForConversation(UUID conversationId) {
+        if (!conversationRepository.existsById(conversationId)) {
+            throw new RuntimeException("Conversation not found");
+        }
+        return toResponses(messageRepository.findActiveRowsByConversation(conversationId));
+    }
+
+    /**
+     * Returns one page of a conversation's history, newest page first, using the
+     * {@code (sentAt, messageId)} keyset so the cost is independent of how deep the client has scrolled.
+     * Messages within the page are in chronological order and only they are decrypted. The newest page
+     * is served from the {@link RecentMessageCache} when possible.
+     * <p>
+     * Pages are read as {@link MessageRow} projections with the sender's name joined in, plus one query for
+     * the attachments of the whole page, so the query count does not grow with the page size.
+     */
+    public MessagePageResponse getMessageHistory(UUID conversationId, User user, String before, Integer limit) {
+        // Participation is checked on every request, including those answered from the cache
+        membershipCache.requireParticipant(conversationId, user.getUserId());
 
-        // Notify other participants
-        conversationParticipantRepository.findByConversation(conversation).forEach(participant -> {
-            if (!participant.getUser().getUserId().equals(sender.getUserId())) {
-                String title = "New Message from " + sender.getFirstName();
-                String body = "You have a new message in your conversation.";
-                notificationService.createNotification(participant.getUser(), title, body, com.example.auth.model.NotificationType.MESSAGE_ALERT);
+        int pageSize = pageSize(limit);
+        if ((before == null || before.isBlank()) && pageSize <= recentMessageCache.getWindowSize()) {
+            RecentMessageCache.Page page = recentMessageCache.getLatest(conversationId, pageSize,
+                    since -> messageRepository.findChangeSeqsAfter(conversationId, since));
+            if (page == null) {
+                page = loadRecentWindow(conversationId, pageSize);
             }
-        });
+            List<MessageResponse> messages = fromCache(conversationId, page.messages());
+            Collections.reverse(messages);
+            String nextCursor = page.hasMore() ? MessageCursor.of(messages.get(0)).toString() : null;
+            return new MessagePageResponse(messages, nextCursor, page.hasMore());
+        }
+
+        // Fetch one extra row to know whether an older page exists
+        PageRequest pageRequest = PageRequest.of(0, pageSize + 1);
+        List<MessageRow> rows;
+        if (before == null || before.isBlank()) {
+            rows = messageRepository.findLatestActiveRows(conversationId, pageRequest);
+        } else {
+            MessageCursor cursor = MessageCursor.parse(before);
+            rows = messageRepository.findActiveRowsBefore(conversationId, cursor.getSentAt(), cursor.getMessageId(), pageRequest);
+        }
+
+        boolean hasMore = rows.size() > pageSize;
+        if (hasMore) {
+            rows = rows.subList(0, pageSize);
+        }
+        List<MessageResponse> messages = toResponses(rows);
+        Collections.reverse(messages);
 
-        // Return the message with decrypted content
-        savedMessage.setMessageContent(request.getContent());
-        return savedMessage;
+        String nextCursor = hasMore ? MessageCursor.of(messages.get(0)).toString() : null;
+        return new MessagePageResponse(messages, nextCursor, hasMore);
     }
 
-    public List<Message> getMessagesForConversation(UUID conversationId) {
-        Conversation conversation = conversationRepository.findById(conversationId)
-                .orElseThrow(() -> new RuntimeException("Conversation not found"));
-        List<Message> messages = messageRepository.findActiveMessagesByConversationOrderBySentAt(conversation);
-        messages.forEach(message -> {
+    /**
+     * Returns one page of the conversation's archived history, newest first in the same keyset format as
+     * {@link #getMessageHistory}. Clients continue here once the live history has no more pages; the archive
+     * is never cached and is slower to read.
+     */
+    @Transactional(readOnly = true)
+    public MessagePageResponse getArchivedHistory(UUID conversationId, User user, String before, Integer limit) {
+        membershipCache.requireParticipant(conversationId, user.getUserId());
+
+        int pageSize = pageSize(limit);
+        PageRequest pageRequest = PageRequest.of(0, pageSize + 1);
+        List<ArchivedMessage> archived;
+        if (before == null || before.isBlank()) {
+            archived = archivedMessageRepository.findLatest(conversationId, pageRequest);
+        } else {
+            MessageCursor cursor = MessageCursor.parse(before);
+            archived = archivedMessageRepository.findBefore(conversationId, cursor.getSentAt(), cursor.getMessageId(), pageRequest);
+        }
+        boolean hasMore = archived.size() > pageSize;
+        if (hasMore) {
+            archived = archived.subList(0, pageSize);
+        }
+
+        Map<UUID, List<AttachmentSummaryResponse>> attachments = new HashMap<>();
+        Map<UUID, String> senderNames = new HashMap<>();
+        if (!archived.isEmpty()) {
+            List<UUID> messageIds = archived.stream().map(ArchivedMessage::getMessageId).toList();
+            for (ArchivedAttachment attachment : archivedAttachmentRepository.findByMessageIdIn(messageIds)) {
+                attachments.computeIfAbsent(attachment.getMessageId(), id -> new ArrayList<>()).add(new AttachmentSummaryResponse(
+                        attachment.getAttachmentId(), attachment.getFileName(), attachment.getMimeType(), attachment.getFileSize()));
+            }
+            senderNames = senderNames(archived.stream().map(ArchivedMessage::getSenderId).collect(Collectors.toSet()));
+        }
+        List<MessageResponse> messages = new ArrayList<>(archived.size());
+        for (ArchivedMessage row : archived) {
+            String plaintext;
             try {
-                message.setMessageContent(encryptionService.decrypt(message.getMessageContent()));
+                plaintext = messageCryptoService.decryptContent(row.getCiphertext(), row.getMessageContent());
             } catch (Exception e) {
-                message.setMessageContent("[Message is corrupted or unreadable]");
+                plaintext = UNREADABLE_MESSAGE;
             }
-        });
+            messages.add(new MessageResponse(row.getMessageId(), conversationId, row.getSenderId(), senderNames.get(row.getSenderId()),
+                    plaintext, row.getMessageType(), row.getSentAt(), row.getIsEdited(),
+                    attachments.getOrDefault(row.getMessageId(), new ArrayList<>())));
+        }
+        Collections.reverse(messages);
+
+        String nextCursor = hasMore ? MessageCursor.of(messages.get(0)).toString() : null;
+        return new MessagePageResponse(messages, nextCursor, hasMore);
+    }
+
+    /**
+     * Loads and decrypts the conversation's newest messages, caches them, and returns the first page.
+     */
+    private RecentMessageCache.Page loadRecentWindow(UUID conversationId, int pageSize) {
+        int windowSize = recentMessageCache.getWindowSize();
+        long stamp = recentMessageCache.beginLoad(conversationId);
+        long changeSeq = messageRepository.findLatestChangeSeq(conversationId);
+        List<MessageRow> rows = messageRepository.findLatestActiveRows(conversationId, PageRequest.of(0, windowSize + 1));
+        boolean hasOlder = rows.size() > windowSize;
+        if (hasOlder) {
+            rows = rows.subList(0, windowSize);
+        }
+
+        List<String> plaintexts = messageCryptoService.decryptRows(rows, UNREADABLE_MESSAGE);
+        Map<UUID, List<AttachmentSummaryResponse>> attachments = attachmentSummaries(rows);
+        List<RecentMessageCache.CachedMessage> window = new ArrayList<>(rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            MessageRow row = rows.get(i);
+            window.add(new RecentMessageCache.CachedMessage(row.messageId(), row.senderId(), row.senderName(), plaintexts.get(i),
+                    row.messageType(), row.sentAt(), Boolean.TRUE.equals(row.isEdited()),
+                    attachments.getOrDefault(row.messageId(), List.of())));
+        }
+        recentMessageCache.putLatest(conversationId, window, hasOlder, stamp, changeSeq);
+
+        boolean hasMore = window.size() > pageSize || hasOlder;
+        return new RecentMessageCache.Page(window.subList(0, Math.min(pageSize, window.size())), hasMore);
+    }
+
+    /**
+     * Builds responses from cached messages. Messages added to a window from events carry no sender
+     * name; those names are looked up together in one query.
+     */
+    private List<MessageResponse> fromCache(UUID conversationId, List<RecentMessageCache.CachedMessage> cached) {
+        Set<UUID> unnamed = new HashSet<>();
+        for (RecentMessageCache.CachedMessage message : cached) {
+            if (message.senderName() == null) {
+                unnamed.add(message.senderId());
+            }
+        }
+        Map<UUID, String> senderNames = unnamed.isEmpty() ? Map.of() : senderNames(unnamed);
+
+        List<MessageResponse> messages = new ArrayList<>(cached.size());
+        for (RecentMessageCache.CachedMessage message : cached) {
+            String senderName = message.senderName() != null ? message.senderName() : senderNames.get(message.senderId());
+            messages.add(new MessageResponse(message.messageId(), conversationId, message.senderId(), senderName, message.content(),
+                    message.messageType(), message.sentAt(), message.edited(), message.attachments()));
+        }
         return messages;
     }
 
+    /**
+     * Decrypts a page of message rows and attaches their attachment summaries, preserving the row order.
+     */
+    private List<MessageResponse> toResponses(List<MessageRow> rows) {
+        List<String> plaintexts = messageCryptoService.decryptRows(rows, UNREADABLE_MESSAGE);
+        Map<UUID, List<AttachmentSummaryResponse>> attachments = attachmentSummaries(rows);
+        List<MessageResponse> messages = new ArrayList<>(rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            MessageRow row = rows.get(i);
+            messages.add(new MessageResponse(row.messageId(), row.conversationId(), row.senderId(), row.senderName(),
+                    plaintexts.get(i), row.messageType(), row.sentAt(), row.isEdited(),
+                    attachments.getOrDefault(row.messageId(), new ArrayList<>())));
+        }
+        return messages;
+    }
+
+    private Map<UUID, List<AttachmentSummaryResponse>> attachmentSummaries(List<MessageRow> rows) {
+        Map<UUID, List<AttachmentSummaryResponse>> attachments = new HashMap<>();
+        if (rows.isEmpty()) {
+            return attachments;
+        }
+        List<UUID> messageIds = rows.stream().map(MessageRow::messageId).toList();
+        for (Object[] row : attachmentRepository.findSummariesByMessageIdIn(messageIds)) {
+            attachments.computeIfAbsent((UUID) row[0], id -> new ArrayList<>())
+                    .add(new AttachmentSummaryResponse((UUID) row[1], (String) row[2], (String) row[3], (Long) row[4]));
+        }
+        return attachments;
+    }
+
+    private Map<UUID, String> senderNames(Set<UUID> senderIds) {
+        Map<UUID, String> names = new HashMap<>();
+        for (Object[] row : userRepository.findDisplayNames(senderIds)) {
+            names.put((UUID) row[0], MessageRow.displayName((String) row[1], (String) row[2]));
+        }
+        return names;
+    }
+
+    /**
+     * Searches the blind index for messages containing every word of the query. Only the matching
+     * messages are loaded and decrypted. Without a conversation id the search spans every conversation
+     * the user is an active participant of.
+     */
+    public List<MessageResponse> searchMessages(String query, UUID conversationId, Integer limit, User user) {
+        Set<String> tokens = messageSearchService.tokenize(query);
+        if (tokens.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        PageRequest pageRequest = PageRequest.of(0, pageSize(limit));
+        List<MessageRow> hits;
+        if (conversationId != null) {
+            membershipCache.requireParticipant(conversationId, user.getUserId());
+            hits = messageRepository.searchByTokensInConversation(tokens, tokens.size(), conversationId, pageRequest);
+        } else {
+            hits = messageRepository.searchByTokens(tokens, tokens.size(), user, pageRequest);
+        }
+        return toResponses(hits);
+    }
+
+    /**
+     * Copies a persisted message with its plaintext content. The managed entity must keep its ciphertext,
+     * otherwise the plaintext would be flushed to the database when the transaction commits.
+     */
+    /**
+     * Builds the response for a message just written, from the plaintext the caller already has.
+     */
+    private static MessageResponse toResponse(Message message, String plaintext, List<AttachmentSummaryResponse> attachments) {
+        User sender = message.getSender();
+        return new MessageResponse(message.getMessageId(), message.getConversation().getConversationId(), sender.getUserId(),
+                MessageRow.displayName(sender.getFirstName(), sender.getLastName()), plaintext, message.getMessageType(),
+                message.getSentAt(), message.getIsEdited(), attachments);
+    }
+
+    private static int pageSize(Integer limit) {
+        return limit == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+    }
+
     @Transactional
-    public Message editMessage(UUID messageId, String newContent, User editor) {
+    public MessageResponse editMessage(UUID messageId, String newContent, User editor) {
         validateMessageContent(newContent);
-        Message message = messageRepository.findById(messageId)
+        // Locked before the current content is read, so concurrent edits cannot both diff against the same version
+        Message message = messageRepository.findByIdForUpdate(messageId)
                 .orElseThrow(() -> new RuntimeException("Message not found"));
 
         if (!message.getSender().getUserId().equals(editor.getUserId())) {
             throw new SecurityException("User not authorized to edit this message");
         }
 
+        String previousContent;
         try {
-            message.setMessageContent(encryptionService.encrypt(newContent));
+            previousContent = messageCryptoService.decryptContent(message);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to decrypt message", e);
+        }
+        try {
+            messageCryptoService.encryptContent(message, newContent);
         } catch (Exception e) {
             throw new RuntimeException("Failed to encrypt message", e);
         }
         message.setIsEdited(true);
+        message.setChangeSeq(nextChangeSeq(message.getConversation().getConversationId()));
+        messageHistoryService.recordEdit(message, previousContent, newContent, editor.getUserId());
         Message savedMessage = messageRepository.save(message);
-        // Return the message with decrypted content
-        savedMessage.setMessageContent(newContent);
-        return savedMessage;
+        messageSearchService.reindexMessage(savedMessage, newContent);
+        conversationRepository.updateLastMessagePreview(message.getConversation().getConversationId(), messageId,
+                encryptPreview(message.getConversation().getConversationId(), newContent));
+        eventPublisher.publishEvent(new MessageEventResponse(MessageEventType.EDITED, savedMessage, newContent));
+        List<AttachmentSummaryResponse> attachments = new ArrayList<>();
+        for (Object[] row : attachmentRepository.findSummariesByMessageIdIn(List.of(messageId))) {
+            attachments.add(new AttachmentSummaryResponse((UUID) row[1], (String) row[2], (String) row[3], (Long) row[4]));
+        }
+        return toResponse(savedMessage, newContent, attachments);
     }
 
     @Transactional
@@ -103,8 +381,72 @@ public class MessagingService {
             throw new SecurityException("User not authorized to delete this message");
         }
 
+        message.setChangeSeq(nextChangeSeq(message.getConversation().getConversationId()));
+        if (!Boolean.TRUE.equals(message.getIsDeleted())) {
+            // The message no longer counts as unread for anyone who had not read past it
+            conversationParticipantRepository.decrementUnreadCountsForDeleted(message.getConversation().getConversationId(),
+                    user.getUserId(), message.getSentAt(), message.getMessageId());
+            message.setDeletedAt(LocalDateTime.now());
+        }
         message.setIsDeleted(true);
         messageRepository.save(message);
+        messageSearchService.removeMessage(message);
+        replaceLastMessageIfDeleted(message);
+        eventPublisher.publishEvent(new MessageEventResponse(MessageEventType.DELETED, message, null));
+    }
+
+    /**
+     * Points the conversation's last-message metadata at the newest remaining message if the deleted
+     * message was the last one. Deleting any other message costs nothing here. The update is still
+     * conditional, in case a newer message has been sent since the conversation was read.
+     */
+    private void replaceLastMessageIfDeleted(Message deleted) {
+        Conversation conversation = deleted.getConversation();
+        if (!deleted.getMessageId().equals(conversation.getLastMessageId())) {
+            return;
+        }
+        List<Message> latest = messageRepository.findLatestActiveMessages(conversation, PageRequest.of(0, 1));
+        if (latest.isEmpty()) {
+            conversationRepository.replaceLastMessage(conversation.getConversationId(), deleted.getMessageId(), null, null, null, null);
+            return;
+        }
+        Message replacement = latest.get(0);
+        String plaintext;
+        try {
+            plaintext = messageCryptoService.decryptContent(replacement);
+        } catch (Exception e) {
+            plaintext = UNREADABLE_MESSAGE;
+        }
+        conversationRepository.replaceLastMessage(conversation.getConversationId(), deleted.getMessageId(), replacement.getMessageId(),
+                replacement.getSender().getUserId(), replacement.getSentAt(), encryptPreview(conversation.getConversationId(), plaintext));
+    }
+
+    private byte[] encryptPreview(UUID conversationId, String content) {
+        try {
+            return messageCryptoService.encryptPreview(conversationId, previewOf(content));
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to encrypt message", e);
+        }
+    }
+
+    /**
+     * The first {@link #PREVIEW_LENGTH} characters of the content, without splitting a surrogate pair.
+     */
+    static String previewOf(String content) {
+        int end = Math.min(content.length(), PREVIEW_LENGTH);
+        if (end < content.length() && Character.isHighSurrogate(content.charAt(end - 1))) {
+            end--;
+        }
+        return content.substring(0, end);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void backfillConversationLastMessage() {
+        int filled = conversationRepository.backfillLastMessage();
+        if (filled > 0) {
+            conversationRepository.backfillLastMessageSender();
+        }
     }
 
     @Transactional
@@ -112,15 +454,73 @@ public class MessagingService {
         Message message = messageRepository.findById(messageId)
                 .orElseThrow(() -> new RuntimeException("Message not found"));
 
-        // Check if user is a participant in the conversation
-        conversationParticipantRepository.findByConversationAndUser(message.getConversation(), user)
-                .orElseThrow(() -> new SecurityException("User is not a participant in this conversation."));
+        UUID participantId = membershipCache.requireParticipant(message.getConversation().getConversationId(), user.getUserId());
+        advanceReadWatermark(participantId, message);
+    }
+
+    /**
+     * Marks everything in the conversation up to and including the given message as read by moving the
+     * participant's read watermark forward. The watermark never moves backwards.
+     */
+    @Transactional
+    public void markConversationReadUpTo(UUID conversationId, UUID messageId, User user) {
+        UUID participantId = membershipCache.requireParticipant(conversationId, user.getUserId());
+        Message message = messageRepository.findById(messageId)
+                .orElseThrow(() -> new RuntimeException("Message not found"));
+        if (!message.getConversation().getConversationId().equals(conversationId)) {
+            throw new IllegalArgumentException("Message does not belong to this conversation.");
+        }
+
+        advanceReadWatermark(participantId, message);
+    }
+
+    /**
+     * Marks a batch of messages in one conversation as read. Participation is checked once and the
+     * messages are resolved with a single query; the read watermark then moves to the newest of them,
+     * which covers the whole batch in one update.
+     */
+    @Transactional
+    public void markMessagesAsRead(UUID conversationId, List<UUID> messageIds, User user) {
+        UUID participantId = membershipCache.requireParticipant(conversationId, user.getUserId());
 
-        // Check if the message has already been read by this user
-        if (!messageReadRepository.existsByMessageAndUser(message, user)) {
-            MessageRead readReceipt = new MessageRead(message, user);
-            messageReadRepository.save(readReceipt);
+        Set<UUID> distinctIds = new HashSet<>(messageIds);
+        List<Object[]> positions = messageRepository.findReadPositions(conversationId, distinctIds);
+        if (positions.size() != distinctIds.size()) {
+            throw new IllegalArgumentException("One or more messages do not belong to this conversation.");
         }
+
+        Object[] newest = positions.get(0);
+        advanceReadWatermark(participantId, conversationId, (LocalDateTime) newest[1], (UUID) newest[0]);
+    }
+
+    private void advanceReadWatermark(UUID participantId, Message message) {
+        advanceReadWatermark(participantId, message.getConversation().getConversationId(), message.getSentAt(), message.getMessageId());
+    }
+
+    private void advanceReadWatermark(UUID participantId, UUID conversationId, LocalDateTime sentAt, UUID messageId) {
+        // The watermark only moves forward, so a read behind it stays a no-op and needs no sequence number
+        if (!conversationParticipantRepository.isBeforeReadPosition(participantId, sentAt, messageId)) {
+            return;
+        }
+        // Lock the conversation before the participant row, in the same order as sends
+        long changeSeq = nextChangeSeq(conversationId);
+        // Participants that predate the read watermark only have per-message MessageRead rows
+        conversationParticipantRepository.seedReadWatermarkFromReceipts(participantId);
+        int advanced = conversationParticipantRepository.advanceReadWatermark(participantId, sentAt, messageId);
+        if (advanced > 0) {
+            conversationParticipantRepository.recountUnreadAfterWatermark(participantId);
+            conversationParticipantRepository.setReadSeq(participantId, changeSeq);
+        }
+    }
+
+    /**
+     * Takes the next value of the conversation's change sequence. The increment holds the conversation row
+     * lock until commit, so within a conversation, sequence order is commit order and a sync reader that sees
+     * value {@code n} has also seen every change numbered below it.
+     */
+    private long nextChangeSeq(UUID conversationId) {
+        conversationRepository.incrementChangeSeq(conversationId);
+        return conversationRepository.findChangeSeq(conversationId);
     }
 
     private void validateMessageContent(String content) {
@@ -132,14 +532,157 @@ public class MessagingService {
         }
     }
 
+    @Transactional
     public long getUnreadMessageCount(UUID conversationId, User user) {
-        Conversation conversation = conversationRepository.findById(conversationId)
-                .orElseThrow(() -> new RuntimeException("Conversation not found"));
+        return unreadCount(membershipCache.requireParticipant(conversationId, user.getUserId()));
+    }
 
-        // Check if user is a participant
-        conversationParticipantRepository.findByConversationAndUser(conversation, user)
-                .orElseThrow(() -> new SecurityException("User is not a participant in this conversation."));
+    /**
+     * Returns every active conversation of the user, most recent message first, with its unread count and a
+     * preview of the newest message. Everything comes from the denormalized conversation and participant rows.
+     */
+    @Transactional
+    public List<InboxEntryResponse> getInbox(User user) {
+        return toInboxEntries(conversationParticipantRepository.findInboxRowsByUser(user));
+    }
+
+    /**
+     * Pages through the user's conversations, most recent message first, keyed on {@code (lastMessageAt, conversationId)}.
+     */
+    @Transactional
+    public ConversationPageResponse getConversations(User user, String before, Integer limit) {
+        int pageSize = pageSize(limit);
+        PageRequest pageRequest = PageRequest.of(0, pageSize + 1);
+        List<Object[]> rows;
+        if (before == null || before.isBlank()) {
+            rows = conversationParticipantRepository.findInboxRowsByUser(user, pageRequest);
+        } else {
+            ConversationCursor cursor = ConversationCursor.parse(before);
+            rows = conversationParticipantRepository.findInboxRowsByUserBefore(user, cursor.getLastMessageAt(), cursor.getConversationId(), pageRequest);
+        }
+
+        boolean hasMore = rows.size() > pageSize;
+        if (hasMore) {
+            rows = rows.subList(0, pageSize);
+        }
+        Object[] last = rows.isEmpty() ? null : rows.get(rows.size() - 1);
+        String nextCursor = hasMore ? new ConversationCursor((LocalDateTime) last[6], (UUID) last[0]).toString() : null;
+        return new ConversationPageResponse(toInboxEntries(rows), nextCursor, hasMore);
+    }
+
+    private List<InboxEntryResponse> toInboxEntries(List<Object[]> rows) {
+        List<byte[]> previews = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            previews.add((byte[]) row[10]);
+        }
+        List<String> plaintexts = messageCryptoService.decryptPreviews(previews, UNREADABLE_MESSAGE);
+
+        List<InboxEntryResponse> entries = new ArrayList<>(rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            Object[] row = rows.get(i);
+            Long unread = (Long) row[3];
+            if (unread == null) {
+                unread = unreadCount((UUID) row[4]);
+            }
+            UUID lastMessageId = (UUID) row[5];
+            String senderName = MessageRow.displayName((String) row[8], (String) row[9]);
+            entries.add(new InboxEntryResponse((UUID) row[0], (String) row[1], (ConversationType) row[2], unread, lastMessageId,
+                    lastMessageId == null ? null : (LocalDateTime) row[6], (UUID) row[7], senderName, plaintexts.get(i)));
+        }
+        return entries;
+    }
+
+    /**
+     * Returns message and read-receipt changes in the user's conversations since the cursor, oldest change
+     * first per conversation, at most {@code limit} messages per call. Without a cursor nothing is returned
+     * except a cursor positioned at the current state, to be used after the client's initial history load.
+     * Only conversations whose change sequence moved are queried, so the cost follows the amount of change.
+     * Cursors are kept by the {@link SyncCursorStore}; the client only sees their ids.
+     */
+    @Transactional
+    public SyncResponse sync(User user, String cursorValue, Integer limit) {
+        List<Object[]> positions = conversationParticipantRepository.findSyncPositionsByUser(user);
+        Map<UUID, Long> next = new LinkedHashMap<>();
+        if (cursorValue == null || cursorValue.isBlank()) {
+            for (Object[] position : positions) {
+                next.put((UUID) position[0], position[1] == null ? 0L : (Long) position[1]);
+            }
+            String cursorId = syncCursorStore.save(user.getUserId(), new SyncCursor(next));
+            return new SyncResponse(new ArrayList<>(), new ArrayList<>(), cursorId, false);
+        }
+
+        SyncCursor cursor = syncCursorStore.load(cursorValue, user.getUserId());
+        int budget = pageSize(limit);
+        boolean hasMore = false;
+        List<Message> changed = new ArrayList<>();
+        List<ReadReceiptResponse> readReceipts = new ArrayList<>();
+        for (Object[] position : positions) {
+            UUID conversationId = (UUID) position[0];
+            long current = position[1] == null ? 0L : (Long) position[1];
+            long since = cursor.positionOf(conversationId);
+            if (current <= since) {
+                next.put(conversationId, since);
+                continue;
+            }
+            if (budget == 0) {
+                hasMore = true;
+                next.put(conversationId, since);
+                continue;
+            }
+
+            List<Message> messages = messageRepository.findChangedBetween(conversationId, since, current, PageRequest.of(0, budget + 1));
+            long upTo = current;
+            if (messages.size() > budget) {
+                messages = messages.subList(0, budget);
+                upTo = messages.get(messages.size() - 1).getChangeSeq();
+                hasMore = true;
+            }
+            budget -= messages.size();
+            changed.addAll(messages);
+            for (ConversationParticipant participant : conversationParticipantRepository.findReadChangesBetween(conversationId, since, upTo)) {
+                readReceipts.add(new ReadReceiptResponse(conversationId, participant.getUser().getUserId(),
+                        participant.getLastReadMessageId(), participant.getLastReadAt()));
+            }
+            next.put(conversationId, upTo);
+        }
+
+        // Deleted messages are reported without content, so only the others are decrypted
+        List<Message> readable = new ArrayList<>();
+        for (Message message : changed) {
+            if (!Boolean.TRUE.equals(message.getIsDeleted())) {
+                readable.add(message);
+            }
+        }
+        List<String> plaintexts = messageCryptoService.decryptContents(readable, UNREADABLE_MESSAGE);
+        Map<UUID, String> plaintextById = new HashMap<>();
+        for (int i = 0; i < readable.size(); i++) {
+            plaintextById.put(readable.get(i).getMessageId(), plaintexts.get(i));
+        }
+
+        List<MessageEventResponse> events = new ArrayList<>(changed.size());
+        for (Message message : changed) {
+            MessageEventType eventType = Boolean.TRUE.equals(message.getIsDeleted()) ? MessageEventType.DELETED
+                    : Boolean.TRUE.equals(message.getIsEdited()) ? MessageEventType.EDITED : MessageEventType.CREATED;
+            events.add(new MessageEventResponse(eventType, message, plaintextById.get(message.getMessageId())));
+        }
+        // An unchanged position keeps its id, so polling without changes writes nothing
+        String nextCursor = next.equals(cursor.getPositions())
+                ? cursorValue.trim() : syncCursorStore.save(user.getUserId(), new SyncCursor(next));
+        return new SyncResponse(events, readReceipts, nextCursor, hasMore);
+    }
+
+    /**
+     * Reads the participant's materialized unread counter. Counters start out null for participants that
+     * predate them; those are counted once here and kept up to date by sends, reads and deletes afterwards.
+     */
+    private long unreadCount(UUID participantId) {
+        Long stored = conversationParticipantRepository.findUnreadCount(participantId);
+        if (stored != null) {
+            return stored;
+        }
 
-        return messageRepository.countUnreadMessagesForUser(conversation, user);
+        conversationParticipantRepository.seedReadWatermarkFromReceipts(participantId);
+        conversationParticipantRepository.initializeUnreadCountFromWatermark(participantId);
+        return conversationParticipantRepository.findUnreadCount(participantId);
     }
 }
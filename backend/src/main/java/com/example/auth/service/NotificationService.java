@@ -12,6 +12,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
+
 @Service
 public class NotificationService {
 
@@ -38,13 +40,30 @@ public class NotificationService {
 
     @Transactional
     public void createNotification(User user, String title, String message, NotificationType type) {
+        notificationRepository.save(buildNotification(user, title, message, type));
+        logger.info("Created {} notification for user {}: {}", type, user.getUserId(), title);
+    }
+
+    /**
+     * Persists a batch of notifications in one call so the inserts are grouped into JDBC batches
+     * (see {@code hibernate.jdbc.batch_size}).
+     */
+    @Transactional
+    public void createNotifications(List<Notification> notifications) {
+        if (notifications.isEmpty()) {
+            return;
+        }
+        notificationRepository.saveAll(notifications);
+        logger.info("Created {} notifications", notifications.size());
+    }
+
+    public Notification buildNotification(User user, String title, String message, NotificationType type) {
         Notification notification = new Notification();
         notification.setUser(user);
         notification.setTitle(title);
         notification.setMessage(message);
         notification.setNotificationType(type);
         notification.setStatus(NotificationStatus.PENDING);
-        notificationRepository.save(notification);
-        logger.info("Created {} notification for user {}: {}", type, user.getUserId(), title);
+        return notification;
     }
 }
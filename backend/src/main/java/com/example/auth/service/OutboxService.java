@@ -0,0 +1,190 @@
+package com.example.auth.service;
+
+import com.example.auth.model.Message;
+import com.example.auth.model.Notification;
+import com.example.auth.model.NotificationType;
+import com.example.auth.model.OutboxEvent;
+import com.example.auth.model.OutboxEventType;
+import com.example.auth.model.User;
+import com.example.auth.repository.ConversationParticipantRepository;
+import com.example.auth.repository.OutboxEventRepository;
+import com.example.auth.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Transactional outbox for side effects of messaging. Events are written in the caller's transaction
+ * and drained in the background, so the cost of notification fan-out stays off the request path.
+ * <p>
+ * A failed event is retried with exponential backoff, up to {@value #MAX_ATTEMPTS} attempts, so a
+ * transient failure has time to clear and a poison event cannot hold up the rest of the outbox.
+ */
+@Service
+public class OutboxService {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutboxService.class);
+    private static final int MAX_ATTEMPTS = 5;
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final ConversationParticipantRepository conversationParticipantRepository;
+    private final UserRepository userRepository;
+    private final NotificationService notificationService;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final int retentionHours;
+    private final Duration retryBackoff;
+
+    public OutboxService(OutboxEventRepository outboxEventRepository,
+                         ConversationParticipantRepository conversationParticipantRepository,
+                         UserRepository userRepository,
+                         NotificationService notificationService,
+                         PlatformTransactionManager transactionManager,
+                         @Value("${app.outbox.batch-size:100}") int batchSize,
+                         @Value("${app.outbox.retention-hours:24}") int retentionHours,
+                         @Value("${app.outbox.retry-backoff-ms:5000}") long retryBackoffMillis) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.conversationParticipantRepository = conversationParticipantRepository;
+        this.userRepository = userRepository;
+        this.notificationService = notificationService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.retentionHours = retentionHours;
+        this.retryBackoff = Duration.ofMillis(retryBackoffMillis);
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueueMessageSent(Message message, User sender) {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("conversationId", message.getConversation().getConversationId().toString());
+        payload.put("senderId", sender.getUserId().toString());
+        payload.put("senderFirstName", sender.getFirstName());
+        outboxEventRepository.save(new OutboxEvent(OutboxEventType.MESSAGE_SENT, message.getMessageId(), payload));
+    }
+
+    /**
+     * Dispatches batches while full ones keep being processed. Failed events are backed off, so they are
+     * not claimed again by the same run.
+     */
+    @Scheduled(fixedDelayString = "${app.outbox.poll-interval-ms:1000}")
+    public void drain() {
+        Batch batch;
+        do {
+            batch = dispatchBatch();
+        } while (batch.claimed() == batchSize && batch.processed() > 0);
+    }
+
+    /**
+     * Dispatches one batch of pending events in its own transaction. All notifications produced by the
+     * batch are written with a single batched insert; an event that cannot be handled is retried on a
+     * later pass. If the insert fails, the batch rolls back and the failed attempt is recorded on each of
+     * its events in a separate transaction.
+     */
+    private Batch dispatchBatch() {
+        List<UUID> claimed = new ArrayList<>();
+        try {
+            return transactionTemplate.execute(status -> dispatchPending(claimed));
+        } catch (RuntimeException e) {
+            if (claimed.isEmpty()) {
+                throw e;
+            }
+            logger.warn("Outbox batch of {} events failed: {}", claimed.size(), e.getMessage());
+            LocalDateTime now = LocalDateTime.now();
+            transactionTemplate.executeWithoutResult(status ->
+                    outboxEventRepository.findAllById(claimed).forEach(event -> recordFailure(event, e, now)));
+            return new Batch(claimed.size(), 0);
+        }
+    }
+
+    private Batch dispatchPending(List<UUID> claimed) {
+        LocalDateTime now = LocalDateTime.now();
+        List<OutboxEvent> events = outboxEventRepository.findPendingForUpdate(MAX_ATTEMPTS, now, PageRequest.of(0, batchSize));
+        events.forEach(event -> claimed.add(event.getEventId()));
+
+        List<Notification> notifications = new ArrayList<>();
+        int processed = 0;
+        for (OutboxEvent event : events) {
+            try {
+                notifications.addAll(handle(event));
+                event.setProcessedAt(now);
+                processed++;
+            } catch (RuntimeException e) {
+                recordFailure(event, e, now);
+            }
+        }
+        if (!notifications.isEmpty()) {
+            notificationService.createNotifications(notifications);
+        }
+        if (!events.isEmpty()) {
+            logger.debug("Dispatched {} of {} outbox events into {} notifications", processed, events.size(), notifications.size());
+        }
+        return new Batch(events.size(), processed);
+    }
+
+    @Scheduled(fixedDelayString = "${app.outbox.cleanup-interval-ms:3600000}")
+    @Transactional
+    public void purgeProcessed() {
+        int deleted = outboxEventRepository.deleteProcessedBefore(LocalDateTime.now().minusHours(retentionHours));
+        if (deleted > 0) {
+            logger.info("Purged {} processed outbox events", deleted);
+        }
+    }
+
+    private void recordFailure(OutboxEvent event, RuntimeException error, LocalDateTime now) {
+        event.setAttempts(event.getAttempts() + 1);
+        event.setLastError(truncate(error.getMessage()));
+        // 1, 2, 4, 8... times the base backoff
+        event.setNextAttemptAt(now.plus(retryBackoff.multipliedBy(1L << Math.min(event.getAttempts() - 1, 20))));
+        logger.warn("Outbox event {} failed (attempt {}): {}", event.getEventId(), event.getAttempts(), error.getMessage());
+    }
+
+    private List<Notification> handle(OutboxEvent event) {
+        switch (event.getEventType()) {
+            case MESSAGE_SENT:
+                return messageSentNotifications(event);
+            default:
+                throw new IllegalStateException("Unsupported outbox event type: " + event.getEventType());
+        }
+    }
+
+    private List<Notification> messageSentNotifications(OutboxEvent event) {
+        UUID conversationId = UUID.fromString((String) event.getPayload().get("conversationId"));
+        UUID senderId = UUID.fromString((String) event.getPayload().get("senderId"));
+        String title = "New Message from " + event.getPayload().get("senderFirstName");
+        String body = "You have a new message in your conversation.";
+
+        List<Notification> notifications = new ArrayList<>();
+        for (UUID userId : conversationParticipantRepository.findActiveParticipantUserIds(conversationId)) {
+            if (!userId.equals(senderId)) {
+                notifications.add(notificationService.buildNotification(
+                        userRepository.getReferenceById(userId), title, body, NotificationType.MESSAGE_ALERT));
+            }
+        }
+        return notifications;
+    }
+
+    private static String truncate(String error) {
+        if (error == null) {
+            return null;
+        }
+        return error.length() > 500 ? error.substring(0, 500) : error;
+    }
+
+    private record Batch(int claimed, int processed) {
+    }
+}
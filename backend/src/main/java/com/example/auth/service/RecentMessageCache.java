@@ -0,0 +1,263 @@
+package com.example.auth.service;
+
+import com.example.auth.dto.response.AttachmentSummaryResponse;
+import com.example.auth.dto.response.MessageEventResponse;
+import com.example.auth.model.MessageType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongFunction;
+
+/**
+ * Keeps the newest decrypted messages of recently read conversations in memory, so reopening an
+ * active conversation does not repeat the history query and the per-message decryption.
+ * <p>
+ * Each cached window is the newest {@code window-size} active messages of one conversation. Windows are
+ * updated in place from committed message events; loads that race with a committed change are not cached.
+ * Events only reach the instance that committed the change, so before serving a window the caller's change
+ * log is asked for message changes since the window was loaded: if any of them was not applied here, another
+ * instance made it and the window is dropped. Changes that do not move the message change sequence, such as
+ * attachments and retention on other instances, show up after the TTL.
+ * The cache holds plain snapshots rather than entities, and it performs no access checks of its own:
+ * callers must verify participation before reading from it.
+ */
+@Service
+public class RecentMessageCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(RecentMessageCache.class);
+    private static final Comparator<CachedMessage> NEWEST_FIRST =
+            Comparator.comparing(CachedMessage::sentAt).thenComparing(CachedMessage::messageId).reversed();
+    private static final int STAMP_STRIPES = 1024;
+
+    private final boolean enabled;
+    private final int windowSize;
+    private final ExpiringLruCache<UUID, Window> windows;
+
+    // Bumped on every committed change; a load is only cached if its conversation's stripe did not move
+    private final AtomicLongArray changeStamps = new AtomicLongArray(STAMP_STRIPES);
+
+    private long lastLoggedHits;
+    private long lastLoggedMisses;
+
+    public RecentMessageCache(@Value("${app.messaging.recent-cache.enabled:true}") boolean enabled,
+                              @Value("${app.messaging.recent-cache.window-size:50}") int windowSize,
+                              @Value("${app.messaging.recent-cache.max-conversations:1000}") int maxConversations,
+                              @Value("${app.messaging.recent-cache.ttl-ms:60000}") long ttlMillis) {
+        this.enabled = enabled;
+        this.windowSize = windowSize;
+        this.windows = new ExpiringLruCache<>(maxConversations, Duration.ofMillis(ttlMillis));
+    }
+
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    /**
+     * Returns the newest {@code limit} messages, newest first, or {@code null} if the window is not cached,
+     * is stale or cannot answer the request.
+     *
+     * @param changesAfter change sequence positions of the conversation's messages after the given one
+     */
+    public Page getLatest(UUID conversationId, int limit, LongFunction<List<Long>> changesAfter) {
+        if (!enabled || limit > windowSize) {
+            return null;
+        }
+        Window window = windows.get(conversationId);
+        if (window == null) {
+            return null;
+        }
+        if (!window.isCurrent(changesAfter.apply(window.changeSeq()))) {
+            windows.invalidate(conversationId);
+            return null;
+        }
+        return window.latest(limit);
+    }
+
+    /**
+     * Marks the start of a load for the conversation. Pass the result to {@link #putLatest}.
+     */
+    public long beginLoad(UUID conversationId) {
+        return changeStamps.get(stripe(conversationId));
+    }
+
+    /**
+     * Caches a freshly loaded window unless a change to the conversation committed since {@link #beginLoad}.
+     *
+     * @param newestFirst at most {@link #getWindowSize()} messages, newest first
+     * @param hasOlder whether older active messages exist beyond the window
+     * @param changeSeq the latest message change sequence position, read before the messages
+     */
+    public void putLatest(UUID conversationId, List<CachedMessage> newestFirst, boolean hasOlder, long stamp, long changeSeq) {
+        if (!enabled || changeStamps.get(stripe(conversationId)) != stamp) {
+            return;
+        }
+        windows.put(conversationId, new Window(windowSize, newestFirst, hasOlder, changeSeq));
+    }
+
+    @TransactionalEventListener
+    public void onMessageEvent(MessageEventResponse event) {
+        changeStamps.incrementAndGet(stripe(event.getConversationId()));
+        Window window = windows.get(event.getConversationId());
+        if (window == null) {
+            return;
+        }
+        window.applied(event.getChangeSeq());
+        switch (event.getEventType()) {
+            case CREATED:
+                window.add(new CachedMessage(event.getMessageId(), event.getSenderId(), null, event.getMessageContent(),
+                        event.getMessageType(), event.getSentAt(), Boolean.TRUE.equals(event.getIsEdited()), new ArrayList<>()));
+                break;
+            case EDITED:
+                window.replaceContent(event.getMessageId(), event.getMessageContent());
+                break;
+            case DELETED:
+                window.remove(event.getMessageId());
+                break;
+        }
+    }
+
+    /**
+     * Drops the conversation's window after a committed change that did not go through message events,
+     * such as retention moving messages out of the table.
+     */
+    public void evict(UUID conversationId) {
+        changeStamps.incrementAndGet(stripe(conversationId));
+        windows.invalidate(conversationId);
+    }
+
+    public long getHits() {
+        return windows.getHits();
+    }
+
+    public long getMisses() {
+        return windows.getMisses();
+    }
+
+    public long getEvictions() {
+        return windows.getEvictions();
+    }
+
+    public int getSize() {
+        return windows.size();
+    }
+
+    @Scheduled(fixedDelayString = "${app.messaging.recent-cache.stats-interval-ms:300000}")
+    public void logStats() {
+        long hits = getHits();
+        long misses = getMisses();
+        if (hits == lastLoggedHits && misses == lastLoggedMisses) {
+            return;
+        }
+        long total = hits + misses;
+        logger.info("Recent message cache: {} conversations, {} hits, {} misses ({}% hit rate), {} evictions",
+                getSize(), hits, misses, total == 0 ? 0 : hits * 100 / total, getEvictions());
+        lastLoggedHits = hits;
+        lastLoggedMisses = misses;
+    }
+
+    private static int stripe(UUID conversationId) {
+        return (conversationId.hashCode() & Integer.MAX_VALUE) % STAMP_STRIPES;
+    }
+
+    /**
+     * A decrypted message as held by the cache. Messages added from events have no sender name.
+     */
+    public record CachedMessage(UUID messageId, UUID senderId, String senderName, String content, MessageType messageType,
+                                LocalDateTime sentAt, boolean edited, List<AttachmentSummaryResponse> attachments) {
+
+        CachedMessage withContent(String newContent) {
+            return new CachedMessage(messageId, senderId, senderName, newContent, messageType, sentAt, true, attachments);
+        }
+    }
+
+    public record Page(List<CachedMessage> messages, boolean hasMore) {
+    }
+
+    private static final class Window {
+        private final int capacity;
+        private final List<CachedMessage> newestFirst;
+        private boolean hasOlder;
+        // Message changes are reflected up to changeSeq, plus the later ones applied from events
+        private long changeSeq;
+        private final Set<Long> appliedAfter = new HashSet<>();
+
+        Window(int capacity, List<CachedMessage> newestFirst, boolean hasOlder, long changeSeq) {
+            this.capacity = capacity;
+            this.newestFirst = new ArrayList<>(newestFirst);
+            this.hasOlder = hasOlder;
+            this.changeSeq = changeSeq;
+        }
+
+        synchronized long changeSeq() {
+            return changeSeq;
+        }
+
+        synchronized void applied(Long seq) {
+            if (seq != null && seq > changeSeq) {
+                appliedAfter.add(seq);
+            }
+        }
+
+        synchronized boolean isCurrent(List<Long> changedAfter) {
+            if (!appliedAfter.containsAll(changedAfter)) {
+                return false;
+            }
+            if (!changedAfter.isEmpty()) {
+                changeSeq = Math.max(changeSeq, Collections.max(changedAfter));
+                appliedAfter.removeIf(seq -> seq <= changeSeq);
+            }
+            return true;
+        }
+
+        synchronized Page latest(int limit) {
+            if (newestFirst.size() >= limit) {
+                return new Page(new ArrayList<>(newestFirst.subList(0, limit)), newestFirst.size() > limit || hasOlder);
+            }
+            // Deletions shrank the window below the request and older messages exist: go to the database
+            return hasOlder ? null : new Page(new ArrayList<>(newestFirst), false);
+        }
+
+        synchronized void add(CachedMessage message) {
+            if (newestFirst.stream().anyMatch(m -> m.messageId().equals(message.messageId()))) {
+                return;
+            }
+            // Events may commit out of timestamp order, so insert in place
+            int index = 0;
+            while (index < newestFirst.size() && NEWEST_FIRST.compare(newestFirst.get(index), message) < 0) {
+                index++;
+            }
+            if (index == newestFirst.size() && newestFirst.size() >= capacity) {
+                // Older than everything in a full window
+                hasOlder = true;
+                return;
+            }
+            newestFirst.add(index, message);
+            if (newestFirst.size() > capacity) {
+                newestFirst.remove(newestFirst.size() - 1);
+                hasOlder = true;
+            }
+        }
+
+        synchronized void replaceContent(UUID messageId, String content) {
+            newestFirst.replaceAll(m -> m.messageId().equals(messageId) ? m.withContent(content) : m);
+        }
+
+        synchronized void remove(UUID messageId) {
+            newestFirst.removeIf(m -> m.messageId().equals(messageId));
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.auth.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3ClientBuilder;
+import software.amazon.awssdk.services.s3.S3Configuration;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.NoSuchUploadException;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link BlobStore} on Amazon S3 or an S3-compatible service, enabled with {@code app.storage.type=s3}.
+ * Content of known length is sent as a single streamed PUT; content of unknown length goes up as a
+ * multipart upload, holding one part in memory at a time.
+ */
+@Service
+@ConditionalOnProperty(name = "app.storage.type", havingValue = "s3")
+public class S3BlobStore implements BlobStore {
+
+    private static final int PART_SIZE = 8 * 1024 * 1024;
+
+    private final S3Client s3;
+    private final String bucket;
+
+    public S3BlobStore(@Value("${app.storage.s3.bucket}") String bucket,
+                       @Value("${app.storage.s3.region:eu-west-2}") String region,
+                       @Value("${app.storage.s3.endpoint:}") String endpoint,
+                       @Value("${app.storage.s3.path-style-access:false}") boolean pathStyleAccess) {
+        S3ClientBuilder builder = S3Client.builder()
+                .region(Region.of(region))
+                .serviceConfiguration(S3Configuration.builder().pathStyleAccessEnabled(pathStyleAccess).build());
+        if (!endpoint.isBlank()) {
+            builder.endpointOverride(URI.create(endpoint));
+        }
+        this.s3 = builder.build();
+        this.bucket = bucket;
+    }
+
+    @Override
+    public void put(String key, InputStream content, long contentLength) throws IOException {
+        try {
+            if (contentLength >= 0) {
+                s3.putObject(PutObjectRequest.builder().bucket(bucket).key(key).contentLength(contentLength).build(),
+                        RequestBody.fromInputStream(content, contentLength));
+            } else {
+                putMultipart(key, content);
+            }
+        } catch (SdkException e) {
+            throw new IOException("Failed to store blob " + key, e);
+        }
+    }
+
+    @Override
+    public InputStream open(String key, long offset, long length) throws IOException {
+        if (length == 0) {
+            return InputStream.nullInputStream();
+        }
+        try {
+            return s3.getObject(GetObjectRequest.builder().bucket(bucket).key(key)
+                    .range("bytes=" + offset + "-" + (offset + length - 1)).build());
+        } catch (SdkException e) {
+            throw new IOException("Failed to read blob " + key, e);
+        }
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        try {
+            s3.deleteObject(request -> request.bucket(bucket).key(key));
+        } catch (SdkException e) {
+            throw new IOException("Failed to delete blob " + key, e);
+        }
+    }
+
+    @Override
+    public String startMultipart(String key) throws IOException {
+        try {
+            return s3.createMultipartUpload(request -> request.bucket(bucket).key(key)).uploadId();
+        } catch (SdkException e) {
+            throw new IOException("Failed to start multipart upload of blob " + key, e);
+        }
+    }
+
+    @Override
+    public String putPart(String key, String uploadId, int partNumber, long offset, InputStream content, long length)
+            throws IOException {
+        try {
+            return s3.uploadPart(UploadPartRequest.builder().bucket(bucket).key(key).uploadId(uploadId)
+                            .partNumber(partNumber).contentLength(length).build(),
+                    RequestBody.fromInputStream(content, length)).eTag();
+        } catch (SdkException e) {
+            throw new IOException("Failed to store part " + partNumber + " of blob " + key, e);
+        }
+    }
+
+    @Override
+    public void completeMultipart(String key, String uploadId, List<String> partTags) throws IOException {
+        List<CompletedPart> parts = new ArrayList<>();
+        for (int i = 0; i < partTags.size(); i++) {
+            parts.add(CompletedPart.builder().partNumber(i + 1).eTag(partTags.get(i)).build());
+        }
+        try {
+            s3.completeMultipartUpload(request -> request.bucket(bucket).key(key).uploadId(uploadId)
+                    .multipartUpload(upload -> upload.parts(parts)));
+        } catch (SdkException e) {
+            throw new IOException("Failed to complete multipart upload of blob " + key, e);
+        }
+    }
+
+    @Override
+    public void abortMultipart(String key, String uploadId) throws IOException {
+        try {
+            s3.abortMultipartUpload(request -> request.bucket(bucket).key(key).uploadId(uploadId));
+        } catch (NoSuchUploadException e) {
+            // Already completed or aborted
+        } catch (SdkException e) {
+            throw new IOException("Failed to abort multipart upload of blob " + key, e);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        s3.close();
+    }
+
+    private void putMultipart(String key, InputStream content) throws IOException {
+        String uploadId = s3.createMultipartUpload(request -> request.bucket(bucket).key(key)).uploadId();
+        List<CompletedPart> parts = new ArrayList<>();
+        byte[] buffer = new byte[PART_SIZE];
+        try {
+            for (int partNumber = 1; ; partNumber++) {
+                int read = content.readNBytes(buffer, 0, PART_SIZE);
+                if (read == 0 && partNumber > 1) {
+                    break;
+                }
+                String eTag = s3.uploadPart(UploadPartRequest.builder().bucket(bucket).key(key).uploadId(uploadId)
+                                .partNumber(partNumber).contentLength((long) read).build(),
+                        RequestBody.fromInputStream(new ByteArrayInputStream(buffer, 0, read), read)).eTag();
+                parts.add(CompletedPart.builder().partNumber(partNumber).eTag(eTag).build());
+                if (read < PART_SIZE) {
+                    break;
+                }
+            }
+            s3.completeMultipartUpload(request -> request.bucket(bucket).key(key).uploadId(uploadId)
+                    .multipartUpload(upload -> upload.parts(parts)));
+        } catch (IOException | SdkException e) {
+            s3.abortMultipartUpload(request -> request.bucket(bucket).key(key).uploadId(uploadId));
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.auth.service;
+
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * A client's delta-sync position: the last change sequence value it has seen in each of its conversations.
+ * Stored by the {@link SyncCursorStore} as consecutive {@code (conversationId, changeSeq)} pairs.
+ */
+final class SyncCursor {
+
+    private static final int ENTRY_BYTES = 16 + 8;
+
+    private final Map<UUID, Long> positions;
+
+    SyncCursor(Map<UUID, Long> positions) {
+        this.positions = positions;
+    }
+
+    static SyncCursor fromBytes(byte[] bytes) {
+        if (bytes.length % ENTRY_BYTES != 0) {
+            throw new IllegalStateException("Malformed sync cursor");
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        Map<UUID, Long> positions = new LinkedHashMap<>();
+        while (buffer.hasRemaining()) {
+            positions.put(new UUID(buffer.getLong(), buffer.getLong()), buffer.getLong());
+        }
+        return new SyncCursor(positions);
+    }
+
+    /**
+     * Returns the position for a conversation, or 0 for one the client has not synced before.
+     */
+    long positionOf(UUID conversationId) {
+        return positions.getOrDefault(conversationId, 0L);
+    }
+
+    Map<UUID, Long> getPositions() {
+        return positions;
+    }
+
+    byte[] toBytes() {
+        ByteBuffer buffer = ByteBuffer.allocate(positions.size() * ENTRY_BYTES);
+        positions.forEach((conversationId, seq) -> buffer
+                .putLong(conversationId.getMostSignificantBits())
+                .putLong(conversationId.getLeastSignificantBits())
+                .putLong(seq));
+        return buffer.array();
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.auth.service;
+
+import com.example.auth.exception.SyncCursorExpiredException;
+import com.example.auth.model.SyncCursorSnapshot;
+import com.example.auth.repository.SyncCursorSnapshotRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Keeps sync cursors on the server and hands clients an id. A cursor holds a position per conversation,
+ * which for users in many conversations would outgrow a query string. A sync that moves the position
+ * stores a new snapshot; one that does not hands back the id it was given, so polling an idle account
+ * writes nothing. Snapshots unused for the configured number of days are removed, after which the client
+ * is told to reload its history and start over.
+ */
+@Service
+public class SyncCursorStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(SyncCursorStore.class);
+    // How stale lastUsedAt may get before a sync from the snapshot refreshes it
+    private static final Duration TOUCH_INTERVAL = Duration.ofHours(1);
+
+    private final SyncCursorSnapshotRepository syncCursorSnapshotRepository;
+    private final Duration ttl;
+
+    public SyncCursorStore(SyncCursorSnapshotRepository syncCursorSnapshotRepository,
+                           @Value("${app.messaging.sync.cursor-ttl-days:30}") long ttlDays) {
+        this.syncCursorSnapshotRepository = syncCursorSnapshotRepository;
+        this.ttl = Duration.ofDays(ttlDays);
+    }
+
+    /**
+     * Returns the user's cursor with the given id.
+     *
+     * @throws SyncCursorExpiredException if there is no such cursor, including ids in an older format
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public SyncCursor load(String cursorId, UUID userId) {
+        UUID id;
+        try {
+            id = UUID.fromString(cursorId.trim());
+        } catch (IllegalArgumentException e) {
+            throw new SyncCursorExpiredException();
+        }
+        SyncCursorSnapshot snapshot = syncCursorSnapshotRepository.findById(id)
+                .filter(found -> found.getUserId().equals(userId))
+                .orElseThrow(SyncCursorExpiredException::new);
+        LocalDateTime now = LocalDateTime.now();
+        if (snapshot.getLastUsedAt().isBefore(now.minus(TOUCH_INTERVAL))) {
+            syncCursorSnapshotRepository.touch(id, now);
+        }
+        return SyncCursor.fromBytes(snapshot.getPositions());
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public String save(UUID userId, SyncCursor cursor) {
+        SyncCursorSnapshot snapshot = new SyncCursorSnapshot(userId, cursor.toBytes(), LocalDateTime.now());
+        return syncCursorSnapshotRepository.save(snapshot).getCursorId().toString();
+    }
+
+    @Scheduled(initialDelayString = "${app.messaging.sync.cleanup-initial-delay-ms:300000}",
+               fixedDelayString = "${app.messaging.sync.cleanup-interval-ms:3600000}")
+    @Transactional
+    public void removeExpired() {
+        int removed = syncCursorSnapshotRepository.deleteLastUsedBefore(LocalDateTime.now().minus(ttl));
+        if (removed > 0) {
+            logger.info("Removed {} expired sync cursors", removed);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.auth.service;
+
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+
+/**
+ * Normalises the client-supplied name and content type of an uploaded file before they are stored.
+ */
+final class UploadedFiles {
+
+    private static final int MAX_FILE_NAME_LENGTH = 255;
+
+    private UploadedFiles() {
+    }
+
+    static String fileName(String originalFileName, String fallback) {
+        if (originalFileName == null) {
+            return fallback;
+        }
+        // Browsers on some platforms send the full client-side path
+        String name = originalFileName.substring(Math.max(originalFileName.lastIndexOf('/'), originalFileName.lastIndexOf('\\')) + 1).trim();
+        if (name.isEmpty()) {
+            return fallback;
+        }
+        return name.length() > MAX_FILE_NAME_LENGTH ? name.substring(0, MAX_FILE_NAME_LENGTH) : name;
+    }
+
+    static String mimeType(String contentType) {
+        if (contentType == null) {
+            return MediaType.APPLICATION_OCTET_STREAM_VALUE;
+        }
+        try {
+            return MediaType.parseMediaType(contentType).toString();
+        } catch (InvalidMediaTypeException e) {
+            return MediaType.APPLICATION_OCTET_STREAM_VALUE;
+        }
+    }
+}
@@ -1,9 +1,19 @@
 package com.example.auth.controller;
 
 import com.example.auth.model.Employee;
+import com.example.auth.model.Document;
+import com.example.auth.model.PreviewStatus;
 import com.example.auth.model.User;
+import com.example.auth.repository.DocumentBlobRepository;
+import com.example.auth.repository.DocumentRepository;
+import com.example.auth.repository.DocumentUploadChunkRepository;
+import com.example.auth.repository.DocumentUploadRepository;
 import com.example.auth.repository.EmployeeRepository;
 import com.example.auth.repository.UserRepository;
+import com.example.auth.service.BlobStore;
+import com.example.auth.service.DocumentPreviewService;
+import com.example.auth.service.DocumentStorageService;
+import com.example.auth.service.DocumentUploadService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -11,17 +21,48 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
 @AutoConfigureMockMvc
 @Transactional
+// Tests run the background jobs themselves; a scheduled preview sweep would race them
+@TestPropertySource(properties = "app.scheduling.enabled=false")
 public class DocumentControllerIntegrationTest {
 
     @Autowired
@@ -36,6 +77,36 @@ public class DocumentControllerIntegrationTest {
     @Autowired
     private EmployeeRepository employeeRepository;
 
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    @Autowired
+    private DocumentBlobRepository documentBlobRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @Autowired
+    private DocumentStorageService documentStorageService;
+
+    @Autowired
+    private DocumentUploadService documentUploadService;
+
+    @Autowired
+    private DocumentUploadRepository documentUploadRepository;
+
+    @Autowired
+    private DocumentUploadChunkRepository documentUploadChunkRepository;
+
+    @Autowired
+    private DocumentPreviewService documentPreviewService;
+
+    @Autowired
+    private jakarta.persistence.EntityManager entityManager;
+
     private User testUser;
     private Employee testEmployee;
 
@@ -69,4 +140,493 @@ public class DocumentControllerIntegrationTest {
                 .andExpect(jsonPath("$.documentId").exists())
                 .andExpect(jsonPath("$.documentName").value("Test Document"));
     }
+
+    @Test
+    @WithMockUser("doc-user")
+    public void whenUploadDocumentFile_thenContentIsStoredWithRealSizeAndHash() throws Exception {
+        byte[] bytes = new byte[3 * 1024 * 1024 + 17];
+        new Random(42).nextBytes(bytes);
+        String sha256 = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+
+        String response = mockMvc.perform(multipart("/api/documents")
+                .file(new MockMultipartFile("file", "/home/scans/fit-note.pdf", "application/pdf", bytes))
+                .param("documentName", "Fit Note")
+                .param("documentType", "medical_report")
+                .param("employeeId", testEmployee.getEmployeeId().toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.documentName").value("Fit Note"))
+                .andExpect(jsonPath("$.fileSize").value(bytes.length))
+                .andReturn().getResponse().getContentAsString();
+
+        UUID documentId = UUID.fromString(objectMapper.readTree(response).get("documentId").asText());
+        Document document = documentRepository.findById(documentId).orElseThrow();
+        assertEquals(sha256, document.getFileHash());
+        assertEquals("fit-note.pdf", document.getFileName());
+        assertEquals("application/pdf", document.getMimeType());
+        try (InputStream in = blobStore.open(document.getFilePath(), 0, bytes.length)) {
+            assertArrayEquals(bytes, in.readAllBytes());
+        }
+    }
+
+    @Test
+    @WithMockUser("doc-user")
+    public void whenSameContentUploadedTwice_thenOneBlobIsSharedUntilLastDocumentDeleted() throws Exception {
+        byte[] bytes = "Display screen equipment policy, version 3".getBytes(java.nio.charset.StandardCharsets.UTF_8);
+        long savedBefore = documentStorageService.getStats().getSavedBytes();
+
+        Document first = documentRepository.findById(uploadFile("DSE Policy", bytes)).orElseThrow();
+        Document second = documentRepository.findById(uploadFile("DSE Policy (signed)", bytes)).orElseThrow();
+        assertEquals(first.getFilePath(), second.getFilePath());
+        assertEquals(first.getFileHash(), second.getFileHash());
+
+        mockMvc.perform(get("/api/documents/storage/stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.savedBytes").value(savedBefore + bytes.length));
+
+        // Still referenced by the second document, so never collected
+        mockMvc.perform(delete("/api/documents/" + first.getDocumentId())).andExpect(status().isOk());
+        documentStorageService.collectOrphanedBatch(LocalDateTime.now().plusMinutes(1));
+        try (InputStream in = blobStore.open(second.getFilePath(), 0, bytes.length)) {
+            assertArrayEquals(bytes, in.readAllBytes());
+        }
+
+        mockMvc.perform(delete("/api/documents/" + second.getDocumentId())).andExpect(status().isOk());
+        assertEquals(0, documentStorageService.collectOrphanedBatch(LocalDateTime.now().minusMinutes(1)));
+        assertEquals(1, documentStorageService.collectOrphanedBatch(LocalDateTime.now().plusMinutes(1)));
+        assertThrows(java.io.IOException.class, () -> blobStore.open(second.getFilePath(), 0, bytes.length).close());
+    }
+
+    private UUID uploadFile(String documentName, byte[] bytes) throws Exception {
+        String response = mockMvc.perform(multipart("/api/documents")
+                .file(new MockMultipartFile("file", "policy.pdf", "application/pdf", bytes))
+                .param("documentName", documentName)
+                .param("documentType", "other")
+                .param("employeeId", testEmployee.getEmployeeId().toString()))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return UUID.fromString(objectMapper.readTree(response).get("documentId").asText());
+    }
+
+    @Test
+    @WithMockUser("doc-user")
+    public void whenAnotherEmployeeDownloadsDocument_thenForbidden() throws Exception {
+        userRepository.save(new User("doc-other@example.com", "doc-other", "password", "Other", "Employee",
+                com.example.auth.model.UserType.EMPLOYEE));
+        byte[] bytes = "Fitness for work assessment".getBytes(java.nio.charset.StandardCharsets.UTF_8);
+        String contentUrl = "/api/documents/" + uploadFile("Assessment", bytes) + "/content";
+
+        mockMvc.perform(get(contentUrl).with(user("doc-other").roles("EMPLOYEE")))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(get(contentUrl).with(user("doc-nurse").roles("OH_PROFESSIONAL")))
+                .andExpect(status().isOk())
+                .andExpect(content().bytes(bytes));
+        mockMvc.perform(get(contentUrl).with(user("doc-user").roles("EMPLOYEE")))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    @WithMockUser("doc-user")
+    public void whenAnotherEmployeeRequestsPreview_thenForbiddenWithoutGenerating() throws Exception {
+        userRepository.save(new User("doc-other@example.com", "doc-other", "password", "Other", "Employee",
+                com.example.auth.model.UserType.EMPLOYEE));
+        UUID documentId = uploadImage("Wound photo", png(64, 48, java.awt.Color.RED));
+        String fileHash = documentRepository.findById(documentId).orElseThrow().getFileHash();
+        // As for content stored before previews existed, so that any request for one would be recorded
+        entityManager.flush();
+        entityManager.clear();
+        com.example.auth.model.DocumentBlob blob = documentBlobRepository.findById(fileHash).orElseThrow();
+        blob.setPreviewStatus(null);
+        documentBlobRepository.saveAndFlush(blob);
+
+        mockMvc.perform(get("/api/documents/" + documentId + "/preview").with(user("doc-other").roles("EMPLOYEE")))
+                .andExpect(status().isForbidden());
+        entityManager.clear();
+        assertEquals(null, documentBlobRepository.findById(fileHash).orElseThrow().getPreviewStatus());
+
+        mockMvc.perform(get("/api/documents/" + documentId + "/preview").with(user("doc-user").roles("EMPLOYEE")))
+                .andExpect(status().isAccepted());
+    }
+
+    @Test
+    @WithMockUser("doc-user")
+    public void whenDownloadingDocumentContent_thenRangesAndConditionalRequestsAreHonoured() throws Exception {
+        byte[] bytes = "Occupational health referral: return to work plan".getBytes(java.nio.charset.StandardCharsets.UTF_8);
+        Document document = documentRepository.findById(uploadFile("Referral", bytes)).orElseThrow();
+        String etag = "\"" + document.getFileHash() + "\"";
+        String contentUrl = "/api/documents/" + document.getDocumentId() + "/content";
+
+        mockMvc.perform(get(contentUrl))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", etag))
+                .andExpect(header().string("Accept-Ranges", "bytes"))
+                .andExpect(header().string("Content-Type", "application/pdf"))
+                .andExpect(content().bytes(bytes));
+
+        mockMvc.perform(get(contentUrl).header("Range", "bytes=0-20"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string("Content-Range", "bytes 0-20/" + bytes.length))
+                .andExpect(content().bytes(java.util.Arrays.copyOfRange(bytes, 0, 21)));
+
+        mockMvc.perform(get(contentUrl).header("If-None-Match", "\"stale\", " + etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", etag))
+                .andExpect(content().bytes(new byte[0]));
+
+        // A range against a changed validator gets the whole current content
+        mockMvc.perform(get(contentUrl).header("Range", "bytes=0-20").header("If-Range", "\"stale\""))
+                .andExpect(status().isOk())
+                .andExpect(content().bytes(bytes));
+
+        // Where the container supports sendfile, the file region is handed over instead of being streamed
+        mockMvc.perform(get(contentUrl).header("Range", "bytes=10-").requestAttr("org.apache.tomcat.sendfile.support", true))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().longValue("Content-Length", bytes.length - 10))
+                .andExpect(request().attribute("org.apache.tomcat.sendfile.filename",
+                        blobStore.localPath(document.getFilePath()).toString()))
+                .andExpect(request().attribute("org.apache.tomcat.sendfile.start", 10L))
+                .andExpect(request().attribute("org.apache.tomcat.sendfile.end", (long) bytes.length))
+                .andExpect(content().bytes(new byte[0]));
+    }
+
+    @Test
+    @WithMockUser("doc-user")
+    public void whenChunksUploadedOutOfOrder_thenUploadResumesAndCommitsVerifiedDocument() throws Exception {
+        int chunkSize = 8 * 1024 * 1024;
+        byte[] bytes = new byte[chunkSize + 100];
+        new Random(7).nextBytes(bytes);
+        String sha256 = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+
+        String uploadUrl = "/api/documents/uploads/" + createUpload("MRI report", bytes.length, sha256);
+        mockMvc.perform(put(uploadUrl + "/chunks/1").contentType(MediaType.APPLICATION_OCTET_STREAM)
+                        .content(java.util.Arrays.copyOfRange(bytes, chunkSize, bytes.length)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.size").value(100));
+        // A chunk of the wrong length is refused before anything is stored
+        mockMvc.perform(put(uploadUrl + "/chunks/0").contentType(MediaType.APPLICATION_OCTET_STREAM).content(new byte[10]))
+                .andExpect(status().isInternalServerError());
+        mockMvc.perform(post(uploadUrl + "/commit")).andExpect(status().isInternalServerError());
+
+        mockMvc.perform(get(uploadUrl))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalChunks").value(2))
+                .andExpect(jsonPath("$.receivedBytes").value(100))
+                .andExpect(jsonPath("$.receivedRanges[0]").value(chunkSize + "-" + (bytes.length - 1)));
+
+        mockMvc.perform(put(uploadUrl + "/chunks/0").contentType(MediaType.APPLICATION_OCTET_STREAM)
+                        .content(java.util.Arrays.copyOfRange(bytes, 0, chunkSize)))
+                .andExpect(status().isOk());
+        mockMvc.perform(get(uploadUrl))
+                .andExpect(jsonPath("$.receivedRanges.length()").value(1))
+                .andExpect(jsonPath("$.receivedRanges[0]").value("0-" + (bytes.length - 1)));
+
+        String committed = mockMvc.perform(post(uploadUrl + "/commit"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.fileSize").value(bytes.length))
+                .andReturn().getResponse().getContentAsString();
+        String documentId = objectMapper.readTree(committed).get("documentId").asText();
+        mockMvc.perform(post(uploadUrl + "/commit"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.documentId").value(documentId));
+
+        Document document = documentRepository.findById(UUID.fromString(documentId)).orElseThrow();
+        assertEquals(sha256, document.getFileHash());
+        mockMvc.perform(get("/api/documents/" + documentId + "/content"))
+                .andExpect(status().isOk())
+                .andExpect(content().bytes(bytes));
+
+        // An abandoned upload is discarded with its parts; the committed session is simply dropped
+        String abandonedUrl = "/api/documents/uploads/" + createUpload("Abandoned", bytes.length, sha256);
+        mockMvc.perform(put(abandonedUrl + "/chunks/1").contentType(MediaType.APPLICATION_OCTET_STREAM).content(new byte[100]))
+                .andExpect(status().isOk());
+        assertEquals(0, documentUploadService.collectStaleBatch(LocalDateTime.now().minusHours(1)));
+        assertEquals(2, documentUploadService.collectStaleBatch(LocalDateTime.now().plusHours(1)));
+        entityManager.clear();
+        mockMvc.perform(get(abandonedUrl)).andExpect(status().isInternalServerError());
+        mockMvc.perform(get("/api/documents/" + documentId + "/content")).andExpect(status().isOk());
+    }
+
+    @Test
+    @WithMockUser("doc-user")
+    public void whenCommitAlreadyRunningOrFailedAfterAssembly_thenClientIsToldToRetryOrRestart() throws Exception {
+        byte[] bytes = new byte[100];
+        new Random(11).nextBytes(bytes);
+        String sha256 = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        UUID uploadId = UUID.fromString(createUpload("Audiogram", bytes.length, sha256));
+        String uploadUrl = "/api/documents/uploads/" + uploadId;
+        mockMvc.perform(put(uploadUrl + "/chunks/0").contentType(MediaType.APPLICATION_OCTET_STREAM).content(bytes))
+                .andExpect(status().isOk());
+
+        // Another request holds the commit claim
+        LocalDateTime now = LocalDateTime.now();
+        assertEquals(1, documentUploadRepository.claimForCommit(uploadId, now, now.minusMinutes(30)));
+        assertEquals(0, documentUploadRepository.claimForCommit(uploadId, now, now.minusMinutes(30)));
+        mockMvc.perform(post(uploadUrl + "/commit")).andExpect(status().isConflict());
+        // Chunks are refused while the claim is held, so nothing can be written into the parts being assembled
+        entityManager.clear();
+        mockMvc.perform(put(uploadUrl + "/chunks/0").contentType(MediaType.APPLICATION_OCTET_STREAM).content(bytes))
+                .andExpect(status().isConflict());
+
+        // That request assembled the parts and died; once its claim is stale, the upload is discarded
+        entityManager.clear();
+        com.example.auth.model.DocumentUpload upload = documentUploadRepository.findById(uploadId).orElseThrow();
+        blobStore.completeMultipart(upload.getStorageKey(), upload.getMultipartId(),
+                documentUploadChunkRepository.findByUploadIdOrderByChunkIndexAsc(uploadId).stream()
+                        .map(com.example.auth.model.DocumentUploadChunk::getPartTag).toList());
+        entityManager.createQuery("UPDATE DocumentUpload u SET u.commitStartedAt = :startedAt WHERE u.uploadId = :uploadId")
+                .setParameter("startedAt", now.minusHours(1))
+                .setParameter("uploadId", uploadId)
+                .executeUpdate();
+        mockMvc.perform(post(uploadUrl + "/commit"))
+                .andExpect(status().isGone())
+                .andExpect(jsonPath("$.message").value(org.hamcrest.Matchers.containsString("start a new upload")));
+        entityManager.clear();
+        mockMvc.perform(get(uploadUrl)).andExpect(status().isInternalServerError());
+        assertFalse(java.nio.file.Files.exists(blobStore.localPath(upload.getStorageKey())));
+    }
+
+    private String createUpload(String documentName, long totalSize, String sha256) throws Exception {
+        String request = String.format("""
+            {
+                "documentName": "%s",
+                "documentType": "MEDICAL_REPORT",
+                "employeeId": "%s",
+                "fileName": "scan.pdf",
+                "mimeType": "application/pdf",
+                "totalSize": %d,
+                "sha256": "%s"
+            }
+            """, documentName, testEmployee.getEmployeeId(), totalSize, sha256);
+        String response = mockMvc.perform(post("/api/documents/uploads")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(request))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.chunkSize").value(8 * 1024 * 1024))
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(response).get("uploadId").asText();
+    }
+
+    @Test
+    @WithMockUser("doc-user")
+    public void whenImageDocumentUploaded_thenPreviewIsGeneratedInBackgroundAndServedWithCacheHeaders() throws Exception {
+        java.awt.image.BufferedImage image = new java.awt.image.BufferedImage(1600, 1200, java.awt.image.BufferedImage.TYPE_INT_RGB);
+        java.awt.Graphics2D graphics = image.createGraphics();
+        graphics.setColor(java.awt.Color.BLUE);
+        graphics.fillRect(0, 0, 800, 1200);
+        graphics.dispose();
+        java.io.ByteArrayOutputStream png = new java.io.ByteArrayOutputStream();
+        javax.imageio.ImageIO.write(image, "png", png);
+
+        String response = mockMvc.perform(multipart("/api/documents")
+                        .file(new MockMultipartFile("file", "wrist-xray.png", "image/png", png.toByteArray()))
+                        .param("documentName", "Wrist X-ray")
+                        .param("documentType", "image")
+                        .param("employeeId", testEmployee.getEmployeeId().toString()))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        String previewUrl = "/api/documents/" + objectMapper.readTree(response).get("documentId").asText() + "/preview";
+
+        // The upload only queues the work; until a worker has run, clients are told to come back
+        mockMvc.perform(get(previewUrl))
+                .andExpect(status().isAccepted())
+                .andExpect(header().exists("Retry-After"));
+
+        Document document = documentRepository.findAll().stream()
+                .filter(d -> "Wrist X-ray".equals(d.getDocumentName())).findFirst().orElseThrow();
+        entityManager.clear();
+        assertEquals(true, documentPreviewService.generate(document.getFileHash()));
+        entityManager.clear();
+
+        byte[] preview = mockMvc.perform(get(previewUrl))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "image/jpeg"))
+                .andExpect(header().string("Cache-Control", "max-age=2592000, private, immutable"))
+                .andExpect(header().string("ETag", "\"" + document.getFileHash() + "-preview\""))
+                .andReturn().getResponse().getContentAsByteArray();
+        java.awt.image.BufferedImage thumbnail = javax.imageio.ImageIO.read(new java.io.ByteArrayInputStream(preview));
+        assertEquals(320, thumbnail.getWidth());
+        assertEquals(240, thumbnail.getHeight());
+
+        mockMvc.perform(get(previewUrl).header("If-None-Match", "\"" + document.getFileHash() + "-preview\""))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    @WithMockUser("doc-user")
+    public void whenPreviewSourceUnreadable_thenContentStaysPendingAndOnlyUndecodableImagesFail() throws Exception {
+        Document scan = documentRepository.findById(uploadImage("Knee X-ray", png(640, 480, java.awt.Color.GRAY))).orElseThrow();
+        // A storage error is retried by the sweep
+        blobStore.delete(scan.getFilePath());
+        entityManager.clear();
+        assertEquals(false, documentPreviewService.generate(scan.getFileHash()));
+        entityManager.clear();
+        assertEquals(PreviewStatus.PENDING, documentBlobRepository.findById(scan.getFileHash()).orElseThrow().getPreviewStatus());
+
+        // A truncated image never will decode
+        byte[] truncated = java.util.Arrays.copyOf(png(640, 480, java.awt.Color.ORANGE), 80);
+        Document broken = documentRepository.findById(uploadImage("Elbow X-ray", truncated)).orElseThrow();
+        entityManager.clear();
+        assertEquals(false, documentPreviewService.generate(broken.getFileHash()));
+        entityManager.clear();
+        assertEquals(PreviewStatus.FAILED, documentBlobRepository.findById(broken.getFileHash()).orElseThrow().getPreviewStatus());
+    }
+
+    @Test
+    @WithMockUser("doc-user")
+    // Outside the test transaction, so the upload commits and hands the preview to the workers
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void whenImageUploadCommits_thenWorkersGeneratePreviewInBackground() throws Exception {
+        List<String> fileHashes = new ArrayList<>();
+        try {
+            UUID documentId = uploadImage("Ankle X-ray", png(640, 480, java.awt.Color.RED));
+            fileHashes.add(documentRepository.findById(documentId).orElseThrow().getFileHash());
+
+            awaitPreviewStatus(fileHashes.get(0), PreviewStatus.READY);
+            mockMvc.perform(get("/api/documents/" + documentId + "/preview"))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string("Content-Type", "image/jpeg"));
+            mockMvc.perform(get("/api/documents/storage/stats"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.previewsGeneratedSinceStartup").value(org.hamcrest.Matchers.greaterThanOrEqualTo(1)));
+        } finally {
+            removeCommittedFixtures(fileHashes);
+        }
+    }
+
+    @Test
+    // Outside the test transaction, so committing a request queues it
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void whenPreviewQueueIsFull_thenOverflowStaysPendingUntilTheSweep() throws Exception {
+        java.util.concurrent.CountDownLatch release = new java.util.concurrent.CountDownLatch(1);
+        // One worker and one queue slot; the worker waits for the test before reading the image
+        DocumentPreviewService previews = new DocumentPreviewService(documentBlobRepository, new GatedBlobStore(blobStore, release),
+                transactionManager, 320, 1, 1, 10, 60000);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        List<String> fileHashes = new ArrayList<>();
+        try {
+            for (java.awt.Color color : List.of(java.awt.Color.RED, java.awt.Color.GREEN, java.awt.Color.BLUE)) {
+                byte[] image = png(64, 48, color);
+                DocumentStorageService.StagedContent staged = documentStorageService.stage(new ByteArrayInputStream(image), image.length);
+                fileHashes.add(staged.fileHash());
+                transactionTemplate.executeWithoutResult(status -> {
+                    documentStorageService.claim(staged);
+                    previews.requestPreview(staged.fileHash());
+                });
+            }
+            // The first request occupies the worker, the second the queue, and the third is turned away
+            assertEquals(1, previews.getDeferred());
+
+            release.countDown();
+            awaitPreviewStatus(fileHashes.get(0), PreviewStatus.READY);
+            awaitPreviewStatus(fileHashes.get(1), PreviewStatus.READY);
+            assertEquals(PreviewStatus.PENDING, documentBlobRepository.findById(fileHashes.get(2)).orElseThrow().getPreviewStatus());
+
+            previews.queuePending();
+            awaitPreviewStatus(fileHashes.get(2), PreviewStatus.READY);
+            assertEquals(3, previews.getGenerated());
+        } finally {
+            release.countDown();
+            previews.shutdown();
+            removeCommittedFixtures(fileHashes);
+        }
+    }
+
+    private UUID uploadImage(String documentName, byte[] content) throws Exception {
+        String response = mockMvc.perform(multipart("/api/documents")
+                        .file(new MockMultipartFile("file", "scan.png", "image/png", content))
+                        .param("documentName", documentName)
+                        .param("documentType", "image")
+                        .param("employeeId", testEmployee.getEmployeeId().toString()))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return UUID.fromString(objectMapper.readTree(response).get("documentId").asText());
+    }
+
+    private static byte[] png(int width, int height, java.awt.Color color) throws IOException {
+        java.awt.image.BufferedImage image = new java.awt.image.BufferedImage(width, height, java.awt.image.BufferedImage.TYPE_INT_RGB);
+        java.awt.Graphics2D graphics = image.createGraphics();
+        graphics.setColor(color);
+        graphics.fillRect(0, 0, width / 2, height);
+        graphics.dispose();
+        java.io.ByteArrayOutputStream png = new java.io.ByteArrayOutputStream();
+        javax.imageio.ImageIO.write(image, "png", png);
+        return png.toByteArray();
+    }
+
+    private void awaitPreviewStatus(String fileHash, PreviewStatus expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        PreviewStatus current = null;
+        while (System.currentTimeMillis() < deadline) {
+            current = documentBlobRepository.findById(fileHash).orElseThrow().getPreviewStatus();
+            if (current == expected) {
+                return;
+            }
+            Thread.sleep(50);
+        }
+        assertEquals(expected, current);
+    }
+
+    /**
+     * Removes what a test running outside the test transaction has committed.
+     */
+    private void removeCommittedFixtures(List<String> fileHashes) throws IOException {
+        documentRepository.deleteAll(documentRepository.findByEmployee(testEmployee));
+        for (String fileHash : fileHashes) {
+            com.example.auth.model.DocumentBlob blob = documentBlobRepository.findById(fileHash).orElse(null);
+            if (blob != null) {
+                blobStore.delete(DocumentPreviewService.previewKey(blob.getStoragePath()));
+                blobStore.delete(blob.getStoragePath());
+            }
+        }
+        documentBlobRepository.deleteAllById(fileHashes);
+        employeeRepository.delete(testEmployee);
+        userRepository.delete(testUser);
+    }
+
+    /**
+     * Holds every read until released.
+     */
+    private record GatedBlobStore(BlobStore delegate, java.util.concurrent.CountDownLatch release) implements BlobStore {
+
+        @Override
+        public void put(String key, InputStream content, long contentLength) throws IOException {
+            delegate.put(key, content, contentLength);
+        }
+
+        @Override
+        public InputStream open(String key, long offset, long length) throws IOException {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new java.io.InterruptedIOException();
+            }
+            return delegate.open(key, offset, length);
+        }
+
+        @Override
+        public void delete(String key) throws IOException {
+            delegate.delete(key);
+        }
+
+        @Override
+        public String startMultipart(String key) throws IOException {
+            return delegate.startMultipart(key);
+        }
+
+        @Override
+        public String putPart(String key, String uploadId, int partNumber, long offset, InputStream content, long length)
+                throws IOException {
+            return delegate.putPart(key, uploadId, partNumber, offset, content, length);
+        }
+
+        @Override
+        public void completeMultipart(String key, String uploadId, List<String> partTags) throws IOException {
+            delegate.completeMultipart(key, uploadId, partTags);
+        }
+
+        @Override
+        public void abortMultipart(String key, String uploadId) throws IOException {
+            delegate.abortMultipart(key, uploadId);
+        }
+    }
 }
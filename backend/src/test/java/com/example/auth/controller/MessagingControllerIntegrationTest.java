@@ -16,19 +16,28 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
 @AutoConfigureMockMvc
 @Transactional
+// Tests run the background jobs themselves; scheduled runs would also add to the query statistics
+@TestPropertySource(properties = "app.scheduling.enabled=false")
 public class MessagingControllerIntegrationTest {
 
     @Autowired
@@ -55,6 +64,54 @@ public class MessagingControllerIntegrationTest {
     @Autowired
     private com.example.auth.repository.NotificationRepository notificationRepository;
 
+    @Autowired
+    private com.example.auth.service.MessageStreamService messageStreamService;
+
+    @Autowired
+    private com.example.auth.service.OutboxService outboxService;
+
+    @Autowired
+    private com.example.auth.repository.OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private com.example.auth.service.EncryptionService encryptionService;
+
+    @Autowired
+    private com.example.auth.service.MessageStorageMigrationService storageMigrationService;
+
+    @Autowired
+    private org.springframework.jdbc.core.JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private com.example.auth.service.DataKeyService dataKeyService;
+
+    @Autowired
+    private com.example.auth.service.MessageRekeyService rekeyService;
+
+    @Autowired
+    private com.example.auth.service.RecentMessageCache recentMessageCache;
+
+    @Autowired
+    private com.example.auth.service.BroadcastService broadcastService;
+
+    @Autowired
+    private com.example.auth.service.MessageRetentionService retentionService;
+
+    @Autowired
+    private com.example.auth.service.ConversationMembershipCache membershipCache;
+
+    @Autowired
+    private jakarta.persistence.EntityManager entityManager;
+
+    @Autowired
+    private com.example.auth.repository.MessageVersionRepository messageVersionRepository;
+
+    @Autowired
+    private com.example.auth.service.BlobStore blobStore;
+
+    @Autowired
+    private com.example.auth.service.MessagingService messagingService;
+
     private User user1;
     private User user2;
     private Conversation conversation;
@@ -92,7 +149,8 @@ public class MessagingControllerIntegrationTest {
                 .andExpect(jsonPath("$.messageId").exists())
                 .andExpect(jsonPath("$.messageContent").value("Hello, world!"));
 
-        // Verify that a notification was created for user2
+        // Notifications are fanned out from the outbox; drain it and verify user2 was notified
+        outboxService.drain();
         List<com.example.auth.model.Notification> notifications = notificationRepository.findAll();
         assertTrue(notifications.stream().anyMatch(n ->
                 n.getUser().getUserId().equals(user2.getUserId()) &&
@@ -100,6 +158,30 @@ public class MessagingControllerIntegrationTest {
         ));
     }
 
+    @Test
+    public void whenOutboxDrainedOutsideTransaction_thenDrainStartsItsOwn() throws Exception {
+        // The scheduler calls drain() on a thread with no transaction in progress
+        java.util.concurrent.CompletableFuture.runAsync(outboxService::drain)
+                .get(10, java.util.concurrent.TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void whenOutboxEventFails_thenItIsBackedOffInsteadOfRetriedAtOnce() throws Exception {
+        com.example.auth.model.OutboxEvent poison = outboxEventRepository.save(new com.example.auth.model.OutboxEvent(
+                com.example.auth.model.OutboxEventType.MESSAGE_SENT, java.util.UUID.randomUUID(),
+                java.util.Map.of("conversationId", "not-a-uuid", "senderId", user1.getUserId().toString())));
+
+        outboxService.drain();
+        outboxService.drain();
+        assertEquals(1, poison.getAttempts());
+        assertTrue(poison.getNextAttemptAt().isAfter(java.time.LocalDateTime.now()));
+
+        // Once the backoff has passed, the event is tried again
+        poison.setNextAttemptAt(java.time.LocalDateTime.now().minusSeconds(1));
+        outboxService.drain();
+        assertEquals(2, poison.getAttempts());
+    }
+
     @Test
     @WithMockUser("msg-user1")
     public void whenGetMessages_thenReturnsMessages() throws Exception {
@@ -122,13 +204,13 @@ public class MessagingControllerIntegrationTest {
                 .andExpect(status().isOk())
                 .andReturn().getResponse().getContentAsString();
 
-        com.example.auth.model.Message sentMessage = objectMapper.readValue(response, com.example.auth.model.Message.class);
+        String sentMessageId = objectMapper.readTree(response).get("messageId").asText();
 
         // Now, edit the message
         com.example.auth.dto.request.EditMessageRequest editRequest = new com.example.auth.dto.request.EditMessageRequest();
         editRequest.setContent("Edited message");
 
-        mockMvc.perform(put("/api/messaging/" + sentMessage.getMessageId())
+        mockMvc.perform(put("/api/messaging/" + sentMessageId)
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(objectMapper.writeValueAsString(editRequest)))
                 .andExpect(status().isOk())
@@ -150,21 +232,21 @@ public class MessagingControllerIntegrationTest {
                 .andExpect(status().isOk())
                 .andReturn().getResponse().getContentAsString();
 
-        com.example.auth.model.Message sentMessage = objectMapper.readValue(response, com.example.auth.model.Message.class);
+        String sentMessageId = objectMapper.readTree(response).get("messageId").asText();
 
         // Now, delete the message
-        mockMvc.perform(delete("/api/messaging/" + sentMessage.getMessageId()))
+        mockMvc.perform(delete("/api/messaging/" + sentMessageId))
                 .andExpect(status().isNoContent());
 
         // Verify the message is not returned in the conversation
         mockMvc.perform(get("/api/messaging/conversation/" + conversation.getConversationId()))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$[?(@.messageId == '%s')]", sentMessage.getMessageId()).doesNotExist());
+                .andExpect(jsonPath("$[?(@.messageId == '%s')]", sentMessageId).doesNotExist());
     }
 
     @Test
     @WithMockUser("msg-user2")
-    public void whenMarkMessageAsRead_thenCreatesReadReceipt() throws Exception {
+    public void whenMarkMessageAsRead_thenAdvancesReadWatermark() throws Exception {
         // 1. user1 sends a message (created directly)
         com.example.auth.model.Message message = new com.example.auth.model.Message(conversation, user1, "A message to be read", com.example.auth.model.MessageType.TEXT);
         messageRepository.save(message);
@@ -173,28 +255,875 @@ public class MessagingControllerIntegrationTest {
         mockMvc.perform(post("/api/messaging/" + message.getMessageId() + "/read"))
                 .andExpect(status().isOk());
 
-        // 3. Verify the read receipt was created
-        // We need to fetch the user object that's attached to the current persistence context
-        User user2InContext = userRepository.findByUsername("msg-user2").get();
-        assertTrue(messageReadRepository.existsByMessageAndUser(message, user2InContext));
+        // 3. Verify the watermark moved to the message and no per-message receipt was written
+        ConversationParticipant participant = conversationParticipantRepository.findByConversationAndUser(conversation, user2).get();
+        assertEquals(message.getMessageId(), participant.getLastReadMessageId());
+        assertEquals(0, messageReadRepository.count());
+
+        // Reading it again leaves the watermark where it is, without taking a change sequence number
+        Long changeSeq = jdbcTemplate.queryForObject("SELECT change_seq FROM conversations WHERE conversation_id = ?",
+                Long.class, conversation.getConversationId());
+        mockMvc.perform(post("/api/messaging/" + message.getMessageId() + "/read"))
+                .andExpect(status().isOk());
+        assertEquals(changeSeq, jdbcTemplate.queryForObject("SELECT change_seq FROM conversations WHERE conversation_id = ?",
+                Long.class, conversation.getConversationId()));
     }
 
     @Test
     @WithMockUser("msg-user2")
     public void whenGetUnreadCount_thenReturnsCorrectCount() throws Exception {
+        java.time.LocalDateTime base = java.time.LocalDateTime.of(2024, 1, 1, 9, 0);
+
         // 1. user1 sends two messages
-        messageRepository.save(new com.example.auth.model.Message(conversation, user1, "Message 1 from user1", com.example.auth.model.MessageType.TEXT));
-        com.example.auth.model.Message message2 = messageRepository.save(new com.example.auth.model.Message(conversation, user1, "Message 2 from user1", com.example.auth.model.MessageType.TEXT));
+        com.example.auth.model.Message message1 = new com.example.auth.model.Message(conversation, user1, "Message 1 from user1", com.example.auth.model.MessageType.TEXT);
+        message1.setSentAt(base);
+        messageRepository.save(message1);
+        com.example.auth.model.Message message2 = new com.example.auth.model.Message(conversation, user1, "Message 2 from user1", com.example.auth.model.MessageType.TEXT);
+        message2.setSentAt(base.plusMinutes(1));
+        messageRepository.save(message2);
 
         // 2. user2 sends one message
         messageRepository.save(new com.example.auth.model.Message(conversation, user2, "Message from user2", com.example.auth.model.MessageType.TEXT));
 
-        // 3. user2 reads one of the messages from user1
-        messageReadRepository.save(new com.example.auth.model.MessageRead(message2, user2));
+        // 3. user2 marks the conversation read up to the first message from user1
+        mockMvc.perform(post("/api/messaging/conversation/" + conversation.getConversationId() + "/read")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(String.format("{\"messageId\": \"%s\"}", message1.getMessageId())))
+                .andExpect(status().isOk());
 
         // 4. Get unread count for user2
         mockMvc.perform(get("/api/messaging/conversation/" + conversation.getConversationId() + "/unread-count"))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$").value(1));
     }
+
+    @Test
+    @WithMockUser("msg-user2")
+    public void whenLegacyReadReceiptExists_thenUnreadCountStartsAfterIt() throws Exception {
+        java.time.LocalDateTime base = java.time.LocalDateTime.of(2024, 1, 1, 9, 0);
+        com.example.auth.model.Message message1 = new com.example.auth.model.Message(conversation, user1, "Legacy 1", com.example.auth.model.MessageType.TEXT);
+        message1.setSentAt(base);
+        messageRepository.save(message1);
+        com.example.auth.model.Message message2 = new com.example.auth.model.Message(conversation, user1, "Legacy 2", com.example.auth.model.MessageType.TEXT);
+        message2.setSentAt(base.plusMinutes(1));
+        messageRepository.save(message2);
+
+        messageReadRepository.save(new com.example.auth.model.MessageRead(message1, user2));
+
+        mockMvc.perform(get("/api/messaging/conversation/" + conversation.getConversationId() + "/unread-count"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$").value(1));
+    }
+
+    @Test
+    @WithMockUser("msg-user2")
+    public void whenGetMessageHistory_thenPagesBackwardsByCursor() throws Exception {
+        java.time.LocalDateTime base = java.time.LocalDateTime.of(2024, 1, 1, 9, 0);
+        List<com.example.auth.model.Message> sent = new java.util.ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            com.example.auth.model.Message message = new com.example.auth.model.Message(conversation, user1, "History " + i, com.example.auth.model.MessageType.TEXT);
+            message.setSentAt(base.plusMinutes(i));
+            sent.add(messageRepository.save(message));
+        }
+
+        String response = mockMvc.perform(get("/api/messaging/conversation/" + conversation.getConversationId() + "/history")
+                .param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.messages.length()").value(2))
+                .andExpect(jsonPath("$.messages[0].messageId").value(sent.get(3).getMessageId().toString()))
+                .andExpect(jsonPath("$.messages[1].messageId").value(sent.get(4).getMessageId().toString()))
+                .andExpect(jsonPath("$.hasMore").value(true))
+                .andReturn().getResponse().getContentAsString();
+
+        String cursor = objectMapper.readTree(response).get("nextCursor").asText();
+
+        mockMvc.perform(get("/api/messaging/conversation/" + conversation.getConversationId() + "/history")
+                .param("before", cursor)
+                .param("limit", "5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.messages.length()").value(3))
+                .andExpect(jsonPath("$.messages[0].messageId").value(sent.get(0).getMessageId().toString()))
+                .andExpect(jsonPath("$.hasMore").value(false));
+    }
+
+    @Test
+    @WithMockUser("msg-user2")
+    public void whenSubscribeToConversationStream_thenStartsEventStream() throws Exception {
+        java.util.UUID conversationId = conversation.getConversationId();
+        org.springframework.test.web.servlet.MvcResult result = mockMvc.perform(get("/api/messaging/conversation/" + conversationId + "/stream")
+                .accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        try {
+            assertEquals(1, messageStreamService.getSubscriberCount(conversationId));
+
+            // The test transaction never commits, so the committed event is handed to the stream directly
+            java.util.UUID messageId = java.util.UUID.randomUUID();
+            messageStreamService.onMessageEvent(new com.example.auth.dto.response.MessageEventResponse(
+                    com.example.auth.model.MessageEventType.CREATED, conversationId, messageId, user1.getUserId(),
+                    "Streamed hello", com.example.auth.model.MessageType.TEXT, java.time.LocalDateTime.now(), false, 1L));
+
+            // Delivery happens on a dispatch thread
+            long deadline = System.currentTimeMillis() + 5000;
+            while (!result.getResponse().getContentAsString().contains("Streamed hello") && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            String body = result.getResponse().getContentAsString();
+            assertTrue(body.contains("event:CREATED"), body);
+            assertTrue(body.contains("id:" + messageId), body);
+            assertTrue(body.contains("Streamed hello"), body);
+        } finally {
+            result.getRequest().getAsyncContext().complete();
+        }
+        assertEquals(0, messageStreamService.getSubscriberCount(conversationId));
+    }
+
+    @Test
+    @WithMockUser("msg-user2")
+    public void whenParticipantRemoved_thenTheirStreamIsClosedInsteadOfFannedOutTo() throws Exception {
+        java.util.UUID conversationId = conversation.getConversationId();
+        org.springframework.test.web.servlet.MvcResult result = mockMvc.perform(get("/api/messaging/conversation/" + conversationId + "/stream")
+                .accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        try {
+            assertEquals(1, messageStreamService.getSubscriberCount(conversationId));
+
+            conversationParticipantRepository.delete(conversationParticipantRepository.findByConversationAndUser(conversation, user2).orElseThrow());
+            conversationParticipantRepository.flush();
+            membershipCache.invalidate(conversationId);
+
+            messageStreamService.onMessageEvent(new com.example.auth.dto.response.MessageEventResponse(
+                    com.example.auth.model.MessageEventType.CREATED, conversationId, java.util.UUID.randomUUID(), user1.getUserId(),
+                    "Not for former participants", com.example.auth.model.MessageType.TEXT, java.time.LocalDateTime.now(), false, 1L));
+
+            assertEquals(0, messageStreamService.getSubscriberCount(conversationId));
+            assertFalse(result.getResponse().getContentAsString().contains("Not for former participants"));
+        } finally {
+            result.getRequest().getAsyncContext().complete();
+        }
+    }
+
+    @Test
+    @WithMockUser("msg-user1")
+    public void whenSearchMessages_thenMatchesEncryptedContentByBlindIndex() throws Exception {
+        for (String content : new String[]{"Flu clinic on Friday", "Blood test results are ready", "See you at the flu CLINIC"}) {
+            com.example.auth.dto.request.SendMessageRequest sendRequest = new com.example.auth.dto.request.SendMessageRequest();
+            sendRequest.setConversationId(conversation.getConversationId());
+            sendRequest.setContent(content);
+            mockMvc.perform(post("/api/messaging")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(sendRequest)))
+                    .andExpect(status().isOk());
+        }
+
+        mockMvc.perform(get("/api/messaging/search").param("q", "clinic flu"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[?(@.messageContent == 'Flu clinic on Friday')]").exists());
+
+        mockMvc.perform(get("/api/messaging/search")
+                .param("q", "results")
+                .param("conversationId", conversation.getConversationId().toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].messageContent").value("Blood test results are ready"));
+    }
+
+    @Test
+    @WithMockUser("msg-user1")
+    public void whenLegacyTextMessageMigrated_thenStoredAsBinaryAndStillReadable() throws Exception {
+        com.example.auth.model.Message legacy = new com.example.auth.model.Message(conversation, user1,
+                encryptionService.encrypt("Stored before binary format"), com.example.auth.model.MessageType.TEXT);
+        messageRepository.saveAndFlush(legacy);
+
+        storageMigrationService.migrateBatch();
+
+        byte[] stored = jdbcTemplate.queryForObject("SELECT message_ciphertext FROM messages WHERE message_id = ?",
+                byte[].class, legacy.getMessageId());
+        assertEquals("Stored before binary format", encryptionService.decryptBinary(stored));
+
+        mockMvc.perform(get("/api/messaging/conversation/" + conversation.getConversationId() + "/history"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.messages[0].messageContent").value("Stored before binary format"));
+    }
+
+    @Test
+    @WithMockUser("msg-user1")
+    public void whenConversationKeyRotated_thenRekeyMovesMessagesToNewKey() throws Exception {
+        String messageRequestJson = String.format("""
+            {
+                "conversationId": "%s",
+                "content": "Envelope encrypted"
+            }
+            """, conversation.getConversationId());
+        String response = mockMvc.perform(post("/api/messaging")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(messageRequestJson))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        com.example.auth.dto.request.EditMessageRequest editRequest = new com.example.auth.dto.request.EditMessageRequest();
+        editRequest.setContent("Envelope encrypted, edited");
+        mockMvc.perform(put("/api/messaging/" + objectMapper.readTree(response).get("messageId").asText())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(editRequest)))
+                .andExpect(status().isOk());
+        messageRepository.flush();
+
+        java.util.UUID originalKeyId = jdbcTemplate.queryForObject(
+                "SELECT key_id FROM messages WHERE conversation_id = ?", java.util.UUID.class, conversation.getConversationId());
+        byte[] stored = jdbcTemplate.queryForObject(
+                "SELECT message_ciphertext FROM messages WHERE conversation_id = ?", byte[].class, conversation.getConversationId());
+        assertEquals(originalKeyId, com.example.auth.service.EncryptionService.readKeyId(stored));
+
+        dataKeyService.rotateKey(conversation.getConversationId());
+        while (!rekeyService.rekeyBatch().passComplete()) {
+            // Runs the pass over every table
+        }
+
+        java.util.UUID rekeyedKeyId = jdbcTemplate.queryForObject(
+                "SELECT key_id FROM messages WHERE conversation_id = ?", java.util.UUID.class, conversation.getConversationId());
+        assertTrue(rekeyedKeyId != null && !rekeyedKeyId.equals(originalKeyId));
+        // Edit history and the conversation-list preview move to the new key too
+        List<byte[]> versions = jdbcTemplate.queryForList(
+                "SELECT v.ciphertext FROM message_versions v JOIN messages m ON m.message_id = v.message_id " +
+                "WHERE m.conversation_id = ?", byte[].class, conversation.getConversationId());
+        assertEquals(2, versions.size());
+        versions.forEach(version -> assertEquals(rekeyedKeyId, com.example.auth.service.EncryptionService.readKeyId(version)));
+        byte[] preview = jdbcTemplate.queryForObject(
+                "SELECT last_message_preview FROM conversations WHERE conversation_id = ?", byte[].class, conversation.getConversationId());
+        assertEquals(rekeyedKeyId, com.example.auth.service.EncryptionService.readKeyId(preview));
+
+        mockMvc.perform(get("/api/messaging/conversation/" + conversation.getConversationId() + "/history"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.messages[0].messageContent").value("Envelope encrypted, edited"));
+        mockMvc.perform(get("/api/messaging/" + jdbcTemplate.queryForObject(
+                        "SELECT message_id FROM messages WHERE conversation_id = ?", java.util.UUID.class,
+                        conversation.getConversationId()) + "/versions/1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content").value("Envelope encrypted"));
+    }
+
+    @Test
+    @WithMockUser("msg-user1")
+    public void whenHistoryCached_thenUpdatedInPlaceAndOnlyServedToParticipants() throws Exception {
+        com.example.auth.dto.request.SendMessageRequest sendRequest = new com.example.auth.dto.request.SendMessageRequest();
+        sendRequest.setConversationId(conversation.getConversationId());
+        sendRequest.setContent("Cached original");
+        mockMvc.perform(post("/api/messaging")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(sendRequest)))
+                .andExpect(status().isOk());
+        messageRepository.flush();
+
+        String historyUrl = "/api/messaging/conversation/" + conversation.getConversationId() + "/history";
+        long misses = recentMessageCache.getMisses();
+        mockMvc.perform(get(historyUrl)).andExpect(status().isOk());
+        assertEquals(misses + 1, recentMessageCache.getMisses());
+
+        long hits = recentMessageCache.getHits();
+        mockMvc.perform(get(historyUrl))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.messages[0].messageContent").value("Cached original"));
+        assertEquals(hits + 1, recentMessageCache.getHits());
+
+        // Committed edits update the cached window in place; the database still holds the original here
+        com.example.auth.model.Message stored = messageRepository.findAll().stream()
+                .filter(m -> m.getConversation().getConversationId().equals(conversation.getConversationId()))
+                .findFirst().orElseThrow();
+        recentMessageCache.onMessageEvent(new com.example.auth.dto.response.MessageEventResponse(
+                com.example.auth.model.MessageEventType.EDITED, stored, "Cached edit"));
+        mockMvc.perform(get(historyUrl))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.messages[0].messageContent").value("Cached edit"))
+                .andExpect(jsonPath("$.messages[0].isEdited").value(true));
+
+        // A delete committed by another instance never reaches this one as an event, but moves the change sequence
+        jdbcTemplate.update("UPDATE messages SET is_deleted = true, change_seq = change_seq + 1 WHERE message_id = ?",
+                stored.getMessageId());
+        mockMvc.perform(get(historyUrl))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.messages").isEmpty());
+
+        User outsider = new User("msg-user3@example.com", "msg-user3", "password", "Msg3", "User", com.example.auth.model.UserType.EMPLOYEE);
+        userRepository.save(outsider);
+        mockMvc.perform(get(historyUrl).with(user("msg-user3")))
+                .andExpect(status().isInternalServerError())
+                .andExpect(jsonPath("$.messages").doesNotExist());
+    }
+
+    @Test
+    @WithMockUser("msg-user2")
+    public void whenGetInbox_thenUnreadCountsAreMaintainedOnSendAndRead() throws Exception {
+        mockMvc.perform(get("/api/messaging/inbox"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].conversationId").value(conversation.getConversationId().toString()))
+                .andExpect(jsonPath("$[0].unreadCount").value(0));
+
+        String lastMessageId = null;
+        for (String content : List.of("Inbox one", "Inbox two")) {
+            com.example.auth.dto.request.SendMessageRequest sendRequest = new com.example.auth.dto.request.SendMessageRequest();
+            sendRequest.setConversationId(conversation.getConversationId());
+            sendRequest.setContent(content);
+            String response = mockMvc.perform(post("/api/messaging").with(user("msg-user1"))
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(sendRequest)))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+            lastMessageId = objectMapper.readTree(response).get("messageId").asText();
+        }
+
+        // The counter was incremented by the sends rather than recounted
+        ConversationParticipant participant = conversationParticipantRepository.findByConversationAndUser(conversation, user2).get();
+        assertEquals(2L, conversationParticipantRepository.findUnreadCount(participant.getParticipantId()));
+
+        mockMvc.perform(get("/api/messaging/inbox"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].unreadCount").value(2))
+                .andExpect(jsonPath("$[0].lastSenderId").value(user1.getUserId().toString()))
+                .andExpect(jsonPath("$[0].lastSenderName").value("Msg1 User"))
+                .andExpect(jsonPath("$[0].lastMessagePreview").value("Inbox two"));
+
+        mockMvc.perform(post("/api/messaging/conversation/" + conversation.getConversationId() + "/read")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(String.format("{\"messageId\": \"%s\"}", lastMessageId)))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/api/messaging/inbox"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].unreadCount").value(0));
+    }
+
+    @Test
+    @WithMockUser("msg-user2")
+    public void whenMarkMessagesReadInBatch_thenWatermarkMovesToNewestOfBatch() throws Exception {
+        List<String> sentIds = new java.util.ArrayList<>();
+        for (String content : List.of("Batch one", "Batch two", "Batch three")) {
+            com.example.auth.dto.request.SendMessageRequest sendRequest = new com.example.auth.dto.request.SendMessageRequest();
+            sendRequest.setConversationId(conversation.getConversationId());
+            sendRequest.setContent(content);
+            String response = mockMvc.perform(post("/api/messaging").with(user("msg-user1"))
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(sendRequest)))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+            sentIds.add(objectMapper.readTree(response).get("messageId").asText());
+        }
+
+        // Out of order and with a duplicate: the newest of the batch still wins
+        mockMvc.perform(post("/api/messaging/conversation/" + conversation.getConversationId() + "/read-batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(String.format("{\"messageIds\": [\"%s\", \"%s\", \"%s\"]}", sentIds.get(1), sentIds.get(0), sentIds.get(1))))
+                .andExpect(status().isOk());
+
+        ConversationParticipant participant = conversationParticipantRepository.findByConversationAndUser(conversation, user2).get();
+        assertEquals(java.util.UUID.fromString(sentIds.get(1)), participant.getLastReadMessageId());
+        assertEquals(1L, conversationParticipantRepository.findUnreadCount(participant.getParticipantId()));
+        assertEquals(0, messageReadRepository.count());
+
+        // A message from another conversation rejects the whole batch
+        Conversation other = new Conversation();
+        other.setCreatedBy(user1);
+        conversationRepository.save(other);
+        com.example.auth.model.Message foreign = new com.example.auth.model.Message(other, user1, "Elsewhere", com.example.auth.model.MessageType.TEXT);
+        messageRepository.save(foreign);
+        mockMvc.perform(post("/api/messaging/conversation/" + conversation.getConversationId() + "/read-batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(String.format("{\"messageIds\": [\"%s\", \"%s\"]}", sentIds.get(2), foreign.getMessageId())))
+                .andExpect(status().isInternalServerError());
+        assertEquals(1L, conversationParticipantRepository.findUnreadCount(participant.getParticipantId()));
+
+        mockMvc.perform(post("/api/messaging/conversation/" + conversation.getConversationId() + "/read-batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"messageIds\": []}"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @WithMockUser("msg-user2")
+    public void whenListConversations_thenOrderedByLastMessageWithPreview() throws Exception {
+        Conversation older = new Conversation();
+        older.setCreatedBy(user1);
+        conversationRepository.save(older);
+        conversationParticipantRepository.save(new ConversationParticipant(older, user1));
+        conversationParticipantRepository.save(new ConversationParticipant(older, user2));
+
+        List<String> sentIds = new java.util.ArrayList<>();
+        for (Object[] send : new Object[][]{{older, "Older thread"}, {conversation, "Newest first"}, {conversation, "Newest second"}}) {
+            com.example.auth.dto.request.SendMessageRequest sendRequest = new com.example.auth.dto.request.SendMessageRequest();
+            sendRequest.setConversationId(((Conversation) send[0]).getConversationId());
+            sendRequest.setContent((String) send[1]);
+            String response = mockMvc.perform(post("/api/messaging").with(user("msg-user1"))
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(sendRequest)))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+            sentIds.add(objectMapper.readTree(response).get("messageId").asText());
+        }
+
+        String response = mockMvc.perform(get("/api/messaging/conversations").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.conversations[0].conversationId").value(conversation.getConversationId().toString()))
+                .andExpect(jsonPath("$.conversations[0].lastMessageId").value(sentIds.get(2)))
+                .andExpect(jsonPath("$.conversations[0].lastMessagePreview").value("Newest second"))
+                .andExpect(jsonPath("$.hasMore").value(true))
+                .andReturn().getResponse().getContentAsString();
+
+        String cursor = objectMapper.readTree(response).get("nextCursor").asText();
+        mockMvc.perform(get("/api/messaging/conversations").param("before", cursor).param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.conversations[0].conversationId").value(older.getConversationId().toString()))
+                .andExpect(jsonPath("$.conversations[0].lastMessagePreview").value("Older thread"));
+
+        // Deleting the last message moves the preview back to the previous one. Each request reads the
+        // conversation afresh in production; here the test's persistence context has to be cleared for that
+        entityManager.clear();
+        mockMvc.perform(delete("/api/messaging/" + sentIds.get(2)).with(user("msg-user1")))
+                .andExpect(status().isNoContent());
+        mockMvc.perform(get("/api/messaging/conversations").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.conversations[0].lastMessageId").value(sentIds.get(1)))
+                .andExpect(jsonPath("$.conversations[0].lastMessagePreview").value("Newest first"));
+    }
+
+    @Test
+    @WithMockUser("msg-user2")
+    public void whenSyncWithCursor_thenReturnsOnlyChangesSinceCursor() throws Exception {
+        String initial = mockMvc.perform(get("/api/messaging/sync"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.messages").isEmpty())
+                .andReturn().getResponse().getContentAsString();
+        String cursor = objectMapper.readTree(initial).get("cursor").asText();
+
+        List<String> sentIds = new java.util.ArrayList<>();
+        for (String content : List.of("Sync one", "Sync two")) {
+            com.example.auth.dto.request.SendMessageRequest sendRequest = new com.example.auth.dto.request.SendMessageRequest();
+            sendRequest.setConversationId(conversation.getConversationId());
+            sendRequest.setContent(content);
+            String response = mockMvc.perform(post("/api/messaging").with(user("msg-user1"))
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(sendRequest)))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+            sentIds.add(objectMapper.readTree(response).get("messageId").asText());
+        }
+        mockMvc.perform(put("/api/messaging/" + sentIds.get(0)).with(user("msg-user1"))
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"content\": \"Sync edited\"}"))
+                .andExpect(status().isOk());
+        mockMvc.perform(delete("/api/messaging/" + sentIds.get(1)).with(user("msg-user1")))
+                .andExpect(status().isNoContent());
+        mockMvc.perform(post("/api/messaging/" + sentIds.get(0) + "/read").with(user("msg-user1")))
+                .andExpect(status().isOk());
+
+        String changes = mockMvc.perform(get("/api/messaging/sync").param("cursor", cursor))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.messages.length()").value(2))
+                .andExpect(jsonPath("$.messages[0].messageId").value(sentIds.get(0)))
+                .andExpect(jsonPath("$.messages[0].eventType").value("EDITED"))
+                .andExpect(jsonPath("$.messages[0].messageContent").value("Sync edited"))
+                .andExpect(jsonPath("$.messages[1].messageId").value(sentIds.get(1)))
+                .andExpect(jsonPath("$.messages[1].eventType").value("DELETED"))
+                .andExpect(jsonPath("$.messages[1].messageContent").doesNotExist())
+                .andExpect(jsonPath("$.readReceipts[0].userId").value(user1.getUserId().toString()))
+                .andExpect(jsonPath("$.readReceipts[0].lastReadMessageId").value(sentIds.get(0)))
+                .andExpect(jsonPath("$.hasMore").value(false))
+                .andReturn().getResponse().getContentAsString();
+
+        // The cursor is a server-side id whatever the number of conversations, and stays put while nothing changes
+        String nextCursor = objectMapper.readTree(changes).get("cursor").asText();
+        java.util.UUID.fromString(nextCursor);
+        mockMvc.perform(get("/api/messaging/sync").param("cursor", nextCursor))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.messages").isEmpty())
+                .andExpect(jsonPath("$.readReceipts").isEmpty())
+                .andExpect(jsonPath("$.cursor").value(nextCursor));
+
+        // Unknown cursors, and those of other users, send the client back to a full reload
+        mockMvc.perform(get("/api/messaging/sync").param("cursor", nextCursor).with(user("msg-user1")))
+                .andExpect(status().isGone());
+        mockMvc.perform(get("/api/messaging/sync").param("cursor", java.util.UUID.randomUUID().toString()))
+                .andExpect(status().isGone());
+    }
+
+    @Test
+    @WithMockUser("msg-user2")
+    public void whenBroadcast_thenDeliveredInChunksToReusedAndNewConversations() throws Exception {
+        // user2 (an OH professional) already has a direct conversation with user1; user3 has none
+        conversation.setConversationType(com.example.auth.model.ConversationType.DIRECT);
+        conversationRepository.save(conversation);
+        User user3 = new User("msg-user3@example.com", "msg-user3", "password", "Msg3", "User", com.example.auth.model.UserType.EMPLOYEE);
+        userRepository.save(user3);
+        conversationRepository.flush();
+
+        String request = String.format("{\"recipientIds\": [\"%s\", \"%s\", \"%s\"], \"content\": \"Flu clinic on Friday\"}",
+                user1.getUserId(), user3.getUserId(), user1.getUserId());
+        String response = mockMvc.perform(post("/api/messaging/broadcasts")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(request))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.status").value("PENDING"))
+                .andExpect(jsonPath("$.totalRecipients").value(2))
+                .andReturn().getResponse().getContentAsString();
+        java.util.UUID broadcastId = java.util.UUID.fromString(objectMapper.readTree(response).get("broadcastId").asText());
+
+        assertEquals(2, broadcastService.processChunk(broadcastId));
+        assertEquals(0, broadcastService.processChunk(broadcastId));
+        mockMvc.perform(get("/api/messaging/broadcasts/" + broadcastId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("COMPLETED"))
+                .andExpect(jsonPath("$.processedRecipients").value(2));
+
+        // The existing conversation was reused, and user3 got a new direct conversation
+        mockMvc.perform(get("/api/messaging/conversation/" + conversation.getConversationId() + "/history").with(user("msg-user1")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.messages[0].messageContent").value("Flu clinic on Friday"));
+        mockMvc.perform(get("/api/messaging/conversations").with(user("msg-user3")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.conversations.length()").value(1))
+                .andExpect(jsonPath("$.conversations[0].conversationType").value("DIRECT"))
+                .andExpect(jsonPath("$.conversations[0].unreadCount").value(1))
+                .andExpect(jsonPath("$.conversations[0].lastMessagePreview").value("Flu clinic on Friday"));
+
+        // Both copies share one ciphertext, and each recipient was notified
+        List<byte[]> ciphertexts = jdbcTemplate.queryForList(
+                "SELECT message_ciphertext FROM messages WHERE sender_id = ?", byte[].class, user2.getUserId());
+        assertEquals(2, ciphertexts.size());
+        assertTrue(java.util.Arrays.equals(ciphertexts.get(0), ciphertexts.get(1)));
+        List<com.example.auth.model.Notification> notifications = notificationRepository.findAll();
+        assertTrue(notifications.stream().anyMatch(n -> n.getUser().getUserId().equals(user1.getUserId())));
+        assertTrue(notifications.stream().anyMatch(n -> n.getUser().getUserId().equals(user3.getUserId())));
+
+        // Employees cannot broadcast
+        mockMvc.perform(post("/api/messaging/broadcasts").with(user("msg-user1"))
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(String.format("{\"recipientIds\": [\"%s\"], \"content\": \"Hi\"}", user2.getUserId())))
+                .andExpect(status().isInternalServerError());
+    }
+
+    @Test
+    @WithMockUser("msg-user1")
+    public void whenRetentionRuns_thenOldMessagesAreArchivedAndDeletedOnesPurged() throws Exception {
+        List<String> sentIds = new java.util.ArrayList<>();
+        for (String content : List.of("Ancient history", "Deleted long ago", "Still current")) {
+            com.example.auth.dto.request.SendMessageRequest sendRequest = new com.example.auth.dto.request.SendMessageRequest();
+            sendRequest.setConversationId(conversation.getConversationId());
+            sendRequest.setContent(content);
+            String response = mockMvc.perform(post("/api/messaging")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(sendRequest)))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+            sentIds.add(objectMapper.readTree(response).get("messageId").asText());
+        }
+        String attachmentResponse = mockMvc.perform(multipart("/api/messaging/" + sentIds.get(1) + "/attachments")
+                .file(new org.springframework.mock.web.MockMultipartFile("file", "old.pdf", "application/pdf", new byte[]{1, 2, 3})))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        String archivedAttachmentResponse = mockMvc.perform(multipart("/api/messaging/" + sentIds.get(0) + "/attachments")
+                .file(new org.springframework.mock.web.MockMultipartFile("file", "referral.pdf", "application/pdf", new byte[]{4, 5, 6})))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        messageRepository.flush();
+        java.nio.file.Path attachmentBlob = blobStore.localPath(jdbcTemplate.queryForObject(
+                "SELECT storage_path FROM attachments WHERE attachment_id = ?", String.class,
+                java.util.UUID.fromString(objectMapper.readTree(attachmentResponse).get("attachmentId").asText())));
+        assertTrue(java.nio.file.Files.exists(attachmentBlob));
+        mockMvc.perform(delete("/api/messaging/" + sentIds.get(1)))
+                .andExpect(status().isNoContent());
+        mockMvc.perform(put("/api/messaging/" + sentIds.get(0))
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(java.util.Map.of("content", "Ancient history, corrected"))))
+                .andExpect(status().isOk());
+        messageRepository.flush();
+
+        java.time.LocalDateTime now = java.time.LocalDateTime.now();
+        jdbcTemplate.update("UPDATE messages SET sent_at = ? WHERE message_id = ?", now.minusYears(3), java.util.UUID.fromString(sentIds.get(0)));
+        jdbcTemplate.update("UPDATE messages SET deleted_at = ? WHERE message_id = ?", now.minusDays(60), java.util.UUID.fromString(sentIds.get(1)));
+
+        assertEquals(1, retentionService.purgeDeletedBatch(now.minusDays(30)));
+        assertFalse(java.nio.file.Files.exists(attachmentBlob));
+        assertEquals(1, retentionService.archiveBatch(now.minusMonths(24)));
+        assertEquals(0, retentionService.archiveBatch(now.minusMonths(24)));
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM messages WHERE conversation_id = ?",
+                Integer.class, conversation.getConversationId()));
+
+        // Live history only has the current message; the archive serves the old one separately
+        String historyUrl = "/api/messaging/conversation/" + conversation.getConversationId();
+        mockMvc.perform(get(historyUrl + "/history"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.messages.length()").value(1))
+                .andExpect(jsonPath("$.messages[0].messageContent").value("Still current"));
+        mockMvc.perform(get(historyUrl + "/archive"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.messages.length()").value(1))
+                .andExpect(jsonPath("$.messages[0].messageId").value(sentIds.get(0)))
+                .andExpect(jsonPath("$.messages[0].messageContent").value("Ancient history, corrected"))
+                .andExpect(jsonPath("$.hasMore").value(false));
+
+        // Its attachment is still served, to participants only
+        String archivedAttachmentUrl = "/api/messaging/attachments/"
+                + objectMapper.readTree(archivedAttachmentResponse).get("attachmentId").asText();
+        mockMvc.perform(get(archivedAttachmentUrl).with(user("msg-user2")))
+                .andExpect(status().isOk())
+                .andExpect(content().bytes(new byte[]{4, 5, 6}));
+        userRepository.save(new User("msg-user3@example.com", "msg-user3", "password", "Msg3", "User",
+                com.example.auth.model.UserType.EMPLOYEE));
+        mockMvc.perform(get(archivedAttachmentUrl).with(user("msg-user3")))
+                .andExpect(status().isInternalServerError());
+
+        // The archived message's edit history is still readable
+        mockMvc.perform(get("/api/messaging/" + sentIds.get(0) + "/versions"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2));
+        mockMvc.perform(get("/api/messaging/" + sentIds.get(0) + "/versions/1").with(user("msg-user2")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content").value("Ancient history"));
+
+        // user2's unread counter was reset and is recounted without the archived message
+        mockMvc.perform(get(historyUrl + "/unread-count").with(user("msg-user2")))
+                .andExpect(status().isOk())
+                .andExpect(content().string("1"));
+    }
+
+    @Test
+    @WithMockUser("msg-user1")
+    public void whenParticipationCached_thenRepeatChecksHitCacheAndOutsidersAreRejected() throws Exception {
+        String unreadUrl = "/api/messaging/conversation/" + conversation.getConversationId() + "/unread-count";
+        long misses = membershipCache.getMisses();
+        mockMvc.perform(get(unreadUrl)).andExpect(status().isOk()).andExpect(content().string("0"));
+        assertEquals(misses + 1, membershipCache.getMisses());
+
+        long hits = membershipCache.getHits();
+        com.example.auth.dto.request.SendMessageRequest sendRequest = new com.example.auth.dto.request.SendMessageRequest();
+        sendRequest.setConversationId(conversation.getConversationId());
+        sendRequest.setContent("Membership cached");
+        mockMvc.perform(post("/api/messaging")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(sendRequest)))
+                .andExpect(status().isOk());
+        mockMvc.perform(get(unreadUrl).with(user("msg-user2")))
+                .andExpect(status().isOk())
+                .andExpect(content().string("1"));
+        assertEquals(hits + 2, membershipCache.getHits());
+
+        // Outsiders are rejected from the cached entry as well, including when sending
+        User outsider = new User("msg-user3@example.com", "msg-user3", "password", "Msg3", "User", com.example.auth.model.UserType.EMPLOYEE);
+        userRepository.save(outsider);
+        mockMvc.perform(get(unreadUrl).with(user("msg-user3")))
+                .andExpect(status().isInternalServerError());
+        mockMvc.perform(post("/api/messaging").with(user("msg-user3"))
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(sendRequest)))
+                .andExpect(status().isInternalServerError());
+        assertEquals(misses + 1, membershipCache.getMisses());
+    }
+
+    @Test
+    @WithMockUser("msg-user2")
+    public void whenListingHistoryPage_thenQueryCountDoesNotGrowWithPageSize() throws Exception {
+        java.time.LocalDateTime base = java.time.LocalDateTime.of(2024, 1, 1, 9, 0);
+        for (int i = 0; i < 6; i++) {
+            com.example.auth.model.Message message = new com.example.auth.model.Message(conversation, i % 2 == 0 ? user1 : user2,
+                    "Projected " + i, com.example.auth.model.MessageType.TEXT);
+            message.setSentAt(base.plusMinutes(i));
+            com.example.auth.model.Attachment attachment = new com.example.auth.model.Attachment();
+            attachment.setMessage(message);
+            attachment.setFileName("scan-" + i + ".pdf");
+            attachment.setMimeType("application/pdf");
+            attachment.setFileSize(1024L * (i + 1));
+            attachment.setStoragePath("attachments/scan-" + i + ".pdf");
+            message.getAttachments().add(attachment);
+            messageRepository.save(message);
+        }
+        messageRepository.flush();
+        entityManager.clear();
+
+        // A cursor past every message forces the database path instead of the recent-message cache
+        String historyUrl = "/api/messaging/conversation/" + conversation.getConversationId() + "/history";
+        String before = "2999-01-01T00:00,ffffffff-ffff-ffff-ffff-ffffffffffff";
+        mockMvc.perform(get(historyUrl).param("before", before).param("limit", "1")).andExpect(status().isOk());
+
+        org.hibernate.stat.Statistics statistics = entityManager.getEntityManagerFactory()
+                .unwrap(org.hibernate.SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        try {
+            statistics.clear();
+            mockMvc.perform(get(historyUrl).param("before", before).param("limit", "2"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.messages.length()").value(2));
+            long smallPage = statistics.getPrepareStatementCount();
+
+            statistics.clear();
+            mockMvc.perform(get(historyUrl).param("before", before).param("limit", "6"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.messages.length()").value(6))
+                    .andExpect(jsonPath("$.messages[0].senderName").value("Msg1 User"))
+                    .andExpect(jsonPath("$.messages[1].senderName").value("Msg2 User"))
+                    .andExpect(jsonPath("$.messages[0].attachments[0].fileName").value("scan-0.pdf"))
+                    .andExpect(jsonPath("$.messages[0].attachments[0].storagePath").doesNotExist())
+                    .andExpect(jsonPath("$.messages[0].sender").doesNotExist());
+            long largePage = statistics.getPrepareStatementCount();
+
+            // Current user, the message rows with sender names, and the page's attachments
+            assertEquals(3, largePage);
+            assertEquals(smallPage, largePage);
+        } finally {
+            statistics.setStatisticsEnabled(false);
+        }
+    }
+
+    @Test
+    @WithMockUser("msg-user1")
+    public void whenAttachmentUploaded_thenStreamedBackWithHashAndRanges() throws Exception {
+        com.example.auth.model.Message message = messageRepository.save(
+                new com.example.auth.model.Message(conversation, user1, "See attached", com.example.auth.model.MessageType.FILE));
+        byte[] bytes = "%PDF-1.7 occupational health assessment".getBytes(java.nio.charset.StandardCharsets.UTF_8);
+        String sha256 = java.util.HexFormat.of().formatHex(java.security.MessageDigest.getInstance("SHA-256").digest(bytes));
+
+        String response = mockMvc.perform(multipart("/api/messaging/" + message.getMessageId() + "/attachments")
+                .file(new org.springframework.mock.web.MockMultipartFile("file", "C:\\scans\\assessment.pdf", "application/pdf", bytes)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.fileName").value("assessment.pdf"))
+                .andExpect(jsonPath("$.fileSize").value(bytes.length))
+                .andReturn().getResponse().getContentAsString();
+        String attachmentId = objectMapper.readTree(response).get("attachmentId").asText();
+        String downloadUrl = "/api/messaging/attachments/" + attachmentId;
+
+        mockMvc.perform(get(downloadUrl).with(user("msg-user2")))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"" + sha256 + "\""))
+                .andExpect(header().string("Accept-Ranges", "bytes"))
+                .andExpect(header().longValue("Content-Length", bytes.length))
+                .andExpect(content().contentType("application/pdf"))
+                .andExpect(content().bytes(bytes));
+
+        mockMvc.perform(get(downloadUrl).header("Range", "bytes=5-7"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string("Content-Range", "bytes 5-7/" + bytes.length))
+                .andExpect(content().bytes(java.util.Arrays.copyOfRange(bytes, 5, 8)));
+        mockMvc.perform(get(downloadUrl).header("Range", "bytes=-10"))
+                .andExpect(status().isPartialContent())
+                .andExpect(content().bytes(java.util.Arrays.copyOfRange(bytes, bytes.length - 10, bytes.length)));
+        mockMvc.perform(get(downloadUrl).header("Range", "bytes=" + bytes.length + "-"))
+                .andExpect(status().isRequestedRangeNotSatisfiable())
+                .andExpect(header().string("Content-Range", "bytes */" + bytes.length));
+
+        // Only participants can download, and only the sender can attach
+        User outsider = new User("msg-user3@example.com", "msg-user3", "password", "Msg3", "User", com.example.auth.model.UserType.EMPLOYEE);
+        userRepository.save(outsider);
+        mockMvc.perform(get(downloadUrl).with(user("msg-user3")))
+                .andExpect(status().isInternalServerError());
+        mockMvc.perform(multipart("/api/messaging/" + message.getMessageId() + "/attachments")
+                .file(new org.springframework.mock.web.MockMultipartFile("file", "other.pdf", "application/pdf", bytes))
+                .with(user("msg-user2")))
+                .andExpect(status().isInternalServerError());
+    }
+
+    @Test
+    @WithMockUser("msg-user1")
+    // Outside the test transaction, so the edits really overlap; the rows it commits are removed at the end
+    @Transactional(propagation = org.springframework.transaction.annotation.Propagation.NOT_SUPPORTED)
+    public void whenMessageEditedConcurrently_thenEveryVersionRebuildsToOneOfTheEdits() throws Exception {
+        java.util.UUID messageId = messageRepository.save(new com.example.auth.model.Message(conversation, user1,
+                encryptionService.encrypt("Original text"), com.example.auth.model.MessageType.TEXT)).getMessageId();
+        // Edits at different ends of the text, so a delta taken against the wrong base rebuilds to the wrong text
+        List<String> contents = List.of("Original text, checked", "Edited: Original text", "Original plain text", "Original texts");
+        int editors = contents.size();
+        java.util.concurrent.ExecutorService executor = java.util.concurrent.Executors.newFixedThreadPool(editors);
+        java.util.concurrent.CountDownLatch start = new java.util.concurrent.CountDownLatch(1);
+        try {
+            List<java.util.concurrent.Future<?>> edits = new java.util.ArrayList<>();
+            for (String content : contents) {
+                edits.add(executor.submit(() -> {
+                    start.await();
+                    return messagingService.editMessage(messageId, content, user1);
+                }));
+            }
+            start.countDown();
+            for (java.util.concurrent.Future<?> edit : edits) {
+                edit.get(30, java.util.concurrent.TimeUnit.SECONDS);
+            }
+
+            // Each edit diffed against the version before it, so every version rebuilds to exactly one edit
+            mockMvc.perform(get("/api/messaging/" + messageId + "/versions/1"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.content").value("Original text"));
+            java.util.Set<String> rebuilt = new java.util.HashSet<>();
+            for (int version = 2; version <= editors + 1; version++) {
+                String response = mockMvc.perform(get("/api/messaging/" + messageId + "/versions/" + version))
+                        .andExpect(status().isOk())
+                        .andReturn().getResponse().getContentAsString();
+                rebuilt.add(objectMapper.readTree(response).get("content").asText());
+            }
+            assertEquals(new java.util.HashSet<>(contents), rebuilt);
+        } finally {
+            executor.shutdownNow();
+            java.util.UUID conversationId = conversation.getConversationId();
+            jdbcTemplate.update("DELETE FROM message_versions WHERE message_id = ?", messageId);
+            jdbcTemplate.update("DELETE FROM message_search_tokens WHERE message_id = ?", messageId);
+            jdbcTemplate.update("DELETE FROM messages WHERE conversation_id = ?", conversationId);
+            jdbcTemplate.update("DELETE FROM data_keys WHERE scope_id = ?", conversationId);
+            jdbcTemplate.update("DELETE FROM conversation_participants WHERE conversation_id = ?", conversationId);
+            jdbcTemplate.update("DELETE FROM conversations WHERE conversation_id = ?", conversationId);
+            jdbcTemplate.update("DELETE FROM users WHERE user_id IN (?, ?)", user1.getUserId(), user2.getUserId());
+        }
+    }
+
+    @Test
+    @WithMockUser("msg-user1")
+    public void whenMessageEditedRepeatedly_thenEveryVersionRebuildsFromBoundedChain() throws Exception {
+        com.example.auth.dto.request.SendMessageRequest sendRequest = new com.example.auth.dto.request.SendMessageRequest();
+        sendRequest.setConversationId(conversation.getConversationId());
+        sendRequest.setContent("Fit for work from Monday, review in 4 weeks");
+        String sent = mockMvc.perform(post("/api/messaging")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(sendRequest)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        java.util.UUID messageId = java.util.UUID.fromString(objectMapper.readTree(sent).get("messageId").asText());
+        String versionsUrl = "/api/messaging/" + messageId + "/versions";
+
+        // Before the first edit the only version is the current content
+        mockMvc.perform(get(versionsUrl + "/1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content").value(sendRequest.getContent()));
+
+        List<String> contents = new java.util.ArrayList<>(List.of(sendRequest.getContent()));
+        for (int week = 5; week <= 14; week++) {
+            String edited = "Fit for work from Monday, review in " + week + " weeks";
+            mockMvc.perform(put("/api/messaging/" + messageId)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(java.util.Map.of("content", edited))))
+                    .andExpect(status().isOk());
+            contents.add(edited);
+        }
+
+        mockMvc.perform(get(versionsUrl).with(user("msg-user2")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(contents.size()))
+                .andExpect(jsonPath("$[0].editedBy").value(user1.getUserId().toString()))
+                .andExpect(jsonPath("$[0].content").doesNotExist());
+        for (int version = 1; version <= contents.size(); version++) {
+            mockMvc.perform(get(versionsUrl + "/" + version).with(user("msg-user2")))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.version").value(version))
+                    .andExpect(jsonPath("$.content").value(contents.get(version - 1)));
+        }
+
+        // Small edits are deltas; the chain is cut by a snapshot before it reaches the configured bound
+        List<com.example.auth.model.MessageVersion> stored = messageVersionRepository.findAll().stream()
+                .filter(v -> v.getMessageId().equals(messageId))
+                .sorted(java.util.Comparator.comparingInt(com.example.auth.model.MessageVersion::getVersion))
+                .toList();
+        assertEquals(contents.size(), stored.size());
+        assertEquals(0, stored.get(0).getDeltaDepth());
+        assertEquals(1, stored.get(1).getDeltaDepth());
+        assertEquals(0, stored.get(8).getDeltaDepth());
+        assertTrue(stored.stream().allMatch(v -> v.getDeltaDepth() < 8));
+        assertTrue(stored.get(1).getCiphertext().length < stored.get(0).getCiphertext().length);
+
+        mockMvc.perform(get(versionsUrl + "/" + (contents.size() + 1)))
+                .andExpect(status().isInternalServerError());
+    }
 }
@@ -0,0 +1,108 @@
+package com.example.auth.service;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the original per-call Cipher/SecureRandom implementation ("legacy") with the
+ * thread-confined cipher path and the byte-oriented API. Not run by Surefire; after {@code mvn test-compile}
+ * run {@link #main} from the IDE, or {@code org.openjdk.jmh.Main EncryptionServiceBenchmark -prof gc} on the
+ * test classpath. The GC profiler reports allocations per operation ({@code gc.alloc.rate.norm}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EncryptionServiceBenchmark {
+
+    private static final String SECRET = "benchmark-secret-key";
+
+    @Param({"64", "1024"})
+    private int messageLength;
+
+    private EncryptionService encryptionService;
+    private SecretKey legacyKey;
+    private String plaintext;
+    private byte[] plaintextBytes;
+    private String ciphertext;
+    private byte[] ciphertextBytes;
+
+    @Setup
+    public void setUp() throws Exception {
+        encryptionService = new EncryptionService(SECRET);
+        legacyKey = new SecretKeySpec(MessageDigest.getInstance("SHA-256").digest(SECRET.getBytes(StandardCharsets.UTF_8)), "AES");
+        plaintext = "x".repeat(messageLength);
+        plaintextBytes = plaintext.getBytes(StandardCharsets.UTF_8);
+        ciphertext = encryptionService.encrypt(plaintext);
+        ciphertextBytes = Base64.getDecoder().decode(ciphertext);
+    }
+
+    @Benchmark
+    public String legacyEncrypt() throws Exception {
+        byte[] iv = new byte[12];
+        new SecureRandom().nextBytes(iv);
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, legacyKey, new GCMParameterSpec(128, iv));
+        byte[] cipherText = cipher.doFinal(plaintext.getBytes(StandardCharsets.UTF_8));
+        ByteBuffer byteBuffer = ByteBuffer.allocate(iv.length + cipherText.length);
+        byteBuffer.put(iv);
+        byteBuffer.put(cipherText);
+        return Base64.getEncoder().encodeToString(byteBuffer.array());
+    }
+
+    @Benchmark
+    public String legacyDecrypt() throws Exception {
+        ByteBuffer byteBuffer = ByteBuffer.wrap(Base64.getDecoder().decode(ciphertext));
+        byte[] iv = new byte[12];
+        byteBuffer.get(iv);
+        byte[] cipherText = new byte[byteBuffer.remaining()];
+        byteBuffer.get(cipherText);
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.DECRYPT_MODE, legacyKey, new GCMParameterSpec(128, iv));
+        return new String(cipher.doFinal(cipherText), StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public String encrypt() throws Exception {
+        return encryptionService.encrypt(plaintext);
+    }
+
+    @Benchmark
+    public String decrypt() throws Exception {
+        return encryptionService.decrypt(ciphertext);
+    }
+
+    @Benchmark
+    public byte[] encryptBytes() throws Exception {
+        return encryptionService.encryptBytes(plaintextBytes);
+    }
+
+    @Benchmark
+    public byte[] decryptBytes() throws Exception {
+        return encryptionService.decryptBytes(ciphertextBytes);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .include(EncryptionServiceBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -65,4 +65,69 @@ public class EncryptionServiceTest {
             encryptionService.decrypt(tamperedCiphertext);
         });
     }
+
+    @Test
+    void testEncryptBytes_IsWireCompatibleWithStringApi() throws Exception {
+        byte[] plaintext = "Byte payload".getBytes(java.nio.charset.StandardCharsets.UTF_8);
+        byte[] encrypted = encryptionService.encryptBytes(plaintext);
+
+        assertEquals("Byte payload", encryptionService.decrypt(Base64.getEncoder().encodeToString(encrypted)));
+        assertArrayEquals(plaintext, encryptionService.decryptBytes(encrypted));
+        assertArrayEquals(plaintext, encryptionService.decryptBytes(java.nio.ByteBuffer.wrap(encrypted)));
+
+        byte[] fromString = Base64.getDecoder().decode(encryptionService.encrypt("Byte payload"));
+        assertArrayEquals(plaintext, encryptionService.decryptBytes(fromString));
+    }
+
+    @Test
+    void testDecryptBytes_TooShort() {
+        assertThrows(Exception.class, () -> encryptionService.decryptBytes(new byte[4]));
+    }
+
+    @Test
+    void testDecryptAll_ParallelBatchPreservesOrderAndMapsFailures() throws Exception {
+        EncryptionService batchService = new EncryptionService("test-secret-key-that-is-long-enough", 4, 3);
+        java.util.List<String> ciphertexts = new java.util.ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            ciphertexts.add(batchService.encrypt("message " + i));
+        }
+        ciphertexts.set(17, "not a ciphertext");
+
+        java.util.List<String> plaintexts = batchService.decryptAll(ciphertexts, "[unreadable]");
+
+        assertEquals(50, plaintexts.size());
+        for (int i = 0; i < 50; i++) {
+            assertEquals(i == 17 ? "[unreadable]" : "message " + i, plaintexts.get(i));
+        }
+        batchService.shutdown();
+    }
+
+    @Test
+    void testBinaryFormat_RoundTripAndLegacyConversion() throws Exception {
+        byte[] stored = encryptionService.encryptBinary("Binary payload");
+        assertEquals(1, stored[0]);
+        assertEquals("Binary payload", encryptionService.decryptBinary(stored));
+
+        byte[] converted = encryptionService.legacyToBinary(encryptionService.encrypt("Legacy payload"));
+        assertEquals("Legacy payload", encryptionService.decryptBinary(converted));
+
+        stored[0] = 9;
+        assertThrows(Exception.class, () -> encryptionService.decryptBinary(stored));
+    }
+
+    @Test
+    void testKeyedBinaryFormat_UsesWrappedDataKey() throws Exception {
+        javax.crypto.SecretKey dataKey = encryptionService.generateDataKey();
+        javax.crypto.SecretKey unwrapped = encryptionService.unwrapKey(encryptionService.wrapKey(dataKey));
+        java.util.UUID keyId = java.util.UUID.randomUUID();
+
+        byte[] stored = encryptionService.encryptBinary("Keyed payload", keyId, dataKey);
+        assertEquals(2, stored[0]);
+        assertEquals(keyId, EncryptionService.readKeyId(stored));
+        assertEquals("Keyed payload", encryptionService.decryptBinary(stored, id -> unwrapped));
+
+        // The master key alone cannot read data-key ciphertext
+        assertThrows(Exception.class, () -> encryptionService.decryptBinary(stored));
+        assertNull(EncryptionService.readKeyId(encryptionService.encryptBinary("Master key payload")));
+    }
 }
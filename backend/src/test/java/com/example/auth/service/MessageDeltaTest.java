@@ -0,0 +1,43 @@
+package com.example.auth.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MessageDeltaTest {
+
+    @Test
+    void testDiffApply_RoundTrip() {
+        String from = "See you at 10 tomorrow";
+        String to = "See you at 11 tomorrow morning";
+
+        assertEquals(to, MessageDelta.apply(from, MessageDelta.diff(from, to)));
+    }
+
+    @Test
+    void testDiff_DoesNotSplitSurrogatePairs() {
+        // U+1F600 and U+1F601 share their high surrogate
+        String from = "Thanks 😀 see you";
+        String to = "Thanks 😁 see you";
+
+        String delta = MessageDelta.diff(from, to);
+        assertEquals("7:8:😁", delta);
+
+        // The delta is encrypted as UTF-8, which would replace a lone surrogate
+        String stored = new String(delta.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+        assertEquals(to, MessageDelta.apply(from, stored));
+    }
+
+    @Test
+    void testDiff_DoesNotSplitSurrogatePairsInSuffix() {
+        // U+1F200 and U+1F600 share their low surrogate
+        String from = "🈀 agreed";
+        String to = "😀 agreed";
+
+        String delta = MessageDelta.diff(from, to);
+        String stored = new String(delta.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+        assertEquals(to, MessageDelta.apply(from, stored));
+    }
+}